@@ -45,6 +45,7 @@ import com.htmlhifive.pitalium.core.model.ScreenshotResult;
 import com.htmlhifive.pitalium.core.model.TargetResult;
 import com.htmlhifive.pitalium.core.model.TestResult;
 import com.htmlhifive.pitalium.core.selenium.PtlCapabilities;
+import com.htmlhifive.pitalium.image.util.ImageUtils;
 
 /**
  * データをファイルとして永続化するためのPersister
@@ -174,7 +175,7 @@ public class FilePersister implements Persister {
 		LOG.debug("[Load screenshot] ({})", file);
 		LOG.trace("[Load screenshot] ({})", metadata);
 		try {
-			return ImageIO.read(file);
+			return ImageUtils.toCanonicalImage(ImageIO.read(file));
 		} catch (IOException e) {
 			LOG.debug("Failed to load screenshot.", e);
 			throw new ResourceUnavailableException(e);
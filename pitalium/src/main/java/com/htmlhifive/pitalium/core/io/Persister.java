@@ -63,7 +63,8 @@ public interface Persister {
 	InputStream getImageStream(PersistMetadata metadata) throws ResourceUnavailableException;
 
 	/**
-	 * スクリーンショットの画像を読み込みます。
+	 * スクリーンショットの画像を読み込みます。<br>
+	 * 画像は{@link com.htmlhifive.pitalium.image.util.ImageUtils#toCanonicalImage(BufferedImage)}で標準のピクセル形式に変換して返します。
 	 * 
 	 * @param metadata データのメタデータ
 	 * @return スクリーンショットの画像
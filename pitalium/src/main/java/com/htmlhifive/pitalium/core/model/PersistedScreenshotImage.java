@@ -29,6 +29,7 @@ import com.htmlhifive.pitalium.core.io.PersistMetadata;
 import com.htmlhifive.pitalium.core.io.Persister;
 import com.htmlhifive.pitalium.core.io.ResourceUnavailableException;
 import com.htmlhifive.pitalium.image.model.ScreenshotImage;
+import com.htmlhifive.pitalium.image.util.ImageUtils;
 
 /**
  * {@link Persister}からの読み込みが可能なスクリーンショット画像を表すクラス
@@ -86,7 +87,8 @@ public class PersistedScreenshotImage extends ScreenshotImage {
 	}
 
 	/**
-	 * スクリーンショットの画像を取得します。
+	 * スクリーンショットの画像を取得します。<br>
+	 * ストリームから読み込んだ画像は{@link ImageUtils#toCanonicalImage(BufferedImage)}で標準のピクセル形式に変換されます。
 	 * 
 	 * @return スクリーンショットの画像
 	 */
@@ -99,7 +101,7 @@ public class PersistedScreenshotImage extends ScreenshotImage {
 		InputStream in = null;
 		try {
 			in = getImageStream();
-			image = ImageIO.read(in);
+			image = ImageUtils.toCanonicalImage(ImageIO.read(in));
 		} catch (IOException e) {
 			throw new TestRuntimeException(e);
 		} finally {
@@ -37,6 +37,7 @@ import com.htmlhifive.pitalium.core.selenium.PtlWebDriver;
 import com.htmlhifive.pitalium.core.selenium.PtlWebDriverFactory;
 import com.htmlhifive.pitalium.core.selenium.PtlWebDriverManager;
 import com.htmlhifive.pitalium.image.model.*;
+import com.htmlhifive.pitalium.image.util.ImageComparatorFactory;
 import com.htmlhifive.pitalium.image.util.ImageUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.rules.TestWatcher;
@@ -697,17 +698,33 @@ public class AssertionView extends TestWatcher {
 				options = list.toArray(new CompareOption[list.size()]);
 			}
 
-			ImageComparedResult compareResult = ImageUtils.compare(currentImage.image, currentImage.rectangle,
-					expectedImage.image, expectedImage.rectangle, options);
+			// 差異の位置は差分画像の作成にのみ必要なため、まず合否のみを判定する
+			// 比較オプションが複数の場合も、合否は最初の比較オプションで判定する
+			ImageComparedResult compareResult = ImageUtils.verify(currentImage.image, currentImage.rectangle,
+					currentImage.excludes, expectedImage.image, expectedImage.rectangle, expectedImage.excludes,
+					options);
 			assertFail |= compareResult.isFailed();
+			List<ImageComparedResult> optionResults = null;
 			if (compareResult.isFailed()) {
 				LOG.error("[Comparison failed] ({})", current);
 
+				if (options.length > 1) {
+					// 全ての比較オプションの結果を、画像を1度読み込んでまとめて取得する
+					CompositeImageComparedResult compositeResult = (CompositeImageComparedResult) ImageComparatorFactory
+							.getInstance().getCompositeImageComparator(options).compare(currentImage.image,
+									currentImage.rectangle, currentImage.excludes, expectedImage.image,
+									expectedImage.rectangle, expectedImage.excludes);
+					optionResults = compositeResult.getResults();
+				} else {
+					optionResults = Collections.singletonList(compareResult);
+				}
+
 				for (int i = 0; i < options.length; i++) {
 					if (options[i].getType() == CompareOptionType.SIMILARITY) {
 						SimilarityComparisonParameters parameters = (SimilarityComparisonParameters) options[i]
 								.getParameters();
-						SimilarityUnit unit = ((SimilarityImageComparedResult) compareResult).getSimilarityUnit();
+						SimilarityUnit unit = ((SimilarityImageComparedResult) optionResults.get(i))
+								.getSimilarityUnit();
 
 						String threshold = JSONUtils.toString(parameters);
 						String similarity = JSONUtils.toString(unit);
@@ -730,8 +747,18 @@ public class AssertionView extends TestWatcher {
 			if (compareResult.isFailed()) {
 				LOG.debug("[Create diff image] ({})", current);
 
-				DiffPoints diffPoints = compareResult instanceof DiffPoints ? (DiffPoints) compareResult : null;
-				BufferedImage diffImage = ImageUtils.getDiffImage(expectedImage.image, currentImage.image, diffPoints);
+				// 差分画像には最初の比較オプションの差異を表示する
+				// 合否のみを判定した場合は、差分データを保持せずに、マスクした画像を比較しながら差異をマークする
+				ImageComparedResult diffResult = optionResults.get(0);
+				BufferedImage diffImage;
+				if (diffResult instanceof VerdictImageComparedResult) {
+					diffImage = ImageUtils.getDiffImage(currentImage.getMaskedImage(), currentImage.rectangle,
+							expectedImage.getMaskedImage(), expectedImage.rectangle, options);
+				} else {
+					DiffPoints diffPoints = diffResult instanceof DiffPoints ? (DiffPoints) diffResult : null;
+					diffImage = ImageUtils.getDiffImage(expectedImage.getMaskedImage(), currentImage.getMaskedImage(),
+							diffPoints);
+				}
 
 				// Metadata作成して保存
 				ScreenAreaResult target = current.getTarget();
@@ -757,23 +784,18 @@ public class AssertionView extends TestWatcher {
 	}
 
 	/**
-	 * スクリーンショット比較の前準備として、除外領域をマスクし、座標情報とペアにして返します。
+	 * スクリーンショット比較の前準備として、画像を座標情報、除外領域とペアにして返します。<br>
+	 * 除外領域は比較時に読み飛ばすため、画像はマスクしません。マスクした画像は差分画像の作成時にのみ生成します。
 	 *
 	 * @param target スクリーンショット撮影結果
-	 * @return マスク済の画像と座標情報のペア
+	 * @return 画像と座標情報、除外領域のペア
 	 */
 	private ImageRectanglePair prepareScreenshotImageForCompare(TargetResult target) {
 		BufferedImage image = target.getImage().get();
 
-		// Mask
-		List<ScreenAreaResult> excludes = target.getExcludes();
-		if (!excludes.isEmpty()) {
-			List<Rectangle> maskAreas = Lists.transform(toExcludesForJson(excludes),
-					SCREEN_AREA_RESULT_TO_RECTANGLE_FUNCTION);
-			image = ImageUtils.getMaskedImage(image, maskAreas);
-		}
-
-		return new ImageRectanglePair(image, target.getTarget().getRectangle().toRectangle());
+		List<Rectangle> maskAreas = new ArrayList<Rectangle>(Lists.transform(toExcludesForJson(target.getExcludes()),
+				SCREEN_AREA_RESULT_TO_RECTANGLE_FUNCTION));
+		return new ImageRectanglePair(image, target.getTarget().getRectangle().toRectangle(), maskAreas);
 	}
 
 	/**
@@ -1031,16 +1053,28 @@ public class AssertionView extends TestWatcher {
 	private static class ImageRectanglePair {
 		private final BufferedImage image;
 		private final Rectangle rectangle;
+		private final List<Rectangle> excludes;
 
 		/**
-		 * 画像と矩形情報のペアを持ったオブジェクトを生成します。
+		 * 画像と矩形情報、除外領域のペアを持ったオブジェクトを生成します。
 		 *
 		 * @param image 画像
 		 * @param rectangle 矩形情報
+		 * @param excludes 除外領域
 		 */
-		public ImageRectanglePair(BufferedImage image, Rectangle rectangle) {
+		public ImageRectanglePair(BufferedImage image, Rectangle rectangle, List<Rectangle> excludes) {
 			this.image = image;
 			this.rectangle = rectangle;
+			this.excludes = excludes;
+		}
+
+		/**
+		 * 除外領域をマスクした画像を取得します。除外領域がない場合は画像をそのまま返します。
+		 *
+		 * @return マスク済の画像
+		 */
+		public BufferedImage getMaskedImage() {
+			return excludes.isEmpty() ? image : ImageUtils.getMaskedImage(image, excludes);
 		}
 	}
 
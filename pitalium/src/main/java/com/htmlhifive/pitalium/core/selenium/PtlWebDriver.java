@@ -1686,7 +1686,8 @@ public abstract class PtlWebDriver extends RemoteWebDriver {
 	}
 
 	/**
-	 * スクリーンショットを撮影し、{@link BufferedImage}として取得します。
+	 * スクリーンショットを撮影し、{@link BufferedImage}として取得します。<br>
+	 * 画像は{@link ImageUtils#toCanonicalImage(BufferedImage)}で標準のピクセル形式に変換されます。
 	 *
 	 * @return 撮影したスクリーンショット
 	 */
@@ -1698,7 +1699,7 @@ public abstract class PtlWebDriver extends RemoteWebDriver {
 			LOG.debug("[ImageIO.read start]");
 			BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
 			LOG.debug("[ImageIO.read finished]");
-			return image;
+			return ImageUtils.toCanonicalImage(image);
 		} catch (IOException e) {
 			throw new TestRuntimeException("Screenshot capture error", e);
 		}
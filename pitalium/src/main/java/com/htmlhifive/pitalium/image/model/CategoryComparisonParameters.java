@@ -50,6 +50,21 @@ public class CategoryComparisonParameters extends ComparisonParameters {
 	 */
 	private boolean isTextAccepted;
 
+	/**
+	 * 並列度
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * 差異領域を並列に構築する際、これより小さい範囲は分割せずに逐次構築する
+	 */
+	private int quadTreeSequentialCutoff = ComparisonParameterDefaults.getDefaultQuadTreeSequentialCutoff();
+
+	/**
+	 * 閾値による比較で差異が見つかった領域のみをカテゴリ分類するか
+	 */
+	private boolean cascade;
+
 	/**
 	 * パラメータありのコンストラクタ
 	 *
@@ -82,6 +97,30 @@ public class CategoryComparisonParameters extends ComparisonParameters {
 		}
 	}
 
+	/**
+	 * 並列度を指定するコンストラクタ
+	 *
+	 * @param acceptCategories 許容するカテゴリ
+	 * @param parallelism 並列度。2以上を指定すると差異領域の構築をFork/Joinプールで並列に実行します。
+	 */
+	public CategoryComparisonParameters(DiffCategory[] acceptCategories, int parallelism) {
+		this(acceptCategories);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * 並列度と、差異領域を逐次構築する範囲の大きさを指定するコンストラクタ
+	 *
+	 * @param acceptCategories 許容するカテゴリ
+	 * @param parallelism 並列度。2以上を指定すると差異領域の構築をFork/Joinプールで並列に実行します。
+	 * @param quadTreeSequentialCutoff 幅または高さがこの値より小さい範囲は、分割せずに逐次構築します。
+	 */
+	public CategoryComparisonParameters(DiffCategory[] acceptCategories, int parallelism,
+			int quadTreeSequentialCutoff) {
+		this(acceptCategories, parallelism);
+		this.quadTreeSequentialCutoff = quadTreeSequentialCutoff;
+	}
+
 	/**
 	 * リストを引数とするコンストラクタ
 	 *
@@ -99,6 +138,18 @@ public class CategoryComparisonParameters extends ComparisonParameters {
 	public CategoryComparisonParameters(Map<String, Object> parameters) {
 		this(toDiffCategoryArray(parameters.containsKey("acceptCategories") ? (ArrayList<String>) parameters
 				.get("acceptCategories") : new ArrayList<String>()));
+		Object parallelismValue = parameters.get("parallelism");
+		if (parallelismValue != null) {
+			this.parallelism = ((Number) parallelismValue).intValue();
+		}
+		Object cutoffValue = parameters.get("quadTreeSequentialCutoff");
+		if (cutoffValue != null) {
+			this.quadTreeSequentialCutoff = ((Number) cutoffValue).intValue();
+		}
+		Object cascadeValue = parameters.get("cascade");
+		if (cascadeValue != null) {
+			this.cascade = (Boolean) cascadeValue;
+		}
 	}
 
 	private static DiffCategory[] toDiffCategoryArray(List<String> acceptCategories) {
@@ -152,4 +203,42 @@ public class CategoryComparisonParameters extends ComparisonParameters {
 		return isTextAccepted;
 	}
 
+	/**
+	 * 並列度を返します。
+	 *
+	 * @return 並列度
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * 差異領域を並列に構築する際、分割せずに逐次構築する範囲の大きさを返します。
+	 *
+	 * @return 逐次構築する範囲の大きさ
+	 */
+	public int getQuadTreeSequentialCutoff() {
+		return quadTreeSequentialCutoff;
+	}
+
+	/**
+	 * 閾値による比較で差異が見つかった領域のみをカテゴリ分類するかを返します。
+	 *
+	 * @return 差異が見つかった領域のみをカテゴリ分類する場合true
+	 */
+	public boolean isCascade() {
+		return cascade;
+	}
+
+	/**
+	 * 閾値による比較で差異が見つかった領域のみをカテゴリ分類するかを設定します。デフォルトはfalseです。<br>
+	 * trueを指定すると、先に閾値による比較を行い、差異が見つかった領域毎にカテゴリ分類します。
+	 * 領域毎に分類するため、領域の大きさを超えるずれはshiftとして分類されません。
+	 *
+	 * @param cascade 差異が見つかった領域のみをカテゴリ分類する場合true
+	 */
+	public void setCascade(boolean cascade) {
+		this.cascade = cascade;
+	}
+
 }
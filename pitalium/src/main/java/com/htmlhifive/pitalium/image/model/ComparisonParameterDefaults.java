@@ -45,6 +45,9 @@ public class ComparisonParameterDefaults {
 	private static int maxShift = 10;
 	private static int maxMove = 5; // moving range for similarity calculation
 
+	// default size of frames which are not divided into parallel tasks when building different areas
+	private static final int DEFAULT_QUAD_TREE_SEQUENTIAL_CUTOFF = 200;
+
 	/**
 	 * Constructor
 	 */
@@ -131,4 +134,8 @@ public class ComparisonParameterDefaults {
 		return maxMove;
 	}
 
+	public static int getDefaultQuadTreeSequentialCutoff() {
+		return DEFAULT_QUAD_TREE_SEQUENTIAL_CUTOFF;
+	}
+
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 複数の比較オプションで比較した結果をまとめて保持するクラス。<br>
+ * 各比較オプションの結果は、比較オプションと同じ順序で保持します。全ての比較オプションで一致した場合のみ成功となります。
+ */
+public class CompositeImageComparedResult extends ImageComparedResult {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 比較オプション
+	 */
+	private final List<CompareOption> options;
+
+	/**
+	 * 比較オプション毎の比較結果
+	 */
+	private final List<ImageComparedResult> results;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param options 比較オプション
+	 * @param results 比較オプション毎の比較結果（比較オプションと同じ順序）
+	 */
+	public CompositeImageComparedResult(List<CompareOption> options, List<ImageComparedResult> results) {
+		if (options.size() != results.size()) {
+			throw new IllegalArgumentException("The number of options and results must be the same.");
+		}
+		this.options = Collections.unmodifiableList(options);
+		this.results = Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * 比較オプションを取得します。
+	 *
+	 * @return 比較オプション
+	 */
+	public List<CompareOption> getOptions() {
+		return options;
+	}
+
+	/**
+	 * 比較オプション毎の比較結果を取得します。
+	 *
+	 * @return 比較結果（比較オプションと同じ順序）
+	 */
+	public List<ImageComparedResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * 指定した比較種別の比較結果を取得します。同じ種別の比較オプションが複数ある場合は、最初の比較オプションの結果を返します。
+	 *
+	 * @param type 比較種別
+	 * @return 比較結果。指定した比較種別の比較オプションがない場合はnull
+	 */
+	public ImageComparedResult getResult(CompareOptionType type) {
+		for (int i = 0; i < options.size(); i++) {
+			if (options.get(i).getType() == type) {
+				return results.get(i);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean isSucceeded() {
+		for (ImageComparedResult result : results) {
+			if (result.isFailed()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
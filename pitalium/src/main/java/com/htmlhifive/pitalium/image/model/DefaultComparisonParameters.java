@@ -27,6 +27,16 @@ public class DefaultComparisonParameters extends ComparisonParameters {
 	 */
 	private double threshold = 0.0;
 
+	/**
+	 * 比較処理の並列度。1以下の場合は呼び出し元のスレッドのみで比較する
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * 合否のみを判定する場合に、比較を打ち切るまでに数える差異の数
+	 */
+	private int diffCountBudget = 1;
+
 	/**
 	 * デフォルトコンストラクタ
 	 */
@@ -43,6 +53,30 @@ public class DefaultComparisonParameters extends ComparisonParameters {
 		this.threshold = threshold;
 	}
 
+	/**
+	 * 閾値と並列度を指定するコンストラクタ
+	 *
+	 * @param threshold 閾値
+	 * @param parallelism 並列度。2以上を指定すると画像を行単位で分割し、Fork/Joinプールで並列に比較します。
+	 */
+	public DefaultComparisonParameters(double threshold, int parallelism) {
+		this.threshold = threshold;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * 閾値、並列度、合否判定時の差異の上限数を指定するコンストラクタ
+	 *
+	 * @param threshold 閾値
+	 * @param parallelism 並列度
+	 * @param diffCountBudget 合否のみを判定する場合に、比較を打ち切るまでに数える差異の数（1以上）
+	 */
+	public DefaultComparisonParameters(double threshold, int parallelism, int diffCountBudget) {
+		this.threshold = threshold;
+		this.parallelism = parallelism;
+		this.diffCountBudget = diffCountBudget;
+	}
+
 	/**
 	 * mapを受けるコンストラクタ
 	 *
@@ -53,6 +87,14 @@ public class DefaultComparisonParameters extends ComparisonParameters {
 		if (thresholdStr != null) {
 			this.threshold = (Double) thresholdStr;
 		}
+		Object parallelismValue = map.get("parallelism");
+		if (parallelismValue != null) {
+			this.parallelism = ((Number) parallelismValue).intValue();
+		}
+		Object diffCountBudgetValue = map.get("diffCountBudget");
+		if (diffCountBudgetValue != null) {
+			this.diffCountBudget = ((Number) diffCountBudgetValue).intValue();
+		}
 	}
 
 	/**
@@ -63,4 +105,22 @@ public class DefaultComparisonParameters extends ComparisonParameters {
 	public double getThreshold() {
 		return threshold;
 	}
+
+	/**
+	 * 並列度を取得します。
+	 *
+	 * @return 並列度
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * 合否のみを判定する場合に、比較を打ち切るまでに数える差異の数を取得します。
+	 *
+	 * @return 差異の上限数
+	 */
+	public int getDiffCountBudget() {
+		return diffCountBudget;
+	}
 }
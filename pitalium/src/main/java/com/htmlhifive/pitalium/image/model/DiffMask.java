@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import java.awt.Point;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 2枚の画像間で差異があった点の集合を、1ピクセル1bitのビットマップとして保持するクラス。<br>
+ * 座標は元画像の座標系で扱い、(x, y)を左上とする幅width、高さheightの範囲の点を保持できます。各行は64bit境界に揃えて格納するため、
+ * 異なる行への書き込みは互いに干渉しません。
+ */
+public class DiffMask implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+	private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+	private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	/**
+	 * 範囲を指定して、差異のないマスクを生成します。
+	 *
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 * @param width 範囲の幅
+	 * @param height 範囲の高さ
+	 */
+	public DiffMask(int x, int y, int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("width and height must not be negative.");
+		}
+
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD;
+		this.words = new long[wordsPerRow * height];
+	}
+
+	/**
+	 * 点の集合からマスクを生成します。範囲は全ての点を含む最小の矩形となります。
+	 *
+	 * @param points 点の集合
+	 * @return 点の集合を保持するマスク
+	 */
+	public static DiffMask fromPoints(List<Point> points) {
+		if (points == null || points.isEmpty()) {
+			return new DiffMask(0, 0, 0, 0);
+		}
+
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (Point point : points) {
+			minX = Math.min(minX, point.x);
+			minY = Math.min(minY, point.y);
+			maxX = Math.max(maxX, point.x);
+			maxY = Math.max(maxY, point.y);
+		}
+
+		DiffMask mask = new DiffMask(minX, minY, maxX - minX + 1, maxY - minY + 1);
+		for (Point point : points) {
+			mask.set(point.x, point.y);
+		}
+		return mask;
+	}
+
+	/**
+	 * 指定した点を差異ありとして記録します。
+	 *
+	 * @param px x座標
+	 * @param py y座標
+	 */
+	public void set(int px, int py) {
+		int localX = px - x;
+		int localY = py - y;
+		checkBounds(localX, localY);
+		words[localY * wordsPerRow + (localX >>> ADDRESS_BITS_PER_WORD)] |= 1L << localX;
+	}
+
+	/**
+	 * 指定した行の範囲を差異ありとして記録します。
+	 *
+	 * @param py y座標
+	 * @param fromX 範囲の開始x座標（この座標を含む）
+	 * @param toX 範囲の終了x座標（この座標を含まない）
+	 */
+	public void setRange(int py, int fromX, int toX) {
+		if (fromX >= toX) {
+			return;
+		}
+
+		int localY = py - y;
+		int localFrom = fromX - x;
+		int localTo = toX - x;
+		checkBounds(localFrom, localY);
+		checkBounds(localTo - 1, localY);
+
+		int rowStart = localY * wordsPerRow;
+		int startWord = rowStart + (localFrom >>> ADDRESS_BITS_PER_WORD);
+		int endWord = rowStart + ((localTo - 1) >>> ADDRESS_BITS_PER_WORD);
+		long firstMask = WORD_MASK << localFrom;
+		long lastMask = WORD_MASK >>> -localTo;
+		if (startWord == endWord) {
+			words[startWord] |= firstMask & lastMask;
+			return;
+		}
+
+		words[startWord] |= firstMask;
+		for (int i = startWord + 1; i < endWord; i++) {
+			words[i] = WORD_MASK;
+		}
+		words[endWord] |= lastMask;
+	}
+
+	/**
+	 * 指定した点に差異があるかどうかを取得します。範囲外の点は差異なしとして扱います。
+	 *
+	 * @param px x座標
+	 * @param py y座標
+	 * @return 差異がある場合true
+	 */
+	public boolean get(int px, int py) {
+		int localX = px - x;
+		int localY = py - y;
+		if (localX < 0 || localX >= width || localY < 0 || localY >= height) {
+			return false;
+		}
+		return (words[localY * wordsPerRow + (localX >>> ADDRESS_BITS_PER_WORD)] & (1L << localX)) != 0;
+	}
+
+	/**
+	 * 指定した行で、fromX以降に差異がある最初の点のx座標を取得します。
+	 *
+	 * @param py y座標
+	 * @param fromX 検索を開始するx座標
+	 * @return 差異がある点のx座標。存在しない場合は範囲の右端（x + width）以上の値
+	 */
+	public int nextSetX(int py, int fromX) {
+		int localY = py - y;
+		int localX = Math.max(fromX - x, 0);
+		if (localY < 0 || localY >= height || localX >= width) {
+			return Math.max(fromX, x + width);
+		}
+
+		int rowStart = localY * wordsPerRow;
+		int wordIndex = localX >>> ADDRESS_BITS_PER_WORD;
+		long word = words[rowStart + wordIndex] & (WORD_MASK << localX);
+		while (true) {
+			if (word != 0) {
+				return x + (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == wordsPerRow) {
+				return x + width;
+			}
+			word = words[rowStart + wordIndex];
+		}
+	}
+
+	/**
+	 * 指定した行で、fromX以降に差異がない最初の点のx座標を取得します。
+	 *
+	 * @param py y座標
+	 * @param fromX 検索を開始するx座標
+	 * @return 差異がない点のx座標。行の終わりまで差異がある場合は範囲の右端（x + width）
+	 */
+	public int nextClearX(int py, int fromX) {
+		int localY = py - y;
+		int localX = Math.max(fromX - x, 0);
+		if (localY < 0 || localY >= height || localX >= width) {
+			return Math.max(fromX, x + width);
+		}
+
+		int rowStart = localY * wordsPerRow;
+		int wordIndex = localX >>> ADDRESS_BITS_PER_WORD;
+		long word = ~words[rowStart + wordIndex] & (WORD_MASK << localX);
+		while (true) {
+			if (word != 0) {
+				return x + Math.min((wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word), width);
+			}
+			if (++wordIndex == wordsPerRow) {
+				return x + width;
+			}
+			word = ~words[rowStart + wordIndex];
+		}
+	}
+
+	/**
+	 * 指定した行の差異の数を取得します。
+	 *
+	 * @param py y座標
+	 * @return 差異の数
+	 */
+	public int countRow(int py) {
+		int localY = py - y;
+		if (localY < 0 || localY >= height) {
+			return 0;
+		}
+
+		int count = 0;
+		for (int i = localY * wordsPerRow, end = i + wordsPerRow; i < end; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * 差異の総数を取得します。
+	 *
+	 * @return 差異の数
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * 差異が1つもないかどうかを取得します。
+	 *
+	 * @return 差異がない場合true
+	 */
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 差異がある点の一覧を取得します。戻り値はこのマスクを参照するビューで、点は行（y座標）、列（x座標）の順に並びます。
+	 *
+	 * @return 差異がある点の一覧（変更不可）
+	 */
+	public List<Point> toPointList() {
+		return new PointListView();
+	}
+
+	/**
+	 * @return 範囲の左上のx座標
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return 範囲の左上のy座標
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return 範囲の幅
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return 範囲の高さ
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	private void checkBounds(int localX, int localY) {
+		if (localX < 0 || localX >= width || localY < 0 || localY >= height) {
+			throw new IndexOutOfBoundsException("(" + (localX + x) + ", " + (localY + y) + ") is out of mask [x: " + x
+					+ ", y: " + y + ", w: " + width + ", h: " + height + "]");
+		}
+	}
+
+	/**
+	 * マスクを点の一覧として参照するビュー。各行の差異の数を累積しておき、インデックスから点を求めます。
+	 */
+	private class PointListView extends AbstractList<Point> {
+
+		/**
+		 * rowOffsets[i]はi行目より前の行に含まれる差異の数
+		 */
+		private final int[] rowOffsets;
+
+		PointListView() {
+			rowOffsets = new int[height + 1];
+			for (int i = 0; i < height; i++) {
+				rowOffsets[i + 1] = rowOffsets[i] + countRow(y + i);
+			}
+		}
+
+		@Override
+		public Point get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+
+			// rowOffsets[row] <= index < rowOffsets[row + 1] となる行を探す
+			int low = 0;
+			int high = height - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if (rowOffsets[mid] <= index) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			int row = low;
+
+			int px = nextSetX(y + row, x);
+			for (int i = rowOffsets[row]; i < index; i++) {
+				px = nextSetX(y + row, px + 1);
+			}
+			return new Point(px, y + row);
+		}
+
+		@Override
+		public int size() {
+			return rowOffsets[height];
+		}
+
+		@Override
+		public Iterator<Point> iterator() {
+			return new Iterator<Point>() {
+				private final int endX = x + width;
+				private int row = 0;
+				private int nextX = advance(x);
+
+				private int advance(int fromX) {
+					int px = nextSetX(y + row, fromX);
+					while (px >= endX && ++row < height) {
+						px = nextSetX(y + row, x);
+					}
+					return px;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return row < height;
+				}
+
+				@Override
+				public Point next() {
+					if (row >= height) {
+						throw new NoSuchElementException();
+					}
+					Point point = new Point(nextX, y + row);
+					nextX = advance(nextX + 1);
+					return point;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+}
@@ -16,6 +16,8 @@
 package com.htmlhifive.pitalium.image.model;
 
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -27,7 +29,10 @@ public class DiffPoints extends ImageComparedResult {
 	private static final long serialVersionUID = 1L;
 
 	private final List<Point> diffPoints;
-	private final List<Point> sizeDiffPoints;
+	private List<Point> sizeDiffPoints;
+	private List<Rectangle> sizeDiffAreas;
+	private DiffMask diffMask;
+	private transient List<Point> diffPointsView;
 
 	/**
 	 * 差分データを受け取って結果オブジェクトを生成する。
@@ -41,23 +46,99 @@ public class DiffPoints extends ImageComparedResult {
 	}
 
 	/**
-	 * 画像の差異データを取得する。
+	 * ビットマップ形式の差分データを受け取って結果オブジェクトを生成する。
+	 *
+	 * @param diffMask 画像間で差異があった点を保持するマスク
+	 * @param sizeDiffAreas サイズの違い（2枚の画像を重ねた際に重ならない部分）を表す矩形の集合
+	 */
+	public DiffPoints(DiffMask diffMask, List<Rectangle> sizeDiffAreas) {
+		this.diffPoints = null;
+		this.diffMask = diffMask;
+		this.sizeDiffAreas = Collections.unmodifiableList(sizeDiffAreas);
+	}
+
+	private DiffPoints(List<Point> diffPoints, DiffMask diffMask, List<Rectangle> sizeDiffAreas) {
+		this.diffPoints = diffPoints;
+		this.diffMask = diffMask;
+		this.sizeDiffAreas = sizeDiffAreas;
+	}
+
+	/**
+	 * 差分データと、矩形で表したサイズの差異を受け取って結果オブジェクトを生成する。
+	 *
+	 * @param diffPoints 画像間で差異があった点の集合
+	 * @param sizeDiffAreas サイズの違い（2枚の画像を重ねた際に重ならない部分）を表す矩形の集合
+	 * @return 結果オブジェクト
+	 */
+	public static DiffPoints withSizeDiffAreas(List<Point> diffPoints, List<Rectangle> sizeDiffAreas) {
+		return new DiffPoints(Collections.unmodifiableList(diffPoints), null,
+				Collections.unmodifiableList(sizeDiffAreas));
+	}
+
+	/**
+	 * 画像の差異データを取得する。マスクから生成した場合、戻り値はマスクを参照するビューとなり、点は行、列の順に並ぶ。
 	 *
 	 * @return 差異を表す点の集合
 	 */
 	public List<Point> getDiffPoints() {
-		return diffPoints;
+		if (diffPoints != null) {
+			return diffPoints;
+		}
+		if (diffPointsView == null) {
+			diffPointsView = diffMask.toPointList();
+		}
+		return diffPointsView;
+	}
+
+	/**
+	 * 画像の差異データをビットマップ形式で取得する。
+	 *
+	 * @return 差異を表すマスク
+	 */
+	public DiffMask getDiffMask() {
+		if (diffMask == null) {
+			diffMask = DiffMask.fromPoints(diffPoints);
+		}
+		return diffMask;
 	}
 
 	/**
-	 * 画像のサイズの差異データを取得する。
+	 * 画像のサイズの差異データを取得する。矩形から生成した場合、点は矩形毎に行、列の順に並ぶ。<br>
+	 * 矩形の全ての点を生成するため、サイズの差異が大きい場合は{@link #getSizeDiffAreas()}を使用すること。
 	 *
 	 * @return サイズの違い（2枚の画像を重ねた際に重ならない部分）を表す点の集合
 	 */
 	public List<Point> getSizeDiffPoints() {
+		if (sizeDiffPoints == null) {
+			List<Point> points = new ArrayList<Point>();
+			for (Rectangle area : sizeDiffAreas) {
+				for (int y = area.y; y < area.y + area.height; y++) {
+					for (int x = area.x; x < area.x + area.width; x++) {
+						points.add(new Point(x, y));
+					}
+				}
+			}
+			sizeDiffPoints = Collections.unmodifiableList(points);
+		}
 		return sizeDiffPoints;
 	}
 
+	/**
+	 * 画像のサイズの差異データを矩形の集合として取得する。点の集合から生成した場合、各点を1x1の矩形として返す。
+	 *
+	 * @return サイズの違い（2枚の画像を重ねた際に重ならない部分）を表す矩形の集合
+	 */
+	public List<Rectangle> getSizeDiffAreas() {
+		if (sizeDiffAreas == null) {
+			List<Rectangle> areas = new ArrayList<Rectangle>(sizeDiffPoints.size());
+			for (Point point : sizeDiffPoints) {
+				areas.add(new Rectangle(point.x, point.y, 1, 1));
+			}
+			sizeDiffAreas = Collections.unmodifiableList(areas);
+		}
+		return sizeDiffAreas;
+	}
+
 	/**
 	 * 比較した結果、画像が一致したか否かを調べる。
 	 *
@@ -65,7 +146,9 @@ public class DiffPoints extends ImageComparedResult {
 	 */
 	@Override
 	public boolean isSucceeded() {
-		return diffPoints.isEmpty() && sizeDiffPoints.isEmpty();
+		boolean noDiff = diffPoints != null ? diffPoints.isEmpty() : diffMask.isEmpty();
+		boolean noSizeDiff = sizeDiffAreas != null ? sizeDiffAreas.isEmpty() : sizeDiffPoints.isEmpty();
+		return noDiff && noSizeDiff;
 	}
 
 }
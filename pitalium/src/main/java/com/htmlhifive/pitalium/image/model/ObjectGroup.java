@@ -113,42 +113,68 @@ public class ObjectGroup {
 	}
 
 	/**
-	 * merge all possible object groups
+	 * merge all possible object groups. Mergeable groups are found through {@link RectangleGridIndex}, and when two
+	 * groups are merged, the one which comes first in the list absorbs the other. Therefore the result keeps the order
+	 * of the given list, and is the same as merging all pairs repeatedly until no pair can be merged.
 	 *
 	 * @param objectGroups list of object groups
 	 * @return list of object groups which are completely merged
 	 */
 	public static List<ObjectGroup> mergeAllPossibleObjects(List<ObjectGroup> objectGroups) {
+		int size = objectGroups.size();
+		List<Rectangle> rectangles = new ArrayList<Rectangle>(size);
+		for (ObjectGroup objectGroup : objectGroups) {
+			rectangles.add(objectGroup.getRectangle());
+		}
+		RectangleGridIndex index = new RectangleGridIndex(rectangles);
+		boolean[] merged = new boolean[size];
 
-		// Count how many times merge occur for each case
-		int num = -1;
-
-		// loop until there is no merge
-		while (num != 0) {
-			num = 0;
-			for (ObjectGroup object1 : objectGroups) {
-				List<ObjectGroup> removeList = new ArrayList<ObjectGroup>();
-				for (ObjectGroup object2 : objectGroups) {
-
-					// Check if two distinct rectangles can be merged.
-					if (!object1.equals(object2) && object1.canMerge(object2)) {
-						object1.union(object2);
-						num++;
+		for (int i = 0; i < size; i++) {
+			if (merged[i]) {
+				continue;
+			}
 
-						// Record the rectangle which will be removed.
-						removeList.add(object2);
+			// loop until the current group can not be merged with any other group
+			int current = i;
+			while (true) {
+				ObjectGroup object1 = objectGroups.get(current);
+				List<Integer> mergeList = new ArrayList<Integer>();
+				int survivor = current;
+				for (int j : index.query(object1.getRectangle())) {
+					if (j != current && object1.canMerge(objectGroups.get(j))) {
+						mergeList.add(j);
+						survivor = Math.min(survivor, j);
 					}
 				}
-				if (num > 0) {
-					// Remove the merged rectangle.
-					for (ObjectGroup removeModel : removeList) {
-						objectGroups.remove(removeModel);
-					}
+				if (mergeList.isEmpty()) {
 					break;
 				}
+
+				// the group which comes first absorbs the others
+				mergeList.add(current);
+				ObjectGroup survivorGroup = objectGroups.get(survivor);
+				for (int j : mergeList) {
+					if (j != survivor) {
+						survivorGroup.union(objectGroups.get(j));
+						merged[j] = true;
+						index.remove(j);
+					}
+				}
+				rectangles.set(survivor, survivorGroup.getRectangle());
+				index.update(survivor);
+				current = survivor;
 			}
 		}
 
+		// Remove the merged groups.
+		List<ObjectGroup> remaining = new ArrayList<ObjectGroup>();
+		for (int i = 0; i < size; i++) {
+			if (!merged[i]) {
+				remaining.add(objectGroups.get(i));
+			}
+		}
+		objectGroups.clear();
+		objectGroups.addAll(remaining);
 		return objectGroups;
 	}
 
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+/**
+ * 2枚の画像のサイズが異なる場合に、画像間のずれ（dominant offset）を探索する方法を表すenumクラス。
+ */
+public enum OffsetSearchMethod {
+
+	/**
+	 * 各方向最大10ピクセルまでのずれを総当たりで探索する
+	 */
+	BRUTE_FORCE,
+
+	/**
+	 * 縮小した輝度画像の位相限定相関（FFT）により、サイズの差の範囲内の任意のずれを探索する
+	 */
+	PHASE_CORRELATION
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid index over rectangles, which finds the rectangles that may intersect or contain a given area.<br>
+ * Rectangles are identified by their indices in the list given to the constructor. The index returns candidates whose
+ * grid cells overlap the area, so callers check the exact condition themselves. Rectangles with no area (width or
+ * height is not positive) are always returned as candidates, because their coordinates do not tell where they are.
+ * Rectangles in the list may grow after construction if {@link #update(int)} is called.
+ */
+public class RectangleGridIndex {
+
+	private final List<Rectangle> rectangles;
+
+	// grid geometry
+	private final int originX;
+	private final int originY;
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+
+	// ids of rectangles registered to each cell
+	private final int[][] cells;
+	private final int[] cellCounts;
+
+	// cell range covered by each rectangle. minColumns[id] > maxColumns[id] means no cell is covered.
+	private final int[] minColumns;
+	private final int[] maxColumns;
+	private final int[] minRows;
+	private final int[] maxRows;
+
+	private final boolean[] removed;
+
+	// ids of rectangles with no area
+	private int[] degenerates;
+	private int degenerateCount;
+
+	// for removing duplicates from query results
+	private final int[] marks;
+	private int queryCount;
+
+	/**
+	 * Build the index over the given rectangles.
+	 *
+	 * @param rectangles list of rectangles. The list itself must not be structurally modified while the index is used.
+	 */
+	public RectangleGridIndex(List<Rectangle> rectangles) {
+		this.rectangles = rectangles;
+		int size = rectangles.size();
+
+		// decide the grid so that a rectangle covers a few cells and there are at most about as many cells as rectangles
+		long minX = Long.MAX_VALUE;
+		long minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE;
+		long maxY = Long.MIN_VALUE;
+		long sumSide = 0;
+		int count = 0;
+		for (Rectangle rectangle : rectangles) {
+			if (isDegenerate(rectangle)) {
+				continue;
+			}
+			minX = Math.min(minX, rectangle.x);
+			minY = Math.min(minY, rectangle.y);
+			maxX = Math.max(maxX, (long) rectangle.x + rectangle.width);
+			maxY = Math.max(maxY, (long) rectangle.y + rectangle.height);
+			sumSide += Math.max(rectangle.width, rectangle.height);
+			count++;
+		}
+
+		if (count == 0) {
+			originX = 0;
+			originY = 0;
+			cellSize = 1;
+			columns = 1;
+			rows = 1;
+		} else {
+			long width = maxX - minX;
+			long height = maxY - minY;
+			long averageSide = sumSide / count;
+			long sparseSide = (long) Math.ceil(Math.sqrt((double) width * height / count));
+			originX = (int) minX;
+			originY = (int) minY;
+			cellSize = (int) Math.min(Math.max(Math.max(averageSide, sparseSide), 1), Integer.MAX_VALUE);
+			columns = (int) ((width + cellSize - 1) / cellSize);
+			rows = (int) ((height + cellSize - 1) / cellSize);
+		}
+
+		cells = new int[columns * rows][];
+		cellCounts = new int[columns * rows];
+		minColumns = new int[size];
+		maxColumns = new int[size];
+		minRows = new int[size];
+		maxRows = new int[size];
+		removed = new boolean[size];
+		degenerates = new int[8];
+		marks = new int[size];
+
+		for (int id = 0; id < size; id++) {
+			minColumns[id] = 0;
+			maxColumns[id] = -1;
+			minRows[id] = 0;
+			maxRows[id] = -1;
+			if (isDegenerate(rectangles.get(id))) {
+				addDegenerate(id);
+			} else {
+				update(id);
+			}
+		}
+	}
+
+	/**
+	 * Notify that the rectangle has grown (it must contain the previous one). Cells newly covered are registered.
+	 *
+	 * @param id index of the rectangle
+	 */
+	public void update(int id) {
+		Rectangle rectangle = rectangles.get(id);
+		if (isDegenerate(rectangle)) {
+			// it has been registered as a degenerate rectangle or it has no area still
+			return;
+		}
+
+		int minColumn = column(rectangle.x);
+		int maxColumn = column((long) rectangle.x + rectangle.width - 1);
+		int minRow = row(rectangle.y);
+		int maxRow = row((long) rectangle.y + rectangle.height - 1);
+		int oldMinColumn = minColumns[id];
+		int oldMaxColumn = maxColumns[id];
+		int oldMinRow = minRows[id];
+		int oldMaxRow = maxRows[id];
+		for (int r = minRow; r <= maxRow; r++) {
+			for (int c = minColumn; c <= maxColumn; c++) {
+				if (c >= oldMinColumn && c <= oldMaxColumn && r >= oldMinRow && r <= oldMaxRow) {
+					continue;
+				}
+				addToCell(r * columns + c, id);
+			}
+		}
+
+		minColumns[id] = Math.min(minColumn, oldMaxColumn < oldMinColumn ? minColumn : oldMinColumn);
+		maxColumns[id] = Math.max(maxColumn, oldMaxColumn);
+		minRows[id] = Math.min(minRow, oldMaxRow < oldMinRow ? minRow : oldMinRow);
+		maxRows[id] = Math.max(maxRow, oldMaxRow);
+	}
+
+	/**
+	 * Remove the rectangle from the index.
+	 *
+	 * @param id index of the rectangle
+	 */
+	public void remove(int id) {
+		removed[id] = true;
+	}
+
+	/**
+	 * Find the rectangles which may intersect or contain the given area, or may be contained by it.
+	 *
+	 * @param area area to search
+	 * @return indices of the candidate rectangles in ascending order
+	 */
+	public int[] query(Rectangle area) {
+		int[] result = new int[16];
+		int resultCount = 0;
+
+		queryCount++;
+		if (isDegenerate(area)) {
+			// the location of the area is unknown, so return all rectangles
+			for (int id = 0; id < removed.length; id++) {
+				if (!removed[id]) {
+					if (resultCount == result.length) {
+						result = Arrays.copyOf(result, resultCount * 2);
+					}
+					result[resultCount++] = id;
+				}
+			}
+			return Arrays.copyOf(result, resultCount);
+		}
+
+		int minColumn = column(area.x);
+		int maxColumn = column((long) area.x + area.width - 1);
+		int minRow = row(area.y);
+		int maxRow = row((long) area.y + area.height - 1);
+		for (int r = minRow; r <= maxRow; r++) {
+			for (int c = minColumn; c <= maxColumn; c++) {
+				int cell = r * columns + c;
+				int[] ids = cells[cell];
+				for (int i = 0, n = cellCounts[cell]; i < n; i++) {
+					int id = ids[i];
+					if (removed[id] || marks[id] == queryCount) {
+						continue;
+					}
+					marks[id] = queryCount;
+					if (resultCount == result.length) {
+						result = Arrays.copyOf(result, resultCount * 2);
+					}
+					result[resultCount++] = id;
+				}
+			}
+		}
+		for (int i = 0; i < degenerateCount; i++) {
+			int id = degenerates[i];
+			if (removed[id] || marks[id] == queryCount) {
+				continue;
+			}
+			marks[id] = queryCount;
+			if (resultCount == result.length) {
+				result = Arrays.copyOf(result, resultCount * 2);
+			}
+			result[resultCount++] = id;
+		}
+
+		result = Arrays.copyOf(result, resultCount);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static boolean isDegenerate(Rectangle rectangle) {
+		return rectangle.width <= 0 || rectangle.height <= 0;
+	}
+
+	private int column(long x) {
+		return (int) Math.min(Math.max(Math.floorDiv(x - originX, cellSize), 0), columns - 1);
+	}
+
+	private int row(long y) {
+		return (int) Math.min(Math.max(Math.floorDiv(y - originY, cellSize), 0), rows - 1);
+	}
+
+	private void addToCell(int cell, int id) {
+		int[] ids = cells[cell];
+		if (ids == null) {
+			ids = new int[4];
+			cells[cell] = ids;
+		} else if (cellCounts[cell] == ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * 2);
+			cells[cell] = ids;
+		}
+		ids[cellCounts[cell]++] = id;
+	}
+
+	private void addDegenerate(int id) {
+		if (degenerateCount == degenerates.length) {
+			degenerates = Arrays.copyOf(degenerates, degenerateCount * 2);
+		}
+		degenerates[degenerateCount++] = id;
+	}
+
+}
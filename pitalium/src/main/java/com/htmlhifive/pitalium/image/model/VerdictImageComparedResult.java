@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+/**
+ * 合否のみを判定する比較の結果を保持するクラス。<br>
+ * 差異が見つかった時点で比較を打ち切るため、差異の位置は保持しません。差異の位置が必要な場合は改めて
+ * {@link com.htmlhifive.pitalium.image.util.ImageComparator}のcompareメソッドで比較してください。
+ */
+public class VerdictImageComparedResult extends ImageComparedResult {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 判定結果
+	 */
+	private final boolean result;
+
+	/**
+	 * 比較を打ち切るまでに見つかった差異の数
+	 */
+	private final int diffCount;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param result 判定結果。一致していればtrue
+	 * @param diffCount 比較を打ち切るまでに見つかった差異の数
+	 */
+	public VerdictImageComparedResult(boolean result, int diffCount) {
+		this.result = result;
+		this.diffCount = diffCount;
+	}
+
+	/**
+	 * 比較を打ち切るまでに見つかった差異の数を取得します。比較を途中で打ち切った場合、実際の差異の数はこれより多くなります。
+	 *
+	 * @return 差異の数
+	 */
+	public int getDiffCount() {
+		return diffCount;
+	}
+
+	@Override
+	public boolean isSucceeded() {
+		return result;
+	}
+
+}
@@ -13,7 +13,6 @@ package com.htmlhifive.pitalium.image.util;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
 import java.util.List;
 
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
@@ -69,6 +68,27 @@ public class Categorizer {
 	 */
 	public static boolean CheckShift(BufferedImage expectedImage, BufferedImage actualImage,
 			List<ComparedRectangleArea> ComparedRectangles, Rectangle rectangle) {
+		return CheckShift(expectedImage, actualImage, null, null, null, null, ComparedRectangles, rectangle);
+	}
+
+	/**
+	 * Check shift of the given rectangle area using integral images and pixel regions of the entire images, which are
+	 * built once and shared by every rectangle. If the integral images are null, they are built only for the area to be
+	 * checked. If the pixel regions are null, they are created from the images.
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param expectedIntegralImage integral image of the entire expectedImage, or null
+	 * @param actualIntegralImage integral image of the entire actualImage, or null
+	 * @param expectedRegion pixel region of the entire expectedImage, or null
+	 * @param actualRegion pixel region of the entire actualImage, or null
+	 * @param ComparedRectangles list of ComparedRectangle
+	 * @param rectangle sub-image area of actual image
+	 * @return true if this rectangle is shifted
+	 */
+	static boolean CheckShift(BufferedImage expectedImage, BufferedImage actualImage,
+			IntegralImage expectedIntegralImage, IntegralImage actualIntegralImage, PixelRegion expectedRegion,
+			PixelRegion actualRegion, List<ComparedRectangleArea> ComparedRectangles, Rectangle rectangle) {
 		int minWidth = Math.min(expectedImage.getWidth(), actualImage.getWidth()), minHeight = Math.min(
 				expectedImage.getHeight(), actualImage.getHeight());
 
@@ -82,49 +102,86 @@ public class Categorizer {
 		int downMove = Math.min(maxShift, minHeight - (y + h));
 		Rectangle entireFrame = new Rectangle(x - leftMove, y - topMove, w + leftMove + rightMove, h + topMove
 				+ downMove);
-		BufferedImage entireImage = ImageUtils.getSubImage(expectedImage, entireFrame);
-		BufferedImage templateImage = ImageUtils.getSubImage(actualImage, rectangle);
-
-		double[][] integralImage = ImageUtils.calcIntegralImage(entireImage);
+		ImageUtils.reshapeRect(entireFrame, expectedImage.getWidth(), expectedImage.getHeight());
+		ImageUtils.reshapeRect(rectangle, actualImage.getWidth(), actualImage.getHeight());
 
-		double sumTemplate = 0;
-		Raster r = templateImage.getRaster();
-
-		int[] dArray = new int[r.getNumDataElements()];
-		for (int i = 0; i < r.getWidth(); i++) {
-			for (int j = 0; j < r.getHeight(); j++) {
-				sumTemplate += r.getPixel(i, j, dArray)[0];
-			}
+		if (expectedIntegralImage == null || actualIntegralImage == null) {
+			expectedIntegralImage = new IntegralImage(expectedImage, entireFrame);
+			actualIntegralImage = new IntegralImage(actualImage, rectangle);
 		}
 
-		int templateWidth = templateImage.getWidth();
-		int templateHeight = templateImage.getHeight();
-		double topLeft, topRight, bottomLeft, bottomRight;
-		double sumEntire;
+		int templateWidth = rectangle.width;
+		int templateHeight = rectangle.height;
+		long sumTemplate = actualIntegralImage.sum(rectangle.x, rectangle.y, templateWidth, templateHeight);
+		int maxX = entireFrame.x + entireFrame.width - templateWidth;
+		int maxY = entireFrame.y + entireFrame.height - templateHeight;
 
+		PixelRowKernel kernel = null;
+		PixelRegion template = null;
+		int[] expectedRow = null;
+		int[] actualRow = null;
 		for (int i = 0; i <= topMove + downMove; i++) {
+			int entireY = entireFrame.y + i;
+			if (entireY > maxY) {
+				break;
+			}
 			for (int j = 0; j <= leftMove + rightMove; j++) {
-				bottomRight = integralImage[i + templateHeight - 1][j + templateWidth - 1];
-				bottomLeft = (j == 0) ? 0 : integralImage[i + templateHeight - 1][j - 1];
-				topRight = (i == 0) ? 0 : integralImage[i - 1][j + templateWidth - 1];
-				topLeft = (j == 0 || i == 0) ? 0 : integralImage[i - 1][j - 1];
-				sumEntire = bottomRight - bottomLeft - topRight + topLeft;
-
-				if (Double.compare(sumEntire, sumTemplate) == 0) {
-					BufferedImage cropEntire = entireImage.getSubimage(j, i, templateWidth, templateHeight);
-
-					// If the template matches at this position, create new ComparedRectangle and add it in the list
-					if (ImageUtils.imageEquals(cropEntire, templateImage)) {
-						ComparedRectangleArea newMatch = new ComparedRectangleArea(rectangle, leftMove - j, topMove - i);
-						ComparedRectangles.add(newMatch);
-						return true;
+				int entireX = entireFrame.x + j;
+				if (entireX > maxX) {
+					break;
+				}
+				if (expectedIntegralImage.sum(entireX, entireY, templateWidth, templateHeight) != sumTemplate) {
+					continue;
+				}
+
+				// read pixels only when the sums are the same
+				if (kernel == null) {
+					kernel = PixelRowKernel.getInstance();
+					if (expectedRegion == null || actualRegion == null) {
+						expectedRegion = PixelRegion.of(expectedImage);
+						actualRegion = PixelRegion.of(actualImage);
 					}
+					template = actualRegion.subRegion(rectangle);
+					expectedRow = new int[templateWidth];
+					actualRow = new int[templateWidth];
+				}
+
+				// If the template matches at this position, create new ComparedRectangle and add it in the list
+				if (matches(kernel, expectedRegion.subRegion(entireX, entireY, templateWidth, templateHeight), template,
+						expectedRow, actualRow)) {
+					ComparedRectangleArea newMatch = new ComparedRectangleArea(rectangle, leftMove - j, topMove - i);
+					ComparedRectangles.add(newMatch);
+					return true;
 				}
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * check whether pixels of the two regions of the same size are the same
+	 *
+	 * @param kernel kernel to compare rows
+	 * @param expectedRegion region of the expected image
+	 * @param actualRegion region of the actual image
+	 * @param expectedRow buffer to read a row of the expected region if needed
+	 * @param actualRow buffer to read a row of the actual region if needed
+	 * @return true if all pixels are the same
+	 */
+	private static boolean matches(PixelRowKernel kernel, PixelRegion expectedRegion, PixelRegion actualRegion,
+			int[] expectedRow, int[] actualRow) {
+		int width = expectedRegion.width;
+		for (int y = 0; y < expectedRegion.height; y++) {
+			int[] expectedPixels = expectedRegion.getRow(0, y, width, expectedRow);
+			int[] actualPixels = actualRegion.getRow(0, y, width, actualRow);
+			if (kernel.indexOfMismatch(expectedPixels, expectedRegion.getRowOffset(0, y), actualPixels,
+					actualRegion.getRowOffset(0, y), 0, width) < width) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Check whether the given area is different due to object missing
 	 *
@@ -134,38 +191,53 @@ public class Categorizer {
 	 * @return true if object missing occurs
 	 */
 	public static boolean checkMissing(BufferedImage expectedImage, BufferedImage actualImage, Rectangle rectangle) {
+		return checkMissing(expectedImage, actualImage, null, null, rectangle);
+	}
 
-		// initialize sub-images
-		BufferedImage expectedSubImage = ImageUtils.getSubImage(expectedImage, rectangle);
-		BufferedImage actualSubImage = ImageUtils.getSubImage(actualImage, rectangle);
-		int width = (int) rectangle.getWidth(), height = (int) rectangle.getHeight();
-
-		// initialize the color array.
-		int[] expectedColors = new int[width * height];
-		int[] actualColors = new int[width * height];
-		expectedSubImage.getRGB(0, 0, width, height, expectedColors, 0, width);
-		actualSubImage.getRGB(0, 0, width, height, actualColors, 0, width);
-
-		int expectedColor = expectedColors[0];
-		int actualColor = actualColors[0];
-
-		// check expected sub-image
-		int i = 1, j = 1, numPixels = expectedColors.length;
-		while (i < numPixels && expectedColor == expectedColors[i]) {
-			i = i + 1;
-		}
+	/**
+	 * Check whether the given area is different due to object missing, reading colors from the given planes of entire
+	 * images.
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param expectedPlanes planes of entire expectedImage, or null to read colors from expectedImage
+	 * @param actualPlanes planes of entire actualImage, or null to read colors from actualImage
+	 * @param rectangle
+	 * @return true if object missing occurs
+	 */
+	static boolean checkMissing(BufferedImage expectedImage, BufferedImage actualImage, PixelPlanes expectedPlanes,
+			PixelPlanes actualPlanes, Rectangle rectangle) {
 
-		// check actual sub-image
-		while (j < numPixels && actualColor == actualColors[j]) {
-			j = j + 1;
-		}
+		// initialize sub-planes
+		ImageUtils.reshapeRect(rectangle, expectedImage.getWidth(), expectedImage.getHeight());
+		ImageUtils.reshapeRect(rectangle, actualImage.getWidth(), actualImage.getHeight());
+		PixelPlanes expectedSubPlanes = expectedPlanes != null ? expectedPlanes.subPlanes(rectangle) : PixelPlanes
+				.of(expectedImage, rectangle);
+		PixelPlanes actualSubPlanes = actualPlanes != null ? actualPlanes.subPlanes(rectangle) : PixelPlanes.of(
+				actualImage, rectangle);
 
 		// the case that one has the same colors for every pixel, and the other doesn't
-		if ((i == numPixels && j < numPixels) || (j == numPixels && i < numPixels)) {
-			return true;
-		} else {
-			return false;
+		return isSingleColor(expectedSubPlanes) != isSingleColor(actualSubPlanes);
+	}
+
+	/**
+	 * check whether every pixel of the given planes has the same color
+	 *
+	 * @param planes
+	 * @return true if every pixel has the same color
+	 */
+	private static boolean isSingleColor(PixelPlanes planes) {
+		int first = planes.index(0, 0);
+		for (int y = 0; y < planes.height; y++) {
+			for (int x = 0, index = planes.index(0, y); x < planes.width; x++, index++) {
+				if (planes.red[index] != planes.red[first] || planes.green[index] != planes.green[first]
+						|| planes.blue[index] != planes.blue[first]
+						|| (planes.alpha != null && planes.alpha[index] != planes.alpha[first])) {
+					return false;
+				}
+			}
 		}
+		return true;
 	}
 
 	/**
@@ -178,6 +250,22 @@ public class Categorizer {
 	 */
 	public static boolean checkScaling(BufferedImage expectedImage, BufferedImage actualImage,
 			Rectangle expectedObject, Rectangle actualObject) {
+		return checkScaling(expectedImage, actualImage, null, null, expectedObject, actualObject);
+	}
+
+	/**
+	 * check scaling using object detection, reading colors from the given planes of entire images
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param expectedPlanes planes of entire expectedImage, or null to read colors from expectedImage
+	 * @param actualPlanes planes of entire actualImage, or null to read colors from actualImage
+	 * @param expectedObject
+	 * @param actualObject
+	 * @return true if two objects are same (or similar enough) and have different size
+	 */
+	static boolean checkScaling(BufferedImage expectedImage, BufferedImage actualImage, PixelPlanes expectedPlanes,
+			PixelPlanes actualPlanes, Rectangle expectedObject, Rectangle actualObject) {
 
 		// check scale factor
 		double maximumScaleFactor = ComparisonParameterDefaults.getMaximumScaleFactor();
@@ -191,8 +279,8 @@ public class Categorizer {
 			return false;
 
 		// check feature matrix similarity
-		double similarity = SimilarityUtils.calcSimilarityByFeatureMatrix(expectedImage, actualImage, expectedObject,
-				actualObject);
+		double similarity = SimilarityUtils.calcSimilarityByFeatureMatrix(expectedImage, actualImage, expectedPlanes,
+				actualPlanes, expectedObject, actualObject);
 
 		if (similarity > ComparisonParameterDefaults.getScalingFeatureCriterion())
 			return true;
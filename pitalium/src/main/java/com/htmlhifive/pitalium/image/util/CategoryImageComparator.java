@@ -18,19 +18,31 @@ package com.htmlhifive.pitalium.image.util;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.htmlhifive.pitalium.image.model.CategoryComparisonParameters;
 import com.htmlhifive.pitalium.image.model.CategoryImageComparedResult;
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
+import com.htmlhifive.pitalium.image.model.ComparisonParameterDefaults;
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
 import com.htmlhifive.pitalium.image.model.DiffCategory;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.ObjectGroup;
+import com.htmlhifive.pitalium.image.model.OffsetSearchMethod;
 
 /**
- * カテゴリ分類に基づく、比較の実行を行うComparator
+ * カテゴリ分類に基づく、比較の実行を行うComparator<br>
+ * 比較範囲のサイズが同じで、閾値を超える差異がない場合は、ずれ量の探索やカテゴリ分類を行わずに比較を終了します。<br>
+ * {@link CategoryComparisonParameters#isCascade()}がtrueの場合は、閾値による比較で差異が見つかった領域毎にカテゴリ分類します。
  */
 class CategoryImageComparator extends ImageComparator<CategoryComparisonParameters> {
 
+	private static final Logger LOG = LoggerFactory.getLogger(CategoryImageComparator.class);
+
 	/**
 	 * デフォルトコンストラクタ
 	 */
@@ -53,11 +65,26 @@ class CategoryImageComparator extends ImageComparator<CategoryComparisonParamete
 
 	@Override
 	public ImageComparedResult compare(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area) {
-		ImagePair pair = new ImagePair(cropSubImage(img1, img1Area), cropSubImage(img2, img2Area));
-		pair.prepare();
-		pair.doCategorize();
+		int parallelism = parameters != null ? parameters.getParallelism() : 1;
+		int cutoff = parameters != null ? parameters.getQuadTreeSequentialCutoff()
+				: ComparisonParameterDefaults.getDefaultQuadTreeSequentialCutoff();
+		BufferedImage image1 = cropSubImage(img1, img1Area);
+		BufferedImage image2 = cropSubImage(img2, img2Area);
+
+		List<ComparedRectangleArea> comparedRectangles;
+		if (parameters != null && parameters.isCascade() && isSameSize(image1, image2)) {
+			comparedRectangles = categorizeDiffRegions(image1, image2, parallelism, cutoff);
+		} else {
+			if (isMatchedWithinDiffThreshold(image1, image2, parallelism)) {
+				LOG.debug("[Compare] No difference over the threshold. Skip categorizing.");
+				return new CategoryImageComparedResult(true, new ArrayList<ComparedRectangleArea>());
+			}
 
-		List<ComparedRectangleArea> comparedRectangles = pair.getComparedRectangles();
+			ImagePair pair = new ImagePair(image1, image2, parallelism, OffsetSearchMethod.BRUTE_FORCE, cutoff);
+			pair.prepare();
+			pair.doCategorize();
+			comparedRectangles = pair.getComparedRectangles();
+		}
 
 		boolean isSucceed = true;
 		for (ComparedRectangleArea rect : comparedRectangles) {
@@ -71,6 +98,71 @@ class CategoryImageComparator extends ImageComparator<CategoryComparisonParamete
 		return new CategoryImageComparedResult(isSucceed, comparedRectangles);
 	}
 
+	/**
+	 * 同じサイズの2つの画像に、閾値（{@link ComparisonParameterDefaults#getDiffThreshold()}）を超える差異がないかを判定します。<br>
+	 * この場合、{@link ImagePair}のずれ量は(0, 0)となり差異領域も構築されないため、カテゴリ分類の結果は空となります。
+	 * ピクセルの値が一致する部分は整数の比較のみで読み飛ばし、閾値を超える差異が見つかった時点で判定を打ち切ります。
+	 *
+	 * @param image1 画像1
+	 * @param image2 画像2
+	 * @param parallelism 並列度
+	 * @return 同じサイズで閾値を超える差異がない場合true
+	 */
+	private boolean isMatchedWithinDiffThreshold(BufferedImage image1, BufferedImage image2, int parallelism) {
+		if (!isSameSize(image1, image2)) {
+			return false;
+		}
+
+		DefaultComparisonParameters params = new DefaultComparisonParameters(
+				ComparisonParameterDefaults.getDiffThreshold(), parallelism);
+		return new DefaultImageComparator(params).verify(image1, null, image2, null).isSucceeded();
+	}
+
+	/**
+	 * 同じサイズの2つの画像を閾値（{@link ComparisonParameterDefaults#getDiffThreshold()}）で比較し、差異が見つかった領域のみをカテゴリ分類します。<br>
+	 * 差異は{@link DiffMaskLabeler}で行毎にまとめるため、差異の一覧は保持しません。まとめた領域をグループ化の距離だけ広げた範囲を切り出し、
+	 * それぞれ{@link ImagePair}でカテゴリ分類します。ずれ量の探索も切り出した範囲内で行うため、広げた距離より大きいずれは SHIFT 以外に分類されます。
+	 *
+	 * @param image1 画像1
+	 * @param image2 画像2
+	 * @param parallelism 並列度
+	 * @param cutoff 差異領域を逐次構築する範囲の大きさ
+	 * @return カテゴリ分類した差異領域。座標は画像1の比較範囲を基準とします。
+	 */
+	private List<ComparedRectangleArea> categorizeDiffRegions(BufferedImage image1, BufferedImage image2,
+			int parallelism, int cutoff) {
+		int groupDistance = ComparisonParameterDefaults.getDefaultGroupDistance();
+		DiffMaskLabeler labeler = new DiffMaskLabeler(groupDistance);
+		DefaultComparisonParameters params = new DefaultComparisonParameters(
+				ComparisonParameterDefaults.getDiffThreshold(), parallelism);
+		new DefaultImageComparator(params).compare(image1, null, image2, null, labeler);
+
+		List<ObjectGroup> groups = labeler.getGroups();
+		LOG.debug("[Compare] Categorize {} regions with differences over the threshold.", groups.size());
+		Rectangle bounds = new Rectangle(image1.getWidth(), image1.getHeight());
+		List<ComparedRectangleArea> comparedRectangles = new ArrayList<ComparedRectangleArea>();
+		for (ObjectGroup group : groups) {
+			Rectangle region = new Rectangle(group.getRectangle());
+			region.grow(groupDistance, groupDistance);
+			region = region.intersection(bounds);
+
+			ImagePair pair = new ImagePair(cropSubImage(image1, region), cropSubImage(image2, region), parallelism,
+					OffsetSearchMethod.BRUTE_FORCE, cutoff);
+			pair.prepare();
+			pair.doCategorize();
+			for (ComparedRectangleArea area : pair.getComparedRectangles()) {
+				comparedRectangles.add(new ComparedRectangleArea((int) area.getX() + region.x, (int) area.getY()
+						+ region.y, (int) area.getWidth(), (int) area.getHeight(), area.getCategory(), area.getXShift(),
+						area.getYShift(), area.getSimilarityUnit()));
+			}
+		}
+		return comparedRectangles;
+	}
+
+	private boolean isSameSize(BufferedImage image1, BufferedImage image2) {
+		return image1.getWidth() == image2.getWidth() && image1.getHeight() == image2.getHeight();
+	}
+
 	private BufferedImage cropSubImage(BufferedImage img, Rectangle area) {
 		return img.getSubimage(area.x, area.y, area.width, area.height);
 	}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+/**
+ * 色（ARGB値）毎の出現数を数えるヒストグラム。<br>
+ * オープンアドレス法のハッシュテーブルでintの色とintの出現数を保持するため、色毎のオブジェクト生成を行いません。
+ */
+final class ColorHistogram {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * ハッシュ値を求めるための乗数（2<sup>32</sup>を黄金比で割った値）
+	 */
+	private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+	private int[] colors;
+
+	/**
+	 * 各スロットの出現数。0の場合は空きスロット
+	 */
+	private int[] counts;
+
+	/**
+	 * 使用中のスロットを、色が最初に追加された順に保持します。
+	 */
+	private int[] order;
+	private int size;
+	private int shift;
+
+	/**
+	 * コンストラクタ
+	 */
+	ColorHistogram() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * 色の出現数を加算します。
+	 *
+	 * @param color 色（ARGB値）
+	 * @param count 加算する出現数（1以上）
+	 */
+	void add(int color, int count) {
+		int mask = colors.length - 1;
+		int slot = (color * HASH_MULTIPLIER) >>> shift;
+		while (counts[slot] != 0) {
+			if (colors[slot] == color) {
+				counts[slot] += count;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		colors[slot] = color;
+		counts[slot] = count;
+		order[size++] = slot;
+		if (size * 2 > colors.length) {
+			rehash();
+		}
+	}
+
+	/**
+	 * 画像の1行分のピクセルの出現数を加算します。同じ色が連続する部分はまとめて加算します。
+	 *
+	 * @param row ピクセルの配列
+	 * @param length 加算するピクセル数
+	 */
+	void addRow(int[] row, int length) {
+		int start = 0;
+		for (int i = 1; i <= length; i++) {
+			if (i == length || row[i] != row[start]) {
+				add(row[start], i - start);
+				start = i;
+			}
+		}
+	}
+
+	/**
+	 * 最も出現数の多い色を取得します。出現数が同じ色が複数ある場合は、先に追加された色を返します。
+	 *
+	 * @param defaultColor 1色も追加されていない場合に返す色
+	 * @return 最も出現数の多い色
+	 */
+	int getMostFrequentColor(int defaultColor) {
+		int max = 0;
+		int maxColor = defaultColor;
+		for (int i = 0; i < size; i++) {
+			int slot = order[i];
+			if (counts[slot] > max) {
+				max = counts[slot];
+				maxColor = colors[slot];
+			}
+		}
+		return maxColor;
+	}
+
+	/**
+	 * @return 色の種類の数
+	 */
+	int size() {
+		return size;
+	}
+
+	private void allocate(int capacity) {
+		colors = new int[capacity];
+		counts = new int[capacity];
+		order = new int[capacity / 2 + 1];
+		shift = Integer.numberOfLeadingZeros(capacity - 1);
+	}
+
+	private void rehash() {
+		int[] oldColors = colors;
+		int[] oldCounts = counts;
+		int[] oldOrder = order;
+		int oldSize = size;
+
+		allocate(oldColors.length * 2);
+		size = 0;
+		for (int i = 0; i < oldSize; i++) {
+			int slot = oldOrder[i];
+			add(oldColors[slot], oldCounts[slot]);
+		}
+	}
+
+}
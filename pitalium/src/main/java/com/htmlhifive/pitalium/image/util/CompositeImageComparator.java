@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
+import com.htmlhifive.pitalium.image.model.CompareOption;
+import com.htmlhifive.pitalium.image.model.ComparisonParameters;
+import com.htmlhifive.pitalium.image.model.CompositeImageComparedResult;
+import com.htmlhifive.pitalium.image.model.DiffMask;
+import com.htmlhifive.pitalium.image.model.DiffPoints;
+import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.SimilarityUnit;
+
+/**
+ * 複数の比較オプションで画像を比較し、結果を{@link CompositeImageComparedResult}にまとめるComparator。<br>
+ * 行毎に比較するComparator（DEFAULT、IGNORE_CLEAR_PIXELS）は、各行のピクセルを1度だけ読み込み、全てのComparatorで続けて比較します。
+ * 類似度（SIMILARITY）は、比較範囲で位置を合わせた類似度の統計を同じ読み込みで集計します。ただし除外領域がある場合、
+ * または画像1の比較範囲の左上が(0, 0)でない場合は、{@link SimilarityImageComparator}で個別に比較します。
+ * カテゴリ（CATEGORY）はずらし量を探索しながら比較するため、それぞれのComparatorで比較します。<br>
+ * 差異を順に渡す比較（{@link DiffRunSink}）など、1つの差異のみを扱う比較は、
+ * {@link ImageComparatorFactory#getImageComparator(CompareOption[])}と同じく最初の比較オプションのComparatorで比較します。
+ */
+class CompositeImageComparator extends ImageComparator<ComparisonParameters> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CompositeImageComparator.class);
+
+	private final List<CompareOption> options;
+	private final List<ImageComparator<? extends ComparisonParameters>> comparators;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param options 比較オプション
+	 */
+	CompositeImageComparator(CompareOption[] options) {
+		this.options = new ArrayList<CompareOption>(Arrays.asList(options));
+		this.comparators = new ArrayList<ImageComparator<? extends ComparisonParameters>>(options.length);
+		for (CompareOption option : options) {
+			comparators.add(ImageComparatorFactory.getInstance().getImageComparator(new CompareOption[] { option }));
+		}
+	}
+
+	/**
+	 * 比較オプション毎の結果は、比較オプションを1つずつ指定して比較した場合と同じです。
+	 */
+	@Override
+	public ImageComparedResult compare(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area) {
+		return compare(img1, img1Area, null, img2, img2Area, null);
+	}
+
+	/**
+	 * 比較オプション毎の結果は、比較オプションを1つずつ指定して比較した場合と同じです。
+	 */
+	@Override
+	public ImageComparedResult compare(BufferedImage img1, Rectangle img1Area, List<Rectangle> img1Excludes,
+			BufferedImage img2, Rectangle img2Area, List<Rectangle> img2Excludes) {
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		Rectangle area1 = img1Area != null ? img1Area : new Rectangle(img1.getWidth(), img1.getHeight());
+		Rectangle area2 = img2Area != null ? img2Area : new Rectangle(img2.getWidth(), img2.getHeight());
+
+		ImageComparedResult[] results = new ImageComparedResult[comparators.size()];
+		List<Integer> rowIndices = new ArrayList<Integer>();
+		List<Integer> similarityIndices = new ArrayList<Integer>();
+		boolean similarityInRows = isSimilarityInRowsAvailable(img1, area1, img1Excludes, img2, area2, img2Excludes);
+		int parallelism = 1;
+		for (int i = 0; i < comparators.size(); i++) {
+			ImageComparator<? extends ComparisonParameters> comparator = comparators.get(i);
+			if (comparator instanceof RowStripedImageComparator) {
+				rowIndices.add(i);
+				parallelism = Math.max(parallelism,
+						((RowStripedImageComparator) comparator).parameters.getParallelism());
+			} else if (similarityInRows && comparator instanceof SimilarityImageComparator) {
+				similarityIndices.add(i);
+			} else {
+				results[i] = comparator.compare(img1, area1, img1Excludes, img2, area2, img2Excludes);
+			}
+		}
+
+		if (!rowIndices.isEmpty() || !similarityIndices.isEmpty()) {
+			LOG.debug("[Compare] Compare rows with {} comparators and {} similarity comparators at once.",
+					rowIndices.size(), similarityIndices.size());
+			BufferedImage image1 = getSubImage(img1, area1);
+			BufferedImage image2 = getSubImage(img2, area2);
+			int width = Math.min(image1.getWidth(), image2.getWidth());
+			int height = Math.min(image1.getHeight(), image2.getHeight());
+
+			RowStripedImageComparator[] rowComparators = new RowStripedImageComparator[rowIndices.size()];
+			DiffMask[] diffMasks = new DiffMask[rowIndices.size()];
+			for (int i = 0; i < rowComparators.length; i++) {
+				rowComparators[i] = (RowStripedImageComparator) comparators.get(rowIndices.get(i));
+				diffMasks[i] = new DiffMask(area1.x, area1.y, width, height);
+			}
+			SimilarityRowStatistics statistics = similarityIndices.isEmpty() ? null : new SimilarityRowStatistics(
+					width, height);
+			RowStripedImageComparator.compareRows(rowComparators, image1, image2, area1.x, area1.y,
+					ExcludeIntervals.of(img1Excludes, area1), ExcludeIntervals.of(img2Excludes, area2), diffMasks,
+					Integer.MAX_VALUE, parallelism, statistics);
+
+			List<Rectangle> sizeDiffAreas = createSizeDiffAreas(image1, image2, area1.x, area1.y);
+			for (int i = 0; i < rowComparators.length; i++) {
+				results[rowIndices.get(i)] = new DiffPoints(diffMasks[i], sizeDiffAreas);
+			}
+			for (int index : similarityIndices) {
+				SimilarityUnit unit = statistics.toSimilarityUnit(area1.x - area2.x, area1.y - area2.y);
+				results[index] = ((SimilarityImageComparator) comparators.get(index)).createResult(unit);
+			}
+		}
+
+		return new CompositeImageComparedResult(options, Arrays.asList(results));
+	}
+
+	/**
+	 * 比較オプション毎に合否のみを判定します。差異が見つかった時点で打ち切れるよう、各Comparatorで個別に判定します。
+	 */
+	@Override
+	public ImageComparedResult verify(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area) {
+		return verify(img1, img1Area, null, img2, img2Area, null);
+	}
+
+	/**
+	 * 比較オプション毎に合否のみを判定します。差異が見つかった時点で打ち切れるよう、各Comparatorで個別に判定します。
+	 */
+	@Override
+	public ImageComparedResult verify(BufferedImage img1, Rectangle img1Area, List<Rectangle> img1Excludes,
+			BufferedImage img2, Rectangle img2Area, List<Rectangle> img2Excludes) {
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		Rectangle area1 = img1Area != null ? img1Area : new Rectangle(img1.getWidth(), img1.getHeight());
+		Rectangle area2 = img2Area != null ? img2Area : new Rectangle(img2.getWidth(), img2.getHeight());
+
+		List<ImageComparedResult> results = new ArrayList<ImageComparedResult>(comparators.size());
+		for (ImageComparator<? extends ComparisonParameters> comparator : comparators) {
+			results.add(comparator.verify(img1, area1, img1Excludes, img2, area2, img2Excludes));
+		}
+		return new CompositeImageComparedResult(options, results);
+	}
+
+	/**
+	 * 最初の比較オプションのComparatorで比較し、見つかった差異を順にsinkへ渡します。
+	 */
+	@Override
+	public boolean compare(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area,
+			DiffRunSink sink) {
+		return comparators.get(0).compare(img1, img1Area, img2, img2Area, sink);
+	}
+
+	/**
+	 * 最初の比較オプションのComparatorで差異のマスクを生成します。
+	 */
+	@Override
+	protected DiffMask createDiffMask(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return comparators.get(0).createDiffMask(image1, image2, offsetX, offsetY);
+	}
+
+	/**
+	 * 最初の比較オプションのComparatorで差分の一覧を取得します。
+	 */
+	@Override
+	protected List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return comparators.get(0).compare(image1, image2, offsetX, offsetY);
+	}
+
+	/**
+	 * 類似度の統計を行毎の比較と同時に集計できるかを判定します。<br>
+	 * {@link SimilarityImageComparator}は、画像1の比較範囲の左上が(0, 0)の場合に、両方の比較範囲の左上を合わせた位置で類似度を計算します。
+	 * この位置は行毎の比較と同じため、除外領域がなく、比較範囲が画像内にある場合は同じ統計を集計できます。
+	 *
+	 * @return 集計できる場合true
+	 */
+	private static boolean isSimilarityInRowsAvailable(BufferedImage img1, Rectangle area1,
+			List<Rectangle> img1Excludes, BufferedImage img2, Rectangle area2, List<Rectangle> img2Excludes) {
+		if ((img1Excludes != null && !img1Excludes.isEmpty()) || (img2Excludes != null && !img2Excludes.isEmpty())) {
+			return false;
+		}
+		return area1.x == 0 && area1.y == 0 && new Rectangle(img1.getWidth(), img1.getHeight()).contains(area1)
+				&& new Rectangle(img2.getWidth(), img2.getHeight()).contains(area2);
+	}
+
+}
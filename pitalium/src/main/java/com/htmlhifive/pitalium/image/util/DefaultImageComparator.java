@@ -15,21 +15,17 @@
  */
 package com.htmlhifive.pitalium.image.util;
 
-import java.awt.Color;
-import java.awt.Point;
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.List;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DiffMask;
 
 /**
- * 通常の方法で画像比較
+ * 通常の方法で画像比較<br>
+ * 各行の比較は{@link PixelRowKernel}で差異のあるピクセルまで読み飛ばしながら行います。
  */
-class DefaultImageComparator extends ImageComparator<DefaultComparisonParameters> {
+class DefaultImageComparator extends RowStripedImageComparator {
 
 	private static final Logger LOG = LoggerFactory.getLogger(DefaultImageComparator.class);
 
@@ -45,41 +41,33 @@ class DefaultImageComparator extends ImageComparator<DefaultComparisonParameters
 	}
 
 	@Override
-	protected List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
-		LOG.trace("[Compare] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {})", image1.getWidth(),
-				image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
-		int width = Math.min(image1.getWidth(), image2.getWidth());
-		int height = Math.min(image1.getHeight(), image2.getHeight());
-
-		int[] rgb1 = ImageUtils.getRGB(image1, width, height);
-		int[] rgb2 = ImageUtils.getRGB(image2, width, height);
-
-		double diffThreshold = parameters.getThreshold();
-
-		List<Point> diffPoints = new ArrayList<Point>();
-		for (int i = 0, length = rgb1.length; i < length; i++) {
-			Color color1 = new Color(rgb1[i]);
-			Color color2 = new Color(rgb2[i]);
-
-			int r = color1.getRed() - color2.getRed();
-			int g = color1.getGreen() - color2.getGreen();
-			int b = color1.getBlue() - color2.getBlue();
-			if (r * r + g * g + b * b > 3 * 255 * 255 * diffThreshold * diffThreshold) {
-				int x = (i % width) + offsetX;
-				int y = (i / width) + offsetY;
-
-				Point diffPoint = new Point(x, y);
-				diffPoints.add(diffPoint);
-				LOG.trace("[Compare] Diff found ({}, {}). #{} <=> #{}", diffPoint.x, diffPoint.y,
-						Integer.toHexString(rgb1[i]), Integer.toHexString(rgb2[i]));
-
+	protected int compareRow(int[] pixels1, int offset1, int[] pixels2, int offset2, int width, int offsetX, int y,
+			DiffMask diffMask, int maxDiffCount) {
+		int limit = PixelRowKernel.toDistanceLimit(parameters.getThreshold());
+		PixelRowKernel kernel = PixelRowKernel.getInstance();
+
+		int diffCount = 0;
+		int x = kernel.indexOfDistanceOver(pixels1, offset1, pixels2, offset2, 0, width, limit);
+		while (x < width) {
+			if (diffMask != null) {
+				diffMask.set(x + offsetX, y);
 			}
+			LOG.trace("[Compare] Diff found ({}, {}). #{} <=> #{}", x + offsetX, y,
+					Integer.toHexString(pixels1[offset1 + x]), Integer.toHexString(pixels2[offset2 + x]));
+			if (++diffCount >= maxDiffCount) {
+				break;
+			}
+			x = kernel.indexOfDistanceOver(pixels1, offset1, pixels2, offset2, x + 1, width, limit);
 		}
+		return diffCount;
+	}
 
-		if (!diffPoints.isEmpty()) {
-			LOG.debug("[Compare] {} diff found.", diffPoints.size());
-		}
-		return diffPoints;
+	/**
+	 * RGBの各成分のみを比較するため、透明度は参照しません。
+	 */
+	@Override
+	protected boolean isAlphaIgnored() {
+		return true;
 	}
 
 }
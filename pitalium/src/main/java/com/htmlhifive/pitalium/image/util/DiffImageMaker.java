@@ -18,9 +18,13 @@ package com.htmlhifive.pitalium.image.util;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.htmlhifive.pitalium.image.model.DiffPoints;
+import com.htmlhifive.pitalium.image.model.ObjectGroup;
 
 /**
  * 比較結果から、差分を表示する画像を作成するクラス。2枚の画像を左右に並べ、差異がある部分にマークした画像が出力されます。
@@ -33,6 +37,7 @@ public class DiffImageMaker {
 	private final BufferedImage leftImage;
 	private final BufferedImage rightImage;
 	private final DiffPoints diffPoints;
+	private final List<Rectangle> diffAreas;
 	private String leftImageLabel = DEFAULT_LEFT_IMAGE_LABEL;
 	private String rightImageLabel = DEFAULT_RIGHT_IMAGE_LABEL;
 
@@ -47,6 +52,7 @@ public class DiffImageMaker {
 		this.leftImage = leftImage;
 		this.rightImage = rightImage;
 		this.diffPoints = diffPoints;
+		this.diffAreas = null;
 	}
 
 	/**
@@ -63,10 +69,61 @@ public class DiffImageMaker {
 		this.leftImage = leftImage;
 		this.rightImage = rightImage;
 		this.diffPoints = diffPoints;
+		this.diffAreas = null;
 		this.leftImageLabel = leftImageLabel;
 		this.rightImageLabel = rightImageLabel;
 	}
 
+	/**
+	 * 2枚の画像とマークする領域を指定してImageMakerを生成します。
+	 *
+	 * @param leftImage 左側の画像
+	 * @param rightImage 右側の画像
+	 * @param diffAreas マークする領域
+	 */
+	DiffImageMaker(BufferedImage leftImage, BufferedImage rightImage, List<Rectangle> diffAreas) {
+		this.leftImage = leftImage;
+		this.rightImage = rightImage;
+		this.diffPoints = null;
+		this.diffAreas = diffAreas;
+	}
+
+	/**
+	 * 2枚の画像を比較し、差異をマークするImageMakerを生成します。<br>
+	 * 比較で見つかった差異は{@link DiffRunSink}として受け取り、1行ずつマークする領域にまとめるため、差異の点の一覧は保持しません。
+	 * 作成される画像は、同じ比較結果の{@link DiffPoints}を指定した場合と同じです。
+	 *
+	 * @param comparator 比較に使用するComparator
+	 * @param leftImage 左側の画像（比較の画像1）
+	 * @param leftArea 左側の画像で比較の対象とする範囲
+	 * @param rightImage 右側の画像（比較の画像2）
+	 * @param rightArea 右側の画像で比較の対象とする範囲
+	 * @return ImageMakerオブジェクト。{@link #getDiffPoints()}はnullを返します。
+	 */
+	public static DiffImageMaker create(ImageComparator<?> comparator, BufferedImage leftImage, Rectangle leftArea,
+			BufferedImage rightImage, Rectangle rightArea) {
+		return new DiffImageMaker(leftImage, rightImage, createDiffAreas(comparator, leftImage, leftArea, rightImage,
+				rightArea));
+	}
+
+	/**
+	 * 2枚の画像を比較し、見つかった差異をマークする領域にまとめます。差異の点の一覧は保持しません。<br>
+	 * 結果は、同じ比較結果の{@link DiffPoints}を{@link ImageUtils#convertDiffPointsToAreas(DiffPoints)}で変換した場合と同じです。
+	 *
+	 * @param comparator 比較に使用するComparator
+	 * @param img1 画像1
+	 * @param img1Area 画像1で比較の対象とする範囲
+	 * @param img2 画像2
+	 * @param img2Area 画像2で比較の対象とする範囲
+	 * @return マークする領域（画像1の座標系）
+	 */
+	static List<Rectangle> createDiffAreas(ImageComparator<?> comparator, BufferedImage img1, Rectangle img1Area,
+			BufferedImage img2, Rectangle img2Area) {
+		MarkerAreaSink sink = new MarkerAreaSink();
+		comparator.compare(img1, img1Area, img2, img2Area, sink);
+		return sink.getAreas();
+	}
+
 	//<editor-fold desc="Getter/Setter">
 
 	/**
@@ -90,7 +147,7 @@ public class DiffImageMaker {
 	/**
 	 * 差分データを取得します。
 	 *
-	 * @return 差分データ
+	 * @return 差分データ。{@link #create(ImageComparator, BufferedImage, Rectangle, BufferedImage, Rectangle)}で生成した場合はnull
 	 */
 	public DiffPoints getDiffPoints() {
 		return diffPoints;
@@ -141,10 +198,11 @@ public class DiffImageMaker {
 	 */
 	public BufferedImage execute() {
 		// Diff画像の生成
-		BufferedImage expectedBaseImage = ImageUtils.getMarkedImage(leftImage, diffPoints);
+		List<Rectangle> areas = diffAreas != null ? diffAreas : ImageUtils.convertDiffPointsToAreas(diffPoints);
+		BufferedImage expectedBaseImage = ImageUtils.getMarkedImage(leftImage, areas);
 		final int border = 1;
 		int expectedImageWidth = expectedBaseImage.getWidth() + border * 2;
-		BufferedImage actualBaseImage = ImageUtils.getMarkedImage(rightImage, diffPoints);
+		BufferedImage actualBaseImage = ImageUtils.getMarkedImage(rightImage, areas);
 		int actualImageWidth = actualBaseImage.getWidth() + border * 2;
 		int diffImageWidth = expectedImageWidth + actualImageWidth;
 
@@ -189,4 +247,30 @@ public class DiffImageMaker {
 		return diffImage;
 	}
 
+	/**
+	 * 受け取った差異を、{@link ImageUtils#convertDiffPointsToAreas(DiffPoints)}と同じマークする領域にまとめるsink。
+	 */
+	private static class MarkerAreaSink implements DiffRunSink {
+
+		private final DiffMaskLabeler labeler = new DiffMaskLabeler(ObjectGroup.DEFAULT_GROUP_DISTANCE);
+		private final List<Rectangle> sizeDiffAreas = new ArrayList<Rectangle>();
+
+		@Override
+		public boolean onSizeDiff(Rectangle area) {
+			sizeDiffAreas.add(area);
+			return true;
+		}
+
+		@Override
+		public boolean onDiffRun(int y, int startX, int endX) {
+			return labeler.onDiffRun(y, startX, endX);
+		}
+
+		List<Rectangle> getAreas() {
+			List<Rectangle> areas = ImageUtils.convertObjectGroupsToAreas(labeler.getGroups());
+			areas.addAll(ImageUtils.convertSizeDiffAreasToAreas(sizeDiffAreas));
+			return areas;
+		}
+	}
+
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.htmlhifive.pitalium.image.model.DiffMask;
+import com.htmlhifive.pitalium.image.model.ObjectGroup;
+
+/**
+ * Connected-component labeling of the diff mask with the same dilation as {@link ObjectGroup}.<br>
+ * Each different point is regarded as the square of (2 * margin + 1) centered on it, where margin is group_distance / 2,
+ * and two points belong to the same component if their squares intersect. Points in a row whose gap is at most 2 *
+ * margin are gathered into one segment, and segments within 2 * margin rows are joined with union-find. Bounding
+ * rectangles of the components are finally merged by {@link ObjectGroup#mergeAllPossibleObjects(List)}, so the result
+ * is the same as building one ObjectGroup per point and merging them all.<br>
+ * The labeler is also a {@link DiffRunSink}, so that runs streamed from a comparator can be labeled row by row without
+ * keeping the whole mask. Only the segments are kept, and the rows are expected in ascending order.
+ */
+final class DiffMaskLabeler implements DiffRunSink {
+
+	private final int groupDistance;
+
+	// two points are connected if the differences of both coordinates are at most reach (= 2 * margin)
+	private final int reach;
+
+	// segments of the last (reach + 1) rows. rowSegments[(y - baseY) % (reach + 1)] holds ids of segments in row y.
+	private final int window;
+	private final int[][] rowSegments;
+	private final int[] rowSegmentCounts;
+	private int baseY;
+	private int currentY;
+	private boolean started;
+
+	// the segment in the current row which is still extended by following runs
+	private int pendingFirst;
+	private int pendingLast;
+	private boolean pending;
+
+	// segments : first and last x of the points in a row, and its parent in union-find
+	private int[] firsts = new int[64];
+	private int[] lasts = new int[64];
+	private int[] parents = new int[64];
+
+	// bounds of the component whose root is the segment
+	private int[] minXs = new int[64];
+	private int[] maxXs = new int[64];
+	private int[] minYs = new int[64];
+	private int[] maxYs = new int[64];
+	private int segmentCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param groupDistance distance for grouping
+	 */
+	DiffMaskLabeler(int groupDistance) {
+		this.groupDistance = groupDistance;
+		this.reach = Math.max(2 * (groupDistance / 2), 0);
+		this.window = reach + 1;
+		this.rowSegments = new int[window][];
+		this.rowSegmentCounts = new int[window];
+		for (int i = 0; i < window; i++) {
+			rowSegments[i] = new int[16];
+		}
+	}
+
+	/**
+	 * convert the diff mask to the list of object groups which are completely merged. The groups are ordered by their
+	 * first point in row-major order.
+	 *
+	 * @param diffMask mask of different points
+	 * @param groupDistance distance for grouping
+	 * @return list of object groups
+	 */
+	static List<ObjectGroup> label(DiffMask diffMask, int groupDistance) {
+		if (diffMask == null || diffMask.isEmpty()) {
+			return new ArrayList<ObjectGroup>();
+		}
+		return new DiffMaskLabeler(groupDistance).doLabel(diffMask);
+	}
+
+	private List<ObjectGroup> doLabel(DiffMask diffMask) {
+		for (int y = diffMask.getY(); y < diffMask.getY() + diffMask.getHeight(); y++) {
+			ImageComparator.sendDiffRuns(diffMask, y, this);
+		}
+		return getGroups();
+	}
+
+	/**
+	 * Size differences are not labeled. They are marked separately by
+	 * {@link ImageUtils#convertSizeDiffAreasToAreas(List)}.
+	 */
+	@Override
+	public boolean onSizeDiff(Rectangle area) {
+		return true;
+	}
+
+	@Override
+	public boolean onDiffRun(int y, int startX, int endX) {
+		if (!started || y != currentY) {
+			flushSegment();
+			startRow(y);
+		}
+
+		if (reach == 0) {
+			// even adjacent points are not connected
+			for (int x = startX; x < endX; x++) {
+				addRowSegment(x, x);
+			}
+			return true;
+		}
+
+		// extend the segment while the gap between points is at most reach
+		if (pending && startX - pendingLast <= reach) {
+			pendingLast = endX - 1;
+		} else {
+			flushSegment();
+			pendingFirst = startX;
+			pendingLast = endX - 1;
+			pending = true;
+		}
+		return true;
+	}
+
+	/**
+	 * get the list of object groups of the runs received so far, which are completely merged. The groups are ordered
+	 * by their first point in row-major order.
+	 *
+	 * @return list of object groups
+	 */
+	List<ObjectGroup> getGroups() {
+		flushSegment();
+
+		// roots are the first segments of the components, so that they are in row-major order of the first points
+		List<ObjectGroup> groups = new ArrayList<ObjectGroup>();
+		for (int id = 0; id < segmentCount; id++) {
+			if (parents[id] == id) {
+				ObjectGroup group = new ObjectGroup(minXs[id], minYs[id], groupDistance);
+				group.union(new ObjectGroup(maxXs[id], maxYs[id], groupDistance));
+				groups.add(group);
+			}
+		}
+
+		// bounding rectangles of distinct components may still intersect
+		return ObjectGroup.mergeAllPossibleObjects(groups);
+	}
+
+	/**
+	 * move to the row, clearing the slots of the rows skipped since the current row
+	 *
+	 * @param y y of the new row
+	 */
+	private void startRow(int y) {
+		if (!started) {
+			baseY = y;
+			started = true;
+		} else {
+			for (int row = Math.max(currentY + 1, y - window + 1); row < y; row++) {
+				rowSegmentCounts[(row - baseY) % window] = 0;
+			}
+		}
+		rowSegmentCounts[(y - baseY) % window] = 0;
+		currentY = y;
+	}
+
+	private void flushSegment() {
+		if (pending) {
+			addRowSegment(pendingFirst, pendingLast);
+			pending = false;
+		}
+	}
+
+	/**
+	 * add the segment to the current row, and join it with the segments in the previous rows
+	 *
+	 * @param first first x of the segment
+	 * @param last last x of the segment
+	 */
+	private void addRowSegment(int first, int last) {
+		int y = currentY;
+		int slot = (y - baseY) % window;
+		int id = addSegment(first, last, y);
+		if (rowSegmentCounts[slot] == rowSegments[slot].length) {
+			rowSegments[slot] = Arrays.copyOf(rowSegments[slot], rowSegments[slot].length * 2);
+		}
+		rowSegments[slot][rowSegmentCounts[slot]++] = id;
+
+		for (int dy = 1; dy <= reach && y - dy >= baseY; dy++) {
+			int prevSlot = (y - dy - baseY) % window;
+			joinRow(id, first, last, rowSegments[prevSlot], rowSegmentCounts[prevSlot]);
+		}
+	}
+
+	/**
+	 * join the segment with the segments in a previous row whose points are within reach
+	 *
+	 * @param id id of the segment
+	 * @param first first x of the segment
+	 * @param last last x of the segment
+	 * @param prevSegments ids of the segments in the previous row, ordered by x
+	 * @param prevCount the number of the segments in the previous row
+	 */
+	private void joinRow(int id, int first, int last, int[] prevSegments, int prevCount) {
+		// find the first segment which ends at (first - reach) or later
+		int low = 0;
+		int high = prevCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (lasts[prevSegments[mid]] + reach < first) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		for (int i = low; i < prevCount && firsts[prevSegments[i]] - reach <= last; i++) {
+			union(id, prevSegments[i]);
+		}
+	}
+
+	private int addSegment(int first, int last, int y) {
+		if (segmentCount == parents.length) {
+			int capacity = segmentCount * 2;
+			parents = Arrays.copyOf(parents, capacity);
+			firsts = Arrays.copyOf(firsts, capacity);
+			lasts = Arrays.copyOf(lasts, capacity);
+			minXs = Arrays.copyOf(minXs, capacity);
+			maxXs = Arrays.copyOf(maxXs, capacity);
+			minYs = Arrays.copyOf(minYs, capacity);
+			maxYs = Arrays.copyOf(maxYs, capacity);
+		}
+
+		int id = segmentCount++;
+		parents[id] = id;
+		firsts[id] = first;
+		lasts[id] = last;
+		minXs[id] = first;
+		maxXs[id] = last;
+		minYs[id] = y;
+		maxYs[id] = y;
+		return id;
+	}
+
+	private int find(int id) {
+		int root = id;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		// path compression
+		while (parents[id] != root) {
+			int next = parents[id];
+			parents[id] = root;
+			id = next;
+		}
+		return root;
+	}
+
+	private void union(int id1, int id2) {
+		int root1 = find(id1);
+		int root2 = find(id2);
+		if (root1 == root2) {
+			return;
+		}
+
+		// keep the older segment as the root
+		int root = Math.min(root1, root2);
+		int child = Math.max(root1, root2);
+		parents[child] = root;
+		minXs[root] = Math.min(minXs[root], minXs[child]);
+		maxXs[root] = Math.max(maxXs[root], maxXs[child]);
+		minYs[root] = Math.min(minYs[root], minYs[child]);
+		maxYs[root] = Math.max(maxYs[root], maxYs[child]);
+	}
+
+}
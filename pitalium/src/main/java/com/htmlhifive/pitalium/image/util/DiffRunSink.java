@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+
+/**
+ * {@link ImageComparator}の比較で見つかった差異を、見つかった順に受け取るインターフェース。<br>
+ * 差異は、まずサイズの違いを表す矩形、次に行（y座標）、列（x座標）の順に、行内で連続する差異の区間（ラン）として渡されます。
+ * 比較結果の全体は保持されないため、差異の数によらず少ないメモリで数え上げ、打ち切り、描画、保存ができます。<br>
+ * 各メソッドは比較を呼び出したスレッドから順に呼ばれます。
+ *
+ * @see ImageComparator#compare(java.awt.image.BufferedImage, Rectangle, java.awt.image.BufferedImage, Rectangle,
+ *      DiffRunSink)
+ */
+public interface DiffRunSink {
+
+	/**
+	 * サイズの違い（2枚の画像を重ねた際に重ならない部分）を受け取ります。
+	 *
+	 * @param area サイズの違いを表す矩形（元画像の座標系）
+	 * @return 比較を続ける場合true、打ち切る場合false
+	 */
+	boolean onSizeDiff(Rectangle area);
+
+	/**
+	 * 行内で連続する差異の区間を受け取ります。
+	 *
+	 * @param y 行のy座標（元画像の座標系）
+	 * @param startX 区間の開始x座標（この座標を含む）
+	 * @param endX 区間の終了x座標（この座標を含まない）
+	 * @return 比較を続ける場合true、打ち切る場合false
+	 */
+	boolean onDiffRun(int y, int startX, int endX);
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 比較から除外する領域を、行毎の区間（x座標の範囲）の一覧として保持するクラス。<br>
+ * 除外領域をマスクした画像（{@link ImageUtils#getMaskedImage(java.awt.image.BufferedImage, List)}）を生成する代わりに使用します。
+ * 除外領域のピクセルは{@link #MASK_COLOR}で塗りつぶされたものとして扱います。<br>
+ * 座標は比較する範囲の左上を(0, 0)とします。同じ除外領域が掛かる行は、区間の配列を共有します。
+ */
+final class ExcludeIntervals {
+
+	/**
+	 * 除外領域のピクセルの色。{@link ImageUtils#getMaskedImage(java.awt.image.BufferedImage, List)}で塗りつぶす色と同じです。
+	 */
+	static final int MASK_COLOR = Color.RED.getRGB();
+
+	private static final int[] EMPTY = new int[0];
+
+	/**
+	 * rows[y]はy行目の区間の一覧。開始x座標（含む）、終了x座標（含まない）の順に、x座標の昇順で格納します。区間は互いに重なりません。
+	 */
+	private final int[][] rows;
+
+	private ExcludeIntervals(int[][] rows) {
+		this.rows = rows;
+	}
+
+	/**
+	 * 画像の除外領域から、比較する範囲の行毎の区間を生成します。
+	 *
+	 * @param excludes 除外領域（画像の座標系）。nullの場合は除外領域なしとして扱います。
+	 * @param region 比較する範囲（画像の座標系）
+	 * @return 行毎の区間。範囲に掛かる除外領域がない場合はnull
+	 */
+	static ExcludeIntervals of(List<Rectangle> excludes, Rectangle region) {
+		if (excludes == null || excludes.isEmpty()) {
+			return null;
+		}
+
+		// 比較する範囲の座標系に変換し、範囲外を切り捨てる
+		List<Rectangle> areas = new ArrayList<Rectangle>();
+		for (Rectangle exclude : excludes) {
+			Rectangle area = exclude.intersection(region);
+			if (!area.isEmpty()) {
+				area.translate(-region.x, -region.y);
+				areas.add(area);
+			}
+		}
+		if (areas.isEmpty()) {
+			return null;
+		}
+
+		// 除外領域の上端、下端で区切った帯毎に区間を計算する
+		TreeSet<Integer> boundaries = new TreeSet<Integer>();
+		boundaries.add(0);
+		boundaries.add(region.height);
+		for (Rectangle area : areas) {
+			boundaries.add(area.y);
+			boundaries.add(area.y + area.height);
+		}
+
+		int[][] rows = new int[region.height][];
+		Integer top = boundaries.pollFirst();
+		for (Integer bottom : boundaries) {
+			int[] intervals = toIntervals(areas, top);
+			Arrays.fill(rows, top, bottom, intervals);
+			top = bottom;
+		}
+		return new ExcludeIntervals(rows);
+	}
+
+	/**
+	 * 指定した行に掛かる除外領域を、重ならない区間の一覧に変換します。
+	 */
+	private static int[] toIntervals(List<Rectangle> areas, int y) {
+		List<Rectangle> rowAreas = new ArrayList<Rectangle>();
+		for (Rectangle area : areas) {
+			if (area.y <= y && y < area.y + area.height) {
+				rowAreas.add(area);
+			}
+		}
+		if (rowAreas.isEmpty()) {
+			return EMPTY;
+		}
+
+		int[] starts = new int[rowAreas.size()];
+		int[] ends = new int[rowAreas.size()];
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = rowAreas.get(i).x;
+			ends[i] = rowAreas.get(i).x + rowAreas.get(i).width;
+		}
+		Arrays.sort(starts);
+		Arrays.sort(ends);
+
+		// 開始、終了をそれぞれ昇順に並べても、重なる区間を結合した結果は変わらない
+		int[] intervals = new int[starts.length * 2];
+		int size = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if (size > 0 && starts[i] <= intervals[size - 1]) {
+				intervals[size - 1] = Math.max(intervals[size - 1], ends[i]);
+			} else {
+				intervals[size++] = starts[i];
+				intervals[size++] = ends[i];
+			}
+		}
+		return Arrays.copyOf(intervals, size);
+	}
+
+	/**
+	 * 指定した行の区間の一覧を取得します。
+	 *
+	 * @param y y座標
+	 * @return 開始x座標（含む）、終了x座標（含まない）の順に並べた区間の一覧。区間がない場合は空の配列
+	 */
+	int[] getRow(int y) {
+		return y < rows.length ? rows[y] : EMPTY;
+	}
+
+}
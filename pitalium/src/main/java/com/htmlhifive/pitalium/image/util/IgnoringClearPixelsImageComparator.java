@@ -15,20 +15,16 @@
  */
 package com.htmlhifive.pitalium.image.util;
 
-import java.awt.Point;
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.List;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.htmlhifive.pitalium.image.model.ComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DiffMask;
 
 /**
  * 透明度が0xFFでないピクセルは無視して画像比較
  */
-class IgnoringClearPixelsImageComparator extends ImageComparator<ComparisonParameters> {
+class IgnoringClearPixelsImageComparator extends RowStripedImageComparator {
 
 	private static final Logger LOG = LoggerFactory.getLogger(IgnoringClearPixelsImageComparator.class);
 
@@ -46,42 +42,44 @@ class IgnoringClearPixelsImageComparator extends ImageComparator<ComparisonParam
 	 * コンストラクタ
 	 */
 	IgnoringClearPixelsImageComparator() {
+		this(null);
 	}
 
-	@Override
-	protected List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
-		LOG.trace("[Compare] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {})", image1.getWidth(),
-				image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
-		int width = Math.min(image1.getWidth(), image2.getWidth());
-		int height = Math.min(image1.getHeight(), image2.getHeight());
-
-		int[] rgb1 = ImageUtils.getRGB(image1, width, height);
-		int[] rgb2 = ImageUtils.getRGB(image2, width, height);
-
-		List<Point> diffPoints = new ArrayList<Point>();
-		for (int i = 0, length = rgb1.length; i < length; i++) {
+	/**
+	 * コンストラクタ
+	 *
+	 * @param parameters 比較パラメータ。閾値は使用せず、並列度と合否判定時の差異の上限数のみ参照します。nullの場合は既定値を使用します。
+	 */
+	IgnoringClearPixelsImageComparator(DefaultComparisonParameters parameters) {
+		this.parameters = parameters != null ? parameters : new DefaultComparisonParameters();
+	}
 
-			if (isClear(rgb1[i]) || isClear(rgb2[i])) {
-				LOG.trace("[Compare] is clear. #{} or #{}", Integer.toHexString(rgb1[i]), Integer.toHexString(rgb2[i]));
+	@Override
+	protected int compareRow(int[] pixels1, int offset1, int[] pixels2, int offset2, int width, int offsetX, int y,
+			DiffMask diffMask, int maxDiffCount) {
+		PixelRowKernel kernel = PixelRowKernel.getInstance();
+
+		int diffCount = 0;
+		for (int x = kernel.indexOfMismatch(pixels1, offset1, pixels2, offset2, 0, width); x < width; x = kernel
+				.indexOfMismatch(pixels1, offset1, pixels2, offset2, x + 1, width)) {
+			int pixel1 = pixels1[offset1 + x];
+			int pixel2 = pixels2[offset2 + x];
+			if (isClear(pixel1) || isClear(pixel2)) {
+				LOG.trace("[Compare] is clear. #{} or #{}", Integer.toHexString(pixel1),
+						Integer.toHexString(pixel2));
 				continue;
 			}
 
-			if (rgb1[i] != rgb2[i]) {
-				int x = (i % width) + offsetX;
-				int y = (i / width) + offsetY;
-
-				Point diffPoint = new Point(x, y);
-				diffPoints.add(diffPoint);
-				LOG.trace("[Compare] Diff found ({}, {}). #{} <=> #{}", diffPoint.x, diffPoint.y,
-						Integer.toHexString(rgb1[i]), Integer.toHexString(rgb2[i]));
+			if (diffMask != null) {
+				diffMask.set(x + offsetX, y);
+			}
+			LOG.trace("[Compare] Diff found ({}, {}). #{} <=> #{}", x + offsetX, y, Integer.toHexString(pixel1),
+					Integer.toHexString(pixel2));
+			if (++diffCount >= maxDiffCount) {
+				break;
 			}
 		}
-
-		if (!diffPoints.isEmpty()) {
-			LOG.debug("[Compare] {} diff found.", diffPoints.size());
-		}
-		return diffPoints;
-
+		return diffCount;
 	}
 
 	/**
@@ -25,9 +25,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
+import com.htmlhifive.pitalium.image.model.CategoryImageComparedResult;
+import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.ComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DiffMask;
 import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.VerdictImageComparedResult;
 
 /**
  * 画像の比較処理を行うComparatorの抽象クラス。このクラスを拡張して、比較方法毎にComparatorを実装します。
@@ -100,13 +104,181 @@ public abstract class ImageComparator<T extends ComparisonParameters> {
 			image2 = img2;
 		}
 
-		List<Point> sizeDiffPoints = createSizeDiffPoints(image1, image2, offsetX, offsetY);
+		List<Rectangle> sizeDiffAreas = createSizeDiffAreas(image1, image2, offsetX, offsetY);
+		DiffMask diffMask = createDiffMask(image1, image2, offsetX, offsetY);
+		if (diffMask != null) {
+			return new DiffPoints(diffMask, sizeDiffAreas);
+		}
+
 		List<Point> diffPoints = compare(image1, image2, offsetX, offsetY);
-		return new DiffPoints(diffPoints, sizeDiffPoints);
+		return DiffPoints.withSizeDiffAreas(diffPoints, sizeDiffAreas);
+	}
+
+	/**
+	 * 2枚の画像を比較し、見つかった差異を順にsinkへ渡します。<br>
+	 * 行毎に比較するComparatorは、比較結果の全体を保持せずに1行ずつ比較して差異を渡すため、差異の数によらずメモリの使用量が一定です。
+	 * それ以外のComparatorは、{@link #compare(BufferedImage, Rectangle, BufferedImage, Rectangle)}で比較した結果を順に渡します。
+	 * カテゴリによる比較では、分類した差異領域の各行を差異の区間として渡します。
+	 *
+	 * @param img1 画像1
+	 * @param img1Area 画像1で比較の対象とする範囲
+	 * @param img2 画像2
+	 * @param img2Area 画像2で比較の対象とする範囲
+	 * @param sink 差異を受け取るsink
+	 * @return 最後まで比較した場合true、sinkが比較を打ち切った場合false
+	 * @throws TestRuntimeException 比較結果を差異の位置として表せないComparator（類似度による比較）の場合
+	 */
+	public boolean compare(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area,
+			DiffRunSink sink) {
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		LOG.trace("[Compare] image1[w: {}, h: {}; {}]; image2[w: {}, h: {}: {}]; streaming", img1.getWidth(),
+				img1.getHeight(), img1Area, img2.getWidth(), img2.getHeight(), img2Area);
+
+		Rectangle area1 = img1Area != null ? img1Area : new Rectangle(img1.getWidth(), img1.getHeight());
+		Rectangle area2 = img2Area != null ? img2Area : new Rectangle(img2.getWidth(), img2.getHeight());
+		BufferedImage image1 = getSubImage(img1, area1);
+		BufferedImage image2 = getSubImage(img2, area2);
+
+		for (Rectangle area : createSizeDiffAreas(image1, image2, area1.x, area1.y)) {
+			if (!sink.onSizeDiff(area)) {
+				return false;
+			}
+		}
+		return compare(image1, image2, area1.x, area1.y, sink);
+	}
+
+	/**
+	 * 2枚の画像を比較し、合否のみを判定します。<br>
+	 * 合否のみを判定できるComparatorは、差異が見つかった時点で比較を打ち切り、{@link VerdictImageComparedResult}を返します。
+	 * それ以外のComparatorは{@link #compare(BufferedImage, Rectangle, BufferedImage, Rectangle)}と同じ結果を返します。
+	 *
+	 * @param img1 画像1
+	 * @param img1Area 画像1で比較の対象とする範囲
+	 * @param img2 画像2
+	 * @param img2Area 画像2で比較の対象とする範囲
+	 * @return 比較結果
+	 */
+	public ImageComparedResult verify(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area) {
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		LOG.trace("[Verify] image1[w: {}, h: {}; {}]; image2[w: {}, h: {}: {}]", img1.getWidth(), img1.getHeight(),
+				img1Area, img2.getWidth(), img2.getHeight(), img2Area);
+
+		int offsetX = 0;
+		int offsetY = 0;
+		BufferedImage image1 = null;
+		BufferedImage image2 = null;
+		if (img1Area != null) {
+			image1 = getSubImage(img1, img1Area);
+			offsetX = (int) img1Area.getX();
+			offsetY = (int) img1Area.getY();
+		} else {
+			image1 = img1;
+		}
+		if (img2Area != null) {
+			image2 = getSubImage(img2, img2Area);
+		} else {
+			image2 = img2;
+		}
+
+		ImageComparedResult result = verify(image1, image2, offsetX, offsetY);
+		if (result != null) {
+			return result;
+		}
+		return compare(img1, img1Area, img2, img2Area);
+	}
+
+	/**
+	 * 除外領域を指定して2枚の画像を比較し、差分の一覧を取得します。<br>
+	 * 結果は、除外領域を{@link ImageUtils#getMaskedImage(BufferedImage, List)}でマスクした画像を比較した場合と同じです。
+	 * 行毎に比較するComparatorは、画像をコピーせず、両方の画像で除外されているピクセルを読み飛ばして比較します。
+	 * それ以外のComparatorは、マスクした画像を生成して比較します。
+	 *
+	 * @param img1 画像1
+	 * @param img1Area 画像1で比較の対象とする範囲
+	 * @param img1Excludes 画像1の除外領域（画像1の座標系）。nullの場合は除外領域なし
+	 * @param img2 画像2
+	 * @param img2Area 画像2で比較の対象とする範囲
+	 * @param img2Excludes 画像2の除外領域（画像2の座標系）。nullの場合は除外領域なし
+	 * @return 比較結果の差分データ
+	 */
+	public ImageComparedResult compare(BufferedImage img1, Rectangle img1Area, List<Rectangle> img1Excludes,
+			BufferedImage img2, Rectangle img2Area, List<Rectangle> img2Excludes) {
+		if (isEmpty(img1Excludes) && isEmpty(img2Excludes)) {
+			return compare(img1, img1Area, img2, img2Area);
+		}
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		LOG.trace("[Compare] image1[w: {}, h: {}; {}; excludes: {}]; image2[w: {}, h: {}: {}; excludes: {}]",
+				img1.getWidth(), img1.getHeight(), img1Area, img1Excludes, img2.getWidth(), img2.getHeight(),
+				img2Area, img2Excludes);
+
+		Rectangle area1 = img1Area != null ? img1Area : new Rectangle(img1.getWidth(), img1.getHeight());
+		Rectangle area2 = img2Area != null ? img2Area : new Rectangle(img2.getWidth(), img2.getHeight());
+		BufferedImage image1 = getSubImage(img1, area1);
+		BufferedImage image2 = getSubImage(img2, area2);
+		int offsetX = area1.x;
+		int offsetY = area1.y;
+
+		DiffMask diffMask = createDiffMask(image1, image2, offsetX, offsetY, ExcludeIntervals.of(img1Excludes, area1),
+				ExcludeIntervals.of(img2Excludes, area2));
+		if (diffMask != null) {
+			return new DiffPoints(diffMask, createSizeDiffAreas(image1, image2, offsetX, offsetY));
+		}
+
+		LOG.debug("[Compare] Compare masked images.");
+		return compare(getMaskedImage(img1, img1Excludes), img1Area, getMaskedImage(img2, img2Excludes), img2Area);
+	}
+
+	/**
+	 * 除外領域を指定して2枚の画像を比較し、合否のみを判定します。<br>
+	 * 結果は、除外領域を{@link ImageUtils#getMaskedImage(BufferedImage, List)}でマスクした画像を
+	 * {@link #verify(BufferedImage, Rectangle, BufferedImage, Rectangle)}で判定した場合と同じです。
+	 *
+	 * @param img1 画像1
+	 * @param img1Area 画像1で比較の対象とする範囲
+	 * @param img1Excludes 画像1の除外領域（画像1の座標系）。nullの場合は除外領域なし
+	 * @param img2 画像2
+	 * @param img2Area 画像2で比較の対象とする範囲
+	 * @param img2Excludes 画像2の除外領域（画像2の座標系）。nullの場合は除外領域なし
+	 * @return 比較結果
+	 * @see #compare(BufferedImage, Rectangle, List, BufferedImage, Rectangle, List)
+	 */
+	public ImageComparedResult verify(BufferedImage img1, Rectangle img1Area, List<Rectangle> img1Excludes,
+			BufferedImage img2, Rectangle img2Area, List<Rectangle> img2Excludes) {
+		if (isEmpty(img1Excludes) && isEmpty(img2Excludes)) {
+			return verify(img1, img1Area, img2, img2Area);
+		}
+		if (img1 == null || img2 == null) {
+			throw new TestRuntimeException("Both img1 and img2 is required.");
+		}
+		LOG.trace("[Verify] image1[w: {}, h: {}; {}; excludes: {}]; image2[w: {}, h: {}: {}; excludes: {}]",
+				img1.getWidth(), img1.getHeight(), img1Area, img1Excludes, img2.getWidth(), img2.getHeight(),
+				img2Area, img2Excludes);
+
+		Rectangle area1 = img1Area != null ? img1Area : new Rectangle(img1.getWidth(), img1.getHeight());
+		Rectangle area2 = img2Area != null ? img2Area : new Rectangle(img2.getWidth(), img2.getHeight());
+		BufferedImage image1 = getSubImage(img1, area1);
+		BufferedImage image2 = getSubImage(img2, area2);
+
+		ImageComparedResult result = verify(image1, image2, area1.x, area1.y, ExcludeIntervals.of(img1Excludes, area1),
+				ExcludeIntervals.of(img2Excludes, area2));
+		if (result != null) {
+			return result;
+		}
+
+		LOG.debug("[Verify] Verify masked images.");
+		return verify(getMaskedImage(img1, img1Excludes), img1Area, getMaskedImage(img2, img2Excludes), img2Area);
 	}
 
 	/**
-	 * 画像サイズを比較し、差分を検出した座標の一覧を取得します。
+	 * 画像サイズを比較し、差分を検出した座標の一覧を取得します。<br>
+	 * {@link #createSizeDiffAreas(BufferedImage, BufferedImage, int, int)}の矩形に含まれる全ての座標を返すため、サイズの差が大きい場合は
+	 * 矩形を使用してください。
 	 *
 	 * @param img1 画像１
 	 * @param img2 画像２
@@ -115,79 +287,242 @@ public abstract class ImageComparator<T extends ComparisonParameters> {
 	 * @return 検出された差分座標一覧
 	 */
 	protected List<Point> createSizeDiffPoints(BufferedImage img1, BufferedImage img2, int offsetX, int offsetY) {
+		List<Point> diffPoints = new ArrayList<Point>();
+		for (Rectangle area : createSizeDiffAreas(img1, img2, offsetX, offsetY)) {
+			for (int y = area.y; y < area.y + area.height; y++) {
+				for (int x = area.x; x < area.x + area.width; x++) {
+					diffPoints.add(new Point(x, y));
+				}
+			}
+		}
+		return diffPoints;
+	}
+
+	/**
+	 * 画像サイズを比較し、差分を検出した領域を矩形の一覧として取得します。<br>
+	 * 幅が異なる場合は右側の列、高さが異なる場合は下側の行を表す矩形をそれぞれ返します。
+	 *
+	 * @param img1 画像１
+	 * @param img2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @return 検出された差分の矩形一覧（最大2つ）
+	 */
+	protected List<Rectangle> createSizeDiffAreas(BufferedImage img1, BufferedImage img2, int offsetX, int offsetY) {
 		int width1 = img1.getWidth();
 		int height1 = img1.getHeight();
 		int width2 = img2.getWidth();
 		int height2 = img2.getHeight();
-		LOG.trace("[CreateSizeDiffPoints] image1[w: {}, h: {}], image2[w: {}, h: {}]; offset({}, {})", width1, height1,
+		LOG.trace("[CreateSizeDiffAreas] image1[w: {}, h: {}], image2[w: {}, h: {}]; offset({}, {})", width1, height1,
 				width2, height2, offsetX, offsetY);
 
+		List<Rectangle> areas = new ArrayList<Rectangle>(2);
 		if (width1 == width2 && height1 == height2) {
-			LOG.trace("[CreateSizeDiffPoints] Not found.");
-			return new ArrayList<Point>();
+			LOG.trace("[CreateSizeDiffAreas] Not found.");
+			return areas;
 		}
 
-		int startX;
-		int endX;
-		int startY;
-		int endY;
+		int minWidth = Math.min(width1, width2);
+		int maxWidth = Math.max(width1, width2);
+		int minHeight = Math.min(height1, height2);
+		int maxHeight = Math.max(height1, height2);
 
-		if (width1 > width2) {
-			startX = offsetX + width2 + 1;
-			endX = offsetX + width1;
-		} else if (width1 < width2) {
-			startX = offsetX + width1 + 1;
-			endX = offsetX + width2;
-		} else {
-			startX = offsetX + width1;
-			endX = offsetX + width1;
+		// 右側の列は大きい方の画像の下端まで、下側の行は右側の列の手前までとする
+		int startX = width1 != width2 ? offsetX + minWidth + 1 : offsetX + minWidth;
+		int endY = offsetY + maxHeight;
+		if (width1 != width2 && endY > 0) {
+			areas.add(new Rectangle(startX, 0, maxWidth - minWidth, endY));
+		}
+		if (height1 != height2 && startX > 0) {
+			areas.add(new Rectangle(0, offsetY + minHeight + 1, startX, maxHeight - minHeight));
 		}
 
-		if (height1 > height2) {
-			startY = offsetY + height2 + 1;
-			endY = offsetY + height1;
-		} else if (height1 < height2) {
-			startY = offsetY + height1 + 1;
-			endY = offsetY + height2;
-		} else {
-			startY = offsetY + height1;
-			endY = offsetY + height1;
+		LOG.debug("[CreateSizeDiffAreas] {} areas found. {}", areas.size(), areas);
+		return areas;
+	}
+
+	/**
+	 * 画像を比較し、差分を検出した座標の一覧を取得します。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @return 検出された差分座標一覧
+	 */
+	protected abstract List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY);
+
+	/**
+	 * 画像を比較し、合否のみを判定します。<br>
+	 * 合否のみを判定できるComparatorはこのメソッドをオーバーライドします。デフォルトの実装はnullを返し、その場合は
+	 * {@link #compare(BufferedImage, Rectangle, BufferedImage, Rectangle)}で全ての差異を検出します。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @return 判定結果。合否のみの判定に対応しない場合はnull
+	 */
+	protected ImageComparedResult verify(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return null;
+	}
+
+	/**
+	 * 画像を比較し、差分を検出した座標をビットマップ形式で取得します。<br>
+	 * 差分をマスクとして直接生成できるComparatorはこのメソッドをオーバーライドします。デフォルトの実装はnullを返し、その場合は
+	 * {@link #compare(BufferedImage, BufferedImage, int, int)}の結果が使用されます。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @return 検出された差分のマスク。マスクを生成しない場合はnull
+	 */
+	protected DiffMask createDiffMask(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return null;
+	}
+
+	/**
+	 * 画像を比較し、見つかった差異を行、列の順にsinkへ渡します。<br>
+	 * デフォルトの実装は、比較結果の全体を取得してから順に渡します。比較結果を保持せずに差異を渡せるComparatorはこのメソッドをオーバーライドします。
+	 * 差分の一覧を返さないComparatorは、{@link #compare(BufferedImage, Rectangle, BufferedImage, Rectangle)}の結果の差異領域を渡します。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @param sink 差異を受け取るsink
+	 * @return 最後まで比較した場合true、sinkが比較を打ち切った場合false
+	 */
+	protected boolean compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY, DiffRunSink sink) {
+		DiffMask diffMask = createDiffMask(image1, image2, offsetX, offsetY);
+		if (diffMask == null) {
+			List<Point> diffPoints = compare(image1, image2, offsetX, offsetY);
+			if (diffPoints == null) {
+				return sendComparedAreas(image1, image2, offsetX, offsetY, sink);
+			}
+			diffMask = DiffMask.fromPoints(diffPoints);
 		}
 
-		List<Point> diffPoints = new ArrayList<Point>();
-		if (width1 != width2) {
-			for (int i = startX; i <= endX; i++) {
-				for (int j = 0; j < endY; j++) {
-					Point diffPoint = new Point(i, j);
-					diffPoints.add(diffPoint);
-				}
+		for (int y = diffMask.getY(); y < diffMask.getY() + diffMask.getHeight(); y++) {
+			if (!sendDiffRuns(diffMask, y, sink)) {
+				return false;
 			}
 		}
+		return true;
+	}
 
-		if (height1 != height2) {
-			for (int i = startY; i <= endY; i++) {
-				for (int j = 0; j < startX; j++) {
-					Point diffPoint = new Point(j, i);
-					diffPoints.add(diffPoint);
-				}
+	/**
+	 * 差分の一覧を返さないComparatorで比較し、結果の差異領域を行毎の区間としてsinkへ渡します。<br>
+	 * 重なる差異領域は1つの区間にまとめ、行、列の順に渡します。差異領域を持つ結果（{@link CategoryImageComparedResult}）以外は、
+	 * 差異の位置を表せないため例外をスローします。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @param sink 差異を受け取るsink
+	 * @return 最後まで渡した場合true、sinkが比較を打ち切った場合false
+	 */
+	private boolean sendComparedAreas(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			DiffRunSink sink) {
+		ImageComparedResult result = compare(image1, new Rectangle(image1.getWidth(), image1.getHeight()), image2,
+				new Rectangle(image2.getWidth(), image2.getHeight()));
+		if (!(result instanceof CategoryImageComparedResult)) {
+			throw new TestRuntimeException(getClass().getSimpleName() + " does not report positions of differences.");
+		}
+
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		Rectangle bounds = null;
+		for (ComparedRectangleArea area : ((CategoryImageComparedResult) result).getComparedRectangles()) {
+			Rectangle rectangle = area.toRectangle();
+			if (rectangle.isEmpty()) {
+				continue;
 			}
+			rectangle.translate(offsetX, offsetY);
+			rectangles.add(rectangle);
+			bounds = bounds == null ? rectangle : bounds.union(rectangle);
+		}
+		if (bounds == null) {
+			return true;
 		}
 
-		LOG.debug("[CreateSizeDiffPoints] {} points found. startX: {}, endX: {}, startY: {}, endY: {}",
-				diffPoints.size(), startX, endX, startY, endY);
-		return diffPoints;
+		DiffMask diffMask = new DiffMask(bounds.x, bounds.y, bounds.width, bounds.height);
+		for (Rectangle rectangle : rectangles) {
+			for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+				diffMask.setRange(y, rectangle.x, rectangle.x + rectangle.width);
+			}
+		}
+		for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+			if (!sendDiffRuns(diffMask, y, sink)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * 画像を比較し、差分を検出した座標の一覧を取得します。
+	 * マスクの指定した行の差異を、連続する区間毎にsinkへ渡します。
+	 *
+	 * @param diffMask 差異を記録したマスク
+	 * @param y 行のy座標
+	 * @param sink 差異を受け取るsink
+	 * @return sinkが比較の打ち切りを要求した場合false
+	 */
+	static boolean sendDiffRuns(DiffMask diffMask, int y, DiffRunSink sink) {
+		int endX = diffMask.getX() + diffMask.getWidth();
+		int x = diffMask.nextSetX(y, diffMask.getX());
+		while (x < endX) {
+			int end = diffMask.nextClearX(y, x);
+			if (!sink.onDiffRun(y, x, end)) {
+				return false;
+			}
+			x = diffMask.nextSetX(y, end);
+		}
+		return true;
+	}
+
+	/**
+	 * 除外領域のピクセルを{@link ExcludeIntervals#MASK_COLOR}として扱い、画像を比較して差分を検出した座標をビットマップ形式で取得します。<br>
+	 * 画像をコピーせずに除外領域を扱えるComparatorはこのメソッドをオーバーライドします。デフォルトの実装はnullを返し、その場合はマスクした画像で比較します。
 	 *
 	 * @param image1 画像１
 	 * @param image2 画像２
 	 * @param offsetX 画像１の元画像からのX方向オフセット値
 	 * @param offsetY 画像１の元画像からのY方向オフセット値
-	 * @return 検出された差分座標一覧
+	 * @param excludes1 画像１の除外領域。除外領域がない場合はnull
+	 * @param excludes2 画像２の除外領域。除外領域がない場合はnull
+	 * @return 検出された差分のマスク。除外領域を直接扱えない場合はnull
 	 */
-	protected abstract List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY);
+	DiffMask createDiffMask(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			ExcludeIntervals excludes1, ExcludeIntervals excludes2) {
+		return null;
+	}
+
+	/**
+	 * 除外領域のピクセルを{@link ExcludeIntervals#MASK_COLOR}として扱い、画像を比較して合否のみを判定します。<br>
+	 * 画像をコピーせずに除外領域を扱えるComparatorはこのメソッドをオーバーライドします。デフォルトの実装はnullを返し、その場合はマスクした画像で判定します。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @param excludes1 画像１の除外領域。除外領域がない場合はnull
+	 * @param excludes2 画像２の除外領域。除外領域がない場合はnull
+	 * @return 判定結果。除外領域を直接扱えない場合はnull
+	 */
+	ImageComparedResult verify(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			ExcludeIntervals excludes1, ExcludeIntervals excludes2) {
+		return null;
+	}
+
+	private static boolean isEmpty(List<Rectangle> excludes) {
+		return excludes == null || excludes.isEmpty();
+	}
+
+	private static BufferedImage getMaskedImage(BufferedImage image, List<Rectangle> excludes) {
+		return isEmpty(excludes) ? image : ImageUtils.getMaskedImage(image, excludes);
+	}
 
 	/**
 	 * 指定エリアで切り出した画像を取得します。
@@ -54,7 +54,8 @@ public final class ImageComparatorFactory {
 		if (options != null && options.length > 0) {
 			for (CompareOption option : options) {
 				if (option.getType() == CompareOptionType.IGNORE_CLEAR_PIXELS) {
-					return new IgnoringClearPixelsImageComparator();
+					return new IgnoringClearPixelsImageComparator(
+							(DefaultComparisonParameters) option.getParameters());
 				}
 				if (option.getType() == CompareOptionType.DEFAULT) {
 					return new DefaultImageComparator((DefaultComparisonParameters) option.getParameters());
@@ -69,4 +70,22 @@ public final class ImageComparatorFactory {
 		}
 		return new DefaultImageComparator();
 	}
+
+	/**
+	 * 全ての比較方法で比較し、結果を{@link com.htmlhifive.pitalium.image.model.CompositeImageComparedResult}
+	 * にまとめるImageComparatorを取得します。<br>
+	 * {@link #getImageComparator(CompareOption[])}は最初の比較方法のみを使用しますが、このComparatorは全ての比較方法で比較します。
+	 * DEFAULT、IGNORE_CLEAR_PIXELSの比較と、除外領域がない場合のSIMILARITYの比較は、画像を1度だけ読み込んでまとめて行います。
+	 * CATEGORYの比較はまとめず、個別に比較します。
+	 *
+	 * @param options 比較方法（比較オプション）。指定しない場合はDEFAULTで比較します。
+	 * @return ImageComparatorオブジェクト
+	 */
+	public ImageComparator<? extends ComparisonParameters> getCompositeImageComparator(CompareOption[] options) {
+		if (options == null || options.length == 0) {
+			return new CompositeImageComparator(new CompareOption[] { new CompareOption(CompareOptionType.DEFAULT,
+					new DefaultComparisonParameters()) });
+		}
+		return new CompositeImageComparator(options);
+	}
 }
@@ -14,7 +14,11 @@ package com.htmlhifive.pitalium.image.util;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.ComparisonParameterDefaults;
@@ -24,6 +28,7 @@ import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 import com.htmlhifive.pitalium.image.model.ObjectGroup;
 import com.htmlhifive.pitalium.image.model.Offset;
+import com.htmlhifive.pitalium.image.model.OffsetSearchMethod;
 import com.htmlhifive.pitalium.image.model.SimilarityUnit;
 
 /**
@@ -41,6 +46,21 @@ public class ImagePair {
 	private int sizeRelationType;
 	private Offset offset; // Dominant offset between two images
 
+	private TileDiffMap tileDiffMap; // tiles which have any different pixel
+
+	// color planes of expectedImage and actualImage, which are built once and shared by every step
+	private PixelPlanes expectedPlanes;
+	private PixelPlanes actualPlanes;
+
+	// integral images and pixel regions shared by shift checks of all different areas
+	private IntegralImage expectedIntegralImage;
+	private IntegralImage actualIntegralImage;
+	private PixelRegion expectedRegion;
+	private PixelRegion actualRegion;
+
+	private final int parallelism; // build object groups in parallel if 2 or more
+	private final int quadTreeSequentialCutoff; // frames smaller than this size are built sequentially
+
 	private List<Rectangle> rectangles;
 	private List<ComparedRectangleArea> comparedRectangles;
 	private double entireSimilarity;
@@ -58,17 +78,67 @@ public class ImagePair {
 	 * Constructor implement all comparison steps, so that we can use ComparedRectangles as results after constructor.
 	 */
 	public ImagePair(BufferedImage expectedImage, BufferedImage actualImage) {
+		this(expectedImage, actualImage, 1);
+	}
+
+	/**
+	 * Constructor with parallelism. If parallelism is 2 or more, the quadtree of different areas is built on the
+	 * fork-join pool. The result is the same as the sequential one.
+	 *
+	 * @param expectedImage expected image
+	 * @param actualImage actual image
+	 * @param parallelism parallelism for building different areas
+	 */
+	public ImagePair(BufferedImage expectedImage, BufferedImage actualImage, int parallelism) {
+		this(expectedImage, actualImage, parallelism, OffsetSearchMethod.BRUTE_FORCE);
+	}
+
+	/**
+	 * Constructor with parallelism and the method to find dominant offset between two images of different sizes.
+	 *
+	 * @param expectedImage expected image
+	 * @param actualImage actual image
+	 * @param parallelism parallelism for building different areas
+	 * @param offsetSearchMethod method to find dominant offset
+	 */
+	public ImagePair(BufferedImage expectedImage, BufferedImage actualImage, int parallelism,
+			OffsetSearchMethod offsetSearchMethod) {
+		this(expectedImage, actualImage, parallelism, offsetSearchMethod,
+				ComparisonParameterDefaults.getDefaultQuadTreeSequentialCutoff());
+	}
+
+	/**
+	 * Constructor with parallelism, the method to find dominant offset, and the size of frames which are not divided
+	 * into parallel tasks any more.
+	 *
+	 * @param expectedImage expected image
+	 * @param actualImage actual image
+	 * @param parallelism parallelism for building different areas
+	 * @param offsetSearchMethod method to find dominant offset
+	 * @param quadTreeSequentialCutoff frames whose width or height is smaller than this value are built sequentially
+	 */
+	public ImagePair(BufferedImage expectedImage, BufferedImage actualImage, int parallelism,
+			OffsetSearchMethod offsetSearchMethod, int quadTreeSequentialCutoff) {
+		this.parallelism = parallelism;
+		this.quadTreeSequentialCutoff = quadTreeSequentialCutoff;
 
 		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
 
 		// Find dominant offset
 		sizeRelationType = ImageUtils.getSizeRelationType(expectedImage.getWidth(), expectedImage.getHeight(),
 				actualImage.getWidth(), actualImage.getHeight());
-		offset = ImageUtils.findDominantOffset(expectedImage, actualImage, diffThreshold);
+		PixelPlanes entireExpectedPlanes = PixelPlanes.of(expectedImage);
+		PixelPlanes entireActualPlanes = PixelPlanes.of(actualImage);
+		offset = ImageUtils.findDominantOffset(expectedImage, actualImage, entireExpectedPlanes, entireActualPlanes,
+				diffThreshold, offsetSearchMethod);
 
 		// assign (sub) image with same size
 		this.expectedImage = ImageUtils.getDominantImage(expectedImage, actualImage, offset);
 		this.actualImage = ImageUtils.getDominantImage(actualImage, expectedImage, offset);
+		expectedPlanes = entireExpectedPlanes.subPlanes(ImageUtils.getDominantFrame(expectedImage.getWidth(),
+				expectedImage.getHeight(), actualImage.getWidth(), actualImage.getHeight(), offset));
+		actualPlanes = entireActualPlanes.subPlanes(ImageUtils.getDominantFrame(actualImage.getWidth(),
+				actualImage.getHeight(), expectedImage.getWidth(), expectedImage.getHeight(), offset));
 		comparedRectangles = new ArrayList<ComparedRectangleArea>();
 		width = Math.min(expectedImage.getWidth(), actualImage.getWidth());
 		height = Math.min(expectedImage.getHeight(), actualImage.getHeight());
@@ -96,6 +166,9 @@ public class ImagePair {
 		// Do not use sizeDiffPoints and consider only intersection area
 		Rectangle entireFrame = new Rectangle(width, height);
 
+		// find tiles which have different pixels, so that identical regions can be skipped
+		tileDiffMap = TileDiffMap.of(expectedImage, actualImage);
+
 		// build different areas
 		rectangles = buildDiffAreas(entireFrame, group_distance);
 
@@ -106,88 +179,150 @@ public class ImagePair {
 	}
 
 	public void doCategorize() {
+		if (!rectangles.isEmpty()) {
+			expectedIntegralImage = new IntegralImage(expectedPlanes);
+			actualIntegralImage = new IntegralImage(actualPlanes);
+			expectedRegion = PixelRegion.of(expectedImage);
+			actualRegion = PixelRegion.of(actualImage);
+		}
 
-		for (Rectangle rectangle : rectangles) {
-			// initialize result rectangle
-			ComparedRectangleArea resultRectangle = new ComparedRectangleArea(rectangle);
-			Offset offset = null; // null means that when we calculate similarity, we try to find best match by moving actual sub-image
-			Rectangle tightDiffArea = ImageUtils.getTightDiffArea(rectangle, width, height);
-
-			/** if this rectangle is missing, set category 'MISSING' **/
-			if (Categorizer.checkMissing(expectedImage, actualImage, tightDiffArea)) {
-				resultRectangle.setCategory(DiffCategory.MISSING);
-				offset = new Offset(0, 0); // we fix the position of actual sub-image.
-
-				/** if this rectangle is shift, then process shift information in CheckShift method **/
-			} else if (Categorizer.CheckShift(expectedImage, actualImage, comparedRectangles, rectangle)) {
-				// if shift, skip similarity calculation.
-				continue;
-
-				/** if this rectangle is image of sub-pixel rendered text, set category 'FONT' **/
-			} else if (Categorizer.CheckSubpixel(expectedImage, actualImage, rectangle)) {
-				resultRectangle.setCategory(DiffCategory.TEXT);
+		if (parallelism > 1 && rectangles.size() > 1) {
+			// categorize rectangles in parallel, and add the results in the order of rectangles
+			List<List<ComparedRectangleArea>> results = new ArrayList<List<ComparedRectangleArea>>(
+					Collections.<List<ComparedRectangleArea>> nCopies(rectangles.size(), null));
+			ForkJoinPool.commonPool().invoke(new CategorizeTask(results, 0, rectangles.size()));
+			for (List<ComparedRectangleArea> result : results) {
+				comparedRectangles.addAll(result);
 			}
+			return;
+		}
 
-			/** calculate similarity **/
-
-			// try object detection for better performance
-			Rectangle expectedObject = new Rectangle(rectangle);
-			Rectangle actualObject = new Rectangle(rectangle);
-
-			// if object detection succeed for both images.
-			if (ImageUtils.getObjectRectangle(expectedImage, expectedObject)
-					&& ImageUtils.getObjectRectangle(actualImage, actualObject)) {
-
-				int x1 = (int) expectedObject.getX();
-				int y1 = (int) expectedObject.getY();
-				int w1 = (int) expectedObject.getWidth();
-				int h1 = (int) expectedObject.getHeight();
-				int x2 = (int) actualObject.getX();
-				int y2 = (int) actualObject.getY();
-				int w2 = (int) actualObject.getWidth();
-				int h2 = (int) actualObject.getHeight();
-
-				if (w1 == w2 && h1 == h2) {
-					// case 1 : the same object size and the same location
-					if (x1 != x2 || y1 != y2) {
-						offset = new Offset(x2 - x1, y2 - y1);
-						SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage, rectangle,
-								resultRectangle, offset);
-						double similarityThresDiff = unit.getSimilarityThresDiff();
-
-						// if so similar, regard them as the same objects with shifted location
-						if (similarityThresDiff > ComparisonParameterDefaults.getShiftSimilarityThreshold()) {
-							resultRectangle.setCategory(DiffCategory.SHIFT);
-							resultRectangle.setXShift(x2 - x1);
-							resultRectangle.setYShift(y2 - y1);
-							resultRectangle.setSimilarityUnit(null);
-						} else {
-							resultRectangle.setSimilarityUnit(unit);
-						}
-						comparedRectangles.add(resultRectangle);
-						continue;
-					}
+		for (Rectangle rectangle : rectangles) {
+			comparedRectangles.addAll(categorize(rectangle));
+		}
+	}
 
-					// case 3: different size
-				} else {
-					// check if two objects are the same but have different size
-					if (Categorizer.checkScaling(expectedImage, actualImage, expectedObject, actualObject)) {
-						resultRectangle.setCategory(DiffCategory.SCALING);
-						double similarityFeatureMatrix = SimilarityUtils.calcSimilarityByFeatureMatrix(expectedImage,
-								actualImage, expectedObject, actualObject);
-						SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage, rectangle,
-								resultRectangle, offset, similarityFeatureMatrix);
-						resultRectangle.setSimilarityUnit(unit);
+	/**
+	 * categorize the given different area. This method does not modify any state of this object, so it can be called
+	 * concurrently.
+	 *
+	 * @param rectangle different area
+	 * @return compared rectangles which are built from the given area
+	 */
+	private List<ComparedRectangleArea> categorize(Rectangle rectangle) {
+		List<ComparedRectangleArea> results = new ArrayList<ComparedRectangleArea>(1);
+
+		// initialize result rectangle
+		ComparedRectangleArea resultRectangle = new ComparedRectangleArea(rectangle);
+		Offset offset = null; // null means that when we calculate similarity, we try to find best match by moving actual sub-image
+		Rectangle tightDiffArea = ImageUtils.getTightDiffArea(rectangle, width, height);
+
+		/** if this rectangle is missing, set category 'MISSING' **/
+		if (Categorizer.checkMissing(expectedImage, actualImage, expectedPlanes, actualPlanes, tightDiffArea)) {
+			resultRectangle.setCategory(DiffCategory.MISSING);
+			offset = new Offset(0, 0); // we fix the position of actual sub-image.
+
+			/** if this rectangle is shift, then process shift information in CheckShift method **/
+		} else if (Categorizer.CheckShift(expectedImage, actualImage, expectedIntegralImage,
+				actualIntegralImage, expectedRegion, actualRegion, results, rectangle)) {
+			// if shift, skip similarity calculation.
+			return results;
+
+			/** if this rectangle is image of sub-pixel rendered text, set category 'FONT' **/
+		} else if (Categorizer.CheckSubpixel(expectedImage, actualImage, rectangle)) {
+			resultRectangle.setCategory(DiffCategory.TEXT);
+		}
 
-						// insert the result rectangle into the list of ComparedRectangles
-						comparedRectangles.add(resultRectangle);
-						continue;
+		/** calculate similarity **/
+
+		// try object detection for better performance
+		Rectangle expectedObject = new Rectangle(rectangle);
+		Rectangle actualObject = new Rectangle(rectangle);
+
+		// if object detection succeed for both images.
+		if (ImageUtils.getObjectRectangle(expectedImage, expectedObject)
+				&& ImageUtils.getObjectRectangle(actualImage, actualObject)) {
+
+			int x1 = (int) expectedObject.getX();
+			int y1 = (int) expectedObject.getY();
+			int w1 = (int) expectedObject.getWidth();
+			int h1 = (int) expectedObject.getHeight();
+			int x2 = (int) actualObject.getX();
+			int y2 = (int) actualObject.getY();
+			int w2 = (int) actualObject.getWidth();
+			int h2 = (int) actualObject.getHeight();
+
+			if (w1 == w2 && h1 == h2) {
+				// case 1 : the same object size and the same location
+				if (x1 != x2 || y1 != y2) {
+					offset = new Offset(x2 - x1, y2 - y1);
+					SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage, expectedPlanes,
+							actualPlanes, rectangle, resultRectangle, offset, -1);
+					double similarityThresDiff = unit.getSimilarityThresDiff();
+
+					// if so similar, regard them as the same objects with shifted location
+					if (similarityThresDiff > ComparisonParameterDefaults.getShiftSimilarityThreshold()) {
+						resultRectangle.setCategory(DiffCategory.SHIFT);
+						resultRectangle.setXShift(x2 - x1);
+						resultRectangle.setYShift(y2 - y1);
+						resultRectangle.setSimilarityUnit(null);
+					} else {
+						resultRectangle.setSimilarityUnit(unit);
 					}
+					results.add(resultRectangle);
+					return results;
 				}
+
+				// case 3: different size
+			} else {
+				// check if two objects are the same but have different size
+				if (Categorizer.checkScaling(expectedImage, actualImage, expectedPlanes, actualPlanes, expectedObject,
+						actualObject)) {
+					resultRectangle.setCategory(DiffCategory.SCALING);
+					double similarityFeatureMatrix = SimilarityUtils.calcSimilarityByFeatureMatrix(expectedImage,
+							actualImage, expectedPlanes, actualPlanes, expectedObject, actualObject);
+					SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage, expectedPlanes,
+							actualPlanes, rectangle, resultRectangle, offset, similarityFeatureMatrix);
+					resultRectangle.setSimilarityUnit(unit);
+
+					// insert the result rectangle into the list of ComparedRectangles
+					results.add(resultRectangle);
+					return results;
+				}
+			}
+		}
+
+		// insert the result rectangle into the list of ComparedRectangles
+		results.add(resultRectangle);
+		return results;
+	}
+
+	/**
+	 * the task which categorizes rectangles in the given range in parallel. Each result is stored at the index of its
+	 * rectangle, so that the order of compared rectangles does not depend on the execution order.
+	 */
+	@SuppressWarnings("serial")
+	private class CategorizeTask extends RecursiveAction {
+
+		private final List<List<ComparedRectangleArea>> results;
+		private final int from;
+		private final int to;
+
+		CategorizeTask(List<List<ComparedRectangleArea>> results, int from, int to) {
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				results.set(from, categorize(rectangles.get(from)));
+				return;
 			}
 
-			// insert the result rectangle into the list of ComparedRectangles
-			comparedRectangles.add(resultRectangle);
+			int middle = (from + to) >>> 1;
+			invokeAll(new CategorizeTask(results, from, middle), new CategorizeTask(results, middle, to));
 		}
 	}
 
@@ -198,8 +333,8 @@ public class ImagePair {
 		double entireDifference = 0;
 		for (ComparedRectangleArea resultRectangle : comparedRectangles) {
 			// implement all similarity calculations and categorization, and then build ComparedRectangle
-			SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage,
-					resultRectangle.toRectangle(), resultRectangle, null);
+			SimilarityUnit unit = SimilarityUtils.calcSimilarity(expectedImage, actualImage, expectedPlanes,
+					actualPlanes, resultRectangle.toRectangle(), resultRectangle, null, -1);
 			resultRectangle.setSimilarityUnit(unit);
 
 			if (resultRectangle.getCategory() != DiffCategory.SHIFT && resultRectangle.getCategory() != null) {
@@ -222,7 +357,12 @@ public class ImagePair {
 	 * @return list of rectangles representing different area
 	 */
 	private List<Rectangle> buildDiffAreas(Rectangle frame, int group_distance) {
-		List<ObjectGroup> objectGroups = buildObjectGroups(frame, group_distance, null);
+		List<ObjectGroup> objectGroups;
+		if (parallelism > 1) {
+			objectGroups = ForkJoinPool.commonPool().invoke(new QuadTreeTask(frame, group_distance, null));
+		} else {
+			objectGroups = buildObjectGroups(frame, group_distance, null);
+		}
 		List<Rectangle> rectangles = ImageUtils.convertObjectGroupsToAreas(objectGroups);
 
 		return rectangles;
@@ -237,53 +377,125 @@ public class ImagePair {
 	 */
 	private List<ObjectGroup> buildObjectGroups(Rectangle frame, int group_distance, Offset offset) {
 
+		// there is no different pixel in the frame if all tiles in it are identical
+		if (isCleanFrame(frame, offset)) {
+			return new ArrayList<ObjectGroup>();
+		}
+
+		if (isLeafFrame(frame)) {
+			return buildLeafObjectGroups(frame, group_distance, offset);
+		}
+
+		// merge 4 sub-frames
+		List<ObjectGroup> mergeGroups = new ArrayList<ObjectGroup>();
+		for (Rectangle subFrame : splitFrame(frame)) {
+			mergeGroups.addAll(buildObjectGroups(subFrame, group_distance, offset));
+		}
+
+		// merge all possible object groups
+		return ObjectGroup.mergeAllPossibleObjects(mergeGroups);
+	}
+
+	private boolean isCleanFrame(Rectangle frame, Offset offset) {
+		return offset == null && tileDiffMap != null && tileDiffMap.isClean(frame);
+	}
+
+	private static boolean isLeafFrame(Rectangle frame) {
+		return frame.getWidth() < BASE_BOUND || frame.getHeight() < BASE_BOUND;
+	}
+
+	/**
+	 * build object groups by comparing pixels in the given frame area, which is not divided any more
+	 *
+	 * @param frame boundary area to build object
+	 * @param group_distance distance for grouping
+	 * @return list of object groups representing different area
+	 */
+	private List<ObjectGroup> buildLeafObjectGroups(Rectangle frame, int group_distance, Offset offset) {
 		// threshold for difference of color
 		// if you want to compare STRICTLY, you should set this value as 0.
 		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
 
-		if (frame.getWidth() < BASE_BOUND || frame.getHeight() < BASE_BOUND) {
-			Rectangle actualFrame = frame;
-			if (offset != null) {
-				actualFrame.setLocation((int) frame.getX() + offset.getX(), (int) frame.getY() + offset.getY());
-			}
+		Rectangle actualFrame = frame;
+		if (offset != null) {
+			actualFrame.setLocation((int) frame.getX() + offset.getX(), (int) frame.getY() + offset.getY());
+		}
 
-			DefaultComparisonParameters params = new DefaultComparisonParameters(diffThreshold);
-			ImageComparedResult DP = new DefaultImageComparator(params).compare(expectedImage, frame, actualImage,
-					actualFrame);
-			List<ObjectGroup> groups = ImageUtils.convertDiffPointsToObjectGroups((DiffPoints) DP, group_distance);
-
-			// check boundary and update rectangles' positions if needed
-			Rectangle boundary = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
-			for (ObjectGroup g : groups) {
-				Rectangle current = g.getRectangle();
-				Rectangle intersection = current.intersection(boundary);
-				current.setBounds(intersection);
-			}
-			return groups;
+		DefaultComparisonParameters params = new DefaultComparisonParameters(diffThreshold);
+		ImageComparedResult DP = new DefaultImageComparator(params).compare(expectedImage, frame, actualImage,
+				actualFrame);
+		List<ObjectGroup> groups = ImageUtils.convertDiffPointsToObjectGroups((DiffPoints) DP, group_distance);
+
+		// check boundary and update rectangles' positions if needed
+		Rectangle boundary = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
+		for (ObjectGroup g : groups) {
+			Rectangle current = g.getRectangle();
+			Rectangle intersection = current.intersection(boundary);
+			current.setBounds(intersection);
 		}
+		return groups;
+	}
 
-		// divide into 4 sub-frames
-		Rectangle nw, ne, sw, se;
+	/**
+	 * divide the given frame into 4 sub-frames, in the order of north-west, north-east, south-west and south-east
+	 *
+	 * @param frame frame to divide
+	 * @return 4 sub-frames
+	 */
+	private static Rectangle[] splitFrame(Rectangle frame) {
 		int x = (int) frame.getX();
 		int y = (int) frame.getY();
 		int w = (int) frame.getWidth();
 		int h = (int) frame.getHeight();
 		int subW = (int) Math.round(frame.getWidth() / 2);
 		int subH = (int) Math.round(frame.getHeight() / 2);
-		nw = new Rectangle(x, y, subW, subH);
-		ne = new Rectangle(x + subW, y, w - subW, subH);
-		sw = new Rectangle(x, y + subH, subW, h - subH);
-		se = new Rectangle(x + subW, y + subH, w - subW, h - subH);
+		Rectangle nw = new Rectangle(x, y, subW, subH);
+		Rectangle ne = new Rectangle(x + subW, y, w - subW, subH);
+		Rectangle sw = new Rectangle(x, y + subH, subW, h - subH);
+		Rectangle se = new Rectangle(x + subW, y + subH, w - subW, h - subH);
+		return new Rectangle[] { nw, ne, sw, se };
+	}
 
-		// merge 4 sub-frames
-		List<ObjectGroup> mergeGroups = new ArrayList<ObjectGroup>();
-		mergeGroups.addAll(buildObjectGroups(nw, group_distance, offset));
-		mergeGroups.addAll(buildObjectGroups(ne, group_distance, offset));
-		mergeGroups.addAll(buildObjectGroups(sw, group_distance, offset));
-		mergeGroups.addAll(buildObjectGroups(se, group_distance, offset));
+	/**
+	 * the task which builds object groups of the quadtree in parallel. Frames smaller than the sequential cutoff given
+	 * to the constructor of {@link ImagePair} are built sequentially, and the results of
+	 * 4 sub-frames are always merged in the order of north-west, north-east, south-west and south-east, so the result
+	 * is the same as {@link ImagePair#buildObjectGroups(Rectangle, int, Offset)}.
+	 */
+	@SuppressWarnings("serial")
+	private class QuadTreeTask extends RecursiveTask<List<ObjectGroup>> {
 
-		// merge all possible object groups
-		return ObjectGroup.mergeAllPossibleObjects(mergeGroups);
+		private final Rectangle frame;
+		private final int groupDistance;
+		private final Offset offset;
+
+		QuadTreeTask(Rectangle frame, int groupDistance, Offset offset) {
+			this.frame = frame;
+			this.groupDistance = groupDistance;
+			this.offset = offset;
+		}
+
+		@Override
+		protected List<ObjectGroup> compute() {
+			if (isCleanFrame(frame, offset) || isLeafFrame(frame) || frame.getWidth() < quadTreeSequentialCutoff
+					|| frame.getHeight() < quadTreeSequentialCutoff) {
+				return buildObjectGroups(frame, groupDistance, offset);
+			}
+
+			Rectangle[] subFrames = splitFrame(frame);
+			List<QuadTreeTask> tasks = new ArrayList<QuadTreeTask>(subFrames.length);
+			for (Rectangle subFrame : subFrames) {
+				tasks.add(new QuadTreeTask(subFrame, groupDistance, offset));
+			}
+			invokeAll(tasks);
+
+			// merge 4 sub-frames in fixed order
+			List<ObjectGroup> mergeGroups = new ArrayList<ObjectGroup>();
+			for (QuadTreeTask task : tasks) {
+				mergeGroups.addAll(task.join());
+			}
+			return ObjectGroup.mergeAllPossibleObjects(mergeGroups);
+		}
 	}
 
 	/**
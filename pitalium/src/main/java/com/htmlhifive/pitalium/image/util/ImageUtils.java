@@ -24,12 +24,14 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,10 +44,13 @@ import org.slf4j.LoggerFactory;
 import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
 import com.htmlhifive.pitalium.image.model.CompareOption;
 import com.htmlhifive.pitalium.image.model.ComparisonParameterDefaults;
+import com.htmlhifive.pitalium.image.model.DiffMask;
 import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 import com.htmlhifive.pitalium.image.model.ObjectGroup;
+import com.htmlhifive.pitalium.image.model.RectangleGridIndex;
 import com.htmlhifive.pitalium.image.model.Offset;
+import com.htmlhifive.pitalium.image.model.OffsetSearchMethod;
 
 /**
  * 画像操作を行うユーティリティクラス
@@ -79,6 +84,61 @@ public final class ImageUtils {
 		return comparator.compare(image1, imageArea1, image2, imageArea2);
 	}
 
+	/**
+	 * 2つの画像を比較し、合否のみを判定します。差異の位置が不要な場合は、compareより高速に判定できます。
+	 *
+	 * @param image1 画像1
+	 * @param imageArea1 画像1の比較範囲
+	 * @param image2 画像2
+	 * @param imageArea2 画像2の比較範囲
+	 * @param options 比較オプション
+	 * @return 比較結果
+	 * @see ImageComparator#verify(BufferedImage, Rectangle, BufferedImage, Rectangle)
+	 */
+	public static ImageComparedResult verify(BufferedImage image1, Rectangle imageArea1, BufferedImage image2,
+			Rectangle imageArea2, CompareOption[] options) {
+		ImageComparator<?> comparator = ImageComparatorFactory.getInstance().getImageComparator(options);
+		return comparator.verify(image1, imageArea1, image2, imageArea2);
+	}
+
+	/**
+	 * 除外領域を指定して2つの画像を比較し、差分を取得します。結果は除外領域をマスクした画像を比較した場合と同じです。
+	 *
+	 * @param image1 画像1
+	 * @param imageArea1 画像1の比較範囲
+	 * @param excludes1 画像1の除外領域
+	 * @param image2 画像2
+	 * @param imageArea2 画像2の比較範囲
+	 * @param excludes2 画像2の除外領域
+	 * @param options 比較オプション
+	 * @return 比較結果
+	 * @see ImageComparator#compare(BufferedImage, Rectangle, List, BufferedImage, Rectangle, List)
+	 */
+	public static ImageComparedResult compare(BufferedImage image1, Rectangle imageArea1, List<Rectangle> excludes1,
+			BufferedImage image2, Rectangle imageArea2, List<Rectangle> excludes2, CompareOption[] options) {
+		ImageComparator<?> comparator = ImageComparatorFactory.getInstance().getImageComparator(options);
+		return comparator.compare(image1, imageArea1, excludes1, image2, imageArea2, excludes2);
+	}
+
+	/**
+	 * 除外領域を指定して2つの画像を比較し、合否のみを判定します。結果は除外領域をマスクした画像を判定した場合と同じです。
+	 *
+	 * @param image1 画像1
+	 * @param imageArea1 画像1の比較範囲
+	 * @param excludes1 画像1の除外領域
+	 * @param image2 画像2
+	 * @param imageArea2 画像2の比較範囲
+	 * @param excludes2 画像2の除外領域
+	 * @param options 比較オプション
+	 * @return 比較結果
+	 * @see ImageComparator#verify(BufferedImage, Rectangle, List, BufferedImage, Rectangle, List)
+	 */
+	public static ImageComparedResult verify(BufferedImage image1, Rectangle imageArea1, List<Rectangle> excludes1,
+			BufferedImage image2, Rectangle imageArea2, List<Rectangle> excludes2, CompareOption[] options) {
+		ImageComparator<?> comparator = ImageComparatorFactory.getInstance().getImageComparator(options);
+		return comparator.verify(image1, imageArea1, excludes1, image2, imageArea2, excludes2);
+	}
+
 	/**
 	 * 全体画像の中に指定した部分画像が含まれているかどうかを取得します。
 	 *
@@ -87,45 +147,20 @@ public final class ImageUtils {
 	 * @return 全体画像の中に部分画像が含まれていればtrue、含まれていなければfalse
 	 */
 	public static boolean isContained(BufferedImage entireImage, BufferedImage partImage) {
-		// 元画像の積分画像を作成
-		double[][] integralImage = calcIntegralImage(entireImage);
-
-		double sumContent = 0;
-		Raster r = partImage.getRaster();
-		int[] dArray = new int[r.getNumDataElements()];
-		for (int x = 0; x < r.getWidth(); x++) {
-			for (int y = 0; y < r.getHeight(); y++) {
-				sumContent += r.getPixel(x, y, dArray)[0];
-			}
-		}
-
-		int contentWidth = partImage.getWidth();
-		int contentHeight = partImage.getHeight();
-		double p0;
-		double p1;
-		double p2;
-		double p3;
-		double sumContainer;
-		final int yMax = entireImage.getHeight() - partImage.getHeight() + 1;
-		final int xMax = entireImage.getWidth() - partImage.getWidth() + 1;
-		for (int y = 0; y < yMax; y++) {
-			for (int x = 0; x < xMax; x++) {
-				p0 = integralImage[y + contentHeight - 1][x + contentWidth - 1];
-				p1 = (x == 0) ? 0 : integralImage[y + contentHeight - 1][x - 1];
-				p2 = (y == 0) ? 0 : integralImage[y - 1][x + contentWidth - 1];
-				p3 = (x == 0 || y == 0) ? 0 : integralImage[y - 1][x - 1];
-				sumContainer = p0 - p1 - p2 + p3;
-
-				if (Double.compare(sumContainer, sumContent) == 0) {
-					BufferedImage window = entireImage.getSubimage(x, y, contentWidth, contentHeight);
-					if (imageEquals(window, partImage)) {
-						return true;
-					}
-				}
-			}
-		}
+		return isContained(entireImage, partImage, 1);
+	}
 
-		return false;
+	/**
+	 * 全体画像の中に指定した部分画像が含まれているかどうかを取得します。<br>
+	 * 各位置のARGB値のローリングハッシュを部分画像のハッシュと比較し、一致した位置のみピクセル毎に比較します。
+	 *
+	 * @param entireImage 全体画像
+	 * @param partImage 部分画像
+	 * @param parallelism 並列度。2以上を指定すると全体画像を行単位の帯に分割し、Fork/Joinプールで並列に探索します。
+	 * @return 全体画像の中に部分画像が含まれていればtrue、含まれていなければfalse
+	 */
+	public static boolean isContained(BufferedImage entireImage, BufferedImage partImage, int parallelism) {
+		return new TemplateMatcher(entireImage, partImage).find(parallelism);
 	}
 
 	/**
@@ -171,7 +206,20 @@ public final class ImageUtils {
 
 		int width = image1.getWidth();
 		int height = image1.getHeight();
-		return Arrays.equals(getRGB(image1, width, height), getRGB(image2, width, height));
+		PixelRegion region1 = PixelRegion.of(image1);
+		PixelRegion region2 = PixelRegion.of(image2);
+		PixelRowKernel kernel = PixelRowKernel.getInstance();
+		int[] buffer1 = new int[width];
+		int[] buffer2 = new int[width];
+		for (int y = 0; y < height; y++) {
+			int[] row1 = region1.getRow(0, y, width, buffer1);
+			int[] row2 = region2.getRow(0, y, width, buffer2);
+			if (kernel.indexOfMismatch(row1, region1.getRowOffset(0, y), row2, region2.getRowOffset(0, y), 0,
+					width) < width) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -221,8 +269,17 @@ public final class ImageUtils {
 	 * @return マークした画像
 	 */
 	public static BufferedImage getMarkedImage(BufferedImage image, DiffPoints diffPoints) {
-		List<Rectangle> diffAreas = convertDiffPointsToAreas(diffPoints);
+		return getMarkedImage(image, convertDiffPointsToAreas(diffPoints));
+	}
 
+	/**
+	 * 指定の領域をマークした画像を作成します。
+	 *
+	 * @param image 対象の画像
+	 * @param diffAreas マークする領域
+	 * @return マークした画像
+	 */
+	static BufferedImage getMarkedImage(BufferedImage image, List<Rectangle> diffAreas) {
 		// 異なるピクセルの左上にマーカーを置いていく
 		BufferedImage mark = getMarkImage();
 
@@ -300,8 +357,10 @@ public final class ImageUtils {
 			return new ArrayList<Rectangle>();
 		}
 
-		List<Rectangle> areas = convertDiffPointsToAreas(diffPoints.getDiffPoints());
-		areas.addAll(convertSizeDiffPointsToAreas(diffPoints.getSizeDiffPoints()));
+		List<ObjectGroup> diffGroups = convertDiffMaskToObjectGroups(diffPoints.getDiffMask(),
+				ObjectGroup.DEFAULT_GROUP_DISTANCE);
+		List<Rectangle> areas = convertObjectGroupsToAreas(diffGroups);
+		areas.addAll(convertSizeDiffAreasToAreas(diffPoints.getSizeDiffAreas()));
 		return areas;
 	}
 
@@ -316,48 +375,12 @@ public final class ImageUtils {
 			return new ArrayList<Rectangle>();
 		}
 
-		int margeFlag = 0;
-		List<ObjectGroup> diffGroups = new ArrayList<ObjectGroup>();
-
+		// 点毎にグループを作成し、結合が無くなるまでマージする
+		List<ObjectGroup> diffGroups = new ArrayList<ObjectGroup>(diffPoints.size());
 		for (Point point : diffPoints) {
-			ObjectGroup markerGroup = new ObjectGroup(point);
-			for (ObjectGroup diffGroup : diffGroups) {
-				if (diffGroup.canMerge(markerGroup)) {
-					diffGroup.union(markerGroup);
-					margeFlag = 1;
-					break;
-				}
-			}
-			if (margeFlag != 1) {
-				diffGroups.add(markerGroup);
-			}
-			margeFlag = 0;
-		}
-
-		// 結合が無くなるまでループする
-		int num = -1;
-		while (num != 0) {
-			num = 0;
-			for (ObjectGroup rectangleGroup : diffGroups) {
-				List<ObjectGroup> removeList = new ArrayList<ObjectGroup>();
-				for (ObjectGroup rectangleGroup2 : diffGroups) {
-					if (!rectangleGroup.equals(rectangleGroup2) && rectangleGroup.canMerge(rectangleGroup2)) {
-						rectangleGroup.union(rectangleGroup2);
-						// マージが発生した場合はカウントする
-						num++;
-						// マージしたモデルを削除対象として記録
-						removeList.add(rectangleGroup2);
-					}
-				}
-				if (num > 0) {
-					// 削除対象がある場合は、リストから取り除く
-					for (ObjectGroup removeModel : removeList) {
-						diffGroups.remove(removeModel);
-					}
-					break;
-				}
-			}
+			diffGroups.add(new ObjectGroup(point));
 		}
+		ObjectGroup.mergeAllPossibleObjects(diffGroups);
 
 		// diffGroupsからRectangleのリストを作成
 		List<Rectangle> rectangles = new ArrayList<Rectangle>();
@@ -375,26 +398,49 @@ public final class ImageUtils {
 	 * @return 近似の四角形のリスト
 	 */
 	static List<Rectangle> convertSizeDiffPointsToAreas(List<Point> sizeDiffPoints) {
-		List<Rectangle> areas = new ArrayList<Rectangle>();
 		if (sizeDiffPoints == null || sizeDiffPoints.isEmpty()) {
+			return new ArrayList<Rectangle>();
+		}
+
+		List<Rectangle> sizeDiffAreas = new ArrayList<Rectangle>(sizeDiffPoints.size());
+		for (Point point : sizeDiffPoints) {
+			sizeDiffAreas.add(new Rectangle(point.x, point.y, 1, 1));
+		}
+		return convertSizeDiffAreasToAreas(sizeDiffAreas);
+	}
+
+	/**
+	 * サイズのdiff矩形から、マーカーで囲む四角形を作成する。<br>
+	 * 結果は、矩形に含まれる全ての点を{@link #convertSizeDiffPointsToAreas(List)}で変換した場合と同じです。
+	 *
+	 * @param sizeDiffAreas サイズのdiff矩形のリスト
+	 * @return 近似の四角形のリスト
+	 */
+	static List<Rectangle> convertSizeDiffAreasToAreas(List<Rectangle> sizeDiffAreas) {
+		List<Rectangle> areas = new ArrayList<Rectangle>();
+		if (sizeDiffAreas == null || sizeDiffAreas.isEmpty()) {
 			return areas;
 		}
 
+		// start.xはy=0の行、start.yはx=0の列で最小の座標、endは全ての点の最大の座標
 		Point start = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
 		Point end = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
 
-		for (Point point : sizeDiffPoints) {
-			if (point.y == 0 && start.x > point.x) {
-				start.x = point.x;
+		for (Rectangle area : sizeDiffAreas) {
+			if (area.isEmpty()) {
+				continue;
 			}
-			if (point.x == 0 && start.y > point.y) {
-				start.y = point.y;
+			if (area.y <= 0 && 0 < area.y + area.height && start.x > area.x) {
+				start.x = area.x;
 			}
-			if (end.x < point.x) {
-				end.x = point.x;
+			if (area.x <= 0 && 0 < area.x + area.width && start.y > area.y) {
+				start.y = area.y;
 			}
-			if (end.y < point.y) {
-				end.y = point.y;
+			if (end.x < area.x + area.width - 1) {
+				end.x = area.x + area.width - 1;
+			}
+			if (end.y < area.y + area.height - 1) {
+				end.y = area.y + area.height - 1;
 			}
 		}
 
@@ -443,6 +489,30 @@ public final class ImageUtils {
 				.execute();
 	}
 
+	/**
+	 * 2つの画像を比較し、差分確認用画像を取得します。画像2を左側（expected）、画像1を右側（actual）に表示します。<br>
+	 * 見つかった差異は1行ずつマークする領域にまとめるため、差分データを保持しません。作成される画像は、
+	 * {@link #compare(BufferedImage, Rectangle, BufferedImage, Rectangle, CompareOption[])}の差分データを
+	 * {@link #getDiffImage(BufferedImage, BufferedImage, DiffPoints)}に指定した場合と同じです。
+	 *
+	 * @param image1 画像1（actual）
+	 * @param imageArea1 画像1の比較範囲
+	 * @param image2 画像2（expected）
+	 * @param imageArea2 画像2の比較範囲
+	 * @param options 比較オプション
+	 * @return 差分確認用画像
+	 * @see ImageComparator#compare(BufferedImage, Rectangle, BufferedImage, Rectangle, DiffRunSink)
+	 */
+	public static BufferedImage getDiffImage(BufferedImage image1, Rectangle imageArea1, BufferedImage image2,
+			Rectangle imageArea2, CompareOption[] options) {
+		ImageComparator<?> comparator = ImageComparatorFactory.getInstance().getImageComparator(options);
+		DiffImageMaker maker = new DiffImageMaker(image2, image1, DiffImageMaker.createDiffAreas(comparator, image1,
+				imageArea1, image2, imageArea2));
+		maker.setLeftImageLabel(DIFF_IMAGE_LEFT_LABEL);
+		maker.setRightImageLabel(DIFF_IMAGE_RIGHT_LABEL);
+		return maker.execute();
+	}
+
 	/**
 	 * 画像を指定の値でトリムします。
 	 *
@@ -535,6 +605,54 @@ public final class ImageUtils {
 		return screenshot;
 	}
 
+	/**
+	 * 画像を、このライブラリで扱う標準のピクセル形式に変換します。<br>
+	 * 標準の形式は1ピクセルを1つのintで保持する{@link BufferedImage#TYPE_INT_ARGB}、または透明度を持たない画像の場合は
+	 * {@link BufferedImage#TYPE_INT_RGB}です。撮影したスクリーンショット、および保存済みのスクリーンショットは、読み込み時にこのメソッドで変換されます。
+	 * これにより、比較や結合の処理はColorModelを経由せず、{@link DataBufferInt}の配列から直接ピクセルを読み込むことができます。<br>
+	 * 変換後の画像の{@link BufferedImage#getRGB(int, int)}の戻り値は、変換前の画像と同一です。
+	 *
+	 * @param image 元画像
+	 * @return 標準の形式の画像。元画像が既に標準の形式の場合、またはnullの場合は元画像をそのまま返します。
+	 */
+	public static BufferedImage toCanonicalImage(BufferedImage image) {
+		if (image == null || isCanonicalImage(image)) {
+			return image;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean hasAlpha = image.getColorModel().hasAlpha();
+		LOG.trace("(ToCanonicalImage) type {} -> {} [w: {}; h: {}]", image.getType(),
+				hasAlpha ? "TYPE_INT_ARGB" : "TYPE_INT_RGB", width, height);
+
+		BufferedImage canonical = new BufferedImage(width, height, hasAlpha ? BufferedImage.TYPE_INT_ARGB
+				: BufferedImage.TYPE_INT_RGB);
+		int[] data = ((DataBufferInt) canonical.getRaster().getDataBuffer()).getData();
+		int rgbMask = hasAlpha ? 0xFFFFFFFF : 0x00FFFFFF;
+		PixelReader reader = PixelReader.of(image);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.readRow(0, y, width, row);
+			for (int x = 0, index = y * width; x < width; x++, index++) {
+				data[index] = row[x] & rgbMask;
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * 画像が{@link #toCanonicalImage(BufferedImage)}で変換した標準のピクセル形式かどうかを取得します。
+	 *
+	 * @param image 対象の画像
+	 * @return 標準の形式の場合true
+	 */
+	public static boolean isCanonicalImage(BufferedImage image) {
+		int type = image.getType();
+		return (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+				&& image.getRaster().getDataBuffer() instanceof DataBufferInt;
+	}
+
 	/**
 	 * 指定した画像のRGBベースのピクセル配列を取得します。
 	 *
@@ -602,42 +720,31 @@ public final class ImageUtils {
 	}
 
 	/**
-	 * get color - count map of image
+	 * get color histogram of image
 	 *
 	 * @param source
-	 * @return map whose key is color and value is count
+	 * @return histogram of colors
 	 */
-	private static Map<Integer, Integer> colorCountMap(BufferedImage source) {
-		Map<Integer, Integer> m = new HashMap<Integer, Integer>();
+	private static ColorHistogram colorHistogram(BufferedImage source) {
+		ColorHistogram histogram = new ColorHistogram();
+		PixelReader reader = PixelReader.of(source);
+		int width = source.getWidth();
+		int[] row = new int[width];
 		for (int y = 0; y < source.getHeight(); y++) {
-			for (int x = 0; x < source.getWidth(); x++) {
-				if (m.containsKey(source.getRGB(x, y))) {
-					m.put(source.getRGB(x, y), m.get(source.getRGB(x, y)) + 1);
-				} else {
-					m.put(source.getRGB(x, y), 1);
-				}
-			}
+			reader.readRow(0, y, width, row);
+			histogram.addRow(row, width);
 		}
-		return m;
+		return histogram;
 	}
 
 	/**
 	 * get estimated background color
 	 *
 	 * @param b
-	 * @return most frequent color.
+	 * @return most frequent color. If there are some most frequent colors, the one which appears first in raster order.
 	 */
 	public static int detectBackgroundColor(BufferedImage b) {
-		Map<Integer, Integer> map = colorCountMap(b);
-		int max = 0;
-		int max_color = toPixel(255, 255, 255);
-		for (Integer color : map.keySet()) {
-			if (map.get(color) > max) {
-				max = map.get(color);
-				max_color = color;
-			}
-		}
-		return max_color;
+		return colorHistogram(b).getMostFrequentColor(toPixel(255, 255, 255));
 	}
 
 	/**
@@ -664,124 +771,114 @@ public final class ImageUtils {
 			return false;
 		}
 
-		// initialize edge map using 8-directional independent edge detection
-		boolean[][] edgeMap = new boolean[height][width];
-		for (int i = 0; i < maxMargin; i++) {
-			// on the corner areas using diagonal filter.
-			for (int j = 0; j < maxMargin; j++) {
-				// set true if different
-				edgeMap[i][j] = subImage.getRGB(j + 1, i + 1) != subImage.getRGB(j, i); // NW corner
-				edgeMap[i][width - 1 - j] = subImage.getRGB(width - j, i + 1) != subImage.getRGB(width - j + 1, i); // NE corner
-				edgeMap[height - 1 - i][j] = subImage.getRGB(j + 1, height - i) != subImage.getRGB(j, height - i + 1); // SW corner
-				edgeMap[height - 1 - i][width - 1 - j] = subImage.getRGB(width - j, height - i) != subImage.getRGB(
-						width - j + 1, height - i + 1); // SE corner
-			}
-
-			// on the top and bottom bridge areas using vertical filter.
-			for (int j = maxMargin; j < width - maxMargin; j++) {
-				edgeMap[i][j] = subImage.getRGB(j + 1, i + 1) != subImage.getRGB(j + 1, i); // top bridge area
-				edgeMap[height - 1 - i][j] = subImage.getRGB(j + 1, height - i) != subImage.getRGB(j + 1, height - i
-						+ 1); // bottom bridge area
-			}
-
-			// on the left and right bridge areas using horizontal filter.
-			for (int j = maxMargin; j < height - maxMargin; j++) {
-				edgeMap[j][i] = subImage.getRGB(i + 1, j + 1) != subImage.getRGB(i, j + 1); // left bridge area
-				edgeMap[j][width - 1 - i] = subImage.getRGB(width - i, j + 1) != subImage.getRGB(width - i + 1, j + 1); // right bridge area
-			}
+		// read the margin strips of sub-image. (edge map (i, j) is checked using sub-image pixels around (j+1, i+1))
+		// topRows[k] is the row k, and bottomRows[k] is the row (height-maxMargin+1+k) of sub-image.
+		PixelReader reader = PixelReader.of(subImage);
+		int[][] topRows = new int[maxMargin + 1][w];
+		int[][] bottomRows = new int[maxMargin + 1][w];
+		for (int k = 0; k <= maxMargin; k++) {
+			reader.readRow(0, k, w, topRows[k]);
+			reader.readRow(0, height - maxMargin + 1 + k, w, bottomRows[k]);
 		}
 
-		// shrink edgeMap down to (2*maxMargin+1) by (2*maxMargin+1) by using these bridges.
+		// shrink edge map down to (2*maxMargin+1) by (2*maxMargin+1) by using bridges.
 		int shrinkLength = 2 * maxMargin + 1;
-		boolean[][] shrinkMap = new boolean[shrinkLength][shrinkLength];
-		boolean[][] verticalMap = new boolean[shrinkLength][shrinkLength]; // to check vertical direction
-		boolean[][] horizontalMap = new boolean[shrinkLength][shrinkLength]; // to check horizontal direction
+		BitMatrix shrinkMap = new BitMatrix(shrinkLength, shrinkLength);
 
-		// initialize shrink map
+		// initialize shrink map using 8-directional independent edge detection on the corner areas with diagonal
+		// filter. set true if different
 		for (int i = 0; i < maxMargin; i++) {
+			int[] upper = topRows[i], lower = topRows[i + 1];
+			for (int j = 0; j < maxMargin; j++) {
+				shrinkMap.set(i, j, lower[j + 1] != upper[j]); // NW corner
+				shrinkMap.set(i, shrinkLength - 1 - j, lower[width - j] != upper[width - j + 1]); // NE corner
+			}
+
+			upper = bottomRows[maxMargin - 1 - i];
+			lower = bottomRows[maxMargin - i];
 			for (int j = 0; j < maxMargin; j++) {
-				shrinkMap[i][j] = edgeMap[i][j];
-				shrinkMap[i][shrinkLength - 1 - j] = edgeMap[i][width - 1 - j];
-				shrinkMap[shrinkLength - 1 - i][j] = edgeMap[height - 1 - i][j];
-				shrinkMap[shrinkLength - 1 - i][shrinkLength - 1 - j] = edgeMap[height - 1 - i][width - 1 - j];
+				shrinkMap.set(shrinkLength - 1 - i, j, upper[j + 1] != lower[j]); // SW corner
+				shrinkMap.set(shrinkLength - 1 - i, shrinkLength - 1 - j, upper[width - j] != lower[width - j + 1]); // SE corner
 			}
 		}
-		shrinkMap[maxMargin][maxMargin] = false; // center value never used.
+		shrinkMap.set(maxMargin, maxMargin, false); // center value never used.
 
-		// check if bridge exists
+		// check if top & bottom bridges exist using vertical filter.
 		for (int i = 0; i < maxMargin; i++) {
-			int leftIdx = maxMargin, rightIdx = maxMargin, topIdx = maxMargin, bottomIdx = maxMargin;
+			shrinkMap.set(i, maxMargin, isBridge(topRows[i + 1], topRows[i], maxMargin + 1, width - maxMargin + 1));
+			shrinkMap.set(shrinkLength - 1 - i, maxMargin,
+					isBridge(bottomRows[maxMargin - 1 - i], bottomRows[maxMargin - i], maxMargin + 1, width
+							- maxMargin + 1));
+		}
 
-			// check left & right bridges
-			while (leftIdx < height - maxMargin && edgeMap[leftIdx][i]) {
-				leftIdx++;
-			}
-			shrinkMap[maxMargin][i] = (leftIdx == height - maxMargin);
-			while (rightIdx < height - maxMargin && edgeMap[rightIdx][width - 1 - i]) {
-				rightIdx++;
+		// check if left & right bridges exist using horizontal filter. bit i is cleared when the column i from the
+		// left (or right) side has any point which is not edge.
+		long[] leftBridges = BitMatrix.filled(maxMargin);
+		long[] rightBridges = BitMatrix.filled(maxMargin);
+		int[] leftStrip = new int[maxMargin + 1];
+		int[] rightStrip = new int[maxMargin + 1];
+		for (int j = maxMargin; j < height - maxMargin; j++) {
+			if (BitMatrix.isEmpty(leftBridges) && BitMatrix.isEmpty(rightBridges)) {
+				break;
 			}
-			shrinkMap[maxMargin][shrinkLength - 1 - i] = (rightIdx == height - maxMargin);
 
-			// check top & bottom bridges
-			while (topIdx < width - maxMargin && edgeMap[i][topIdx]) {
-				topIdx++;
-			}
-			shrinkMap[i][maxMargin] = (topIdx == width - maxMargin);
-			while (bottomIdx < width - maxMargin && edgeMap[height - 1 - i][bottomIdx]) {
-				bottomIdx++;
+			// leftStrip[k] is the column k, and rightStrip[k] is the column (width-maxMargin+1+k) of sub-image.
+			reader.readRow(0, j + 1, maxMargin + 1, leftStrip);
+			reader.readRow(width - maxMargin + 1, j + 1, maxMargin + 1, rightStrip);
+			for (int i = 0; i < maxMargin; i++) {
+				if (leftStrip[i + 1] == leftStrip[i]) {
+					BitMatrix.clear(leftBridges, i);
+				}
+				if (rightStrip[maxMargin - 1 - i] == rightStrip[maxMargin - i]) {
+					BitMatrix.clear(rightBridges, i);
+				}
 			}
-			shrinkMap[shrinkLength - 1 - i][maxMargin] = (bottomIdx == width - maxMargin);
+		}
+		for (int i = 0; i < maxMargin; i++) {
+			shrinkMap.set(maxMargin, i, BitMatrix.get(leftBridges, i));
+			shrinkMap.set(maxMargin, shrinkLength - 1 - i, BitMatrix.get(rightBridges, i));
 		}
 
 		// initialize expansion map
-		for (int i = 0; i < shrinkLength; i++) {
-			for (int j = 0; j < shrinkLength; j++) {
-				verticalMap[i][j] = shrinkMap[i][j];
-				horizontalMap[i][j] = shrinkMap[i][j];
-			}
-		}
+		BitMatrix verticalMap = new BitMatrix(shrinkMap); // to check vertical direction
+		BitMatrix horizontalMap = new BitMatrix(shrinkMap); // to check horizontal direction
 
 		// expand continuous points from bridge
 		for (int i = 0; i < maxMargin; i++) {
 			for (int j = 1; j <= maxMargin; j++) {
 				// expand left
-				verticalMap[maxMargin - j][i] &= verticalMap[maxMargin - j + 1][i];
-				verticalMap[maxMargin + j][i] &= verticalMap[maxMargin + j - 1][i];
+				verticalMap.and(maxMargin - j, i, maxMargin - j + 1, i);
+				verticalMap.and(maxMargin + j, i, maxMargin + j - 1, i);
 				// expand right
-				verticalMap[maxMargin - j][shrinkLength - 1 - i] &= verticalMap[maxMargin - j + 1][shrinkLength - 1 - i];
-				verticalMap[maxMargin + j][shrinkLength - 1 - i] &= verticalMap[maxMargin + j - 1][shrinkLength - 1 - i];
+				verticalMap.and(maxMargin - j, shrinkLength - 1 - i, maxMargin - j + 1, shrinkLength - 1 - i);
+				verticalMap.and(maxMargin + j, shrinkLength - 1 - i, maxMargin + j - 1, shrinkLength - 1 - i);
 				// expand top
-				horizontalMap[i][maxMargin - j] &= horizontalMap[i][maxMargin - j + 1];
-				horizontalMap[i][maxMargin + j] &= horizontalMap[i][maxMargin + j - 1];
+				horizontalMap.and(i, maxMargin - j, i, maxMargin - j + 1);
+				horizontalMap.and(i, maxMargin + j, i, maxMargin + j - 1);
 				// expand bottom
-				horizontalMap[shrinkLength - 1 - i][maxMargin - j] &= horizontalMap[shrinkLength - 1 - i][maxMargin - j
-						+ 1];
-				horizontalMap[shrinkLength - 1 - i][maxMargin + j] &= horizontalMap[shrinkLength - 1 - i][maxMargin + j
-						- 1];
+				horizontalMap.and(shrinkLength - 1 - i, maxMargin - j, shrinkLength - 1 - i, maxMargin - j + 1);
+				horizontalMap.and(shrinkLength - 1 - i, maxMargin + j, shrinkLength - 1 - i, maxMargin + j - 1);
 			}
 		}
 
 		// find points continuous to bridge along both vertical and horizontal directions
-		for (int i = 0; i < shrinkLength; i++) {
-			for (int j = 0; j < shrinkLength; j++) {
-				shrinkMap[i][j] = verticalMap[i][j] & horizontalMap[i][j];
-			}
-		}
+		shrinkMap = verticalMap;
+		shrinkMap.and(horizontalMap);
 
 		// find any rectangle
 		int top, bottom, left, right; // how may pixels apart from top, bottom, left, right
 		for (top = 0; top < maxMargin; top++) {
-			if (!shrinkMap[top][maxMargin])
+			if (!shrinkMap.get(top, maxMargin))
 				continue;
 			for (left = 0; left < maxMargin; left++) {
-				if (!shrinkMap[top][left])
+				if (!shrinkMap.get(top, left))
 					continue;
 				for (bottom = 0; bottom < maxMargin; bottom++) {
-					if (!shrinkMap[shrinkLength - 1 - bottom][left])
+					if (!shrinkMap.get(shrinkLength - 1 - bottom, left))
 						continue;
 					for (right = 0; right < maxMargin; right++) {
-						if (shrinkMap[top][shrinkLength - 1 - right]
-								&& shrinkMap[shrinkLength - 1 - bottom][shrinkLength - 1 - right]) {
+						if (shrinkMap.get(top, shrinkLength - 1 - right)
+								&& shrinkMap.get(shrinkLength - 1 - bottom, shrinkLength - 1 - right)) {
 							width -= left + right;
 							height -= top + bottom;
 							x += left;
@@ -800,6 +897,102 @@ public final class ImageUtils {
 		return false;
 	}
 
+	/**
+	 * check whether every pixel of the given range in row1 is different from the one in row2
+	 *
+	 * @param row1
+	 * @param row2
+	 * @param from start index (inclusive)
+	 * @param to end index (exclusive)
+	 * @return true if all pixels in the range are edges
+	 */
+	private static boolean isBridge(int[] row1, int[] row2, int from, int to) {
+		for (int k = from; k < to; k++) {
+			if (row1[k] == row2[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * the matrix of boolean values which is stored as packed bits in row-major order
+	 */
+	private static class BitMatrix {
+
+		private static final int ADDRESS_BITS_PER_WORD = 6;
+		private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+		private final int columns;
+		private final long[] words;
+
+		BitMatrix(int rows, int columns) {
+			this.columns = columns;
+			words = new long[(rows * columns + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD];
+		}
+
+		BitMatrix(BitMatrix matrix) {
+			columns = matrix.columns;
+			words = matrix.words.clone();
+		}
+
+		boolean get(int row, int column) {
+			return get(words, row * columns + column);
+		}
+
+		void set(int row, int column, boolean value) {
+			int index = row * columns + column;
+			if (value) {
+				words[index >>> ADDRESS_BITS_PER_WORD] |= 1L << index;
+			} else {
+				clear(words, index);
+			}
+		}
+
+		/**
+		 * (row, column) &= (row2, column2)
+		 */
+		void and(int row, int column, int row2, int column2) {
+			if (!get(row2, column2)) {
+				clear(words, row * columns + column);
+			}
+		}
+
+		void and(BitMatrix matrix) {
+			for (int i = 0; i < words.length; i++) {
+				words[i] &= matrix.words[i];
+			}
+		}
+
+		/**
+		 * @return packed bits whose first length bits are set
+		 */
+		static long[] filled(int length) {
+			long[] bits = new long[(length + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD];
+			for (int index = 0; index < length; index++) {
+				bits[index >>> ADDRESS_BITS_PER_WORD] |= 1L << index;
+			}
+			return bits;
+		}
+
+		static boolean get(long[] bits, int index) {
+			return (bits[index >>> ADDRESS_BITS_PER_WORD] & (1L << index)) != 0;
+		}
+
+		static void clear(long[] bits, int index) {
+			bits[index >>> ADDRESS_BITS_PER_WORD] &= ~(1L << index);
+		}
+
+		static boolean isEmpty(long[] bits) {
+			for (long word : bits) {
+				if (word != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 	/**
 	 * L2 norm between two RGB pixel values
 	 *
@@ -838,17 +1031,20 @@ public final class ImageUtils {
 		boolean wasBackground = true;
 		boolean inside = false;
 
-		int[] previous = null;
+		int previous = 0;
 		int[] countPerLine = new int[height];
 
+		PixelReader reader = PixelReader.of(bimage);
+		int[] row = new int[width];
 		for (int y = 0; y < height; y++) {
+			reader.readRow(0, y, width, row);
 			int numberOfUpdown = 0;
 			for (int x = 0; x < width; x++) {
-				int pixel = bimage.getRGB(x, y);
-				int[] argb = toARGB(pixel);
+				int pixel = row[x];
 				if (norm(pixel, bgColor) < 25) {
 					if (!wasBackground) {
-						if (previous[1] > previous[2] || previous[2] > previous[3] || previous[1] == previous[3]) { // in-correct
+						int red = (previous >> 16) & 0xff, green = (previous >> 8) & 0xff, blue = previous & 0xff;
+						if (red > green || green > blue || red == blue) { // in-correct
 						} else { // correct
 							if (inside) {
 								count++;
@@ -861,14 +1057,15 @@ public final class ImageUtils {
 					wasBackground = true;
 				} else {
 					if (wasBackground) {
-						if (argb[1] < argb[2] || argb[2] < argb[3] || argb[1] == argb[3]) { // in-correct
+						int red = (pixel >> 16) & 0xff, green = (pixel >> 8) & 0xff, blue = pixel & 0xff;
+						if (red < green || green < blue || red == blue) { // in-correct
 						} else { // correct
 							inside = true;
 						}
 					}
 					wasBackground = false;
 				}
-				previous = argb;
+				previous = pixel;
 			}
 			countPerLine[y] = numberOfUpdown;
 		}
@@ -918,9 +1115,11 @@ public final class ImageUtils {
 	public static void removeOverlappingRectangles(List<Rectangle> rectangles) {
 		// ignore small difference
 		int smallDiff = 2;
-		List<Rectangle> removeList = new ArrayList<Rectangle>();
+		Map<Rectangle, Integer> removeCounts = new HashMap<Rectangle, Integer>();
 
-		// check containing relation and record what to remove
+		// check containing relation and record what to remove.
+		// a rectangle which contains or is contained by rect1 intersects rect1 expanded by smallDiff.
+		RectangleGridIndex index = new RectangleGridIndex(rectangles);
 		for (int i = 0; i < rectangles.size(); i++) {
 			Rectangle rect1 = rectangles.get(i);
 			int xLeft1 = (int) rect1.getX();
@@ -928,7 +1127,13 @@ public final class ImageUtils {
 			int yTop1 = (int) rect1.getY();
 			int yBottom1 = (int) (rect1.getY() + rect1.getHeight());
 
-			for (int j = i + 1; j < rectangles.size(); j++) {
+			Rectangle expanded = new Rectangle(xLeft1 - smallDiff, yTop1 - smallDiff, (int) rect1.getWidth() + 2
+					* smallDiff, (int) rect1.getHeight() + 2 * smallDiff);
+			for (int j : index.query(rect1.isEmpty() ? rect1 : expanded)) {
+				if (j <= i) {
+					continue;
+				}
+
 				Rectangle rect2 = rectangles.get(j);
 				int xLeft2 = (int) rect2.getX();
 				int xRight2 = (int) (rect2.getX() + rect2.getWidth());
@@ -938,21 +1143,37 @@ public final class ImageUtils {
 				// check rect1 contains rect2
 				if (xLeft1 - smallDiff <= xLeft2 && yTop1 - smallDiff <= yTop2 && xRight1 + smallDiff >= xRight2
 						&& yBottom1 + smallDiff >= yBottom2) {
-					removeList.add(rect2);
+					addCount(removeCounts, rect2);
 				}
 
 				// check rect2 contains rect1
 				else if (xLeft2 - smallDiff <= xLeft1 && yTop2 - smallDiff <= yTop1 && xRight2 + smallDiff >= xRight1
 						&& yBottom2 + smallDiff >= yBottom1) {
-					removeList.add(rect1);
+					addCount(removeCounts, rect1);
 				}
 			}
 		}
 
-		// remove recorded rectangles
-		for (Rectangle removeRect : removeList) {
-			rectangles.remove(removeRect);
+		// remove recorded rectangles (the first ones of the same bounds, as many as recorded)
+		if (removeCounts.isEmpty()) {
+			return;
+		}
+		List<Rectangle> remaining = new ArrayList<Rectangle>(rectangles.size());
+		for (Rectangle rectangle : rectangles) {
+			Integer count = removeCounts.get(rectangle);
+			if (count != null && count > 0) {
+				removeCounts.put(rectangle, count - 1);
+			} else {
+				remaining.add(rectangle);
+			}
 		}
+		rectangles.clear();
+		rectangles.addAll(remaining);
+	}
+
+	private static void addCount(Map<Rectangle, Integer> counts, Rectangle rectangle) {
+		Integer count = counts.get(rectangle);
+		counts.put(rectangle, count == null ? 1 : count + 1);
 	}
 
 	/**
@@ -1040,32 +1261,19 @@ public final class ImageUtils {
 	 * @return list of object groups which are completely merged
 	 */
 	public static List<ObjectGroup> convertDiffPointsToObjectGroups(DiffPoints DP, int group_distance) {
-		List<Point> diffPoints = DP.getDiffPoints();
-		if (diffPoints == null || diffPoints.isEmpty()) {
-			return new ArrayList<ObjectGroup>();
-		}
-
-		int mergeFlag = 0;
-		List<ObjectGroup> diffGroups = new ArrayList<ObjectGroup>();
-
-		// Merge diffPoints belongs to the same object into one objectGroup.
-		for (Point point : diffPoints) {
-			ObjectGroup objectGroup = new ObjectGroup(new Point(point.x, point.y), group_distance);
-			for (ObjectGroup diffGroup : diffGroups) {
-				if (diffGroup.canMerge(objectGroup)) {
-					diffGroup.union(objectGroup);
-					mergeFlag = 1;
-					break;
-				}
-			}
-			if (mergeFlag != 1) {
-				diffGroups.add(objectGroup);
-			}
-			mergeFlag = 0;
-		}
+		return convertDiffMaskToObjectGroups(DP.getDiffMask(), group_distance);
+	}
 
-		// merge all possible object groups
-		return ObjectGroup.mergeAllPossibleObjects(diffGroups);
+	/**
+	 * convert the diff mask to the list of object groups which are completely merged. Points are grouped by
+	 * connected-component labeling on the mask, and groups are ordered by their first point in row-major order.
+	 *
+	 * @param diffMask mask of different points
+	 * @param group_distance distance for grouping
+	 * @return list of object groups which are completely merged
+	 */
+	static List<ObjectGroup> convertDiffMaskToObjectGroups(DiffMask diffMask, int group_distance) {
+		return DiffMaskLabeler.label(diffMask, group_distance);
 	}
 
 	/**
@@ -1088,7 +1296,7 @@ public final class ImageUtils {
 	}
 
 	/**
-	 * find dominant offset between two images
+	 * find dominant offset between two images by brute-force search
 	 *
 	 * @param expectedImage
 	 * @param actualImage
@@ -1096,9 +1304,36 @@ public final class ImageUtils {
 	 * @return Offset contains offsetX and offsetY
 	 */
 	public static Offset findDominantOffset(BufferedImage expectedImage, BufferedImage actualImage, double diffThreshold) {
+		return findDominantOffset(expectedImage, actualImage, diffThreshold, OffsetSearchMethod.BRUTE_FORCE);
+	}
 
-		// we don't need to check all elements, only check one element in every STEP*STEP elements
-		int STEP = 5;
+	/**
+	 * find dominant offset between two images
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param diffThreshold threshold to ignore small difference
+	 * @param method method to search the offset
+	 * @return Offset contains offsetX and offsetY
+	 */
+	public static Offset findDominantOffset(BufferedImage expectedImage, BufferedImage actualImage,
+			double diffThreshold, OffsetSearchMethod method) {
+		return findDominantOffset(expectedImage, actualImage, null, null, diffThreshold, method);
+	}
+
+	/**
+	 * find dominant offset between two images, reading colors from the given planes of the images.
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param expectedPlanes planes of expectedImage, or null to read colors from expectedImage
+	 * @param actualPlanes planes of actualImage, or null to read colors from actualImage
+	 * @param diffThreshold threshold to ignore small difference
+	 * @param method method to search the offset
+	 * @return Offset contains offsetX and offsetY
+	 */
+	static Offset findDominantOffset(BufferedImage expectedImage, BufferedImage actualImage,
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, double diffThreshold, OffsetSearchMethod method) {
 
 		// we need to restrict the maximum offset to avoid redundant checking
 		int maxOffset = 10;
@@ -1106,85 +1341,25 @@ public final class ImageUtils {
 		// initialize size
 		int expectedWidth = expectedImage.getWidth(), expectedHeight = expectedImage.getHeight();
 		int actualWidth = actualImage.getWidth(), actualHeight = actualImage.getHeight();
-		int subWidth = Math.min(expectedWidth, actualWidth), subHeight = Math.min(expectedHeight, actualHeight);
 		int xMax = Math.abs(expectedWidth - actualWidth), yMax = Math.abs(expectedHeight - actualHeight);
-		xMax = Math.min(xMax, maxOffset);
-		yMax = Math.min(yMax, maxOffset);
-
-		// check the type of relationship between two image sizes
-		// if one of two is contained in the other, it has type 1 or 2.
-		// else, it has type 3 or 4.
-		int sizeRelationType = getSizeRelationType(expectedWidth, expectedHeight, actualWidth, actualHeight);
-		int expectedXOffset = 0, expectedYOffset = 0, actualXOffset = 0, actualYOffset = 0;
 
-		// calculation method to find dominant offset depends on the type of this relation.
-		switch (sizeRelationType) {
-			case 1:
-				// for type 1, actualImage is bigger than expectedImage
-				// so we need to move a sub-rectangle only in actualImage
-				actualXOffset = 1;
-				actualYOffset = 1;
-				break;
-
-			case 2:
-				// for type 2, expectedImage is bigger than actualImage
-				// so we need to move a sub-rectangle only in expectedImage
-				expectedXOffset = 1;
-				expectedYOffset = 1;
-				break;
-
-			case 3:
-				// for type 3, the width of expectedImage is larger,
-				// and the height of actualImage is larger.
-				// so we need to move a sub-rectangle rightward in expectedImage,
-				// and downward in actualImage
-				expectedXOffset = 1;
-				actualYOffset = 1;
-				break;
-
-			case 4:
-				// for type 4, the width of actualImage is larger,
-				// and the height of expectedImage is larger.
-				// so we need to move a sub-rectangle rightward in actualImage,
-				// and downward in expectedImage
-				expectedYOffset = 1;
-				actualXOffset = 1;
-				break;
+		DominantOffsetEvaluator evaluator = new DominantOffsetEvaluator(
+				expectedPlanes != null ? expectedPlanes : PixelPlanes.of(expectedImage),
+				actualPlanes != null ? actualPlanes : PixelPlanes.of(actualImage), diffThreshold);
+		if (method == OffsetSearchMethod.PHASE_CORRELATION) {
+			return findDominantOffsetByPhaseCorrelation(expectedImage, actualImage, evaluator, xMax, yMax);
 		}
 
-		// initialize the color array.
-		int[] expectedColors = new int[expectedWidth * expectedHeight];
-		int[] actualColors = new int[actualWidth * actualHeight];
-		expectedImage.getRGB(0, 0, expectedWidth, expectedHeight, expectedColors, 0, expectedWidth);
-		actualImage.getRGB(0, 0, actualWidth, actualHeight, actualColors, 0, actualWidth);
-		int[] expectedRed = new int[expectedColors.length];
-		int[] expectedGreen = new int[expectedColors.length];
-		int[] expectedBlue = new int[expectedColors.length];
-		int[] actualRed = new int[actualColors.length];
-		int[] actualGreen = new int[actualColors.length];
-		int[] actualBlue = new int[actualColors.length];
-
-		for (int i = 0; i < expectedColors.length; i++) {
-			Color expectedColor = new Color(expectedColors[i]);
-			expectedRed[i] = expectedColor.getRed();
-			expectedGreen[i] = expectedColor.getGreen();
-			expectedBlue[i] = expectedColor.getBlue();
-		}
-
-		for (int i = 0; i < actualColors.length; i++) {
-			Color actualColor = new Color(actualColors[i]);
-			actualRed[i] = actualColor.getRed();
-			actualGreen[i] = actualColor.getGreen();
-			actualBlue[i] = actualColor.getBlue();
-		}
+		xMax = Math.min(xMax, maxOffset);
+		yMax = Math.min(yMax, maxOffset);
 
-		// the difference of Red, Green, and Blue, respectively.
-		int r, g, b, bestX = 0, bestY = 0;
+		int bestX = 0, bestY = 0;
 
 		// count the number of different points using threshold
 		int thresDiffCount, thresDiffMin = -1;
 
 		// Find the dominant offset moving the subimage in the bigger image.
+		int sizeRelationType = evaluator.sizeRelationType;
 		if (sizeRelationType == 1 || sizeRelationType == 2) {
 			// containing case
 
@@ -1192,19 +1367,8 @@ public final class ImageUtils {
 				for (int x = 0; x <= xMax; x++) {
 
 					// find dominant offset
-					thresDiffCount = 0;
-					for (int i = 0; i < subHeight; i = i + STEP) {
-						for (int j = 0; j < subWidth; j = j + STEP) {
-							r = expectedRed[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-									- actualRed[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-							g = expectedGreen[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-									- actualGreen[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-							b = expectedBlue[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-									- actualBlue[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-							if (r * r + g * g + b * b > 3 * 255 * 255 * diffThreshold * diffThreshold)
-								thresDiffCount++;
-						}
-					}
+					thresDiffCount = evaluator.countThresDiff(x, y);
+
 					// Find the minimal number of threshold different pixels.
 					if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
 						thresDiffMin = thresDiffCount;
@@ -1221,19 +1385,8 @@ public final class ImageUtils {
 			for (int y = 0; y <= yMax; y++) {
 
 				// find dominant offset
-				thresDiffCount = 0;
-				for (int i = 0; i < subHeight; i = i + STEP) {
-					for (int j = 0; j < subWidth; j = j + STEP) {
-						r = expectedRed[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualRed[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						g = expectedGreen[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualGreen[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						b = expectedBlue[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualBlue[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						if (r * r + g * g + b * b > 3 * 255 * 255 * diffThreshold * diffThreshold)
-							thresDiffCount++;
-					}
-				}
+				thresDiffCount = evaluator.countThresDiff(x, y);
+
 				// Find the minimal number of threshold different pixels.
 				if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
 					thresDiffMin = thresDiffCount;
@@ -1247,19 +1400,7 @@ public final class ImageUtils {
 			for (x = 1; x <= xMax; x++) {
 
 				// find dominant offset
-				thresDiffCount = 0;
-				for (int i = 0; i < subHeight; i = i + STEP) {
-					for (int j = 0; j < subWidth; j = j + STEP) {
-						r = expectedRed[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualRed[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						g = expectedGreen[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualGreen[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						b = expectedBlue[expectedWidth * (i + y * expectedYOffset) + (j + x * expectedXOffset)]
-								- actualBlue[actualWidth * (i + y * actualYOffset) + (j + x * actualXOffset)];
-						if (r * r + g * g + b * b > 3 * 255 * 255 * diffThreshold * diffThreshold)
-							thresDiffCount++;
-					}
-				}
+				thresDiffCount = evaluator.countThresDiff(x, y);
 
 				// Find the minimal number of threshold different pixels.
 				if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
@@ -1273,6 +1414,167 @@ public final class ImageUtils {
 		return new Offset(bestX, bestY);
 	}
 
+	/**
+	 * find dominant offset using phase correlation. The peaks of phase correlation only give estimated offsets, so the
+	 * offsets around them (and no offset) are checked in the same way as brute-force search, and the one which has the
+	 * minimal number of different points is chosen.
+	 */
+	private static Offset findDominantOffsetByPhaseCorrelation(BufferedImage expectedImage,
+			BufferedImage actualImage, DominantOffsetEvaluator evaluator, int xMax, int yMax) {
+		if (xMax == 0 && yMax == 0) {
+			return new Offset(0, 0);
+		}
+
+		// range of offsets to check around each estimated offset
+		int refineRange = 2;
+
+		// candidate offsets. (0, 0) is always checked.
+		List<Point> candidates = new ArrayList<Point>();
+		candidates.add(new Point(0, 0));
+		for (Point shift : PhaseCorrelation.estimateShifts(expectedImage, actualImage, 3)) {
+			// convert the shift (actual -> expected) into the position of sub-rectangle in the bigger image
+			int offsetX = evaluator.expectedXOffset == 1 ? shift.x : -shift.x;
+			int offsetY = evaluator.expectedYOffset == 1 ? shift.y : -shift.y;
+			if (offsetX < -refineRange || offsetX > xMax + refineRange || offsetY < -refineRange
+					|| offsetY > yMax + refineRange) {
+				continue;
+			}
+
+			for (int y = Math.max(offsetY - refineRange, 0); y <= Math.min(offsetY + refineRange, yMax); y++) {
+				for (int x = Math.max(offsetX - refineRange, 0); x <= Math.min(offsetX + refineRange, xMax); x++) {
+					Point candidate = new Point(x, y);
+					if (!candidates.contains(candidate)) {
+						candidates.add(candidate);
+					}
+				}
+			}
+		}
+
+		// prefer upper, and then left offset if the numbers of different points are the same.
+		Collections.sort(candidates, new Comparator<Point>() {
+			@Override
+			public int compare(Point p1, Point p2) {
+				return p1.y != p2.y ? Integer.compare(p1.y, p2.y) : Integer.compare(p1.x, p2.x);
+			}
+		});
+
+		Point best = null;
+		int thresDiffMin = -1;
+		for (Point candidate : candidates) {
+			int thresDiffCount = evaluator.countThresDiff(candidate.x, candidate.y);
+			if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
+				thresDiffMin = thresDiffCount;
+				best = candidate;
+			}
+		}
+		return new Offset(best.x, best.y);
+	}
+
+	/**
+	 * the class which counts the number of different points between two images at the given dominant offset
+	 */
+	private static class DominantOffsetEvaluator {
+
+		// we don't need to check all elements, only check one element in every STEP*STEP elements
+		private static final int STEP = 5;
+
+		private final int sizeRelationType;
+		private final int expectedXOffset;
+		private final int expectedYOffset;
+		private final int actualXOffset;
+		private final int actualYOffset;
+		private final int subWidth;
+		private final int subHeight;
+		private final PixelPlanes expectedPlanes;
+		private final PixelPlanes actualPlanes;
+		private final double diffThreshold;
+
+		DominantOffsetEvaluator(PixelPlanes expectedPlanes, PixelPlanes actualPlanes, double diffThreshold) {
+			this.expectedPlanes = expectedPlanes;
+			this.actualPlanes = actualPlanes;
+			this.diffThreshold = diffThreshold;
+
+			// initialize size
+			int expectedWidth = expectedPlanes.width, expectedHeight = expectedPlanes.height;
+			int actualWidth = actualPlanes.width, actualHeight = actualPlanes.height;
+			subWidth = Math.min(expectedWidth, actualWidth);
+			subHeight = Math.min(expectedHeight, actualHeight);
+
+			// check the type of relationship between two image sizes
+			// if one of two is contained in the other, it has type 1 or 2.
+			// else, it has type 3 or 4.
+			sizeRelationType = getSizeRelationType(expectedWidth, expectedHeight, actualWidth, actualHeight);
+
+			// calculation method to find dominant offset depends on the type of this relation.
+			switch (sizeRelationType) {
+				case 1:
+					// for type 1, actualImage is bigger than expectedImage
+					// so we need to move a sub-rectangle only in actualImage
+					expectedXOffset = 0;
+					expectedYOffset = 0;
+					actualXOffset = 1;
+					actualYOffset = 1;
+					break;
+
+				case 2:
+					// for type 2, expectedImage is bigger than actualImage
+					// so we need to move a sub-rectangle only in expectedImage
+					expectedXOffset = 1;
+					expectedYOffset = 1;
+					actualXOffset = 0;
+					actualYOffset = 0;
+					break;
+
+				case 3:
+					// for type 3, the width of expectedImage is larger,
+					// and the height of actualImage is larger.
+					// so we need to move a sub-rectangle rightward in expectedImage,
+					// and downward in actualImage
+					expectedXOffset = 1;
+					expectedYOffset = 0;
+					actualXOffset = 0;
+					actualYOffset = 1;
+					break;
+
+				default:
+					// for type 4, the width of actualImage is larger,
+					// and the height of expectedImage is larger.
+					// so we need to move a sub-rectangle rightward in actualImage,
+					// and downward in expectedImage
+					expectedXOffset = 0;
+					expectedYOffset = 1;
+					actualXOffset = 1;
+					actualYOffset = 0;
+					break;
+			}
+		}
+
+		/**
+		 * count the number of sampled points whose difference is over the threshold when the sub-rectangle is moved
+		 * by (x, y)
+		 */
+		int countThresDiff(int x, int y) {
+			double thresholdNorm = 3 * 255 * 255 * diffThreshold * diffThreshold;
+			int thresDiffCount = 0;
+			for (int i = 0; i < subHeight; i = i + STEP) {
+				int expectedRow = expectedPlanes.index(x * expectedXOffset, i + y * expectedYOffset);
+				int actualRow = actualPlanes.index(x * actualXOffset, i + y * actualYOffset);
+				for (int j = 0; j < subWidth; j = j + STEP) {
+					int expectedIndex = expectedRow + j;
+					int actualIndex = actualRow + j;
+
+					// the difference of Red, Green, and Blue, respectively.
+					int r = (expectedPlanes.red[expectedIndex] & 0xFF) - (actualPlanes.red[actualIndex] & 0xFF);
+					int g = (expectedPlanes.green[expectedIndex] & 0xFF) - (actualPlanes.green[actualIndex] & 0xFF);
+					int b = (expectedPlanes.blue[expectedIndex] & 0xFF) - (actualPlanes.blue[actualIndex] & 0xFF);
+					if (r * r + g * g + b * b > thresholdNorm)
+						thresDiffCount++;
+				}
+			}
+			return thresDiffCount;
+		}
+	}
+
 	/**
 	 * using dominant offset, extract subImage from given expectedImage the size of subImage will be the same as the
 	 * size of intersection of two images.
@@ -1288,29 +1590,38 @@ public final class ImageUtils {
 		int expectedWidth = expectedImage.getWidth(), expectedHeight = expectedImage.getHeight();
 		int actualWidth = actualImage.getWidth(), actualHeight = actualImage.getHeight();
 
+		if (getSizeRelationType(expectedWidth, expectedHeight, actualWidth, actualHeight) == 1) {
+			return expectedImage;
+		}
+		Rectangle frame = getDominantFrame(expectedWidth, expectedHeight, actualWidth, actualHeight, offset);
+		return expectedImage.getSubimage(frame.x, frame.y, frame.width, frame.height);
+	}
+
+	/**
+	 * using dominant offset, get the frame of expectedImage which is extracted by
+	 * {@link #getDominantImage(BufferedImage, BufferedImage, Offset)}.
+	 *
+	 * @param expectedWidth width of expectedImage
+	 * @param expectedHeight height of expectedImage
+	 * @param actualWidth width of actualImage
+	 * @param actualHeight height of actualImage
+	 * @param offset dominant offset between two images
+	 * @return frame of expectedImage at dominant offset
+	 */
+	static Rectangle getDominantFrame(int expectedWidth, int expectedHeight, int actualWidth, int actualHeight,
+			Offset offset) {
+
 		// dominant frame of expectedImage depends on size-relation type and offset
 		int sizeRelationType = getSizeRelationType(expectedWidth, expectedHeight, actualWidth, actualHeight);
 		switch (sizeRelationType) {
-			case 1:
-				return expectedImage;
 			case 2:
-				return expectedImage.getSubimage(offset.getX(), offset.getY(), actualWidth, actualHeight);
+				return new Rectangle(offset.getX(), offset.getY(), actualWidth, actualHeight);
 			case 3:
-				if (offset.getX() > 0) {
-					return expectedImage.getSubimage(offset.getX(), 0, actualWidth, expectedHeight);
-				} else {
-					return expectedImage.getSubimage(0, 0, actualWidth, expectedHeight);
-				}
+				return new Rectangle(Math.max(offset.getX(), 0), 0, actualWidth, expectedHeight);
 			case 4:
-				if (offset.getY() > 0) {
-					return expectedImage.getSubimage(0, offset.getY(), expectedWidth, actualHeight);
-				} else {
-					return expectedImage.getSubimage(0, 0, expectedWidth, actualHeight);
-				}
-
-				// never reach to default case
+				return new Rectangle(0, Math.max(offset.getY(), 0), expectedWidth, actualHeight);
 			default:
-				return expectedImage;
+				return new Rectangle(expectedWidth, expectedHeight);
 		}
 	}
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * 画像の積分画像（各ピクセルのR、G、B値の和の累積和）を保持し、任意の矩形範囲の合計をO(1)で求めるクラス。<br>
+ * 累積和は1次元のlong配列で保持するため、画像全体の合計がオーバーフローすることはありません。画像の一部の範囲のみを対象として生成することもでき、
+ * その場合も座標は元画像の座標系で指定します。
+ */
+final class IntegralImage {
+
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	/**
+	 * 範囲の左上から(x - 1, y - 1)までの合計をsums[y * (width + 1) + x]に保持します（x、yは範囲内の相対座標）。
+	 */
+	private final long[] sums;
+
+	/**
+	 * 画像全体を対象とする積分画像を生成します。
+	 *
+	 * @param image 元画像
+	 */
+	IntegralImage(BufferedImage image) {
+		this(image, new Rectangle(image.getWidth(), image.getHeight()));
+	}
+
+	/**
+	 * 画像の指定範囲を対象とする積分画像を生成します。
+	 *
+	 * @param image 元画像
+	 * @param region 対象とする範囲。画像の範囲内である必要があります。
+	 */
+	IntegralImage(BufferedImage image, Rectangle region) {
+		this(PixelPlanes.of(image, region), region.x, region.y);
+	}
+
+	/**
+	 * プレーン全体を対象とする積分画像を生成します。
+	 *
+	 * @param planes 元画像のプレーン
+	 */
+	IntegralImage(PixelPlanes planes) {
+		this(planes, 0, 0);
+	}
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param planes 対象とする範囲のプレーン
+	 * @param x 範囲の左上の元画像でのx座標
+	 * @param y 範囲の左上の元画像でのy座標
+	 */
+	private IntegralImage(PixelPlanes planes, int x, int y) {
+		this.x = x;
+		this.y = y;
+		width = planes.width;
+		height = planes.height;
+
+		int stride = width + 1;
+		sums = new long[stride * (height + 1)];
+		for (int j = 0; j < height; j++) {
+			long rowSum = 0;
+			int index = (j + 1) * stride + 1;
+			int planeIndex = planes.index(0, j);
+			for (int i = 0; i < width; i++, index++, planeIndex++) {
+				rowSum += (planes.red[planeIndex] & 0xFF) + (planes.green[planeIndex] & 0xFF)
+						+ (planes.blue[planeIndex] & 0xFF);
+				sums[index] = sums[index - stride] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * 指定した矩形範囲の合計を取得します。
+	 *
+	 * @param rx 範囲の左上のx座標（元画像の座標系）
+	 * @param ry 範囲の左上のy座標（元画像の座標系）
+	 * @param w 範囲の幅
+	 * @param h 範囲の高さ
+	 * @return 合計
+	 */
+	long sum(int rx, int ry, int w, int h) {
+		int stride = width + 1;
+		int left = rx - x;
+		int top = (ry - y) * stride;
+		int bottom = (ry - y + h) * stride;
+		return sums[bottom + left + w] - sums[bottom + left] - sums[top + left + w] + sums[top + left];
+	}
+
+}
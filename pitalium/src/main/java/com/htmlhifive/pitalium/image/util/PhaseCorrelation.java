@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 位相限定相関（Phase correlation）により、2枚の画像間の平行移動量を推定するクラス。<br>
+ * 画像を縮小した輝度画像に変換し、2次元FFTで求めた正規化相互パワースペクトルを逆変換して相関面を求めます。相関面のピークの位置が
+ * 平行移動量となるため、探索範囲によらずO(N log N)で推定できます。縮小により推定値には誤差が含まれるため、呼び出し側で元の画像を使って
+ * 候補の近傍を検証してください。
+ */
+final class PhaseCorrelation {
+
+	/**
+	 * 縮小後の画像の1辺の最大長
+	 */
+	static final int MAX_SIDE = 512;
+
+	private PhaseCorrelation() {
+	}
+
+	/**
+	 * 平行移動量の推定値を取得します。推定値は相関の強い順に並び、actualImageの(x, y)が、expectedImageの(x + shift.x, y + shift.y)に
+	 * 対応することを表します。FFTの周期性により符号が決まらないため、1つのピークにつき符号の異なる最大4つの推定値を返します。
+	 *
+	 * @param expectedImage 画像1
+	 * @param actualImage 画像2
+	 * @param peakCount 推定値を求めるピークの数
+	 * @return 平行移動量の推定値の一覧
+	 */
+	static List<Point> estimateShifts(BufferedImage expectedImage, BufferedImage actualImage, int peakCount) {
+		List<Point> shifts = new ArrayList<Point>();
+		int maxSide = Math.max(Math.max(expectedImage.getWidth(), expectedImage.getHeight()),
+				Math.max(actualImage.getWidth(), actualImage.getHeight()));
+		int factor = Math.max(1, (maxSide + MAX_SIDE - 1) / MAX_SIDE);
+		int expectedWidth = expectedImage.getWidth() / factor;
+		int expectedHeight = expectedImage.getHeight() / factor;
+		int actualWidth = actualImage.getWidth() / factor;
+		int actualHeight = actualImage.getHeight() / factor;
+		if (expectedWidth == 0 || expectedHeight == 0 || actualWidth == 0 || actualHeight == 0) {
+			return shifts;
+		}
+
+		int fftWidth = nextPowerOfTwo(Math.max(expectedWidth, actualWidth));
+		int fftHeight = nextPowerOfTwo(Math.max(expectedHeight, actualHeight));
+		int size = fftWidth * fftHeight;
+
+		double[] expectedRe = new double[size];
+		double[] expectedIm = new double[size];
+		double[] actualRe = new double[size];
+		double[] actualIm = new double[size];
+		readLuminance(expectedImage, factor, expectedWidth, expectedHeight, expectedRe, fftWidth);
+		readLuminance(actualImage, factor, actualWidth, actualHeight, actualRe, fftWidth);
+		fft2d(expectedRe, expectedIm, fftWidth, fftHeight, false);
+		fft2d(actualRe, actualIm, fftWidth, fftHeight, false);
+
+		// normalized cross-power spectrum: F1 * conj(F2) / |F1 * conj(F2)|
+		for (int i = 0; i < size; i++) {
+			double re = expectedRe[i] * actualRe[i] + expectedIm[i] * actualIm[i];
+			double im = expectedIm[i] * actualRe[i] - expectedRe[i] * actualIm[i];
+			double magnitude = Math.sqrt(re * re + im * im);
+			if (magnitude > 1e-12) {
+				expectedRe[i] = re / magnitude;
+				expectedIm[i] = im / magnitude;
+			} else {
+				expectedRe[i] = 0;
+				expectedIm[i] = 0;
+			}
+		}
+		fft2d(expectedRe, expectedIm, fftWidth, fftHeight, true);
+		double[] surface = expectedRe;
+
+		for (int peak : findPeaks(surface, fftWidth, fftHeight, peakCount)) {
+			int u = peak % fftWidth;
+			int v = peak / fftWidth;
+
+			// refine the position of the peak to sub-pixel accuracy by parabolic fitting
+			double left = surface[v * fftWidth + (u + fftWidth - 1) % fftWidth];
+			double right = surface[v * fftWidth + (u + 1) % fftWidth];
+			double up = surface[((v + fftHeight - 1) % fftHeight) * fftWidth + u];
+			double down = surface[((v + 1) % fftHeight) * fftWidth + u];
+			double peakX = u + subPixelOffset(left, surface[peak], right);
+			double peakY = v + subPixelOffset(up, surface[peak], down);
+
+			for (double shiftY : new double[] { peakY, peakY - fftHeight }) {
+				for (double shiftX : new double[] { peakX, peakX - fftWidth }) {
+					Point shift = new Point((int) Math.round(shiftX * factor), (int) Math.round(shiftY * factor));
+					if (!shifts.contains(shift)) {
+						shifts.add(shift);
+					}
+				}
+			}
+		}
+		return shifts;
+	}
+
+	/**
+	 * 画像をfactor×factorピクセル毎に平均した輝度を、平均を0にして配列に格納します。
+	 */
+	private static void readLuminance(BufferedImage image, int factor, int width, int height, double[] dest,
+			int stride) {
+		PixelReader reader = PixelReader.of(image);
+		int[] row = new int[width * factor];
+		long[] sums = new long[width];
+		long total = 0;
+		for (int y = 0; y < height; y++) {
+			Arrays.fill(sums, 0);
+			for (int dy = 0; dy < factor; dy++) {
+				reader.readRow(0, y * factor + dy, row.length, row);
+				for (int x = 0; x < row.length; x++) {
+					int rgb = row[x];
+					sums[x / factor] += 299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF);
+				}
+			}
+			for (int x = 0; x < width; x++) {
+				dest[y * stride + x] = sums[x];
+				total += sums[x];
+			}
+		}
+
+		double mean = (double) total / (width * height);
+		double scale = 1.0 / (1000.0 * factor * factor);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				dest[y * stride + x] = (dest[y * stride + x] - mean) * scale;
+			}
+		}
+	}
+
+	/**
+	 * 相関面の極大値のうち、値の大きい順に指定した数のインデックスを取得します。
+	 */
+	private static int[] findPeaks(double[] surface, int width, int height, int count) {
+		int[] peaks = new int[count];
+		double[] values = new double[count];
+		int found = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				double value = surface[y * width + x];
+				if (found == count && value <= values[count - 1]) {
+					continue;
+				}
+				if (!isLocalMaximum(surface, width, height, x, y)) {
+					continue;
+				}
+
+				int i = found < count ? found++ : count - 1;
+				while (i > 0 && values[i - 1] < value) {
+					values[i] = values[i - 1];
+					peaks[i] = peaks[i - 1];
+					i--;
+				}
+				values[i] = value;
+				peaks[i] = y * width + x;
+			}
+		}
+
+		int[] result = new int[found];
+		System.arraycopy(peaks, 0, result, 0, found);
+		return result;
+	}
+
+	private static boolean isLocalMaximum(double[] surface, int width, int height, int x, int y) {
+		double value = surface[y * width + x];
+		for (int dy = -1; dy <= 1; dy++) {
+			int ny = (y + dy + height) % height;
+			for (int dx = -1; dx <= 1; dx++) {
+				int nx = (x + dx + width) % width;
+				if ((dx != 0 || dy != 0) && surface[ny * width + nx] > value) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static double subPixelOffset(double previous, double peak, double next) {
+		double denominator = previous - 2 * peak + next;
+		if (denominator >= 0) {
+			return 0;
+		}
+		double offset = (previous - next) / (2 * denominator);
+		return Math.max(-0.5, Math.min(0.5, offset));
+	}
+
+	/**
+	 * 2次元FFTを行います。配列の内容は変換結果で上書きされます。逆変換の場合は要素数で除算します。
+	 */
+	private static void fft2d(double[] re, double[] im, int width, int height, boolean inverse) {
+		double[] rowRe = new double[width];
+		double[] rowIm = new double[width];
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(re, y * width, rowRe, 0, width);
+			System.arraycopy(im, y * width, rowIm, 0, width);
+			fft(rowRe, rowIm, inverse);
+			System.arraycopy(rowRe, 0, re, y * width, width);
+			System.arraycopy(rowIm, 0, im, y * width, width);
+		}
+
+		double[] columnRe = new double[height];
+		double[] columnIm = new double[height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				columnRe[y] = re[y * width + x];
+				columnIm[y] = im[y * width + x];
+			}
+			fft(columnRe, columnIm, inverse);
+			for (int y = 0; y < height; y++) {
+				re[y * width + x] = columnRe[y];
+				im[y * width + x] = columnIm[y];
+			}
+		}
+
+		if (inverse) {
+			double scale = 1.0 / (width * height);
+			for (int i = 0; i < re.length; i++) {
+				re[i] *= scale;
+				im[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * 要素数が2のべき乗の配列に対して、基数2のFFTを行います。
+	 */
+	private static void fft(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+
+		// bit-reversal permutation
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int length = 2; length <= n; length <<= 1) {
+			double angle = 2 * Math.PI / length * (inverse ? 1 : -1);
+			double stepRe = Math.cos(angle);
+			double stepIm = Math.sin(angle);
+			int half = length >> 1;
+			for (int start = 0; start < n; start += length) {
+				double wRe = 1;
+				double wIm = 0;
+				for (int k = 0; k < half; k++) {
+					int a = start + k;
+					int b = a + half;
+					double tRe = re[b] * wRe - im[b] * wIm;
+					double tIm = re[b] * wIm + im[b] * wRe;
+					re[b] = re[a] - tRe;
+					im[b] = im[a] - tIm;
+					re[a] += tRe;
+					im[a] += tIm;
+					double nextRe = wRe * stepRe - wIm * stepIm;
+					wIm = wRe * stepIm + wIm * stepRe;
+					wRe = nextRe;
+				}
+			}
+		}
+	}
+
+	private static int nextPowerOfTwo(int value) {
+		int n = 1;
+		while (n < value) {
+			n <<= 1;
+		}
+		return n;
+	}
+
+}
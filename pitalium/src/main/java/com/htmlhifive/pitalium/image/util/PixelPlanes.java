@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * 画像のピクセルを、R、G、B（アルファ値を持つ画像の場合はA）の色成分毎のbyte配列（プレーン）として保持するクラス。<br>
+ * 画像全体から一度だけ生成し、{@link #subPlanes(int, int, int, int)}で配列を共有したまま任意の範囲を参照できます。
+ * (x, y)の値は各配列の{@link #index(int, int)}番目に格納されています。
+ */
+final class PixelPlanes {
+
+	final byte[] red;
+	final byte[] green;
+	final byte[] blue;
+
+	/**
+	 * アルファ値。アルファ値を持たない（全て不透明の）画像の場合はnull
+	 */
+	final byte[] alpha;
+
+	/**
+	 * (0, 0)に対応する配列のインデックス
+	 */
+	final int origin;
+	final int stride;
+	final int width;
+	final int height;
+
+	private PixelPlanes(byte[] red, byte[] green, byte[] blue, byte[] alpha, int origin, int stride, int width,
+			int height) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.alpha = alpha;
+		this.origin = origin;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * 画像全体のプレーンを生成します。
+	 *
+	 * @param image 画像
+	 * @return 画像全体のプレーン
+	 */
+	static PixelPlanes of(BufferedImage image) {
+		return of(image, new Rectangle(image.getWidth(), image.getHeight()));
+	}
+
+	/**
+	 * 画像の指定範囲のみのプレーンを生成します。生成したプレーンの座標は、範囲の左上を(0, 0)とします。
+	 *
+	 * @param image 画像
+	 * @param region 範囲。画像の範囲内である必要があります。
+	 * @return 指定範囲のプレーン
+	 */
+	static PixelPlanes of(BufferedImage image, Rectangle region) {
+		int width = region.width;
+		int height = region.height;
+		if (region.x < 0 || region.y < 0 || region.x + width > image.getWidth()
+				|| region.y + height > image.getHeight()) {
+			throw new IndexOutOfBoundsException(region + " is out of the image");
+		}
+
+		int size = width * height;
+		byte[] red = new byte[size];
+		byte[] green = new byte[size];
+		byte[] blue = new byte[size];
+		byte[] alpha = image.getColorModel().hasAlpha() ? new byte[size] : null;
+
+		PixelReader reader = PixelReader.of(image);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.readRow(region.x, region.y + y, width, row);
+			for (int x = 0, index = y * width; x < width; x++, index++) {
+				int argb = row[x];
+				red[index] = (byte) (argb >> 16);
+				green[index] = (byte) (argb >> 8);
+				blue[index] = (byte) argb;
+				if (alpha != null) {
+					alpha[index] = (byte) (argb >> 24);
+				}
+			}
+		}
+		return new PixelPlanes(red, green, blue, alpha, 0, width, width, height);
+	}
+
+	/**
+	 * 指定した範囲を参照するプレーンを取得します。配列はコピーせず、このプレーンと共有します。
+	 *
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 * @param w 範囲の幅
+	 * @param h 範囲の高さ
+	 * @return 指定範囲のプレーン。座標は範囲の左上を(0, 0)とします。
+	 */
+	PixelPlanes subPlanes(int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+			throw new IndexOutOfBoundsException("[x: " + x + ", y: " + y + ", w: " + w + ", h: " + h
+					+ "] is out of planes [w: " + width + ", h: " + height + "]");
+		}
+		return new PixelPlanes(red, green, blue, alpha, index(x, y), stride, w, h);
+	}
+
+	/**
+	 * 指定した範囲を参照するプレーンを取得します。
+	 *
+	 * @param region 範囲
+	 * @return 指定範囲のプレーン
+	 * @see #subPlanes(int, int, int, int)
+	 */
+	PixelPlanes subPlanes(Rectangle region) {
+		return subPlanes(region.x, region.y, region.width, region.height);
+	}
+
+	/**
+	 * (x, y)の値を格納している配列のインデックスを取得します。
+	 *
+	 * @param x x座標
+	 * @param y y座標
+	 * @return 配列のインデックス
+	 */
+	int index(int x, int y) {
+		return origin + y * stride + x;
+	}
+
+	/**
+	 * (x, y)のピクセルをARGB（32bit）形式で取得します。値は{@link BufferedImage#getRGB(int, int)}と同一です。
+	 *
+	 * @param x x座標
+	 * @param y y座標
+	 * @return ARGB値
+	 */
+	int getRGB(int x, int y) {
+		int index = index(x, y);
+		int a = alpha == null ? 0xFF : alpha[index] & 0xFF;
+		return a << 24 | (red[index] & 0xFF) << 16 | (green[index] & 0xFF) << 8 | (blue[index] & 0xFF);
+	}
+
+}
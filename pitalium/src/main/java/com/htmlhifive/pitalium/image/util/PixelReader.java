@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * 画像のピクセルを1行単位でARGB（32bit）の配列に読み込むクラス。<br>
+ * 画像の種類が TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR の場合は、Rasterが保持する
+ * {@link DataBufferInt}、{@link DataBufferByte}の配列から直接読み込むため、ColorModelを経由せず、ピクセル毎のオブジェクト生成も行いません。
+ * それ以外の種類の画像は{@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}で1行ずつ読み込みます。<br>
+ * 読み込んだ値は{@link BufferedImage#getRGB(int, int)}の戻り値と同一です。
+ */
+final class PixelReader {
+
+	/**
+	 * 不透明を表すアルファ値
+	 */
+	private static final int OPAQUE = 0xFF000000;
+
+	/**
+	 * RGB部分のマスク
+	 */
+	private static final int RGB_MASK = 0x00FFFFFF;
+
+	private final BufferedImage image;
+	private final int type;
+	private final int[] intData;
+	private final byte[] byteData;
+
+	/**
+	 * 画像の(0, 0)に対応する配列のインデックス
+	 */
+	private final int origin;
+	private final int scanlineStride;
+	private final int pixelStride;
+	private final int redOffset;
+	private final int greenOffset;
+	private final int blueOffset;
+	private final int alphaOffset;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param image 読み込む画像
+	 */
+	private PixelReader(BufferedImage image) {
+		this.image = image;
+
+		Raster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		DataBuffer dataBuffer = raster.getDataBuffer();
+		int translateX = -raster.getSampleModelTranslateX();
+		int translateY = -raster.getSampleModelTranslateY();
+
+		int imageType = image.getType();
+		if ((imageType == BufferedImage.TYPE_INT_RGB || imageType == BufferedImage.TYPE_INT_ARGB)
+				&& dataBuffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel) {
+			SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) sampleModel;
+			type = imageType;
+			intData = ((DataBufferInt) dataBuffer).getData();
+			byteData = null;
+			scanlineStride = packed.getScanlineStride();
+			pixelStride = 1;
+			origin = dataBuffer.getOffset() + packed.getOffset(translateX, translateY);
+			redOffset = 0;
+			greenOffset = 0;
+			blueOffset = 0;
+			alphaOffset = 0;
+		} else if ((imageType == BufferedImage.TYPE_3BYTE_BGR || imageType == BufferedImage.TYPE_4BYTE_ABGR)
+				&& dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+			ComponentSampleModel component = (ComponentSampleModel) sampleModel;
+			int[] bandOffsets = component.getBandOffsets();
+			type = imageType;
+			intData = null;
+			byteData = ((DataBufferByte) dataBuffer).getData();
+			scanlineStride = component.getScanlineStride();
+			pixelStride = component.getPixelStride();
+			origin = dataBuffer.getOffset() + translateY * scanlineStride + translateX * pixelStride;
+			redOffset = bandOffsets[0];
+			greenOffset = bandOffsets[1];
+			blueOffset = bandOffsets[2];
+			alphaOffset = bandOffsets.length > 3 ? bandOffsets[3] : 0;
+		} else {
+			type = BufferedImage.TYPE_CUSTOM;
+			intData = null;
+			byteData = null;
+			scanlineStride = 0;
+			pixelStride = 0;
+			origin = 0;
+			redOffset = 0;
+			greenOffset = 0;
+			blueOffset = 0;
+			alphaOffset = 0;
+		}
+	}
+
+	/**
+	 * 指定した画像を読み込むPixelReaderを生成します。
+	 *
+	 * @param image 読み込む画像
+	 * @return PixelReader
+	 */
+	static PixelReader of(BufferedImage image) {
+		return new PixelReader(image);
+	}
+
+	/**
+	 * Rasterの配列から直接読み込めるかどうかを取得します。
+	 *
+	 * @return 直接読み込める場合true
+	 */
+	boolean isDirect() {
+		return type != BufferedImage.TYPE_CUSTOM;
+	}
+
+	/**
+	 * 指定した行のピクセルをARGB（32bit）形式で読み込みます。
+	 *
+	 * @param x 読み込みを開始するx座標
+	 * @param y 読み込む行のy座標
+	 * @param length 読み込むピクセル数
+	 * @param row 読み込んだピクセルを格納する配列。先頭からlength個の要素が上書きされます。
+	 */
+	void readRow(int x, int y, int length, int[] row) {
+		switch (type) {
+			case BufferedImage.TYPE_INT_ARGB: {
+				System.arraycopy(intData, origin + y * scanlineStride + x, row, 0, length);
+				break;
+			}
+			case BufferedImage.TYPE_INT_RGB: {
+				int index = origin + y * scanlineStride + x;
+				for (int i = 0; i < length; i++) {
+					row[i] = OPAQUE | (intData[index + i] & RGB_MASK);
+				}
+				break;
+			}
+			case BufferedImage.TYPE_3BYTE_BGR: {
+				int index = origin + y * scanlineStride + x * pixelStride;
+				for (int i = 0; i < length; i++, index += pixelStride) {
+					row[i] = OPAQUE | (byteData[index + redOffset] & 0xFF) << 16
+							| (byteData[index + greenOffset] & 0xFF) << 8 | (byteData[index + blueOffset] & 0xFF);
+				}
+				break;
+			}
+			case BufferedImage.TYPE_4BYTE_ABGR: {
+				int index = origin + y * scanlineStride + x * pixelStride;
+				for (int i = 0; i < length; i++, index += pixelStride) {
+					row[i] = (byteData[index + alphaOffset] & 0xFF) << 24 | (byteData[index + redOffset] & 0xFF) << 16
+							| (byteData[index + greenOffset] & 0xFF) << 8 | (byteData[index + blueOffset] & 0xFF);
+				}
+				break;
+			}
+			default:
+				image.getRGB(x, y, length, 1, row, 0, length);
+				break;
+		}
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 画像の一部の範囲を参照するビュー。<br>
+ * 1ピクセルを1つのintで保持する画像（{@link ImageUtils#toCanonicalImage(BufferedImage)}の形式）の場合は、画像の{@link DataBufferInt}
+ * の配列を、範囲の左上のインデックスと1行あたりの要素数（stride）とともに保持します。
+ * {@link #subRegion(int, int, int, int)}は配列を共有したまま範囲を切り出すため、ピクセルのコピーは発生しません。
+ * (x, y)の値は{@link #data}の{@link #index(int, int)}番目に格納されています。<br>
+ * それ以外の形式の画像は変換せず、{@link #getRow(int, int, int, int[])}で{@link PixelReader}から1行ずつ読み込みます。この場合{@link #data}はnullです。
+ */
+final class PixelRegion {
+
+	/**
+	 * 不透明を表すアルファ値
+	 */
+	private static final int OPAQUE = 0xFF000000;
+
+	/**
+	 * RGB部分のマスク
+	 */
+	private static final int RGB_MASK = 0x00FFFFFF;
+
+	final int[] data;
+
+	/**
+	 * (0, 0)に対応する配列のインデックス
+	 */
+	final int origin;
+	final int stride;
+	final int width;
+	final int height;
+
+	/**
+	 * 配列の値がARGB値そのものかどうか。falseの場合（{@link BufferedImage#TYPE_INT_RGB}）は上位8bitを無視し、不透明として扱います。
+	 */
+	final boolean hasAlpha;
+
+	/**
+	 * 配列を参照できない画像を読み込むPixelReader。配列を参照する場合はnull
+	 */
+	private final PixelReader reader;
+
+	/**
+	 * PixelReaderで読み込む場合の、範囲の左上の画像上の座標
+	 */
+	private final int readerX;
+	private final int readerY;
+
+	private PixelRegion(int[] data, int origin, int stride, int width, int height, boolean hasAlpha,
+			PixelReader reader, int readerX, int readerY) {
+		this.data = data;
+		this.origin = origin;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+		this.hasAlpha = hasAlpha;
+		this.reader = reader;
+		this.readerX = readerX;
+		this.readerY = readerY;
+	}
+
+	/**
+	 * 画像全体を参照するビューを生成します。画像が標準のピクセル形式でない場合は、画像を変換せずに1行ずつ読み込むビューを生成します。
+	 *
+	 * @param image 画像
+	 * @return 画像全体のビュー
+	 */
+	static PixelRegion of(BufferedImage image) {
+		if (!ImageUtils.isCanonicalImage(image)) {
+			return new PixelRegion(null, 0, 0, image.getWidth(), image.getHeight(), false, PixelReader.of(image), 0,
+					0);
+		}
+
+		WritableRaster raster = image.getRaster();
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+		int origin = dataBuffer.getOffset()
+				+ sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+		return new PixelRegion(dataBuffer.getData(), origin, sampleModel.getScanlineStride(), image.getWidth(),
+				image.getHeight(), image.getType() == BufferedImage.TYPE_INT_ARGB, null, 0, 0);
+	}
+
+	/**
+	 * 画像の指定範囲を参照するビューを生成します。生成したビューの座標は、範囲の左上を(0, 0)とします。
+	 *
+	 * @param image 画像
+	 * @param region 範囲。画像の範囲内である必要があります。
+	 * @return 指定範囲のビュー
+	 */
+	static PixelRegion of(BufferedImage image, Rectangle region) {
+		return of(image).subRegion(region);
+	}
+
+	/**
+	 * 指定した範囲を参照するビューを取得します。配列はコピーせず、このビューと共有します。
+	 *
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 * @param w 範囲の幅
+	 * @param h 範囲の高さ
+	 * @return 指定範囲のビュー。座標は範囲の左上を(0, 0)とします。
+	 */
+	PixelRegion subRegion(int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+			throw new IndexOutOfBoundsException("[x: " + x + ", y: " + y + ", w: " + w + ", h: " + h
+					+ "] is out of region [w: " + width + ", h: " + height + "]");
+		}
+		if (data == null) {
+			return new PixelRegion(null, 0, 0, w, h, false, reader, readerX + x, readerY + y);
+		}
+		return new PixelRegion(data, index(x, y), stride, w, h, hasAlpha, null, 0, 0);
+	}
+
+	/**
+	 * 画像の配列を直接参照できるかどうかを取得します。
+	 *
+	 * @return {@link #data}を参照できる場合true
+	 */
+	boolean isArrayBacked() {
+		return data != null;
+	}
+
+	/**
+	 * 指定した範囲を参照するビューを取得します。
+	 *
+	 * @param region 範囲
+	 * @return 指定範囲のビュー
+	 * @see #subRegion(int, int, int, int)
+	 */
+	PixelRegion subRegion(Rectangle region) {
+		return subRegion(region.x, region.y, region.width, region.height);
+	}
+
+	/**
+	 * (x, y)の値を格納している配列のインデックスを取得します。
+	 *
+	 * @param x x座標
+	 * @param y y座標
+	 * @return 配列のインデックス
+	 */
+	int index(int x, int y) {
+		return origin + y * stride + x;
+	}
+
+	/**
+	 * (x, y)のピクセルをARGB（32bit）形式で取得します。値は{@link BufferedImage#getRGB(int, int)}と同一です。
+	 *
+	 * @param x x座標
+	 * @param y y座標
+	 * @return ARGB値
+	 */
+	int getRGB(int x, int y) {
+		if (data == null) {
+			int[] pixel = new int[1];
+			reader.readRow(readerX + x, readerY + y, 1, pixel);
+			return pixel[0];
+		}
+
+		int pixel = data[index(x, y)];
+		return hasAlpha ? pixel : OPAQUE | (pixel & RGB_MASK);
+	}
+
+	/**
+	 * 指定した行のピクセルをARGB（32bit）形式で参照できる配列を取得します。<br>
+	 * 配列の値がARGB値そのものの場合は{@link #data}をそのまま返し、ピクセルは{@link #getRowOffset(int, int)}番目から並びます。
+	 * そうでない場合（配列を参照できない画像を含む）はbufferの先頭にlength個のピクセルを読み込んで返します。
+	 *
+	 * @param x 読み込みを開始するx座標
+	 * @param y 読み込む行のy座標
+	 * @param length 読み込むピクセル数
+	 * @param buffer 読み込みに使用する配列。length以上の長さが必要です。
+	 * @return ピクセルを参照できる配列
+	 */
+	int[] getRow(int x, int y, int length, int[] buffer) {
+		if (hasAlpha) {
+			return data;
+		}
+		if (data == null) {
+			reader.readRow(readerX + x, readerY + y, length, buffer);
+			return buffer;
+		}
+
+		for (int i = 0, index = index(x, y); i < length; i++, index++) {
+			buffer[i] = OPAQUE | (data[index] & RGB_MASK);
+		}
+		return buffer;
+	}
+
+	/**
+	 * {@link #getRow(int, int, int, int[])}が返す配列で、(x, y)のピクセルが格納されているインデックスを取得します。
+	 *
+	 * @param x x座標
+	 * @param y y座標
+	 * @return 配列のインデックス
+	 */
+	int getRowOffset(int x, int y) {
+		return hasAlpha ? index(x, y) : 0;
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ARGB（32bit）の2つの行を先頭から走査し、差異のあるピクセルを探すカーネル。<br>
+ * このクラス自体は1ピクセルずつ比較する実装です。実行環境が Java 17 以降で、{@code jdk.incubator.vector} モジュールが有効な場合
+ * （{@code --add-modules jdk.incubator.vector}）は、multi-release JAR の {@code META-INF/versions/17} に含まれる
+ * {@value #VECTOR_KERNEL_CLASS_NAME} を使用し、複数のピクセルをまとめて比較します。読み込めない場合はこのクラスを使用します。
+ */
+class PixelRowKernel {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PixelRowKernel.class);
+
+	/**
+	 * Vector APIを使用するカーネルのクラス名
+	 */
+	static final String VECTOR_KERNEL_CLASS_NAME = "com.htmlhifive.pitalium.image.util.VectorPixelRowKernel";
+
+	/**
+	 * RGBの各成分の差の二乗和の最大値
+	 */
+	static final int MAX_DISTANCE = 3 * 255 * 255;
+
+	private static final PixelRowKernel INSTANCE = load();
+
+	/**
+	 * コンストラクタ
+	 */
+	PixelRowKernel() {
+	}
+
+	/**
+	 * 実行環境で使用できるカーネルを取得します。
+	 *
+	 * @return カーネル
+	 */
+	static PixelRowKernel getInstance() {
+		return INSTANCE;
+	}
+
+	private static PixelRowKernel load() {
+		try {
+			Class<?> clazz = Class.forName(VECTOR_KERNEL_CLASS_NAME);
+			PixelRowKernel kernel = (PixelRowKernel) clazz.getDeclaredConstructor().newInstance();
+			LOG.debug("[PixelRowKernel] {} is enabled.", VECTOR_KERNEL_CLASS_NAME);
+			return kernel;
+		} catch (ClassNotFoundException e) {
+			// Java 8 など、multi-release JAR のクラスが参照されない環境
+			return new PixelRowKernel();
+		} catch (Exception e) {
+			LOG.debug("[PixelRowKernel] {} is disabled.", VECTOR_KERNEL_CLASS_NAME, e);
+			return new PixelRowKernel();
+		} catch (LinkageError e) {
+			// jdk.incubator.vector モジュールが有効でない環境
+			LOG.debug("[PixelRowKernel] {} is disabled.", VECTOR_KERNEL_CLASS_NAME, e);
+			return new PixelRowKernel();
+		}
+	}
+
+	/**
+	 * 閾値から、{@link #indexOfDistanceOver(int[], int, int[], int, int, int, int)}に渡す距離の上限を計算します。<br>
+	 * RGBの各成分の差の二乗和は整数のため、{@code distance > 3 * 255 * 255 * threshold * threshold}と
+	 * {@code distance > toDistanceLimit(threshold)}は同値です。
+	 *
+	 * @param threshold 閾値（0～1）
+	 * @return 距離の上限
+	 */
+	static int toDistanceLimit(double threshold) {
+		double limit = MAX_DISTANCE * threshold * threshold;
+		if (!(limit < MAX_DISTANCE)) {
+			// NaNも含め、どのピクセルも上限を超えない
+			return MAX_DISTANCE;
+		}
+		return (int) Math.floor(limit);
+	}
+
+	/**
+	 * fromから走査し、2つの行でピクセルの値（ARGB）が異なる最初の位置を取得します。<br>
+	 * 行のx番目のピクセルは、それぞれ{@code pixels1[offset1 + x]}、{@code pixels2[offset2 + x]}に格納されているものとします。
+	 *
+	 * @param pixels1 行1のピクセルを格納している配列
+	 * @param offset1 行1の先頭のインデックス
+	 * @param pixels2 行2のピクセルを格納している配列
+	 * @param offset2 行2の先頭のインデックス
+	 * @param from 走査を開始する位置（この位置を含む）
+	 * @param to 走査を終了する位置（この位置を含まない）
+	 * @return 値が異なる最初の位置。存在しない場合はto
+	 */
+	int indexOfMismatch(int[] pixels1, int offset1, int[] pixels2, int offset2, int from, int to) {
+		for (int x = from; x < to; x++) {
+			if (pixels1[offset1 + x] != pixels2[offset2 + x]) {
+				return x;
+			}
+		}
+		return to;
+	}
+
+	/**
+	 * fromから走査し、2つの行でRGBの各成分の差の二乗和がlimitを超える最初の位置を取得します。透明度は比較しません。<br>
+	 * 行のx番目のピクセルは、それぞれ{@code pixels1[offset1 + x]}、{@code pixels2[offset2 + x]}に格納されているものとします。
+	 *
+	 * @param pixels1 行1のピクセルを格納している配列
+	 * @param offset1 行1の先頭のインデックス
+	 * @param pixels2 行2のピクセルを格納している配列
+	 * @param offset2 行2の先頭のインデックス
+	 * @param from 走査を開始する位置（この位置を含む）
+	 * @param to 走査を終了する位置（この位置を含まない）
+	 * @param limit 二乗和の上限
+	 * @return 二乗和がlimitを超える最初の位置。存在しない場合はto
+	 */
+	int indexOfDistanceOver(int[] pixels1, int offset1, int[] pixels2, int offset2, int from, int to, int limit) {
+		for (int x = from; x < to; x++) {
+			int pixel1 = pixels1[offset1 + x];
+			int pixel2 = pixels2[offset2 + x];
+			if (pixel1 == pixel2) {
+				continue;
+			}
+
+			int r = ((pixel1 >> 16) & 0xFF) - ((pixel2 >> 16) & 0xFF);
+			int g = ((pixel1 >> 8) & 0xFF) - ((pixel2 >> 8) & 0xFF);
+			int b = (pixel1 & 0xFF) - (pixel2 & 0xFF);
+			if (r * r + g * g + b * b > limit) {
+				return x;
+			}
+		}
+		return to;
+	}
+
+}
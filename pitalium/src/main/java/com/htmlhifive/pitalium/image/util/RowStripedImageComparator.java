@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DiffMask;
+import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.VerdictImageComparedResult;
+
+/**
+ * 1行ずつピクセルを比較する画像比較の基底クラス。<br>
+ * 比較する画像は{@link PixelRegion}で参照し、可能な場合は行をコピーせずに画像の配列を直接比較します。<br>
+ * 並列度が2以上の場合は、画像を行単位の帯（ストライプ）に分割し、{@link ForkJoinPool#commonPool()}で並列に比較します。
+ * {@link DiffMask}は行毎に独立した領域に差異を記録するため、各ストライプの結果は行の順序を保ったまま1つのマスクにまとまります。<br>
+ * 合否のみを判定する場合は、{@link DefaultComparisonParameters#getDiffCountBudget()}個の差異が見つかった時点で比較を打ち切ります。
+ */
+abstract class RowStripedImageComparator extends ImageComparator<DefaultComparisonParameters> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RowStripedImageComparator.class);
+
+	/**
+	 * 1ストライプあたりの最小の行数。これより小さい画像は分割しません。
+	 */
+	static final int MIN_STRIPE_HEIGHT = 32;
+
+	private static final int[] EMPTY_INTERVALS = new int[0];
+
+	@Override
+	protected List<Point> compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return createDiffMask(image1, image2, offsetX, offsetY).toPointList();
+	}
+
+	@Override
+	protected DiffMask createDiffMask(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		LOG.trace("[Compare] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {})", image1.getWidth(),
+				image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
+		int width = Math.min(image1.getWidth(), image2.getWidth());
+		int height = Math.min(image1.getHeight(), image2.getHeight());
+
+		DiffMask diffMask = new DiffMask(offsetX, offsetY, width, height);
+		int diffCount = compareRows(image1, image2, offsetX, offsetY, null, null, diffMask, Integer.MAX_VALUE);
+		if (diffCount > 0) {
+			LOG.debug("[Compare] {} diff found.", diffCount);
+		}
+		return diffMask;
+	}
+
+	@Override
+	DiffMask createDiffMask(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			ExcludeIntervals excludes1, ExcludeIntervals excludes2) {
+		LOG.trace("[Compare] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {}), with excludes",
+				image1.getWidth(), image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
+		int width = Math.min(image1.getWidth(), image2.getWidth());
+		int height = Math.min(image1.getHeight(), image2.getHeight());
+
+		DiffMask diffMask = new DiffMask(offsetX, offsetY, width, height);
+		int diffCount = compareRows(image1, image2, offsetX, offsetY, excludes1, excludes2, diffMask,
+				Integer.MAX_VALUE);
+		if (diffCount > 0) {
+			LOG.debug("[Compare] {} diff found.", diffCount);
+		}
+		return diffMask;
+	}
+
+	@Override
+	protected ImageComparedResult verify(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY) {
+		return verify(image1, image2, offsetX, offsetY, null, null);
+	}
+
+	@Override
+	ImageComparedResult verify(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			ExcludeIntervals excludes1, ExcludeIntervals excludes2) {
+		LOG.trace("[Verify] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {})", image1.getWidth(),
+				image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
+		if (!createSizeDiffAreas(image1, image2, offsetX, offsetY).isEmpty()) {
+			LOG.debug("[Verify] Image size is different.");
+			return new VerdictImageComparedResult(false, 0);
+		}
+
+		int diffCountBudget = Math.max(parameters.getDiffCountBudget(), 1);
+		int diffCount = compareRows(image1, image2, offsetX, offsetY, excludes1, excludes2, null, diffCountBudget);
+		if (diffCount > 0) {
+			LOG.debug("[Verify] {} diff found.", diffCount);
+		}
+		return new VerdictImageComparedResult(diffCount == 0, diffCount);
+	}
+
+	/**
+	 * 先頭の行から1行ずつ比較し、比較した行の差異をすぐにsinkへ渡します。並列度の指定によらず、呼び出したスレッドで比較します。
+	 */
+	@Override
+	protected boolean compare(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY, DiffRunSink sink) {
+		LOG.trace("[Compare] image1[w: {}, h: {}], image2[w: {}, h: {}], offset: ({}, {}), streaming",
+				image1.getWidth(), image1.getHeight(), image2.getWidth(), image2.getHeight(), offsetX, offsetY);
+		int width = Math.min(image1.getWidth(), image2.getWidth());
+		int height = Math.min(image1.getHeight(), image2.getHeight());
+		RowComparison comparison = new RowComparison(new RowStripedImageComparator[] { this },
+				PixelRegion.of(image1), PixelRegion.of(image2), null, null, width, offsetX, offsetY,
+				new DiffMask[] { null }, Integer.MAX_VALUE, null);
+		return comparison.sendRows(height, sink);
+	}
+
+	/**
+	 * 1行分のピクセルを比較します。行のx番目のピクセルは、それぞれ{@code pixels1[offset1 + x]}、{@code pixels2[offset2 + x]}に格納されています。
+	 *
+	 * @param pixels1 画像１の行のピクセル（ARGB）を格納している配列
+	 * @param offset1 画像１の行の先頭のインデックス
+	 * @param pixels2 画像２の行のピクセル（ARGB）を格納している配列
+	 * @param offset2 画像２の行の先頭のインデックス
+	 * @param width 比較するピクセル数
+	 * @param offsetX 行の先頭のx座標（元画像の座標系）
+	 * @param y 行のy座標（元画像の座標系）
+	 * @param diffMask 差異を記録するマスク。合否のみを判定する場合はnull
+	 * @param maxDiffCount この数の差異が見つかった時点で比較を打ち切ります
+	 * @return 見つかった差異の数
+	 */
+	protected abstract int compareRow(int[] pixels1, int offset1, int[] pixels2, int offset2, int width, int offsetX,
+			int y, DiffMask diffMask, int maxDiffCount);
+
+	/**
+	 * {@link #compareRow(int[], int, int[], int, int, int, int, DiffMask, int)}が透明度を参照しないかどうかを取得します。<br>
+	 * trueの場合、{@link BufferedImage#TYPE_INT_RGB}の画像のピクセルも、上位8bitを補正せずに画像の配列から直接渡します。
+	 *
+	 * @return 透明度を参照しない場合true
+	 */
+	protected boolean isAlphaIgnored() {
+		return false;
+	}
+
+	/**
+	 * 2枚の画像の重なる範囲を行毎に比較します。
+	 *
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @param excludes1 画像１の除外領域。除外領域がない場合はnull
+	 * @param excludes2 画像２の除外領域。除外領域がない場合はnull
+	 * @param diffMask 差異を記録するマスク。合否のみを判定する場合はnull
+	 * @param diffCountBudget この数の差異が見つかった時点で比較を打ち切ります
+	 * @return 見つかった差異の数（diffCountBudget以下）
+	 */
+	private int compareRows(BufferedImage image1, BufferedImage image2, int offsetX, int offsetY,
+			ExcludeIntervals excludes1, ExcludeIntervals excludes2, DiffMask diffMask, int diffCountBudget) {
+		return compareRows(new RowStripedImageComparator[] { this }, image1, image2, offsetX, offsetY, excludes1,
+				excludes2, new DiffMask[] { diffMask }, diffCountBudget, parameters.getParallelism());
+	}
+
+	/**
+	 * 複数のComparatorで、2枚の画像の重なる範囲を行毎に比較します。<br>
+	 * 各行のピクセルは1度だけ読み込み、全てのComparatorで続けて比較します。
+	 *
+	 * @param comparators 比較に使用するComparator
+	 * @param image1 画像１
+	 * @param image2 画像２
+	 * @param offsetX 画像１の元画像からのX方向オフセット値
+	 * @param offsetY 画像１の元画像からのY方向オフセット値
+	 * @param excludes1 画像１の除外領域。除外領域がない場合はnull
+	 * @param excludes2 画像２の除外領域。除外領域がない場合はnull
+	 * @param diffMasks 各Comparatorが差異を記録するマスク。合否のみを判定する場合は要素がnull
+	 * @param diffCountBudget 全てのComparatorを合わせてこの数の差異が見つかった時点で比較を打ち切ります
+	 * @param parallelism 並列度
+	 * @return 見つかった差異の数（diffCountBudget以下）
+	 */
+	static int compareRows(RowStripedImageComparator[] comparators, BufferedImage image1, BufferedImage image2,
+			int offsetX, int offsetY, ExcludeIntervals excludes1, ExcludeIntervals excludes2, DiffMask[] diffMasks,
+			int diffCountBudget, int parallelism) {
+		return compareRows(comparators, image1, image2, offsetX, offsetY, excludes1, excludes2, diffMasks,
+				diffCountBudget, parallelism, null);
+	}
+
+	/**
+	 * 複数のComparatorで、2枚の画像の重なる範囲を行毎に比較し、同時に類似度の統計を集計します。<br>
+	 * 類似度の統計は、除外領域を考慮せずに読み込んだ各行のピクセルから集計します。全ての行を集計するため、diffCountBudgetには
+	 * {@link Integer#MAX_VALUE}を指定します。
+	 *
+	 * @param statistics 類似度の統計を集計するオブジェクト。集計しない場合はnull
+	 * @see #compareRows(RowStripedImageComparator[], BufferedImage, BufferedImage, int, int, ExcludeIntervals,
+	 *      ExcludeIntervals, DiffMask[], int, int)
+	 */
+	static int compareRows(RowStripedImageComparator[] comparators, BufferedImage image1, BufferedImage image2,
+			int offsetX, int offsetY, ExcludeIntervals excludes1, ExcludeIntervals excludes2, DiffMask[] diffMasks,
+			int diffCountBudget, int parallelism, SimilarityRowStatistics statistics) {
+		int width = Math.min(image1.getWidth(), image2.getWidth());
+		int height = Math.min(image1.getHeight(), image2.getHeight());
+		RowComparison comparison = new RowComparison(comparators, PixelRegion.of(image1), PixelRegion.of(image2),
+				excludes1, excludes2, width, offsetX, offsetY, diffMasks, diffCountBudget, statistics);
+
+		int stripeHeight = getStripeHeight(height, parallelism);
+		if (stripeHeight >= height) {
+			comparison.compareRows(0, height);
+		} else {
+			LOG.trace("[Compare] Split into stripes of {} rows.", stripeHeight);
+			ForkJoinPool.commonPool().invoke(new StripeTask(comparison, 0, height, stripeHeight));
+		}
+		return Math.min(comparison.diffCount.get(), diffCountBudget);
+	}
+
+	/**
+	 * 1ストライプあたりの行数を計算します。
+	 *
+	 * @param height 比較する行数
+	 * @param parallelism 並列度
+	 * @return 1ストライプあたりの行数。分割しない場合はheight以上の値
+	 */
+	private static int getStripeHeight(int height, int parallelism) {
+		if (parallelism <= 1 || height < MIN_STRIPE_HEIGHT * 2) {
+			return height;
+		}
+		return Math.max((height + parallelism - 1) / parallelism, MIN_STRIPE_HEIGHT);
+	}
+
+	/**
+	 * 1回の比較で全てのストライプが共有する状態。見つかった差異の数はストライプ間で共有し、上限に達した時点で全てのストライプが比較を打ち切ります。
+	 */
+	private static class RowComparison {
+
+		private final RowStripedImageComparator[] comparators;
+		private final PixelRegion region1;
+		private final PixelRegion region2;
+		private final ExcludeIntervals excludes1;
+		private final ExcludeIntervals excludes2;
+		private final int width;
+		private final int offsetX;
+		private final int offsetY;
+		private final DiffMask[] diffMasks;
+		private final int diffCountBudget;
+		private final AtomicInteger diffCount = new AtomicInteger();
+
+		/**
+		 * 類似度の統計を集計するオブジェクト。集計しない場合はnull
+		 */
+		private final SimilarityRowStatistics statistics;
+
+		/**
+		 * 画像の配列を直接比較するかどうか
+		 */
+		private final boolean direct;
+
+		/**
+		 * 片方の画像でのみ除外されているピクセルと比較する、マスクの色で埋めた行。除外領域がない場合はnull
+		 */
+		private final int[] maskRow;
+
+		RowComparison(RowStripedImageComparator[] comparators, PixelRegion region1, PixelRegion region2,
+				ExcludeIntervals excludes1, ExcludeIntervals excludes2, int width, int offsetX, int offsetY,
+				DiffMask[] diffMasks, int diffCountBudget, SimilarityRowStatistics statistics) {
+			this.comparators = comparators;
+			this.region1 = region1;
+			this.region2 = region2;
+			this.excludes1 = excludes1;
+			this.excludes2 = excludes2;
+			this.width = width;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.diffMasks = diffMasks;
+			this.diffCountBudget = diffCountBudget;
+			this.statistics = statistics;
+			boolean alphaIgnored = true;
+			for (RowStripedImageComparator comparator : comparators) {
+				alphaIgnored &= comparator.isAlphaIgnored();
+			}
+			this.direct = alphaIgnored && region1.isArrayBacked() && region2.isArrayBacked();
+			if (excludes1 != null || excludes2 != null) {
+				maskRow = new int[width];
+				Arrays.fill(maskRow, ExcludeIntervals.MASK_COLOR);
+			} else {
+				maskRow = null;
+			}
+		}
+
+		/**
+		 * 指定した範囲の行を比較します。
+		 *
+		 * @param startY 比較を開始する行（この行を含む）
+		 * @param endY 比較を終了する行（この行を含まない）
+		 */
+		void compareRows(int startY, int endY) {
+			int[] buffer1 = createBuffer(region1);
+			int[] buffer2 = createBuffer(region2);
+			SimilarityRowStatistics.Stripe stripe = statistics != null ? statistics.newStripe() : null;
+			for (int y = startY; y < endY; y++) {
+				int remaining = diffCountBudget - diffCount.get();
+				if (remaining <= 0) {
+					break;
+				}
+
+				int count = compareRowAt(y, buffer1, buffer2, diffMasks, remaining, stripe);
+				if (count > 0) {
+					diffCount.addAndGet(count);
+				}
+			}
+			if (stripe != null) {
+				statistics.merge(stripe);
+			}
+		}
+
+		/**
+		 * 先頭の行から順に比較し、行毎に見つかった差異をsinkへ渡します。比較中に保持するのは1行分のマスクのみです。
+		 *
+		 * @param height 比較する行数
+		 * @param sink 差異を受け取るsink
+		 * @return 最後まで比較した場合true、sinkが比較を打ち切った場合false
+		 */
+		boolean sendRows(int height, DiffRunSink sink) {
+			int[] buffer1 = createBuffer(region1);
+			int[] buffer2 = createBuffer(region2);
+			for (int y = 0; y < height; y++) {
+				DiffMask rowMask = new DiffMask(offsetX, y + offsetY, width, 1);
+				if (compareRowAt(y, buffer1, buffer2, new DiffMask[] { rowMask }, Integer.MAX_VALUE, null) > 0
+						&& !sendDiffRuns(rowMask, y + offsetY, sink)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * 行をコピーして比較する場合のバッファを生成します。
+		 *
+		 * @param region 画像の範囲
+		 * @return バッファ。画像の配列を直接比較する場合はnull
+		 */
+		private int[] createBuffer(PixelRegion region) {
+			return direct || region.hasAlpha ? null : new int[width];
+		}
+
+		/**
+		 * 指定した行を読み込んで各Comparatorで比較し、差異をそれぞれのマスクに記録します。
+		 *
+		 * @param y 行のy座標（比較する範囲の座標系）
+		 * @param buffer1 画像１の行をコピーするバッファ
+		 * @param buffer2 画像２の行をコピーするバッファ
+		 * @param masks 各Comparatorが差異を記録するマスク。合否のみを判定する場合は要素がnull
+		 * @param maxDiffCount この数の差異が見つかった時点で比較を打ち切ります
+		 * @param stripe 行を類似度の統計に加える場合はストライプの集計オブジェクト、加えない場合はnull
+		 * @return 見つかった差異の数
+		 */
+		private int compareRowAt(int y, int[] buffer1, int[] buffer2, DiffMask[] masks, int maxDiffCount,
+				SimilarityRowStatistics.Stripe stripe) {
+			int[] pixels1;
+			int[] pixels2;
+			int offset1;
+			int offset2;
+			if (direct) {
+				pixels1 = region1.data;
+				pixels2 = region2.data;
+				offset1 = region1.index(0, y);
+				offset2 = region2.index(0, y);
+			} else {
+				pixels1 = region1.getRow(0, y, width, buffer1);
+				pixels2 = region2.getRow(0, y, width, buffer2);
+				offset1 = region1.getRowOffset(0, y);
+				offset2 = region2.getRowOffset(0, y);
+			}
+			if (stripe != null) {
+				stripe.addRow(y, pixels1, offset1, pixels2, offset2);
+			}
+
+			int count = 0;
+			for (int i = 0; i < comparators.length && count < maxDiffCount; i++) {
+				if (maskRow == null) {
+					count += comparators[i].compareRow(pixels1, offset1, pixels2, offset2, width, offsetX, y
+							+ offsetY, masks[i], maxDiffCount - count);
+				} else {
+					count += compareRowExcluding(comparators[i], pixels1, offset1, pixels2, offset2, y, masks[i],
+							maxDiffCount - count);
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * 除外領域を考慮して1行分のピクセルを比較します。行を除外領域の境界で区切り、両方の画像で除外されている区間は読み飛ばします。
+		 * 片方の画像でのみ除外されている区間は、その画像のピクセルをマスクの色として比較します。
+		 */
+		private int compareRowExcluding(RowStripedImageComparator comparator, int[] pixels1, int offset1,
+				int[] pixels2, int offset2, int y, DiffMask mask, int maxDiffCount) {
+			int[] intervals1 = excludes1 != null ? excludes1.getRow(y) : EMPTY_INTERVALS;
+			int[] intervals2 = excludes2 != null ? excludes2.getRow(y) : EMPTY_INTERVALS;
+			if (intervals1.length == 0 && intervals2.length == 0) {
+				return comparator.compareRow(pixels1, offset1, pixels2, offset2, width, offsetX, y + offsetY, mask,
+						maxDiffCount);
+			}
+
+			int count = 0;
+			int i1 = 0;
+			int i2 = 0;
+			int x = 0;
+			while (x < width && count < maxDiffCount) {
+				// 現在位置より前で終わる区間を読み飛ばす
+				while (i1 < intervals1.length && intervals1[i1 + 1] <= x) {
+					i1 += 2;
+				}
+				while (i2 < intervals2.length && intervals2[i2 + 1] <= x) {
+					i2 += 2;
+				}
+				boolean excluded1 = i1 < intervals1.length && intervals1[i1] <= x;
+				boolean excluded2 = i2 < intervals2.length && intervals2[i2] <= x;
+				int next1 = i1 < intervals1.length ? intervals1[excluded1 ? i1 + 1 : i1] : width;
+				int next2 = i2 < intervals2.length ? intervals2[excluded2 ? i2 + 1 : i2] : width;
+				int end = Math.min(Math.min(next1, next2), width);
+
+				if (!excluded1 || !excluded2) {
+					count += comparator.compareRow(excluded1 ? maskRow : pixels1, excluded1 ? 0 : offset1 + x,
+							excluded2 ? maskRow : pixels2, excluded2 ? 0 : offset2 + x, end - x, offsetX + x, y
+									+ offsetY, mask, maxDiffCount - count);
+				}
+				x = end;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * 行の範囲を二分しながらストライプ単位で比較するタスク。
+	 */
+	private static class StripeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RowComparison comparison;
+		private final int startY;
+		private final int endY;
+		private final int stripeHeight;
+
+		StripeTask(RowComparison comparison, int startY, int endY, int stripeHeight) {
+			this.comparison = comparison;
+			this.startY = startY;
+			this.endY = endY;
+			this.stripeHeight = stripeHeight;
+		}
+
+		@Override
+		protected void compute() {
+			int stripes = (endY - startY + stripeHeight - 1) / stripeHeight;
+			if (stripes <= 1) {
+				comparison.compareRows(startY, endY);
+				return;
+			}
+
+			int middle = startY + (stripes / 2) * stripeHeight;
+			invokeAll(new StripeTask(comparison, startY, middle, stripeHeight), new StripeTask(comparison, middle,
+					endY, stripeHeight));
+		}
+	}
+
+}
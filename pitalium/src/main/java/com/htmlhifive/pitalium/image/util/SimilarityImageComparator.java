@@ -24,6 +24,7 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 import com.htmlhifive.pitalium.image.model.Offset;
@@ -70,7 +71,16 @@ class SimilarityImageComparator extends ImageComparator<SimilarityComparisonPara
 		Rectangle rect = new Rectangle(img1Area.x, img1Area.y, Math.min(img1Area.width, img2Area.width), Math.min(
 				img1Area.height, img2Area.height));
 		SimilarityUnit unit = SimilarityUtils.calcSimilarity(img2, img1, rect, new ComparedRectangleArea(rect), offset);
+		return createResult(unit);
+	}
 
+	/**
+	 * 類似度を閾値と比較し、比較結果を生成します。
+	 *
+	 * @param unit 類似度
+	 * @return 比較結果
+	 */
+	SimilarityImageComparedResult createResult(SimilarityUnit unit) {
 		boolean isSucceed = true;
 		if (parameters.getPixleByPixelThreshold() > unit.getSimilarityPixelByPixel()) {
 			isSucceed = false;
@@ -84,6 +94,17 @@ class SimilarityImageComparator extends ImageComparator<SimilarityComparisonPara
 		return new SimilarityImageComparedResult(isSucceed, unit);
 	}
 
+	/**
+	 * 類似度による比較は差異の位置を持たないため、差異を順に渡す比較には対応しません。
+	 *
+	 * @throws TestRuntimeException 常にスローします
+	 */
+	@Override
+	public boolean compare(BufferedImage img1, Rectangle img1Area, BufferedImage img2, Rectangle img2Area,
+			DiffRunSink sink) {
+		throw new TestRuntimeException("Similarity comparison does not report positions of differences.");
+	}
+
 	/**
 	 * 実数の小数点以下の桁数を2桁にする。3桁目以降は切り捨てる。
 	 *
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Color;
+
+import com.htmlhifive.pitalium.image.model.SimilarityUnit;
+
+/**
+ * Statistics for the similarity of two images at a fixed offset, accumulated row by row while
+ * {@link RowStripedImageComparator#compareRows} reads the rows for the threshold diffs.<br>
+ * The statistics are the same as those calculated by {@link SimilarityUtils#calcSimilarity} with a fixed offset: the
+ * sum of color distances and the numbers of different pixels for the pixel-by-pixel similarity, and the color sums of
+ * each grid for the feature matrix. Each stripe accumulates its rows in a {@link Stripe} and merges it at the end. The
+ * sum of color distances is kept for each row and added up in the order of rows, so the result does not depend on
+ * how the rows are split into stripes.
+ */
+final class SimilarityRowStatistics {
+
+	private static final int GRID_COUNT = SimilarityUtils.FeatureRow * SimilarityUtils.FeatureCol;
+
+	private final int width;
+	private final int height;
+	private final double thresholdNorm;
+	private final int gridWidth;
+	private final int gridHeight;
+
+	// sum of color distances of each row
+	private final double[] rowNorms;
+
+	// sums of red, green and blue of each grid : [(row * FeatureCol + col) * 3 + band]
+	private final long[] gridSums1 = new long[GRID_COUNT * 3];
+	private final long[] gridSums2 = new long[GRID_COUNT * 3];
+	private long thresDiffCount;
+	private long totalDiffCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width the width of compared area
+	 * @param height the height of compared area
+	 */
+	SimilarityRowStatistics(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.thresholdNorm = SimilarityUtils.getThresholdNorm();
+		this.gridWidth = width / SimilarityUtils.FeatureCol;
+		this.gridHeight = height / SimilarityUtils.FeatureRow;
+		this.rowNorms = new double[height];
+	}
+
+	/**
+	 * Create the accumulator for a stripe. It must be merged by {@link #merge(Stripe)} after all rows are added.
+	 *
+	 * @return the accumulator
+	 */
+	Stripe newStripe() {
+		return new Stripe();
+	}
+
+	/**
+	 * Merge the statistics of the stripe.
+	 *
+	 * @param stripe the accumulator of the stripe
+	 */
+	synchronized void merge(Stripe stripe) {
+		thresDiffCount += stripe.thresDiffCount;
+		totalDiffCount += stripe.totalDiffCount;
+		for (int i = 0; i < gridSums1.length; i++) {
+			gridSums1[i] += stripe.gridSums1[i];
+			gridSums2[i] += stripe.gridSums2[i];
+		}
+	}
+
+	/**
+	 * Calculate the similarity from the statistics of all rows. The values are the same as
+	 * {@link SimilarityUtils#calcSimilarity} with image2 as the expected image and image1 as the actual image.
+	 *
+	 * @param xOffset x-direction offset from image2 to image1
+	 * @param yOffset y-direction offset from image2 to image1
+	 * @return the similarity
+	 */
+	synchronized SimilarityUnit toSimilarityUnit(int xOffset, int yOffset) {
+		double norm = 0;
+		for (double rowNorm : rowNorms) {
+			norm += rowNorm;
+		}
+
+		double similarityFeatureMatrix = -1;
+		if (SimilarityUtils.checkFeatureSize(width, height)) {
+			int gridArea = gridWidth * gridHeight;
+			similarityFeatureMatrix = SimilarityUtils.calcSimilarityByFeatureDistance(SimilarityUtils
+					.calcFeatureDistance(toFeatureMatrix(gridSums2, gridArea), toFeatureMatrix(gridSums1, gridArea)));
+		}
+		return new SimilarityUnit(xOffset, yOffset, SimilarityUtils.calcSimilarityByNorm(norm, width, height),
+				similarityFeatureMatrix, SimilarityUtils.calcSimilarityByDiffCount((int) thresDiffCount, width,
+						height), SimilarityUtils.calcSimilarityByDiffCount((int) totalDiffCount, width, height));
+	}
+
+	private static Color[][] toFeatureMatrix(long[] gridSums, int gridArea) {
+		Color[][] feature = new Color[SimilarityUtils.FeatureRow][SimilarityUtils.FeatureCol];
+		for (int row = 0; row < SimilarityUtils.FeatureRow; row++) {
+			for (int col = 0; col < SimilarityUtils.FeatureCol; col++) {
+				int index = (row * SimilarityUtils.FeatureCol + col) * 3;
+				feature[row][col] = new Color((int) (gridSums[index] / gridArea),
+						(int) (gridSums[index + 1] / gridArea), (int) (gridSums[index + 2] / gridArea));
+			}
+		}
+		return feature;
+	}
+
+	/**
+	 * Accumulator of the rows compared in a stripe.
+	 */
+	final class Stripe {
+
+		private final long[] gridSums1 = new long[GRID_COUNT * 3];
+		private final long[] gridSums2 = new long[GRID_COUNT * 3];
+		private long thresDiffCount;
+		private long totalDiffCount;
+
+		/**
+		 * Add a row. The x-th pixels of the row are {@code pixels1[offset1 + x]} and {@code pixels2[offset2 + x]}, and
+		 * only RGB of them are used.
+		 *
+		 * @param y y-coordinate of the row in the compared area
+		 * @param pixels1 array containing the row of image1
+		 * @param offset1 index of the first pixel of image1
+		 * @param pixels2 array containing the row of image2
+		 * @param offset2 index of the first pixel of image2
+		 */
+		void addRow(int y, int[] pixels1, int offset1, int[] pixels2, int offset2) {
+			double[] sqrtTable = SimilarityUtils.SqrtTable.VALUES;
+			double norm = 0;
+			for (int x = 0; x < width; x++) {
+				int pixel1 = pixels1[offset1 + x];
+				int pixel2 = pixels2[offset2 + x];
+				int r = (pixel2 >> 16 & 0xFF) - (pixel1 >> 16 & 0xFF);
+				int g = (pixel2 >> 8 & 0xFF) - (pixel1 >> 8 & 0xFF);
+				int b = (pixel2 & 0xFF) - (pixel1 & 0xFF);
+				int squaredDiff = r * r + g * g + b * b;
+				norm += sqrtTable[squaredDiff];
+				if (squaredDiff > thresholdNorm) {
+					thresDiffCount++;
+				}
+				if (squaredDiff > 0) {
+					totalDiffCount++;
+				}
+			}
+			rowNorms[y] = norm;
+
+			int gridRow = gridHeight > 0 ? y / gridHeight : SimilarityUtils.FeatureRow;
+			if (gridRow >= SimilarityUtils.FeatureRow || gridWidth == 0) {
+				return;
+			}
+			for (int col = 0; col < SimilarityUtils.FeatureCol; col++) {
+				int index = (gridRow * SimilarityUtils.FeatureCol + col) * 3;
+				addGrid(gridSums1, index, pixels1, offset1 + col * gridWidth);
+				addGrid(gridSums2, index, pixels2, offset2 + col * gridWidth);
+			}
+		}
+
+		private void addGrid(long[] gridSums, int index, int[] pixels, int offset) {
+			long red = 0;
+			long green = 0;
+			long blue = 0;
+			for (int i = offset; i < offset + gridWidth; i++) {
+				int pixel = pixels[i];
+				red += pixel >> 16 & 0xFF;
+				green += pixel >> 8 & 0xFF;
+				blue += pixel & 0xFF;
+			}
+			gridSums[index] += red;
+			gridSums[index + 1] += green;
+			gridSums[index + 2] += blue;
+		}
+	}
+
+}
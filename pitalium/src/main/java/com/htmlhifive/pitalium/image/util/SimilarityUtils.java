@@ -18,6 +18,7 @@ package com.htmlhifive.pitalium.image.util;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.ComparisonParameterDefaults;
@@ -36,8 +37,8 @@ public class SimilarityUtils {
 	 * @param FeatureRow the row size of feature matrix
 	 * @param FeatureCol the column size of feature matrix
 	 */
-	private static final int FeatureRow = 5;
-	private static final int FeatureCol = 5;
+	static final int FeatureRow = 5;
+	static final int FeatureCol = 5;
 
 	/**
 	 * Constructor
@@ -75,9 +76,31 @@ public class SimilarityUtils {
 	 */
 	public static SimilarityUnit calcSimilarity(BufferedImage expectedImage, BufferedImage actualImage,
 			Rectangle rectangle, ComparedRectangleArea similarRectangle, Offset offset, double similarityFeatureMatrix) {
+		return calcSimilarity(expectedImage, actualImage, null, null, rectangle, similarRectangle, offset,
+				similarityFeatureMatrix);
+	}
+
+	/**
+	 * calculate similarity in the same way as
+	 * {@link #calcSimilarity(BufferedImage, BufferedImage, Rectangle, ComparedRectangleArea, Offset, double)}, but
+	 * the colors are read from the given planes of entire images, which are shared by every rectangle.
+	 *
+	 * @param expectedImage
+	 * @param actualImage
+	 * @param expectedPlanes planes of entire expectedImage, or null to read colors from expectedImage
+	 * @param actualPlanes planes of entire actualImage, or null to read colors from actualImage
+	 * @param rectangle
+	 * @param similarRectangle
+	 * @param offset
+	 * @param similarityFeatureMatrix
+	 */
+	static SimilarityUnit calcSimilarity(BufferedImage expectedImage, BufferedImage actualImage,
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle rectangle,
+			ComparedRectangleArea similarRectangle, Offset offset, double similarityFeatureMatrix) {
 
 		Offset featureOffset = offset;
-		SimilarityUnit similarityUnit = calcSimilarityPixelByPixel(expectedImage, actualImage, rectangle, offset);
+		SimilarityUnit similarityUnit = calcSimilarityPixelByPixel(expectedImage, actualImage, expectedPlanes,
+				actualPlanes, rectangle, offset);
 
 		/* calculate similarity using feature matrix. */
 		int comparedRectangleWidth = (int) rectangle.getWidth(), comparedRectangleHeight = (int) rectangle.getHeight();
@@ -85,8 +108,8 @@ public class SimilarityUtils {
 		// execute this only when comparedRectangleWidth >= FeatureCol && comparedRectangleHeight >= FeatureRow
 		if (similarityFeatureMatrix == -1
 				&& SimilarityUtils.checkFeatureSize(comparedRectangleWidth, comparedRectangleHeight)) {
-			similarityFeatureMatrix = calcSimilarityByFeatureMatrix(expectedImage, actualImage, rectangle,
-					featureOffset);
+			similarityFeatureMatrix = calcSimilarityByFeatureMatrix(expectedImage, actualImage, expectedPlanes,
+					actualPlanes, rectangle, featureOffset);
 		}
 		similarityUnit.setSimilarityFeatureMatrix(similarityFeatureMatrix);
 
@@ -143,37 +166,27 @@ public class SimilarityUtils {
 	 */
 	public static double calcSimilarityByFeatureMatrix(BufferedImage expectedImage, BufferedImage actualImage,
 			Rectangle rectangle, Offset offset) {
+		return calcSimilarityByFeatureMatrix(expectedImage, actualImage, null, null, rectangle, offset);
+	}
+
+	static double calcSimilarityByFeatureMatrix(BufferedImage expectedImage, BufferedImage actualImage,
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle rectangle, Offset offset) {
 
 		// set range to be checked
-		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, rectangle, offset);
+		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, expectedPlanes, actualPlanes,
+				rectangle, offset);
 
 		/* Calculate the feature matrix of actual sub-image. */
 
 		// the size of grid.
 		int GridWidth = prep.actualWidth / FeatureCol, GridHeight = prep.actualHeight / FeatureRow;
-		int GridArea = GridWidth * GridHeight;
 
-		Color[][] actualFeature = new Color[FeatureRow][FeatureCol];
-		for (int row = 0; row < FeatureRow; row++) {
-			for (int col = 0; col < FeatureCol; col++) {
+		Color[][] actualFeature = calcFeatureMatrix(prep.actualPlanes, GridWidth, GridHeight);
 
-				// Sum of Red, Green, and Blue.
-				int rSum = 0, gSum = 0, bSum = 0;
-
-				// Calculate the feature value actualFeature[row][col].
-				for (int i = 0; i < GridHeight; i++) {
-					for (int j = 0; j < GridWidth; j++) {
-						rSum += prep.actualRed[prep.actualWidth * (GridHeight * row + i) + (GridWidth * col + j)];
-						gSum += prep.actualGreen[prep.actualWidth * (GridHeight * row + i) + (GridWidth * col + j)];
-						bSum += prep.actualBlue[prep.actualWidth * (GridHeight * row + i) + (GridWidth * col + j)];
-					}
-				}
-
-				actualFeature[row][col] = new Color(rSum / GridArea, gSum / GridArea, bSum / GridArea);
-			}
-		}
-
-		Color[][] expectedFeature = new Color[FeatureRow][FeatureCol];
+		// summed-area tables of expected sub-image, so that the sum of each grid is calculated at each shift in O(1).
+		SummedAreaTable expectedRedTable = new SummedAreaTable(prep.expectedPlanes, prep.expectedPlanes.red);
+		SummedAreaTable expectedGreenTable = new SummedAreaTable(prep.expectedPlanes, prep.expectedPlanes.green);
+		SummedAreaTable expectedBlueTable = new SummedAreaTable(prep.expectedPlanes, prep.expectedPlanes.blue);
 
 		int bestX = 0, bestY = 0;
 		double dist = 0, min = -1;
@@ -182,27 +195,9 @@ public class SimilarityUtils {
 		for (int y = 0; y <= Math.max(0, prep.topMove + prep.downMove); y++) {
 			for (int x = 0; x <= Math.max(0, prep.leftMove + prep.rightMove); x++) {
 
-				// Calculate the distance between the expected feature matrix and the actual feature matrix shifhted (x, y).
-				for (int row = 0; row < FeatureRow; row++) {
-					for (int col = 0; col < FeatureCol; col++) {
-
-						// Sum of Red, Green, and Blue.
-						int rSum = 0, gSum = 0, bSum = 0;
-
-						// Calculate the feature value expectedFeature[row][col].
-						for (int i = 0; i < GridHeight; i++) {
-							for (int j = 0; j < GridWidth; j++) {
-								rSum += prep.expectedRed[prep.expectedWidth * (GridHeight * row + (y + i))
-										+ (GridWidth * col + (x + j))];
-								gSum += prep.expectedGreen[prep.expectedWidth * (GridHeight * row + (y + i))
-										+ (GridWidth * col + (x + j))];
-								bSum += prep.expectedBlue[prep.expectedWidth * (GridHeight * row + (y + i))
-										+ (GridWidth * col + (x + j))];
-							}
-						}
-						expectedFeature[row][col] = new Color(rSum / GridArea, gSum / GridArea, bSum / GridArea);
-					}
-				}
+				// Calculate the expected feature matrix shifted (x, y).
+				Color[][] expectedFeature = calcFeatureMatrix(expectedRedTable, expectedGreenTable, expectedBlueTable,
+						x, y, GridWidth, GridHeight);
 
 				// Calculate the feature distance at each shift (x, y).
 				dist = calcFeatureDistance(expectedFeature, actualFeature);
@@ -225,12 +220,7 @@ public class SimilarityUtils {
 			offset.setX(bestX);
 			offset.setY(bestY);
 		}
-		double similarity = 1 - min;
-
-		// floor similarity to 2 decimal places.
-		similarity = Math.floor(similarity * 100) / 100;
-
-		return similarity;
+		return calcSimilarityByFeatureDistance(min);
 	}
 
 	/**
@@ -245,63 +235,78 @@ public class SimilarityUtils {
 	 */
 	public static double calcSimilarityByFeatureMatrix(BufferedImage expectedImage, BufferedImage actualImage,
 			Rectangle expectedFrame, Rectangle actualFrame) {
+		return calcSimilarityByFeatureMatrix(expectedImage, actualImage, null, null, expectedFrame, actualFrame);
+	}
+
+	static double calcSimilarityByFeatureMatrix(BufferedImage expectedImage, BufferedImage actualImage,
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle expectedFrame, Rectangle actualFrame) {
 
 		/* Calculate the feature matrix. */
-		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, expectedFrame, actualFrame);
+		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, expectedPlanes, actualPlanes,
+				expectedFrame, actualFrame);
 
 		// initialize the size of grid.
-		int expectedGridWidth = prep.expectedWidth / FeatureCol, expectedGridHeight = prep.expectedHeight / FeatureRow, expectedGridArea = expectedGridWidth
-			* expectedGridHeight, actualGridWidth = prep.actualWidth / FeatureCol, actualGridHeight = prep.actualHeight
-			/ FeatureRow, actualGridArea = actualGridWidth * actualGridHeight;
-		int rSum, gSum, bSum; // Sum of Red, Green, and Blue.
-
-		Color[][] expectedFeature = new Color[FeatureRow][FeatureCol];
-		Color[][] actualFeature = new Color[FeatureRow][FeatureCol];
-		for (int row = 0; row < FeatureRow; row++) {
-			for (int col = 0; col < FeatureCol; col++) {
+		int expectedGridWidth = prep.expectedWidth / FeatureCol, expectedGridHeight = prep.expectedHeight / FeatureRow;
+		int actualGridWidth = prep.actualWidth / FeatureCol, actualGridHeight = prep.actualHeight / FeatureRow;
 
-				// Calculate the feature value expectedFeature[row][col].
-				rSum = 0;
-				gSum = 0;
-				bSum = 0;
-				for (int i = 0; i < expectedGridHeight; i++) {
-					for (int j = 0; j < expectedGridWidth; j++) {
-						rSum += prep.expectedRed[prep.expectedWidth * (expectedGridHeight * row + i)
-								+ (expectedGridWidth * col + j)];
-						gSum += prep.expectedGreen[prep.expectedWidth * (expectedGridHeight * row + i)
-								+ (expectedGridWidth * col + j)];
-						bSum += prep.expectedBlue[prep.expectedWidth * (expectedGridHeight * row + i)
-								+ (expectedGridWidth * col + j)];
-					}
-				}
-				expectedFeature[row][col] = new Color(rSum / expectedGridArea, gSum / expectedGridArea, bSum
-					/ expectedGridArea);
-
-				// Calculate the feature value actualFeature[row][col].
-				rSum = 0;
-				gSum = 0;
-				bSum = 0;
-				for (int i = 0; i < actualGridHeight; i++) {
-					for (int j = 0; j < actualGridWidth; j++) {
-						rSum += prep.actualRed[prep.actualWidth * (actualGridHeight * row + i)
-								+ (actualGridWidth * col + j)];
-						gSum += prep.actualGreen[prep.actualWidth * (actualGridHeight * row + i)
-								+ (actualGridWidth * col + j)];
-						bSum += prep.actualBlue[prep.actualWidth * (actualGridHeight * row + i)
-								+ (actualGridWidth * col + j)];
-					}
-				}
+		Color[][] expectedFeature = calcFeatureMatrix(prep.expectedPlanes, expectedGridWidth, expectedGridHeight);
+		Color[][] actualFeature = calcFeatureMatrix(prep.actualPlanes, actualGridWidth, actualGridHeight);
 
-				actualFeature[row][col] = new Color(rSum / actualGridArea, gSum / actualGridArea, bSum / actualGridArea);
-			}
-		}
+		return calcSimilarityByFeatureDistance(calcFeatureDistance(expectedFeature, actualFeature));
+	}
 
-		double similarity = 1 - calcFeatureDistance(expectedFeature, actualFeature);
+	/**
+	 * Convert the distance of feature matrices to the similarity, and floor it to 2 decimal places.
+	 *
+	 * @param distance the distance calculated by {@link #calcFeatureDistance(Color[][], Color[][])}
+	 * @return the 'feature' similarity
+	 */
+	static double calcSimilarityByFeatureDistance(double distance) {
+		double similarity = 1 - distance;
+		return Math.floor(similarity * 100) / 100;
+	}
 
-		// floor similarity to 2 decimal places.
-		similarity = Math.floor(similarity * 100) / 100;
+	/**
+	 * Calculate the feature matrix whose top-left grid is at (0, 0) of the given color planes.
+	 *
+	 * @param planes color planes
+	 * @param gridWidth the width of each grid
+	 * @param gridHeight the height of each grid
+	 * @return the feature matrix
+	 */
+	private static Color[][] calcFeatureMatrix(PixelPlanes planes, int gridWidth, int gridHeight) {
+		return calcFeatureMatrix(new SummedAreaTable(planes, planes.red), new SummedAreaTable(planes, planes.green),
+				new SummedAreaTable(planes, planes.blue), 0, 0, gridWidth, gridHeight);
+	}
 
-		return similarity;
+	/**
+	 * Calculate the feature matrix whose top-left grid is at (x, y). Each element is the average color of the grid,
+	 * and the sum of the grid is obtained from the summed-area tables.
+	 *
+	 * @param red summed-area table of red plane
+	 * @param green summed-area table of green plane
+	 * @param blue summed-area table of blue plane
+	 * @param x x-coordinate of the top-left grid
+	 * @param y y-coordinate of the top-left grid
+	 * @param gridWidth the width of each grid
+	 * @param gridHeight the height of each grid
+	 * @return the feature matrix
+	 */
+	private static Color[][] calcFeatureMatrix(SummedAreaTable red, SummedAreaTable green, SummedAreaTable blue,
+			int x, int y, int gridWidth, int gridHeight) {
+		int gridArea = gridWidth * gridHeight;
+		Color[][] feature = new Color[FeatureRow][FeatureCol];
+		for (int row = 0; row < FeatureRow; row++) {
+			for (int col = 0; col < FeatureCol; col++) {
+				int gridX = x + gridWidth * col;
+				int gridY = y + gridHeight * row;
+				int rSum = red.sum(gridX, gridY, gridWidth, gridHeight);
+				int gSum = green.sum(gridX, gridY, gridWidth, gridHeight);
+				int bSum = blue.sum(gridX, gridY, gridWidth, gridHeight);
+				feature[row][col] = new Color(rSum / gridArea, gSum / gridArea, bSum / gridArea);
+			}
+		}
+		return feature;
 	}
 
 	/**
@@ -318,9 +323,15 @@ public class SimilarityUtils {
 	 */
 	public static SimilarityUnit calcSimilarityPixelByPixel(BufferedImage expectedImage, BufferedImage actualImage,
 			Rectangle rectangle, Offset offset) {
+		return calcSimilarityPixelByPixel(expectedImage, actualImage, null, null, rectangle, offset);
+	}
+
+	static SimilarityUnit calcSimilarityPixelByPixel(BufferedImage expectedImage, BufferedImage actualImage,
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle rectangle, Offset offset) {
 
 		// set range to be checked
-		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, rectangle, offset);
+		CalcSimilarityPrep prep = prepareCalcSimilarity(expectedImage, actualImage, expectedPlanes, actualPlanes,
+				rectangle, offset);
 
 		// the difference of Red, Green, and Blue, respectively.
 		int r, g, b, bestX = 0, bestY = 0;
@@ -330,64 +341,75 @@ public class SimilarityUtils {
 		int totalDiffCount, totalDiffMin = -1; // difference from 0
 		double similarityThresDiff, similarityTotalDiff;
 		double norm = 0, min = -1;
-		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
+		double thresholdNorm = getThresholdNorm();
+		double[] sqrtTable = SqrtTable.VALUES;
+		byte[] expectedRed = prep.expectedPlanes.red, expectedGreen = prep.expectedPlanes.green;
+		byte[] expectedBlue = prep.expectedPlanes.blue;
+		byte[] actualRed = prep.actualPlanes.red, actualGreen = prep.actualPlanes.green;
+		byte[] actualBlue = prep.actualPlanes.blue;
+
+		// Visit the shifts in the order of coarse similarity, so that the best match is found early.
+		int shiftWidth = Math.max(0, prep.leftMove + prep.rightMove) + 1;
+		int shiftHeight = Math.max(0, prep.topMove + prep.downMove) + 1;
+		int bestShift = -1;
 
 		// Find the best match moving sub-image.
-		for (int y = 0; y <= Math.max(0, prep.topMove + prep.downMove); y++) {
-			for (int x = 0; x <= Math.max(0, prep.leftMove + prep.rightMove); x++) {
-
-				// Calculate the similarity on the (x, y)-shifted sub-image of expectedImage.
-				thresDiffCount = 0;
-				totalDiffCount = 0;
-				norm = 0;
-				for (int i = 0; i < prep.actualHeight; i++) {
-					for (int j = 0; j < prep.actualWidth; j++) {
-						r = prep.expectedRed[prep.expectedWidth * (i + y) + (j + x)]
-								- prep.actualRed[prep.actualWidth * i + j];
-						g = prep.expectedGreen[prep.expectedWidth * (i + y) + (j + x)]
-								- prep.actualGreen[prep.actualWidth * i + j];
-						b = prep.expectedBlue[prep.expectedWidth * (i + y) + (j + x)]
-								- prep.actualBlue[prep.actualWidth * i + j];
-						norm += Math.sqrt(r * r + g * g + b * b);
-						if (r * r + g * g + b * b > 3 * 255 * 255 * diffThreshold * diffThreshold)
-							thresDiffCount++;
-						if (r * r + g * g + b * b > 0)
-							totalDiffCount++;
-					}
+		for (int shift : orderShiftsByCoarseScore(prep, shiftWidth, shiftHeight)) {
+			int x = shift % shiftWidth;
+			int y = shift / shiftWidth;
+
+			// Calculate the similarity on the (x, y)-shifted sub-image of expectedImage.
+			thresDiffCount = 0;
+			totalDiffCount = 0;
+			norm = 0;
+			boolean abandoned = false;
+			for (int i = 0; i < prep.actualHeight; i++) {
+				int expectedIndex = prep.expectedPlanes.index(x, i + y);
+				int actualIndex = prep.actualPlanes.index(0, i);
+				for (int j = 0; j < prep.actualWidth; j++) {
+					r = (expectedRed[expectedIndex + j] & 0xFF) - (actualRed[actualIndex + j] & 0xFF);
+					g = (expectedGreen[expectedIndex + j] & 0xFF) - (actualGreen[actualIndex + j] & 0xFF);
+					b = (expectedBlue[expectedIndex + j] & 0xFF) - (actualBlue[actualIndex + j] & 0xFF);
+					int squaredDiff = r * r + g * g + b * b;
+					norm += sqrtTable[squaredDiff];
+					if (squaredDiff > thresholdNorm)
+						thresDiffCount++;
+					if (squaredDiff > 0)
+						totalDiffCount++;
 				}
 
-				// Find the minimal difference.
-				if (norm < min || min == -1) {
-					min = norm;
-					// offset (from expected to actual) of best match
-					bestX = prep.leftMove - x;
-					bestY = prep.topMove - y;
-				}
-
-				// Find the minimal number of total different pixels.
-				if (totalDiffCount < totalDiffMin || totalDiffMin == -1) {
-					totalDiffMin = totalDiffCount;
-				}
-
-				// Find the minimal number of threshold different pixels.
-				if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
-					thresDiffMin = thresDiffCount;
+				// The norm and the counts never decrease, so this shift cannot update any minimum any more.
+				if (min != -1 && norm > min && thresDiffCount >= thresDiffMin && totalDiffCount >= totalDiffMin) {
+					abandoned = true;
+					break;
 				}
 			}
-		}
-		double similarity;
+			if (abandoned) {
+				continue;
+			}
 
-		// normalize and calculate average.
-		similarity = 1 - min / (Math.sqrt(3) * 255 * prep.actualWidth * prep.actualHeight);
+			// Find the minimal difference. If there are the same differences, the first one in raster order is used.
+			if (norm < min || min == -1 || (norm == min && shift < bestShift)) {
+				min = norm;
+				bestShift = shift;
+				// offset (from expected to actual) of best match
+				bestX = prep.leftMove - x;
+				bestY = prep.topMove - y;
+			}
 
-		// normalize the number of different pixels.
-		similarityThresDiff = 1 - (double) thresDiffMin / (prep.actualWidth * prep.actualHeight);
-		similarityTotalDiff = 1 - (double) totalDiffMin / (prep.actualWidth * prep.actualHeight);
+			// Find the minimal number of total different pixels.
+			if (totalDiffCount < totalDiffMin || totalDiffMin == -1) {
+				totalDiffMin = totalDiffCount;
+			}
 
-		// floor similarities to 2 decimal place.
-		similarity = Math.floor(similarity * 100) / 100;
-		similarityThresDiff = Math.floor(similarityThresDiff * 100) / 100;
-		similarityTotalDiff = Math.floor(similarityTotalDiff * 100) / 100;
+			// Find the minimal number of threshold different pixels.
+			if (thresDiffCount < thresDiffMin || thresDiffMin == -1) {
+				thresDiffMin = thresDiffCount;
+			}
+		}
+		double similarity = calcSimilarityByNorm(min, prep.actualWidth, prep.actualHeight);
+		similarityThresDiff = calcSimilarityByDiffCount(thresDiffMin, prep.actualWidth, prep.actualHeight);
+		similarityTotalDiff = calcSimilarityByDiffCount(totalDiffMin, prep.actualWidth, prep.actualHeight);
 
 		if (offset == null) {
 			offset = new Offset(0, 0);
@@ -400,8 +422,155 @@ public class SimilarityUtils {
 		return new SimilarityUnit(offset.getX(), offset.getY(), similarity, 0, similarityThresDiff, similarityTotalDiff);
 	}
 
+	/**
+	 * Get the squared color distance over which a pixel is counted as a threshold different pixel.
+	 *
+	 * @return 3 * 255 * 255 * diffThreshold^2
+	 */
+	static double getThresholdNorm() {
+		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
+		return 3 * 255 * 255 * diffThreshold * diffThreshold;
+	}
+
+	/**
+	 * Normalize the sum of color distances of each pixel, and floor it to 2 decimal places.
+	 *
+	 * @param norm the sum of color distances
+	 * @param width the width of compared area
+	 * @param height the height of compared area
+	 * @return the pixel-by-pixel similarity
+	 */
+	static double calcSimilarityByNorm(double norm, int width, int height) {
+		double similarity = 1 - norm / (Math.sqrt(3) * 255 * width * height);
+		return Math.floor(similarity * 100) / 100;
+	}
+
+	/**
+	 * Normalize the number of different pixels, and floor it to 2 decimal places.
+	 *
+	 * @param diffCount the number of different pixels
+	 * @param width the width of compared area
+	 * @param height the height of compared area
+	 * @return the similarity by the number of different pixels
+	 */
+	static double calcSimilarityByDiffCount(int diffCount, int width, int height) {
+		double similarity = 1 - (double) diffCount / (width * height);
+		return Math.floor(similarity * 100) / 100;
+	}
+
+	/**
+	 * Order the shifts (y * shiftWidth + x) by the difference calculated on the downsampled images. The order is only
+	 * used to find the best match early, and all shifts are still checked at full resolution.
+	 *
+	 * @param prep prepared color arrays
+	 * @param shiftWidth the number of shifts in x direction
+	 * @param shiftHeight the number of shifts in y direction
+	 * @return the shifts ordered by the coarse difference. Shifts of the same difference are in raster order.
+	 */
+	private static int[] orderShiftsByCoarseScore(CalcSimilarityPrep prep, int shiftWidth, int shiftHeight) {
+		int shiftCount = shiftWidth * shiftHeight;
+		int[] order = new int[shiftCount];
+		for (int i = 0; i < shiftCount; i++) {
+			order[i] = i;
+		}
+		if (shiftCount == 1) {
+			return order;
+		}
+
+		// use 1/4 images if the area is large enough, otherwise 1/2 images
+		int factor = prep.actualWidth >= 32 && prep.actualHeight >= 32 ? 4 : 2;
+		int coarseActualWidth = prep.actualWidth / factor, coarseActualHeight = prep.actualHeight / factor;
+		int coarseExpectedWidth = prep.expectedWidth / factor, coarseExpectedHeight = prep.expectedHeight / factor;
+		int maxCoarseX = coarseExpectedWidth - coarseActualWidth, maxCoarseY = coarseExpectedHeight - coarseActualHeight;
+		if (coarseActualWidth == 0 || coarseActualHeight == 0 || maxCoarseX < 0 || maxCoarseY < 0) {
+			return order;
+		}
+
+		int[] expectedPyramid = downsample(prep.expectedPlanes, coarseExpectedWidth, coarseExpectedHeight, factor);
+		int[] actualPyramid = downsample(prep.actualPlanes, coarseActualWidth, coarseActualHeight, factor);
+
+		long[] coarseScores = new long[(maxCoarseX + 1) * (maxCoarseY + 1)];
+		Arrays.fill(coarseScores, -1);
+		long[] keys = new long[shiftCount];
+		for (int shift = 0; shift < shiftCount; shift++) {
+			int coarseX = Math.min((shift % shiftWidth + factor / 2) / factor, maxCoarseX);
+			int coarseY = Math.min((shift / shiftWidth + factor / 2) / factor, maxCoarseY);
+			int cell = coarseY * (maxCoarseX + 1) + coarseX;
+			if (coarseScores[cell] < 0) {
+				coarseScores[cell] = calcCoarseScore(expectedPyramid, coarseExpectedWidth, actualPyramid,
+						coarseActualWidth, coarseActualHeight, coarseX, coarseY);
+			}
+			keys[shift] = coarseScores[cell] * shiftCount + shift;
+		}
+
+		Arrays.sort(keys);
+		for (int i = 0; i < shiftCount; i++) {
+			order[i] = (int) (keys[i] % shiftCount);
+		}
+		return order;
+	}
+
+	/**
+	 * Downsample color planes by averaging factor * factor pixels.
+	 *
+	 * @return downsampled colors, which contain red, green and blue values in this order
+	 */
+	private static int[] downsample(PixelPlanes planes, int coarseWidth, int coarseHeight, int factor) {
+		int[] pyramid = new int[coarseWidth * coarseHeight * 3];
+		int area = factor * factor;
+		for (int cy = 0; cy < coarseHeight; cy++) {
+			for (int cx = 0; cx < coarseWidth; cx++) {
+				int rSum = 0, gSum = 0, bSum = 0;
+				for (int i = cy * factor; i < (cy + 1) * factor; i++) {
+					for (int j = cx * factor; j < (cx + 1) * factor; j++) {
+						int index = planes.index(j, i);
+						rSum += planes.red[index] & 0xFF;
+						gSum += planes.green[index] & 0xFF;
+						bSum += planes.blue[index] & 0xFF;
+					}
+				}
+				int index = (coarseWidth * cy + cx) * 3;
+				pyramid[index] = rSum / area;
+				pyramid[index + 1] = gSum / area;
+				pyramid[index + 2] = bSum / area;
+			}
+		}
+		return pyramid;
+	}
+
+	/**
+	 * Calculate the sum of squared differences between downsampled images at the given shift.
+	 */
+	private static long calcCoarseScore(int[] expectedPyramid, int expectedWidth, int[] actualPyramid,
+			int actualWidth, int actualHeight, int shiftX, int shiftY) {
+		long score = 0;
+		for (int i = 0; i < actualHeight; i++) {
+			int expectedIndex = (expectedWidth * (i + shiftY) + shiftX) * 3;
+			int actualIndex = actualWidth * i * 3;
+			for (int j = 0; j < actualWidth * 3; j++) {
+				int d = expectedPyramid[expectedIndex + j] - actualPyramid[actualIndex + j];
+				score += d * d;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Lookup table of square roots of squared color differences, which are between 0 and 3 * 255 * 255.
+	 */
+	static class SqrtTable {
+
+		static final double[] VALUES = new double[3 * 255 * 255 + 1];
+
+		static {
+			for (int i = 0; i < VALUES.length; i++) {
+				VALUES[i] = Math.sqrt(i);
+			}
+		}
+	}
+
 	private static CalcSimilarityPrep prepareCalcSimilarity(BufferedImage expectedImage, BufferedImage actualImage,
-			Rectangle rectangle, Offset offset) {
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle rectangle, Offset offset) {
 		// set range to be checked
 		int minWidth = Math.min(expectedImage.getWidth(), actualImage.getWidth());
 		int minHeight = Math.min(expectedImage.getHeight(), actualImage.getHeight());
@@ -429,55 +598,53 @@ public class SimilarityUtils {
 		Rectangle entireFrame = new Rectangle(expectedX, expectedY, expectedWidth, expectedHeight);
 
 		CalcSimilarityPrep prep = new CalcSimilarityPrep(expectedWidth, expectedHeight, actualWidth, actualHeight,
-				maxMove, rightMove, leftMove, downMove, topMove, null, null, null, null, null, null);
+				maxMove, rightMove, leftMove, downMove, topMove, null, null);
 
-		return prepareCalcSimilarity(expectedImage, actualImage, entireFrame, rectangle, prep);
+		return prepareCalcSimilarity(expectedImage, actualImage, expectedPlanes, actualPlanes, entireFrame, rectangle,
+				prep);
 	}
 
 	private static CalcSimilarityPrep prepareCalcSimilarity(BufferedImage expectedImage, BufferedImage actualImage,
-			Rectangle expectedFrame, Rectangle actualFrame) {
-		return prepareCalcSimilarity(expectedImage, actualImage, expectedFrame, actualFrame, new CalcSimilarityPrep());
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle expectedFrame, Rectangle actualFrame) {
+		return prepareCalcSimilarity(expectedImage, actualImage, expectedPlanes, actualPlanes, expectedFrame,
+				actualFrame, new CalcSimilarityPrep());
 	}
 
 	private static CalcSimilarityPrep prepareCalcSimilarity(BufferedImage expectedImage, BufferedImage actualImage,
-			Rectangle expectedFrame, Rectangle actualFrame, CalcSimilarityPrep prep) {
+			PixelPlanes expectedPlanes, PixelPlanes actualPlanes, Rectangle expectedFrame, Rectangle actualFrame,
+			CalcSimilarityPrep prep) {
 
 		int expectedWidth = (int) expectedFrame.getWidth(), expectedHeight = (int) expectedFrame.getHeight(), actualWidth = (int) actualFrame
 			.getWidth(), actualHeight = (int) actualFrame.getHeight();
-		BufferedImage expectedSubImage = ImageUtils.getSubImage(expectedImage, expectedFrame);
-		BufferedImage actualSubImage = ImageUtils.getSubImage(actualImage, actualFrame);
-
-		// initialize the color array.
-		int[] expectedColors = new int[expectedWidth * expectedHeight];
-		int[] actualColors = new int[actualWidth * actualHeight];
-
-		expectedSubImage.getRGB(0, 0, expectedWidth, expectedHeight, expectedColors, 0, expectedWidth);
-		actualSubImage.getRGB(0, 0, actualWidth, actualHeight, actualColors, 0, actualWidth);
-
-		int[] expectedRed = new int[expectedColors.length];
-		int[] expectedGreen = new int[expectedColors.length];
-		int[] expectedBlue = new int[expectedColors.length];
-		int[] actualRed = new int[actualColors.length];
-		int[] actualGreen = new int[actualColors.length];
-		int[] actualBlue = new int[actualColors.length];
-
-		for (int i = 0; i < expectedColors.length; i++) {
-			Color expectedColor = new Color(expectedColors[i]);
-			expectedRed[i] = expectedColor.getRed();
-			expectedGreen[i] = expectedColor.getGreen();
-			expectedBlue[i] = expectedColor.getBlue();
-		}
+		PixelPlanes expectedSubPlanes = getSubPlanes(expectedImage, expectedPlanes, expectedFrame);
+		PixelPlanes actualSubPlanes = getSubPlanes(actualImage, actualPlanes, actualFrame);
 
-		for (int i = 0; i < actualColors.length; i++) {
-			Color actualColor = new Color(actualColors[i]);
-			actualRed[i] = actualColor.getRed();
-			actualGreen[i] = actualColor.getGreen();
-			actualBlue[i] = actualColor.getBlue();
+		return new CalcSimilarityPrep(expectedWidth, expectedHeight, actualWidth, actualHeight, prep.maxMove,
+				prep.rightMove, prep.leftMove, prep.downMove, prep.topMove, actualSubPlanes, expectedSubPlanes);
+	}
+
+	/**
+	 * Get the color planes of the given frame. The frame is reshaped in the same way as
+	 * {@link ImageUtils#getSubImage(BufferedImage, Rectangle)}, and the planes of the original size are taken from its
+	 * top-left.
+	 *
+	 * @param image the image
+	 * @param planes planes of entire image. If null, the planes of the frame are read from the image.
+	 * @param frame the frame to be extracted
+	 * @return the planes of the frame
+	 */
+	private static PixelPlanes getSubPlanes(BufferedImage image, PixelPlanes planes, Rectangle frame) {
+		int width = (int) frame.getWidth(), height = (int) frame.getHeight();
+		ImageUtils.reshapeRect(frame, image.getWidth(), image.getHeight());
+		if (width > frame.getWidth() || height > frame.getHeight()) {
+			throw new IndexOutOfBoundsException("The frame is out of the image: " + frame);
 		}
 
-		return new CalcSimilarityPrep(expectedWidth, expectedHeight, actualWidth, actualHeight, prep.maxMove,
-				prep.rightMove, prep.leftMove, prep.downMove, prep.topMove, actualBlue, actualGreen, actualRed,
-				expectedBlue, expectedGreen, expectedRed);
+		int x = (int) frame.getX(), y = (int) frame.getY();
+		if (planes == null) {
+			return PixelPlanes.of(image, new Rectangle(x, y, width, height));
+		}
+		return planes.subPlanes(x, y, width, height);
 	}
 
 	/**
@@ -494,20 +661,16 @@ public class SimilarityUtils {
 		public int leftMove;
 		public int downMove;
 		public int topMove;
-		public int[] actualBlue;
-		public int[] actualGreen;
-		public int[] actualRed;
-		public int[] expectedBlue;
-		public int[] expectedGreen;
-		public int[] expectedRed;
+		public PixelPlanes actualPlanes;
+		public PixelPlanes expectedPlanes;
 
 		public CalcSimilarityPrep() {
 			super();
 		}
 
 		public CalcSimilarityPrep(int expectedWidth, int expectedHeight, int actualWidth, int actualHeight,
-			int maxMove, int rightMove, int leftMove, int downMove, int topMove, int[] actualBlue,
-			int[] actualGreen, int[] actualRed, int[] expectedBlue, int[] expectedGreen, int[] expectedRed) {
+			int maxMove, int rightMove, int leftMove, int downMove, int topMove, PixelPlanes actualPlanes,
+			PixelPlanes expectedPlanes) {
 			this.expectedWidth = expectedWidth;
 			this.expectedHeight = expectedHeight;
 			this.actualWidth = actualWidth;
@@ -517,12 +680,8 @@ public class SimilarityUtils {
 			this.leftMove = leftMove;
 			this.downMove = downMove;
 			this.topMove = topMove;
-			this.actualBlue = actualBlue;
-			this.actualGreen = actualGreen;
-			this.actualRed = actualRed;
-			this.expectedBlue = expectedBlue;
-			this.expectedGreen = expectedGreen;
-			this.expectedRed = expectedRed;
+			this.actualPlanes = actualPlanes;
+			this.expectedPlanes = expectedPlanes;
 		}
 	}
 }
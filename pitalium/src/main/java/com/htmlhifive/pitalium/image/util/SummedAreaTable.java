@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+/**
+ * 2次元の値の累積和（Summed-area table）を保持し、任意の矩形範囲の値の合計をO(1)で求めるクラス。<br>
+ * 累積和はintで保持します。範囲全体の合計がintの範囲を超えてオーバーフローしても、求める矩形範囲の合計がintの範囲に収まる限り、
+ * 2の補数演算により正しい値が得られます。
+ */
+final class SummedAreaTable {
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * (0, 0)から(x - 1, y - 1)までの値の合計をsums[y * (width + 1) + x]に保持します。
+	 */
+	private final int[] sums;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param values 値の配列。(x, y)の値をvalues[y * width + x]に格納します。
+	 * @param width 幅
+	 * @param height 高さ
+	 */
+	SummedAreaTable(int[] values, int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		int stride = width + 1;
+		sums = new int[stride * (height + 1)];
+		for (int y = 0; y < height; y++) {
+			int rowSum = 0;
+			int index = (y + 1) * stride + 1;
+			for (int x = 0; x < width; x++, index++) {
+				rowSum += values[y * width + x];
+				sums[index] = sums[index - stride] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * {@link PixelPlanes}の1つの色成分から累積和を生成します。
+	 *
+	 * @param planes プレーン
+	 * @param values planesが保持する色成分の配列
+	 */
+	SummedAreaTable(PixelPlanes planes, byte[] values) {
+		this.width = planes.width;
+		this.height = planes.height;
+
+		int stride = width + 1;
+		sums = new int[stride * (height + 1)];
+		for (int y = 0; y < height; y++) {
+			int rowSum = 0;
+			int index = (y + 1) * stride + 1;
+			int valueIndex = planes.index(0, y);
+			for (int x = 0; x < width; x++, index++, valueIndex++) {
+				rowSum += values[valueIndex] & 0xFF;
+				sums[index] = sums[index - stride] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * 指定した矩形範囲の値の合計を取得します。
+	 *
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 * @param w 範囲の幅
+	 * @param h 範囲の高さ
+	 * @return 値の合計
+	 */
+	int sum(int x, int y, int w, int h) {
+		int stride = width + 1;
+		int top = y * stride;
+		int bottom = (y + h) * stride;
+		return sums[bottom + x + w] - sums[bottom + x] - sums[top + x + w] + sums[top + x];
+	}
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 全体画像の中から部分画像と一致する位置を、2次元のローリングハッシュ（Rabin-Karp法）で探索するクラス。<br>
+ * 各位置のARGB値のハッシュを、横方向、縦方向の順に1ピクセルずつ更新しながら求め、部分画像のハッシュと一致した位置のみ画素を比較します。
+ * ハッシュは2<sup>64</sup>を法として計算します。並列度が2以上の場合は、探索範囲を行単位の帯に分割し、{@link ForkJoinPool#commonPool()}で
+ * 並列に探索します。
+ */
+final class TemplateMatcher {
+
+	/**
+	 * 並列に探索する場合の1帯あたりの最小行数
+	 */
+	static final int MIN_BAND_HEIGHT = 64;
+
+	private static final long ROW_BASE = 0x9E3779B97F4A7C15L;
+	private static final long COLUMN_BASE = 0xC2B2AE3D27D4EB4FL;
+
+	private final int[] entire;
+	private final int entireWidth;
+	private final int[] template;
+	private final int templateWidth;
+	private final int templateHeight;
+
+	/**
+	 * 部分画像の左上を置ける位置の数
+	 */
+	private final int xCount;
+	private final int yCount;
+
+	/**
+	 * ROW_BASE<sup>templateWidth - 1</sup>、COLUMN_BASE<sup>templateHeight - 1</sup>
+	 */
+	private final long rowPower;
+	private final long columnPower;
+	private final long templateHash;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param entireImage 全体画像
+	 * @param templateImage 部分画像
+	 */
+	TemplateMatcher(BufferedImage entireImage, BufferedImage templateImage) {
+		entireWidth = entireImage.getWidth();
+		templateWidth = templateImage.getWidth();
+		templateHeight = templateImage.getHeight();
+		xCount = entireWidth - templateWidth + 1;
+		yCount = entireImage.getHeight() - templateHeight + 1;
+		entire = readPixels(entireImage);
+		template = readPixels(templateImage);
+
+		rowPower = power(ROW_BASE, templateWidth - 1);
+		columnPower = power(COLUMN_BASE, templateHeight - 1);
+		long hash = 0;
+		for (int y = 0; y < templateHeight; y++) {
+			hash = hash * COLUMN_BASE + hashRow(template, templateWidth, y, 0);
+		}
+		templateHash = hash;
+	}
+
+	/**
+	 * 全体画像の中に部分画像と一致する位置があるかどうかを取得します。
+	 *
+	 * @param parallelism 並列度
+	 * @return 一致する位置がある場合true
+	 */
+	boolean find(int parallelism) {
+		if (xCount <= 0 || yCount <= 0) {
+			return false;
+		}
+		if (templateWidth == 0 || templateHeight == 0) {
+			return true;
+		}
+
+		AtomicBoolean found = new AtomicBoolean();
+		int bandHeight = getBandHeight(parallelism);
+		if (bandHeight >= yCount) {
+			scan(0, yCount, found);
+		} else {
+			ForkJoinPool.commonPool().invoke(new BandTask(found, 0, yCount, bandHeight));
+		}
+		return found.get();
+	}
+
+	private int getBandHeight(int parallelism) {
+		if (parallelism <= 1 || yCount < MIN_BAND_HEIGHT * 2) {
+			return yCount;
+		}
+		return Math.max((yCount + parallelism - 1) / parallelism, MIN_BAND_HEIGHT);
+	}
+
+	/**
+	 * 部分画像の左上のy座標がstartY以上endY未満の範囲を探索します。
+	 *
+	 * @param startY 探索を開始する行（この行を含む）
+	 * @param endY 探索を終了する行（この行を含まない）
+	 * @param found 一致する位置が見つかったかどうか。他の帯で見つかった場合は探索を打ち切ります。
+	 */
+	private void scan(int startY, int endY, AtomicBoolean found) {
+		// 現在の範囲に含まれる各行のハッシュ。y行目はrowHashes[(y - startY) % templateHeight]に保持する
+		long[][] rowHashes = new long[templateHeight][xCount];
+		long[] hashes = new long[xCount];
+		for (int i = 0; i < templateHeight; i++) {
+			hashRows(startY + i, rowHashes[i]);
+			for (int x = 0; x < xCount; x++) {
+				hashes[x] = hashes[x] * COLUMN_BASE + rowHashes[i][x];
+			}
+		}
+
+		long[] nextRow = new long[xCount];
+		for (int y = startY; y < endY; y++) {
+			if (found.get()) {
+				return;
+			}
+
+			for (int x = 0; x < xCount; x++) {
+				if (hashes[x] == templateHash && matches(x, y)) {
+					found.set(true);
+					return;
+				}
+			}
+
+			if (y + 1 < endY) {
+				// 先頭の行を除き、次の行を加える
+				int slot = (y - startY) % templateHeight;
+				long[] firstRow = rowHashes[slot];
+				hashRows(y + templateHeight, nextRow);
+				for (int x = 0; x < xCount; x++) {
+					hashes[x] = (hashes[x] - firstRow[x] * columnPower) * COLUMN_BASE + nextRow[x];
+				}
+				rowHashes[slot] = nextRow;
+				nextRow = firstRow;
+			}
+		}
+	}
+
+	/**
+	 * 全体画像の指定した行について、各位置から始まるtemplateWidth個のピクセルのハッシュを求めます。
+	 */
+	private void hashRows(int y, long[] dest) {
+		int index = y * entireWidth;
+		long hash = hashRow(entire, entireWidth, y, 0);
+		dest[0] = hash;
+		for (int x = 1; x < xCount; x++) {
+			hash = (hash - pixelValue(entire[index + x - 1]) * rowPower) * ROW_BASE
+					+ pixelValue(entire[index + x + templateWidth - 1]);
+			dest[x] = hash;
+		}
+	}
+
+	private long hashRow(int[] pixels, int width, int y, int x) {
+		long hash = 0;
+		int index = y * width + x;
+		for (int i = 0; i < templateWidth; i++) {
+			hash = hash * ROW_BASE + pixelValue(pixels[index + i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * (x, y)を左上とする範囲が部分画像と一致するかどうかを、ピクセル毎に比較します。
+	 */
+	private boolean matches(int x, int y) {
+		for (int i = 0; i < templateHeight; i++) {
+			int entireIndex = (y + i) * entireWidth + x;
+			int templateIndex = i * templateWidth;
+			for (int j = 0; j < templateWidth; j++) {
+				if (entire[entireIndex + j] != template[templateIndex + j]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static long pixelValue(int argb) {
+		// 0を除くため1を加える
+		return (argb & 0xFFFFFFFFL) + 1;
+	}
+
+	private static long power(long base, int exponent) {
+		long result = 1;
+		for (int i = 0; i < exponent; i++) {
+			result *= base;
+		}
+		return result;
+	}
+
+	private static int[] readPixels(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = new int[width * height];
+		PixelReader reader = PixelReader.of(image);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.readRow(0, y, width, row);
+			System.arraycopy(row, 0, pixels, y * width, width);
+		}
+		return pixels;
+	}
+
+	/**
+	 * 探索範囲を二分しながら帯単位で探索するタスク。
+	 */
+	private class BandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicBoolean found;
+		private final int startY;
+		private final int endY;
+		private final int bandHeight;
+
+		BandTask(AtomicBoolean found, int startY, int endY, int bandHeight) {
+			this.found = found;
+			this.startY = startY;
+			this.endY = endY;
+			this.bandHeight = bandHeight;
+		}
+
+		@Override
+		protected void compute() {
+			int bands = (endY - startY + bandHeight - 1) / bandHeight;
+			if (bands <= 1) {
+				scan(startY, endY, found);
+				return;
+			}
+
+			int middle = startY + (bands / 2) * bandHeight;
+			invokeAll(new BandTask(found, startY, middle, bandHeight), new BandTask(found, middle, endY, bandHeight));
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * 2枚の画像を一定サイズのタイルに分割し、タイル毎に差異の有無を保持するクラス。<br>
+ * 差異のないタイルのみで構成される範囲は、ピクセル毎の比較を行わなくても差異がないことが分かります。
+ */
+final class TileDiffMap {
+
+	/**
+	 * タイルの1辺の長さ
+	 */
+	static final int TILE_SIZE = 64;
+
+	private final int width;
+	private final int height;
+	private final int columns;
+	private final int rows;
+
+	/**
+	 * 差異のあるタイル数の2次元累積和。(0, 0)から(tx, ty)までの差異のあるタイルの数を
+	 * dirtyCounts[(ty + 1) * (columns + 1) + tx + 1]に保持します。
+	 */
+	private final int[] dirtyCounts;
+
+	/**
+	 * コンストラクタ
+	 *
+	 * @param width 範囲の幅
+	 * @param height 範囲の高さ
+	 * @param columns 横方向のタイル数
+	 * @param rows 縦方向のタイル数
+	 * @param dirty タイル毎の差異の有無
+	 */
+	private TileDiffMap(int width, int height, int columns, int rows, boolean[] dirty) {
+		this.width = width;
+		this.height = height;
+		this.columns = columns;
+		this.rows = rows;
+
+		int stride = columns + 1;
+		dirtyCounts = new int[stride * (rows + 1)];
+		for (int ty = 0; ty < rows; ty++) {
+			int rowCount = 0;
+			for (int tx = 0; tx < columns; tx++) {
+				if (dirty[ty * columns + tx]) {
+					rowCount++;
+				}
+				dirtyCounts[(ty + 1) * stride + tx + 1] = dirtyCounts[ty * stride + tx + 1] + rowCount;
+			}
+		}
+	}
+
+	/**
+	 * 2枚の画像の重なる範囲（左上を揃えた範囲）をタイル毎に比較します。
+	 *
+	 * @param image1 画像1
+	 * @param image2 画像2
+	 * @return タイル毎の差異の有無
+	 */
+	static TileDiffMap of(BufferedImage image1, BufferedImage image2) {
+		int width = Math.min(image1.getWidth(), image2.getWidth());
+		int height = Math.min(image1.getHeight(), image2.getHeight());
+		int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+		boolean[] dirty = new boolean[columns * rows];
+
+		PixelReader reader1 = PixelReader.of(image1);
+		PixelReader reader2 = PixelReader.of(image2);
+		int[] row1 = new int[width];
+		int[] row2 = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader1.readRow(0, y, width, row1);
+			reader2.readRow(0, y, width, row2);
+
+			int tileRowStart = (y / TILE_SIZE) * columns;
+			for (int tx = 0; tx < columns; tx++) {
+				if (dirty[tileRowStart + tx]) {
+					continue;
+				}
+				for (int x = tx * TILE_SIZE, end = Math.min(x + TILE_SIZE, width); x < end; x++) {
+					if (row1[x] != row2[x]) {
+						dirty[tileRowStart + tx] = true;
+						break;
+					}
+				}
+			}
+		}
+
+		return new TileDiffMap(width, height, columns, rows, dirty);
+	}
+
+	/**
+	 * 指定した範囲に差異がないことが分かっているかどうかを取得します。
+	 *
+	 * @param area 範囲
+	 * @return 範囲が比較した範囲に含まれ、かつ範囲に掛かる全てのタイルに差異がない場合true
+	 */
+	boolean isClean(Rectangle area) {
+		if (area.width <= 0 || area.height <= 0 || area.x < 0 || area.y < 0 || area.x + area.width > width
+				|| area.y + area.height > height) {
+			return false;
+		}
+
+		int tx1 = area.x / TILE_SIZE;
+		int ty1 = area.y / TILE_SIZE;
+		int tx2 = (area.x + area.width - 1) / TILE_SIZE + 1;
+		int ty2 = (area.y + area.height - 1) / TILE_SIZE + 1;
+		int stride = columns + 1;
+		int count = dirtyCounts[ty2 * stride + tx2] - dirtyCounts[ty1 * stride + tx2] - dirtyCounts[ty2 * stride + tx1]
+				+ dirtyCounts[ty1 * stride + tx1];
+		return count == 0;
+	}
+
+	/**
+	 * 差異のあるタイルの数を取得します。
+	 *
+	 * @return 差異のあるタイルの数
+	 */
+	int getDirtyTileCount() {
+		return dirtyCounts[rows * (columns + 1) + columns];
+	}
+
+}
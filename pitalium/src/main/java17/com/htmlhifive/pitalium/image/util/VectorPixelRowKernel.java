@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API（{@code jdk.incubator.vector}）を使用し、複数のピクセルをまとめて比較するカーネル。<br>
+ * ARGBのままレーン単位で一致を判定し、異なるピクセルを含む場合のみRGBの各成分に分解して差の二乗和を計算します。
+ * レーン数に満たない行末のピクセルは{@link PixelRowKernel}の実装で比較します。
+ */
+final class VectorPixelRowKernel extends PixelRowKernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * コンストラクタ
+	 */
+	VectorPixelRowKernel() {
+	}
+
+	@Override
+	int indexOfMismatch(int[] pixels1, int offset1, int[] pixels2, int offset2, int from, int to) {
+		int x = from;
+		for (int bound = from + SPECIES.loopBound(to - from); x < bound; x += SPECIES.length()) {
+			IntVector v1 = IntVector.fromArray(SPECIES, pixels1, offset1 + x);
+			IntVector v2 = IntVector.fromArray(SPECIES, pixels2, offset2 + x);
+			VectorMask<Integer> mismatch = v1.compare(VectorOperators.NE, v2);
+			if (mismatch.anyTrue()) {
+				return x + mismatch.firstTrue();
+			}
+		}
+		return super.indexOfMismatch(pixels1, offset1, pixels2, offset2, x, to);
+	}
+
+	@Override
+	int indexOfDistanceOver(int[] pixels1, int offset1, int[] pixels2, int offset2, int from, int to, int limit) {
+		int x = from;
+		for (int bound = from + SPECIES.loopBound(to - from); x < bound; x += SPECIES.length()) {
+			IntVector v1 = IntVector.fromArray(SPECIES, pixels1, offset1 + x);
+			IntVector v2 = IntVector.fromArray(SPECIES, pixels2, offset2 + x);
+			if (!v1.compare(VectorOperators.NE, v2).anyTrue()) {
+				continue;
+			}
+
+			IntVector r = channel(v1, 16).sub(channel(v2, 16));
+			IntVector g = channel(v1, 8).sub(channel(v2, 8));
+			IntVector b = channel(v1, 0).sub(channel(v2, 0));
+			IntVector distance = r.mul(r).add(g.mul(g)).add(b.mul(b));
+			VectorMask<Integer> over = distance.compare(VectorOperators.GT, limit);
+			if (over.anyTrue()) {
+				return x + over.firstTrue();
+			}
+		}
+		return super.indexOfDistanceOver(pixels1, offset1, pixels2, offset2, x, to, limit);
+	}
+
+	private static IntVector channel(IntVector pixels, int shift) {
+		return pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DiffMaskTest {
+
+	/**
+	 * 差異を設定した点のみ取得できることを確認する。
+	 */
+	@Test
+	public void testSetAndGet() throws Exception {
+		DiffMask mask = new DiffMask(10, 20, 130, 3);
+		mask.set(10, 20);
+		mask.set(73, 21);
+		mask.set(139, 22);
+
+		assertThat(mask.get(10, 20), is(true));
+		assertThat(mask.get(73, 21), is(true));
+		assertThat(mask.get(139, 22), is(true));
+		assertThat(mask.get(11, 20), is(false));
+		assertThat(mask.get(73, 20), is(false));
+		assertThat(mask.get(9, 20), is(false));
+		assertThat(mask.get(140, 22), is(false));
+		assertThat(mask.cardinality(), is(3));
+		assertThat(mask.isEmpty(), is(false));
+	}
+
+	/**
+	 * 範囲外の点を設定した場合、IndexOutOfBoundsException。
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSet_outOfBounds() throws Exception {
+		new DiffMask(0, 0, 10, 10).set(10, 0);
+	}
+
+	/**
+	 * 64bit境界をまたぐ範囲を設定できることを確認する。
+	 */
+	@Test
+	public void testSetRange() throws Exception {
+		DiffMask mask = new DiffMask(0, 0, 200, 2);
+		mask.setRange(0, 60, 130);
+		mask.setRange(1, 3, 5);
+
+		for (int x = 0; x < 200; x++) {
+			assertThat(mask.get(x, 0), is(x >= 60 && x < 130));
+			assertThat(mask.get(x, 1), is(x >= 3 && x < 5));
+		}
+		assertThat(mask.countRow(0), is(70));
+		assertThat(mask.countRow(1), is(2));
+	}
+
+	/**
+	 * 行内の次の差異、次の差異なしの位置を取得できることを確認する。
+	 */
+	@Test
+	public void testNextSetXAndNextClearX() throws Exception {
+		DiffMask mask = new DiffMask(5, 0, 100, 1);
+		mask.setRange(0, 70, 105);
+
+		assertThat(mask.nextSetX(0, 5), is(70));
+		assertThat(mask.nextSetX(0, 80), is(80));
+		assertThat(mask.nextClearX(0, 70), is(105));
+		assertThat(mask.nextClearX(0, 5), is(5));
+		assertThat(mask.nextSetX(1, 5), is(105));
+
+		mask = new DiffMask(0, 0, 100, 1);
+		mask.setRange(0, 10, 20);
+		assertThat(mask.nextSetX(0, 20), is(100));
+		assertThat(mask.nextClearX(0, 10), is(20));
+	}
+
+	/**
+	 * 点の一覧が行、列の順に取得でき、インデックスでも取得できることを確認する。
+	 */
+	@Test
+	public void testToPointList() throws Exception {
+		DiffMask mask = new DiffMask(-3, -2, 150, 40);
+		List<Point> expected = new ArrayList<Point>();
+		Random random = new Random(1L);
+		for (int y = -2; y < 38; y++) {
+			if (y % 7 == 0) {
+				// 差異のない行
+				continue;
+			}
+			for (int x = -3; x < 147; x++) {
+				if (random.nextInt(5) == 0) {
+					mask.set(x, y);
+					expected.add(new Point(x, y));
+				}
+			}
+		}
+
+		List<Point> points = mask.toPointList();
+		assertThat(points.size(), is(expected.size()));
+		assertThat(points, is(expected));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(points.get(i), is(expected.get(i)));
+		}
+		List<Point> iterated = new ArrayList<Point>();
+		for (Point point : points) {
+			iterated.add(point);
+		}
+		assertThat(iterated, is(expected));
+	}
+
+	/**
+	 * 点の一覧からマスクを生成できることを確認する。
+	 */
+	@Test
+	public void testFromPoints() throws Exception {
+		DiffMask mask = DiffMask.fromPoints(Arrays.asList(new Point(30, 5), new Point(-2, 8), new Point(4, 5)));
+
+		assertThat(mask.getX(), is(-2));
+		assertThat(mask.getY(), is(5));
+		assertThat(mask.getWidth(), is(33));
+		assertThat(mask.getHeight(), is(4));
+		assertThat(mask.toPointList(), is(Arrays.asList(new Point(4, 5), new Point(30, 5), new Point(-2, 8))));
+
+		assertThat(DiffMask.fromPoints(new ArrayList<Point>()).isEmpty(), is(true));
+	}
+
+}
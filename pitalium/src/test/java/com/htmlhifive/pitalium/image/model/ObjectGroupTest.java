@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ObjectGroupTest {
+
+	/**
+	 * 結合できるグループが全て結合され、リストの先頭に近いグループの位置に残ることを確認する。
+	 */
+	@Test
+	public void testMergeAllPossibleObjects() throws Exception {
+		List<ObjectGroup> groups = new ArrayList<ObjectGroup>();
+		groups.add(new ObjectGroup(100, 100, 10));
+		groups.add(new ObjectGroup(0, 0, 10));
+		groups.add(new ObjectGroup(300, 300, 10));
+		// 2番目と3番目の両方に重なる
+		groups.add(new ObjectGroup(150, 150, 300));
+		groups.add(new ObjectGroup(500, 500, 10));
+		groups.add(new ObjectGroup(900, 900, 10));
+
+		List<ObjectGroup> merged = ObjectGroup.mergeAllPossibleObjects(groups);
+
+		assertThat(merged, is(sameInstance(groups)));
+		assertThat(merged.size(), is(3));
+		assertThat(merged.get(0).getRectangle(), is(new Rectangle(-5, -5, 311, 311)));
+		assertThat(merged.get(1).getRectangle(), is(new Rectangle(495, 495, 11, 11)));
+		assertThat(merged.get(2).getRectangle(), is(new Rectangle(895, 895, 11, 11)));
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.model;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RectangleGridIndexTest {
+
+	/**
+	 * 検索範囲と重なる矩形が全て候補に含まれることを確認する。
+	 */
+	@Test
+	public void testQuery() throws Exception {
+		Random random = new Random(1L);
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for (int i = 0; i < 500; i++) {
+			rectangles.add(new Rectangle(random.nextInt(2000) - 100, random.nextInt(2000) - 100,
+					1 + random.nextInt(80), 1 + random.nextInt(80)));
+		}
+		RectangleGridIndex index = new RectangleGridIndex(rectangles);
+
+		for (int i = 0; i < 200; i++) {
+			Rectangle area = new Rectangle(random.nextInt(2200) - 200, random.nextInt(2200) - 200,
+					1 + random.nextInt(300), 1 + random.nextInt(300));
+			int[] candidates = index.query(area);
+			for (int j = 1; j < candidates.length; j++) {
+				assertThat(candidates[j - 1] < candidates[j], is(true));
+			}
+			for (int id = 0; id < rectangles.size(); id++) {
+				if (rectangles.get(id).intersects(area)) {
+					assertThat(Arrays.binarySearch(candidates, id) >= 0, is(true));
+				}
+			}
+		}
+	}
+
+	/**
+	 * 面積のない矩形は常に候補に含まれ、削除した矩形は候補に含まれないことを確認する。
+	 */
+	@Test
+	public void testQuery_degenerateAndRemoved() throws Exception {
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		rectangles.add(new Rectangle(0, 0, 10, 10));
+		rectangles.add(new Rectangle(500, 500, 0, 10));
+		rectangles.add(new Rectangle(1000, 1000, 10, 10));
+		rectangles.add(new Rectangle(5, 5, 10, 10));
+		RectangleGridIndex index = new RectangleGridIndex(rectangles);
+
+		int[] candidates = index.query(new Rectangle(0, 0, 100, 100));
+		assertThat(Arrays.binarySearch(candidates, 0) >= 0, is(true));
+		assertThat(Arrays.binarySearch(candidates, 1) >= 0, is(true));
+		assertThat(Arrays.binarySearch(candidates, 3) >= 0, is(true));
+		assertThat(Arrays.binarySearch(candidates, 2) >= 0, is(false));
+
+		index.remove(0);
+		candidates = index.query(new Rectangle(0, 0, 100, 100));
+		assertThat(Arrays.binarySearch(candidates, 0) >= 0, is(false));
+		assertThat(Arrays.binarySearch(candidates, 1) >= 0, is(true));
+		assertThat(Arrays.binarySearch(candidates, 3) >= 0, is(true));
+	}
+
+	/**
+	 * 矩形を拡大した後、拡大した範囲でも検索できることを確認する。
+	 */
+	@Test
+	public void testUpdate() throws Exception {
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		rectangles.add(new Rectangle(0, 0, 10, 10));
+		rectangles.add(new Rectangle(1000, 1000, 10, 10));
+		RectangleGridIndex index = new RectangleGridIndex(rectangles);
+
+		rectangles.set(0, new Rectangle(0, 0, 700, 700));
+		index.update(0);
+		assertThat(Arrays.binarySearch(index.query(new Rectangle(600, 600, 10, 10)), 0) >= 0, is(true));
+	}
+
+}
@@ -3,8 +3,11 @@ package com.htmlhifive.pitalium.image.util;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 
@@ -14,6 +17,7 @@ import com.htmlhifive.pitalium.image.model.CategoryComparisonParameters;
 import com.htmlhifive.pitalium.image.model.CategoryImageComparedResult;
 import com.htmlhifive.pitalium.image.model.CompareOption;
 import com.htmlhifive.pitalium.image.model.CompareOptionType;
+import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.DiffCategory;
 
 public class CategoryImageComparatorTest {
@@ -78,6 +82,60 @@ public class CategoryImageComparatorTest {
 		assertThat(result.getComparedRectangles().get(1).getCategory(), is(DiffCategory.MISSING));
 	}
 
+	/**
+	 * 差異が見つかった領域のみをカテゴリ分類する場合も、画像全体をカテゴリ分類した場合と同じ差異領域、カテゴリとなるテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompareMissingFailed_cascade() throws Exception {
+		BufferedImage expectedImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_missing_expected.png"));
+		Rectangle expectedRectangle = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
+		// missingの差分とtextの差分がある画像
+		BufferedImage actualImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_missing_actual_failed.png"));
+		Rectangle actualRectangle = new Rectangle(0, 0, actualImage.getWidth(), actualImage.getHeight());
+
+		DiffCategory[] acceptCategories = new DiffCategory[] { DiffCategory.MISSING };
+		CategoryImageComparedResult expected = (CategoryImageComparedResult) new CategoryImageComparator(
+				new CategoryComparisonParameters(acceptCategories)).compare(expectedImage, expectedRectangle,
+				actualImage, actualRectangle);
+		CategoryComparisonParameters parameters = new CategoryComparisonParameters(acceptCategories);
+		assertThat(parameters.isCascade(), is(false));
+		parameters.setCascade(true);
+		CategoryImageComparedResult result = (CategoryImageComparedResult) new CategoryImageComparator(parameters)
+				.compare(expectedImage, expectedRectangle, actualImage, actualRectangle);
+
+		assertThat(result.isSucceeded(), is(false));
+		assertThat(result.getComparedRectangles().size(), is(expected.getComparedRectangles().size()));
+		for (int i = 0; i < expected.getComparedRectangles().size(); i++) {
+			ComparedRectangleArea area = result.getComparedRectangles().get(i);
+			ComparedRectangleArea expectedArea = expected.getComparedRectangles().get(i);
+			assertThat(area.toRectangle(), is(expectedArea.toRectangle()));
+			assertThat(area.getCategory(), is(expectedArea.getCategory()));
+		}
+	}
+
+	/**
+	 * 差異が見つかった領域のみをカテゴリ分類する場合、差異がなければ差異領域が空となるテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompare_cascadeNoDiff() throws Exception {
+		BufferedImage image = ImageIO.read(getClass().getResource("CategoryImageComparatorTest_missing_expected.png"));
+		Rectangle rectangle = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+
+		CategoryComparisonParameters parameters = new CategoryComparisonParameters(new DiffCategory[0]);
+		parameters.setCascade(true);
+		CategoryImageComparedResult result = (CategoryImageComparedResult) new CategoryImageComparator(parameters)
+				.compare(image, rectangle, image, rectangle);
+
+		assertThat(result.isSucceeded(), is(true));
+		assertThat(result.getComparedRectangles().isEmpty(), is(true));
+	}
+
 	/**
 	 * shiftの差分を容認するテスト。
 	 *
@@ -321,4 +379,121 @@ public class CategoryImageComparatorTest {
 		assertThat(result.getComparedRectangles().get(1).getCategory(), is(DiffCategory.SIMILAR));
 	}
 
+	/**
+	 * 同じ画像を比較した場合、差分なしで成功するテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompareIdentical() throws Exception {
+		BufferedImage expectedImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_text_expected.png"));
+		Rectangle rectangle = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
+		// 同じ内容の別の画像
+		BufferedImage actualImage = copyImage(expectedImage);
+
+		CategoryComparisonParameters parameters = new CategoryComparisonParameters(new DiffCategory[0]);
+		CategoryImageComparator categoryImageComparator = new CategoryImageComparator(parameters);
+
+		CategoryImageComparedResult result = (CategoryImageComparedResult) categoryImageComparator
+				.compare(expectedImage, rectangle, actualImage, rectangle);
+
+		assertThat(result.isSucceeded(), is(true));
+		assertThat(result.getComparedRectangles().isEmpty(), is(true));
+	}
+
+	/**
+	 * 閾値以下の差異のみの場合、カテゴリ分類した場合と同じく差分なしで成功するテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompareWithinDiffThreshold() throws Exception {
+		BufferedImage expectedImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_text_expected.png"));
+		Rectangle rectangle = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
+		// 青の成分を1だけ変えた画像
+		BufferedImage actualImage = copyImage(expectedImage);
+		for (int y = 0; y < actualImage.getHeight(); y += 3) {
+			for (int x = 0; x < actualImage.getWidth(); x += 5) {
+				actualImage.setRGB(x, y, actualImage.getRGB(x, y) ^ 1);
+			}
+		}
+
+		CategoryComparisonParameters parameters = new CategoryComparisonParameters(new DiffCategory[0]);
+		CategoryImageComparator categoryImageComparator = new CategoryImageComparator(parameters);
+
+		CategoryImageComparedResult result = (CategoryImageComparedResult) categoryImageComparator
+				.compare(expectedImage, rectangle, actualImage, rectangle);
+
+		ImagePair pair = new ImagePair(expectedImage, actualImage);
+		pair.prepare();
+		pair.doCategorize();
+
+		assertThat(result.isSucceeded(), is(true));
+		assertThat(result.getComparedRectangles().isEmpty(), is(true));
+		assertThat(pair.getComparedRectangles().isEmpty(), is(true));
+	}
+
+	/**
+	 * 差異を順に渡す比較では、カテゴリ分類した差異領域の各点が行、列の順に渡されるテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompare_sink() throws Exception {
+		BufferedImage expectedImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_missing_expected.png"));
+		Rectangle expectedRectangle = new Rectangle(0, 0, expectedImage.getWidth(), expectedImage.getHeight());
+		BufferedImage actualImage = ImageIO
+				.read(getClass().getResource("CategoryImageComparatorTest_missing_actual.png"));
+		Rectangle actualRectangle = new Rectangle(0, 0, actualImage.getWidth(), actualImage.getHeight());
+
+		CategoryComparisonParameters parameters = new CategoryComparisonParameters(
+				new DiffCategory[] { DiffCategory.MISSING });
+		CategoryImageComparator categoryImageComparator = new CategoryImageComparator(parameters);
+		CategoryImageComparedResult result = (CategoryImageComparedResult) categoryImageComparator
+				.compare(expectedImage, expectedRectangle, actualImage, actualRectangle);
+
+		// 差異領域に含まれる点を行、列の順に並べる
+		List<Point> expected = new ArrayList<Point>();
+		for (int y = 0; y < expectedImage.getHeight(); y++) {
+			for (int x = 0; x < expectedImage.getWidth(); x++) {
+				for (ComparedRectangleArea area : result.getComparedRectangles()) {
+					if (area.toRectangle().contains(x, y)) {
+						expected.add(new Point(x, y));
+						break;
+					}
+				}
+			}
+		}
+
+		final List<Point> diffPoints = new ArrayList<Point>();
+		boolean completed = categoryImageComparator.compare(expectedImage, expectedRectangle, actualImage,
+				actualRectangle, new DiffRunSink() {
+					@Override
+					public boolean onSizeDiff(Rectangle area) {
+						return true;
+					}
+
+					@Override
+					public boolean onDiffRun(int y, int startX, int endX) {
+						for (int x = startX; x < endX; x++) {
+							diffPoints.add(new Point(x, y));
+						}
+						return true;
+					}
+				});
+
+		assertThat(completed, is(true));
+		assertThat(expected.isEmpty(), is(false));
+		assertThat(diffPoints, is(expected));
+	}
+
+	private static BufferedImage copyImage(BufferedImage image) {
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		copy.getGraphics().drawImage(image, 0, 0, null);
+		return copy;
+	}
+
 }
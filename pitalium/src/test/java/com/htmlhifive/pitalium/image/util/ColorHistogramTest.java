@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ColorHistogramTest {
+
+	/**
+	 * テーブルの拡張を伴う多数の色について、出現数が正しく数えられることを確認する。
+	 */
+	@Test
+	public void testAdd() throws Exception {
+		ColorHistogram histogram = new ColorHistogram();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		Random random = new Random(1L);
+		for (int i = 0; i < 5000; i++) {
+			// 下位ビットが同じ色を多く含める
+			int color = random.nextBoolean() ? random.nextInt() : random.nextInt(300) << 16;
+			histogram.add(color, 1);
+			Integer count = expected.get(color);
+			expected.put(color, count == null ? 1 : count + 1);
+		}
+
+		assertThat(histogram.size(), is(expected.size()));
+		int max = 0;
+		for (int count : expected.values()) {
+			max = Math.max(max, count);
+		}
+		assertThat(expected.get(histogram.getMostFrequentColor(0)), is(max));
+	}
+
+	/**
+	 * 行単位で加算した場合、最も出現数の多い色を取得できることを確認する。
+	 */
+	@Test
+	public void testAddRow() throws Exception {
+		ColorHistogram histogram = new ColorHistogram();
+		histogram.addRow(new int[] { 1, 1, 2, 3, 3, 3, 2, 9 }, 7);
+		histogram.addRow(new int[] { 2, 2, 1 }, 3);
+
+		assertThat(histogram.size(), is(3));
+		assertThat(histogram.getMostFrequentColor(0), is(2));
+	}
+
+	/**
+	 * 出現数が同じ色が複数ある場合は、先に追加された色を取得することを確認する。
+	 */
+	@Test
+	public void testGetMostFrequentColor_sameCount() throws Exception {
+		ColorHistogram histogram = new ColorHistogram();
+		histogram.addRow(new int[] { 0xFF000000, 0xFFFFFFFF, 0xFFFFFFFF, 0xFF000000 }, 4);
+		assertThat(histogram.getMostFrequentColor(0), is(0xFF000000));
+
+		assertThat(new ColorHistogram().getMostFrequentColor(0xFFFFFFFF), is(0xFFFFFFFF));
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.htmlhifive.pitalium.image.model.CompareOption;
+import com.htmlhifive.pitalium.image.model.CompareOptionType;
+import com.htmlhifive.pitalium.image.model.CompositeImageComparedResult;
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
+import com.htmlhifive.pitalium.image.model.DiffPoints;
+import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.SimilarityComparisonParameters;
+import com.htmlhifive.pitalium.image.model.SimilarityImageComparedResult;
+import com.htmlhifive.pitalium.image.model.SimilarityUnit;
+
+public class CompositeImageComparatorTest {
+
+	private static final CompareOption[] OPTIONS = {
+			new CompareOption(CompareOptionType.DEFAULT, new DefaultComparisonParameters(0.1, 4)),
+			new CompareOption(CompareOptionType.SIMILARITY, new SimilarityComparisonParameters(0.9, 0.9, 0.9, 0.9)),
+			new CompareOption(CompareOptionType.IGNORE_CLEAR_PIXELS, new DefaultComparisonParameters(0.0)),
+			new CompareOption(CompareOptionType.DEFAULT, new DefaultComparisonParameters(0.0)) };
+
+	/**
+	 * 各比較オプションの結果が、比較オプションを1つずつ指定して比較した結果と一致することを確認する。
+	 */
+	@Test
+	public void testCompare() throws Exception {
+		BufferedImage image1 = createImage(150, 100, 1L);
+		BufferedImage image2 = createImage(160, 110, 2L);
+		Rectangle rectangle1 = new Rectangle(0, 0, 150, 100);
+		Rectangle rectangle2 = new Rectangle(5, 5, 150, 100);
+
+		CompositeImageComparedResult result = (CompositeImageComparedResult) new CompositeImageComparator(OPTIONS)
+				.compare(image1, rectangle1, image2, rectangle2);
+
+		assertThat(result.getOptions(), is(Arrays.asList(OPTIONS)));
+		assertThat(result.getResults().size(), is(OPTIONS.length));
+		for (int i = 0; i < OPTIONS.length; i++) {
+			ImageComparedResult expected = ImageComparatorFactory.getInstance()
+					.getImageComparator(new CompareOption[] { OPTIONS[i] })
+					.compare(image1, rectangle1, image2, rectangle2);
+			assertResult(result.getResults().get(i), expected);
+		}
+		assertThat(result.isFailed(), is(true));
+	}
+
+	/**
+	 * 画像1の比較範囲の左上が(0, 0)でない場合も、各比較オプションの結果が、比較オプションを1つずつ指定して比較した結果と一致することを確認する。
+	 */
+	@Test
+	public void testCompare_offset() throws Exception {
+		BufferedImage image1 = createImage(160, 110, 1L);
+		BufferedImage image2 = createImage(160, 110, 2L);
+		Rectangle rectangle1 = new Rectangle(5, 5, 150, 100);
+		Rectangle rectangle2 = new Rectangle(10, 5, 150, 100);
+
+		CompositeImageComparedResult result = (CompositeImageComparedResult) new CompositeImageComparator(OPTIONS)
+				.compare(image1, rectangle1, image2, rectangle2);
+
+		for (int i = 0; i < OPTIONS.length; i++) {
+			ImageComparedResult expected = ImageComparatorFactory.getInstance()
+					.getImageComparator(new CompareOption[] { OPTIONS[i] })
+					.compare(image1, rectangle1, image2, rectangle2);
+			assertResult(result.getResults().get(i), expected);
+		}
+	}
+
+	/**
+	 * 除外領域を指定した場合も、各比較オプションの結果が、比較オプションを1つずつ指定して比較した結果と一致することを確認する。
+	 */
+	@Test
+	public void testCompare_excludes() throws Exception {
+		BufferedImage image1 = createImage(150, 100, 1L);
+		BufferedImage image2 = createImage(150, 100, 2L);
+		Rectangle rectangle = new Rectangle(0, 0, 150, 100);
+		List<Rectangle> excludes1 = Arrays.asList(new Rectangle(10, 10, 50, 40), new Rectangle(40, 30, 60, 50));
+		List<Rectangle> excludes2 = Arrays.asList(new Rectangle(10, 10, 50, 40));
+
+		CompositeImageComparedResult result = (CompositeImageComparedResult) new CompositeImageComparator(OPTIONS)
+				.compare(image1, rectangle, excludes1, image2, rectangle, excludes2);
+
+		for (int i = 0; i < OPTIONS.length; i++) {
+			ImageComparedResult expected = ImageComparatorFactory.getInstance()
+					.getImageComparator(new CompareOption[] { OPTIONS[i] })
+					.compare(image1, rectangle, excludes1, image2, rectangle, excludes2);
+			assertResult(result.getResults().get(i), expected);
+		}
+	}
+
+	/**
+	 * 全ての比較オプションで一致した場合のみ成功となることを確認する。
+	 */
+	@Test
+	public void testVerify() throws Exception {
+		BufferedImage image1 = createImage(150, 100, 1L);
+		BufferedImage image2 = createImage(150, 100, 1L);
+		Rectangle rectangle = new Rectangle(0, 0, 150, 100);
+
+		CompositeImageComparator comparator = new CompositeImageComparator(OPTIONS);
+		CompositeImageComparedResult result = (CompositeImageComparedResult) comparator.verify(image1, rectangle,
+				image2, rectangle);
+		assertThat(result.isSucceeded(), is(true));
+
+		// DEFAULT（閾値0.1）では一致、DEFAULT（閾値0）では不一致となる差異
+		image2.setRGB(10, 10, image2.getRGB(10, 10) ^ 0x010101);
+		result = (CompositeImageComparedResult) comparator.verify(image1, rectangle, image2, rectangle);
+		assertThat(result.isFailed(), is(true));
+		assertThat(result.getResults().get(0).isSucceeded(), is(true));
+		assertThat(result.getResults().get(3).isFailed(), is(true));
+		assertThat(result.getResult(CompareOptionType.DEFAULT), is(result.getResults().get(0)));
+		assertThat(result.getResult(CompareOptionType.CATEGORY), is(nullValue()));
+	}
+
+	/**
+	 * 差異を順に渡す比較は、最初の比較オプションで比較した場合と同じ差異を渡すことを確認する。
+	 */
+	@Test
+	public void testCompare_sink() throws Exception {
+		BufferedImage image1 = createImage(150, 100, 1L);
+		BufferedImage image2 = createImage(150, 100, 2L);
+		Rectangle rectangle = new Rectangle(0, 0, 150, 100);
+		for (int y = 20; y < 30; y++) {
+			for (int x = 40; x < 60; x++) {
+				image2.setRGB(x, y, 0xFFFFFFFF);
+			}
+		}
+
+		List<String> actual = new ArrayList<String>();
+		boolean actualFound = new CompositeImageComparator(OPTIONS).compare(image1, rectangle, image2, rectangle,
+				createSink(actual));
+		List<String> expected = new ArrayList<String>();
+		boolean expectedFound = ImageComparatorFactory.getInstance()
+				.getImageComparator(new CompareOption[] { OPTIONS[0] })
+				.compare(image1, rectangle, image2, rectangle, createSink(expected));
+
+		assertThat(actualFound, is(expectedFound));
+		assertThat(actual, is(expected));
+		assertThat(actual.isEmpty(), is(false));
+	}
+
+	private static DiffRunSink createSink(final List<String> runs) {
+		return new DiffRunSink() {
+			@Override
+			public boolean onSizeDiff(Rectangle area) {
+				runs.add(area.toString());
+				return true;
+			}
+
+			@Override
+			public boolean onDiffRun(int y, int startX, int endX) {
+				runs.add(y + ":" + startX + "-" + endX);
+				return true;
+			}
+		};
+	}
+
+	private static void assertResult(ImageComparedResult actual, ImageComparedResult expected) {
+		assertThat(actual.isSucceeded(), is(expected.isSucceeded()));
+		if (expected instanceof DiffPoints) {
+			assertThat(((DiffPoints) actual).getDiffPoints(), is(((DiffPoints) expected).getDiffPoints()));
+			assertThat(((DiffPoints) actual).getSizeDiffAreas(), is(((DiffPoints) expected).getSizeDiffAreas()));
+		} else {
+			SimilarityUnit actualUnit = ((SimilarityImageComparedResult) actual).getSimilarityUnit();
+			SimilarityUnit expectedUnit = ((SimilarityImageComparedResult) expected).getSimilarityUnit();
+			assertThat(actualUnit.getXOffset(), is(expectedUnit.getXOffset()));
+			assertThat(actualUnit.getYOffset(), is(expectedUnit.getYOffset()));
+			assertThat(actualUnit.getSimilarityPixelByPixel(), is(expectedUnit.getSimilarityPixelByPixel()));
+			assertThat(actualUnit.getSimilarityFeatureMatrix(), is(expectedUnit.getSimilarityFeatureMatrix()));
+			assertThat(actualUnit.getSimilarityThresDiff(), is(expectedUnit.getSimilarityThresDiff()));
+			assertThat(actualUnit.getSimilarityTotalDiff(), is(expectedUnit.getSimilarityTotalDiff()));
+		}
+	}
+
+	/**
+	 * 透明なピクセルを含む、似た色の画像を生成する。
+	 */
+	private static BufferedImage createImage(int width, int height, long seed) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Random random = new Random(seed);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int alpha = random.nextInt(10) == 0 ? 0 : 0xFF;
+				int rgb = (x * 255 / width) << 16 | (y * 255 / height) << 8 | random.nextInt(0x20);
+				image.setRGB(x, y, alpha << 24 | rgb);
+			}
+		}
+		return image;
+	}
+
+}
@@ -15,13 +15,19 @@
  */
 package com.htmlhifive.pitalium.image.util;
 
+import static com.htmlhifive.pitalium.image.util.ImageTestUtils.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Color;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
@@ -33,8 +39,10 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
 import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
+import com.htmlhifive.pitalium.image.model.VerdictImageComparedResult;
 
 public class DefaultImageComparatorTest {
 
@@ -155,4 +163,286 @@ public class DefaultImageComparatorTest {
 		assertThat(diffPoints, is(expectedDiffPoints));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 高さのみ違う画像を比較する => サイズの差異は1つの矩形として取得でき、点の一覧と一致する
+	 */
+	@Test
+	public void testCompare_different_height() throws Exception {
+		BufferedImage image1 = new BufferedImage(1920, 1000, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(1920, 1300, BufferedImage.TYPE_INT_RGB);
+		DiffPoints result = (DiffPoints) new DefaultImageComparator().compare(image1, new Rectangle(0, 0, 1920, 1000),
+				image2, new Rectangle(0, 0, 1920, 1300));
+
+		assertThat(result.isFailed(), is(true));
+		assertThat(result.getDiffPoints().isEmpty(), is(true));
+		assertThat(result.getSizeDiffAreas(), is(Arrays.asList(new Rectangle(0, 1001, 1920, 300))));
+		assertThat(result.getSizeDiffPoints().size(), is(1920 * 300));
+		assertThat(result.getSizeDiffPoints().get(0), is(new Point(0, 1001)));
+	}
+
+	/**
+	 * 画像の種類が異なる場合も、閾値の判定結果がColorで各色を取得した場合と一致することを確認する。
+	 */
+	@Test
+	public void testCompare_threshold_imageTypes() throws Exception {
+		BufferedImage source = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		int width = source.getWidth();
+		int height = source.getHeight();
+		BufferedImage image1 = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage image2 = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1L);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int rgb = source.getRGB(x, y);
+				image1.setRGB(x, y, rgb);
+				image2.setRGB(x, y, rgb ^ random.nextInt(0x40) << 8 * random.nextInt(3));
+			}
+		}
+
+		double threshold = 0.1;
+		Set<Point> expected = new HashSet<Point>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Color color1 = new Color(image1.getRGB(x, y));
+				Color color2 = new Color(image2.getRGB(x, y));
+				int r = color1.getRed() - color2.getRed();
+				int g = color1.getGreen() - color2.getGreen();
+				int b = color1.getBlue() - color2.getBlue();
+				if (r * r + g * g + b * b > 3 * 255 * 255 * threshold * threshold) {
+					expected.add(new Point(x, y));
+				}
+			}
+		}
+
+		Rectangle rectangle = new Rectangle(0, 0, width, height);
+		DiffPoints result = (DiffPoints) new DefaultImageComparator(new DefaultComparisonParameters(threshold))
+				.compare(image1, rectangle, image2, rectangle);
+
+		assertThat(expected.isEmpty(), is(false));
+		assertThat(result.getDiffPoints().size(), is(expected.size()));
+		assertThat(new HashSet<Point>(result.getDiffPoints()), is(expected));
+	}
+
+	/**
+	 * 並列に比較した結果が、逐次比較と同じ順序で一致することを確認する。
+	 */
+	@Test
+	public void testCompare_parallel() throws Exception {
+		int width = 150;
+		int height = 500;
+		BufferedImage image1 = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1L);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int rgb = random.nextInt(0x1000000);
+				image1.setRGB(x, y, rgb);
+				boolean changed = random.nextInt(10) == 0;
+				image2.setRGB(x, y, changed ? rgb ^ random.nextInt(0x40) << 8 * random.nextInt(3) : rgb);
+			}
+		}
+
+		Rectangle rectangle1 = new Rectangle(0, 0, width, height);
+		Rectangle rectangle2 = new Rectangle(0, 0, width, height);
+		DiffPoints expected = (DiffPoints) new DefaultImageComparator(new DefaultComparisonParameters(0.05, 1))
+				.compare(image1, rectangle1, image2, rectangle2);
+		DiffPoints actual = (DiffPoints) new DefaultImageComparator(new DefaultComparisonParameters(0.05, 4))
+				.compare(image1, rectangle1, image2, rectangle2);
+
+		assertThat(expected.getDiffPoints().isEmpty(), is(false));
+		assertThat(actual.getDiffPoints(), is(expected.getDiffPoints()));
+	}
+
+	/**
+	 * 除外領域を指定して比較した結果が、除外領域をマスクした画像を比較した結果と一致することを確認する。<br>
+	 * 除外領域の重なり、片方の画像のみの除外領域、比較範囲外にはみ出す除外領域を含む。
+	 */
+	@Test
+	public void testCompare_excludes() throws Exception {
+		BufferedImage image1 = createRandomImage(160, 120, BufferedImage.TYPE_INT_RGB, 1L);
+		BufferedImage image2 = createRandomImage(170, 130, BufferedImage.TYPE_INT_RGB, 2L);
+		Rectangle rectangle1 = new Rectangle(5, 3, 150, 110);
+		Rectangle rectangle2 = new Rectangle(12, 10, 150, 110);
+		List<Rectangle> excludes1 = Arrays.asList(new Rectangle(0, 0, 40, 30), new Rectangle(20, 20, 50, 40),
+				new Rectangle(100, 90, 100, 100));
+		List<Rectangle> excludes2 = Arrays.asList(new Rectangle(27, 27, 50, 40), new Rectangle(60, 5, 10, 100));
+
+		for (int parallelism : new int[] { 1, 4 }) {
+			DefaultImageComparator comparator = new DefaultImageComparator(new DefaultComparisonParameters(0.0,
+					parallelism));
+			DiffPoints expected = (DiffPoints) comparator.compare(ImageUtils.getMaskedImage(image1, excludes1),
+					rectangle1, ImageUtils.getMaskedImage(image2, excludes2), rectangle2);
+			DiffPoints actual = (DiffPoints) comparator.compare(image1, rectangle1, excludes1, image2, rectangle2,
+					excludes2);
+
+			assertThat(expected.getDiffPoints().isEmpty(), is(false));
+			assertThat(actual.getDiffPoints(), is(expected.getDiffPoints()));
+			assertThat(actual.getSizeDiffPoints(), is(expected.getSizeDiffPoints()));
+		}
+	}
+
+	/**
+	 * 差異が全て除外領域に含まれる画像を、除外領域を指定して判定する => 成功
+	 */
+	@Test
+	public void testVerify_excludes() throws Exception {
+		BufferedImage image1 = createRandomImage(100, 80, BufferedImage.TYPE_INT_RGB, 1L);
+		BufferedImage image2 = createRandomImage(100, 80, BufferedImage.TYPE_INT_RGB, 1L);
+		for (int y = 10; y < 30; y++) {
+			for (int x = 40; x < 70; x++) {
+				image2.setRGB(x, y, ~image2.getRGB(x, y));
+			}
+		}
+		Rectangle rectangle = new Rectangle(0, 0, 100, 80);
+		List<Rectangle> excludes = Arrays.asList(new Rectangle(35, 5, 20, 30), new Rectangle(50, 10, 25, 20));
+		DefaultImageComparator comparator = new DefaultImageComparator();
+
+		assertThat(comparator.verify(image1, rectangle, image2, rectangle).isFailed(), is(true));
+		assertThat(comparator.verify(image1, rectangle, excludes, image2, rectangle, excludes).isSucceeded(),
+				is(true));
+
+		// 片方の画像のみ除外した場合、除外領域はマスクの色と比較するため失敗
+		assertThat(comparator.verify(image1, rectangle, excludes, image2, rectangle, null).isFailed(), is(true));
+	}
+
+	/**
+	 * sinkで受け取った差異が、比較結果の差異、サイズの差異と一致することを確認する。
+	 */
+	@Test
+	public void testCompare_sink() throws Exception {
+		BufferedImage image1 = createRandomImage(100, 90, BufferedImage.TYPE_INT_RGB, 1L);
+		BufferedImage image2 = createRandomImage(110, 80, BufferedImage.TYPE_INT_RGB, 1L);
+		for (int y = 0; y < 80; y++) {
+			for (int x = 0; x < 100; x++) {
+				if ((x + y) % 7 < 3) {
+					image2.setRGB(x, y, image1.getRGB(x, y));
+				}
+			}
+		}
+		Rectangle rectangle1 = new Rectangle(0, 0, 100, 90);
+		Rectangle rectangle2 = new Rectangle(0, 0, 110, 80);
+		DiffPoints expected = (DiffPoints) new DefaultImageComparator().compare(image1, rectangle1, image2,
+				rectangle2);
+
+		final List<Rectangle> sizeDiffAreas = new ArrayList<Rectangle>();
+		final List<Point> diffPoints = new ArrayList<Point>();
+		boolean completed = new DefaultImageComparator().compare(image1, rectangle1, image2, rectangle2,
+				new DiffRunSink() {
+					@Override
+					public boolean onSizeDiff(Rectangle area) {
+						sizeDiffAreas.add(area);
+						return true;
+					}
+
+					@Override
+					public boolean onDiffRun(int y, int startX, int endX) {
+						assertThat(startX < endX, is(true));
+						for (int x = startX; x < endX; x++) {
+							diffPoints.add(new Point(x, y));
+						}
+						return true;
+					}
+				});
+
+		assertThat(completed, is(true));
+		assertThat(diffPoints.isEmpty(), is(false));
+		assertThat(diffPoints, is(expected.getDiffPoints()));
+		assertThat(sizeDiffAreas, is(expected.getSizeDiffAreas()));
+	}
+
+	/**
+	 * sinkがfalseを返した時点で比較を打ち切ることを確認する。
+	 */
+	@Test
+	public void testCompare_sink_stop() throws Exception {
+		BufferedImage image1 = createRandomImage(100, 90, BufferedImage.TYPE_INT_RGB, 1L);
+		BufferedImage image2 = createRandomImage(100, 90, BufferedImage.TYPE_INT_RGB, 2L);
+		Rectangle rectangle = new Rectangle(0, 0, 100, 90);
+
+		final int[] runCount = new int[1];
+		boolean completed = new DefaultImageComparator().compare(image1, rectangle, image2, rectangle,
+				new DiffRunSink() {
+					@Override
+					public boolean onSizeDiff(Rectangle area) {
+						return true;
+					}
+
+					@Override
+					public boolean onDiffRun(int y, int startX, int endX) {
+						return ++runCount[0] < 5;
+					}
+				});
+
+		assertThat(completed, is(false));
+		assertThat(runCount[0], is(5));
+	}
+
+	/**
+	 * 同じ画像の合否のみを判定する => 成功
+	 */
+	@Test
+	public void testVerify() throws Exception {
+		BufferedImage image = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		Rectangle rectangle = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+		ImageComparedResult result = new DefaultImageComparator().verify(image, rectangle, image, rectangle);
+
+		assertThat(result, is(instanceOf(VerdictImageComparedResult.class)));
+		assertThat(result.isSucceeded(), is(true));
+		assertThat(((VerdictImageComparedResult) result).getDiffCount(), is(0));
+	}
+
+	/**
+	 * 1pxだけ違う画像の合否のみを判定する => 失敗
+	 */
+	@Test
+	public void testVerify_different_1px() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		BufferedImage image2 = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		int x = image2.getWidth() - 1;
+		int y = image2.getHeight() - 1;
+		image2.setRGB(x, y, image2.getRGB(x, y) - 1);
+
+		Rectangle rectangle = new Rectangle(0, 0, image1.getWidth(), image1.getHeight());
+		VerdictImageComparedResult result = (VerdictImageComparedResult) new DefaultImageComparator().verify(image1,
+				rectangle, image2, rectangle);
+
+		assertThat(result.isFailed(), is(true));
+		assertThat(result.getDiffCount(), is(1));
+	}
+
+	/**
+	 * サイズが違う画像の合否のみを判定する => 失敗
+	 */
+	@Test
+	public void testVerify_different_size() throws Exception {
+		BufferedImage image = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		Rectangle rectangle1 = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+		Rectangle rectangle2 = new Rectangle(0, 0, image.getWidth() - 1, image.getHeight() - 1);
+		ImageComparedResult result = new DefaultImageComparator().verify(image, rectangle1, image, rectangle2);
+
+		assertThat(result.isFailed(), is(true));
+	}
+
+	/**
+	 * 指定した数の差異が見つかった時点で比較を打ち切ることを確認する。
+	 */
+	@Test
+	public void testVerify_diffCountBudget() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		BufferedImage image2 = ImageIO.read(getClass().getResource("hifive_logo_part.png"));
+		Rectangle rectangle = new Rectangle(0, 0, image2.getWidth(), image2.getHeight());
+
+		DiffPoints diffPoints = (DiffPoints) new DefaultImageComparator().compare(image1, rectangle, image2,
+				rectangle);
+		assertThat(diffPoints.getDiffPoints().size() > 10, is(true));
+
+		for (int parallelism : new int[] { 1, 4 }) {
+			VerdictImageComparedResult result = (VerdictImageComparedResult) new DefaultImageComparator(
+					new DefaultComparisonParameters(0.0, parallelism, 10)).verify(image1, rectangle, image2, rectangle);
+
+			assertThat(result.isFailed(), is(true));
+			assertThat(result.getDiffCount(), is(10));
+		}
+	}
+
+}
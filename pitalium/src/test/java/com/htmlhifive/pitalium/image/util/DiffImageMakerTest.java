@@ -18,7 +18,10 @@ package com.htmlhifive.pitalium.image.util;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
@@ -66,4 +69,28 @@ public class DiffImageMakerTest {
 		assertThat(ImageUtils.imageEquals(expected, actual), is(true));
 	}
 
+	/**
+	 * 比較しながら差分ファイルを生成するテスト。比較結果のDiffPointsから生成した場合と同じ画像になる。
+	 */
+	@Test
+	public void testCreate() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("web_page_screenshot.png"));
+		BufferedImage image2 = ImageIO.read(getClass().getResource("web_page_screenshot.png"));
+		Graphics2D g = image2.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(20, 30, 40, 10);
+		g.fillRect(45, 45, 5, 5);
+		g.fillRect(200, 100, 30, 60);
+		g.dispose();
+		Rectangle rectangle = new Rectangle(0, 0, image1.getWidth(), image1.getHeight());
+
+		DiffPoints diffPoints = (DiffPoints) new DefaultImageComparator().compare(image1, rectangle, image2, rectangle);
+		BufferedImage expected = new DiffImageMaker(image1, image2, diffPoints).execute();
+
+		DiffImageMaker maker = DiffImageMaker.create(new DefaultImageComparator(), image1, rectangle, image2,
+				rectangle);
+		assertThat(maker.getDiffPoints(), is(nullValue()));
+		assertThat(ImageUtils.imageEquals(expected, maker.execute()), is(true));
+	}
+
 }
\ No newline at end of file
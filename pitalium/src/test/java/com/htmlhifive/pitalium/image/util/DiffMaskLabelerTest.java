@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.htmlhifive.pitalium.image.model.DiffMask;
+import com.htmlhifive.pitalium.image.model.DiffPoints;
+import com.htmlhifive.pitalium.image.model.ObjectGroup;
+
+public class DiffMaskLabelerTest {
+
+	/**
+	 * 点毎にObjectGroupを作成して全てマージした場合と、同じ矩形が同じ順序で得られることを確認する。
+	 */
+	@Test
+	public void testLabel() throws Exception {
+		Random random = new Random(1L);
+		int[] groupDistances = { 0, 1, 2, 5, 10, 20 };
+		int[] densities = { 3, 30, 300, 1000 };
+		for (int groupDistance : groupDistances) {
+			for (int density : densities) {
+				DiffMask mask = new DiffMask(-5, 10, 150, 120);
+				List<Point> points = new ArrayList<Point>();
+				for (int y = 10; y < 130; y++) {
+					for (int x = -5; x < 145; x++) {
+						if (random.nextInt(density) == 0) {
+							mask.set(x, y);
+							points.add(new Point(x, y));
+						}
+					}
+				}
+
+				List<ObjectGroup> expected = mergeAllPoints(points, groupDistance);
+				List<ObjectGroup> actual = DiffMaskLabeler.label(mask, groupDistance);
+				assertThat(toRectangles(actual), is(toRectangles(expected)));
+			}
+		}
+	}
+
+	/**
+	 * 斜めに並んだ点や、矩形同士の重なりによって結合される点がまとめられることを確認する。
+	 */
+	@Test
+	public void testLabel_diagonal() throws Exception {
+		DiffMask mask = new DiffMask(0, 0, 100, 100);
+		mask.set(50, 0);
+		mask.set(30, 20);
+		// 点同士は離れているが、矩形が重なる
+		mask.set(55, 28);
+		mask.set(90, 90);
+
+		List<ObjectGroup> groups = DiffMaskLabeler.label(mask, 20);
+		assertThat(toRectangles(groups), is(toRectangles(mergeAllPoints(mask.toPointList(), 20))));
+		assertThat(toRectangles(groups),
+				is(Arrays.asList(new Rectangle(20, -10, 46, 49), new Rectangle(80, 80, 21, 21))));
+	}
+
+	/**
+	 * 差異がない場合は空のリストを返すことを確認する。
+	 */
+	@Test
+	public void testLabel_empty() throws Exception {
+		assertThat(DiffMaskLabeler.label(new DiffMask(0, 0, 10, 10), 10).isEmpty(), is(true));
+		assertThat(DiffMaskLabeler.label(null, 10).isEmpty(), is(true));
+	}
+
+	/**
+	 * 比較の差異をsinkとして順に受け取った場合も、マスクからラベリングした場合と同じ矩形が得られることを確認する。<br>
+	 * 差異のない行が続く場合を含む。
+	 */
+	@Test
+	public void testOnDiffRun() throws Exception {
+		BufferedImage image1 = new BufferedImage(120, 200, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(120, 200, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1L);
+		for (int y = 0; y < 200; y++) {
+			int density = y % 50 < 10 ? 20 : 3000;
+			for (int x = 0; x < 120; x++) {
+				if (random.nextInt(density) == 0) {
+					image2.setRGB(x, y, 0xFFFFFF);
+				}
+			}
+		}
+
+		Rectangle rectangle = new Rectangle(0, 0, 120, 200);
+		DiffPoints diffPoints = (DiffPoints) new DefaultImageComparator().compare(image1, rectangle, image2,
+				rectangle);
+		for (int groupDistance : new int[] { 0, 1, 6, 10 }) {
+			DiffMaskLabeler labeler = new DiffMaskLabeler(groupDistance);
+			assertThat(new DefaultImageComparator().compare(image1, rectangle, image2, rectangle, labeler), is(true));
+
+			List<ObjectGroup> expected = DiffMaskLabeler.label(diffPoints.getDiffMask(), groupDistance);
+			assertThat(toRectangles(labeler.getGroups()), is(toRectangles(expected)));
+		}
+	}
+
+	/**
+	 * 点毎にObjectGroupを作成し、結合できるものを全て結合する（従来の方法）
+	 */
+	private static List<ObjectGroup> mergeAllPoints(List<Point> points, int groupDistance) {
+		List<ObjectGroup> groups = new ArrayList<ObjectGroup>();
+		for (Point point : points) {
+			ObjectGroup objectGroup = new ObjectGroup(point, groupDistance);
+			boolean merged = false;
+			for (ObjectGroup group : groups) {
+				if (group.canMerge(objectGroup)) {
+					group.union(objectGroup);
+					merged = true;
+					break;
+				}
+			}
+			if (!merged) {
+				groups.add(objectGroup);
+			}
+		}
+		return ObjectGroup.mergeAllPossibleObjects(groups);
+	}
+
+	private static List<Rectangle> toRectangles(List<ObjectGroup> groups) {
+		List<Rectangle> rectangles = new ArrayList<Rectangle>();
+		for (ObjectGroup group : groups) {
+			rectangles.add(group.getRectangle());
+		}
+		return rectangles;
+	}
+
+}
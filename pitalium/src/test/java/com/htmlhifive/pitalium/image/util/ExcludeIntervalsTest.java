@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ExcludeIntervalsTest {
+
+	/**
+	 * 除外領域が比較範囲の座標系に変換され、重なる区間が結合されることを確認する。
+	 */
+	@Test
+	public void testOf() throws Exception {
+		ExcludeIntervals intervals = ExcludeIntervals.of(Arrays.asList(new Rectangle(15, 12, 10, 4), new Rectangle(
+				20, 14, 10, 4), new Rectangle(40, 12, 5, 2)), new Rectangle(10, 10, 50, 10));
+
+		assertThat(intervals.getRow(0), is(new int[0]));
+		assertThat(intervals.getRow(1), is(new int[0]));
+		assertThat(intervals.getRow(2), is(new int[] { 5, 15, 30, 35 }));
+		assertThat(intervals.getRow(3), is(new int[] { 5, 15, 30, 35 }));
+		assertThat(intervals.getRow(4), is(new int[] { 5, 20 }));
+		assertThat(intervals.getRow(5), is(new int[] { 5, 20 }));
+		assertThat(intervals.getRow(6), is(new int[] { 10, 20 }));
+		assertThat(intervals.getRow(7), is(new int[] { 10, 20 }));
+		assertThat(intervals.getRow(8), is(new int[0]));
+		assertThat(intervals.getRow(10), is(new int[0]));
+	}
+
+	/**
+	 * 比較範囲からはみ出す除外領域は、範囲内に切り詰められることを確認する。
+	 */
+	@Test
+	public void testOf_clipped() throws Exception {
+		ExcludeIntervals intervals = ExcludeIntervals.of(Collections.singletonList(new Rectangle(-5, -5, 10, 100)),
+				new Rectangle(0, 0, 20, 3));
+
+		assertThat(intervals.getRow(0), is(new int[] { 0, 5 }));
+		assertThat(intervals.getRow(2), is(new int[] { 0, 5 }));
+	}
+
+	/**
+	 * 比較範囲に掛かる除外領域がない場合、nullを返す。
+	 */
+	@Test
+	public void testOf_noIntersection() throws Exception {
+		assertThat(ExcludeIntervals.of(null, new Rectangle(0, 0, 10, 10)), is(nullValue()));
+		assertThat(ExcludeIntervals.of(Collections.singletonList(new Rectangle(20, 0, 5, 5)), new Rectangle(0, 0,
+				10, 10)), is(nullValue()));
+	}
+
+}
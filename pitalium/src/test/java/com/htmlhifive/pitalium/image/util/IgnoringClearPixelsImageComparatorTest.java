@@ -33,6 +33,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
+import com.htmlhifive.pitalium.image.model.DefaultComparisonParameters;
 import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 
@@ -282,4 +283,53 @@ public class IgnoringClearPixelsImageComparatorTest {
 		assertThat(diffPoints, is(expectedDiffPoints));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 並列に比較した結果が、逐次比較と同じ順序で一致することを確認する。
+	 */
+	@Test
+	public void testCompare_parallel() throws Exception {
+		int width = 150;
+		int height = 500;
+		BufferedImage image1 = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage image2 = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Random random = new Random(1L);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// 一部のピクセルを半透明にする
+				int argb = (random.nextInt(5) == 0 ? 0x80000000 : 0xFF000000) | random.nextInt(0x1000000);
+				image1.setRGB(x, y, argb);
+				image2.setRGB(x, y, random.nextInt(10) == 0 ? argb ^ 0x000101 : argb);
+			}
+		}
+
+		Rectangle rectangle1 = new Rectangle(0, 0, width, height);
+		Rectangle rectangle2 = new Rectangle(0, 0, width, height);
+		DiffPoints expected = (DiffPoints) new IgnoringClearPixelsImageComparator().compare(image1, rectangle1,
+				image2, rectangle2);
+		DiffPoints actual = (DiffPoints) new IgnoringClearPixelsImageComparator(
+				new DefaultComparisonParameters(0.0, 4)).compare(image1, rectangle1, image2, rectangle2);
+
+		assertThat(expected.getDiffPoints().isEmpty(), is(false));
+		assertThat(actual.getDiffPoints(), is(expected.getDiffPoints()));
+	}
+
+	/**
+	 * 透明なピクセルのみが異なる画像の合否のみを判定する => 成功
+	 */
+	@Test
+	public void testVerify_clearPixels() throws Exception {
+		BufferedImage image1 = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage image2 = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+		image1.setRGB(3, 4, 0x80FF0000);
+		image2.setRGB(3, 4, 0x8000FF00);
+
+		Rectangle rectangle = new Rectangle(0, 0, 10, 10);
+		IgnoringClearPixelsImageComparator comparator = new IgnoringClearPixelsImageComparator();
+		assertThat(comparator.verify(image1, rectangle, image2, rectangle).isSucceeded(), is(true));
+
+		image2.setRGB(5, 6, 0xFF00FF00);
+		image1.setRGB(5, 6, 0xFFFF0000);
+		assertThat(comparator.verify(image1, rectangle, image2, rectangle).isFailed(), is(true));
+	}
+
+}
@@ -105,4 +105,18 @@ public class ImageComparatorFactoryTest {
 		assertTrue(actual instanceof IgnoringClearPixelsImageComparator);
 	}
 
+	/**
+	 * 複数の比較オプションを指定した場合、全ての比較オプションで比較するCompositeImageComparatorのインスタンスを返すテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void compositeComparator() throws Exception {
+		CompareOption[] options = new CompareOption[] { new CompareOption(CompareOptionType.IGNORE_CLEAR_PIXELS),
+				new CompareOption(CompareOptionType.DEFAULT) };
+
+		assertTrue(instance.getCompositeImageComparator(options) instanceof CompositeImageComparator);
+		assertTrue(instance.getCompositeImageComparator(null) instanceof CompositeImageComparator);
+	}
+
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.htmlhifive.pitalium.image.util;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.util.List;
 
@@ -13,6 +15,7 @@ import org.junit.Test;
 import com.htmlhifive.pitalium.image.model.ComparedRectangleArea;
 import com.htmlhifive.pitalium.image.model.DiffCategory;
 import com.htmlhifive.pitalium.image.model.Offset;
+import com.htmlhifive.pitalium.image.model.OffsetSearchMethod;
 
 public class ImagePairTest {
 	/**
@@ -182,4 +185,81 @@ public class ImagePairTest {
 
 		assertThat(actual, is(false));
 	}
+
+	/**
+	 * 並列に差異領域を構築した場合、逐次実行と同じ結果となることを確認する。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompareImagePairAll_parallel() throws Exception {
+		BufferedImage expectedImage = ImageIO.read(getClass().getResource("ImagePairTest_missing_expected.png"));
+		BufferedImage targetImage = ImageIO.read(getClass().getResource("ImagePairTest_missing_actual.png"));
+
+		ImagePair sequential = new ImagePair(expectedImage, targetImage);
+		sequential.compareImagePairAll();
+		// 全ての範囲を分割して並列に構築する
+		ImagePair parallel = new ImagePair(expectedImage, targetImage, 4, OffsetSearchMethod.BRUTE_FORCE, 0);
+		parallel.compareImagePairAll();
+
+		List<ComparedRectangleArea> expected = sequential.getComparedRectangles();
+		List<ComparedRectangleArea> actual = parallel.getComparedRectangles();
+		assertThat(actual.size(), is(expected.size()));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).toRectangle(), is(expected.get(i).toRectangle()));
+			assertThat(actual.get(i).getCategory(), is(expected.get(i).getCategory()));
+		}
+		assertThat(parallel.getEntireSimilarity(), is(sequential.getEntireSimilarity()));
+	}
+
+	/**
+	 * 並列に分類した場合、差異領域の順序を含めて逐次実行と同じ結果となることを確認する。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDoCategorize_parallel() throws Exception {
+		BufferedImage expectedImage = new BufferedImage(800, 600, BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage targetImage = new BufferedImage(800, 600, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D expectedGraphics = expectedImage.createGraphics();
+		Graphics2D targetGraphics = targetImage.createGraphics();
+		for (Graphics2D g : new Graphics2D[] { expectedGraphics, targetGraphics }) {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, 800, 600);
+		}
+		for (int i = 0; i < 6; i++) {
+			int x = 50 + (i % 3) * 250;
+			int y = 80 + (i / 3) * 280;
+			expectedGraphics.setColor(new Color(40 * i, 100, 200 - 30 * i));
+			expectedGraphics.fillRect(x, y, 60, 40);
+			targetGraphics.setColor(new Color(40 * i, 100, 200 - 30 * i));
+			if (i % 2 == 0) {
+				// 位置をずらす
+				targetGraphics.fillRect(x + 5, y + 3, 60, 40);
+			} else if (i == 3) {
+				// 大きさを変える
+				targetGraphics.fillRect(x, y, 72, 48);
+			}
+		}
+		expectedGraphics.dispose();
+		targetGraphics.dispose();
+
+		ImagePair sequential = new ImagePair(expectedImage, targetImage);
+		sequential.prepare();
+		sequential.doCategorize();
+		ImagePair parallel = new ImagePair(expectedImage, targetImage, 4);
+		parallel.prepare();
+		parallel.doCategorize();
+
+		List<ComparedRectangleArea> expected = sequential.getComparedRectangles();
+		List<ComparedRectangleArea> actual = parallel.getComparedRectangles();
+		assertThat(expected.size() > 1, is(true));
+		assertThat(actual.size(), is(expected.size()));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).toRectangle(), is(expected.get(i).toRectangle()));
+			assertThat(actual.get(i).getCategory(), is(expected.get(i).getCategory()));
+			assertThat(actual.get(i).getXShift(), is(expected.get(i).getXShift()));
+			assertThat(actual.get(i).getYShift(), is(expected.get(i).getYShift()));
+		}
+	}
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * 画像処理のテストで共通に使用する、画像の生成とピクセルの検証を行うクラス
+ */
+final class ImageTestUtils {
+
+	private ImageTestUtils() {
+	}
+
+	/**
+	 * 各ピクセルに乱数のARGB値を設定した画像を生成します。同じ引数からは常に同じ画像を生成します。
+	 *
+	 * @param width 幅
+	 * @param height 高さ
+	 * @param type 画像の種類
+	 * @param seed 乱数の種
+	 * @return 生成した画像
+	 */
+	static BufferedImage createRandomImage(int width, int height, int type, long seed) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(seed);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * プレーンの各ピクセルが、画像の(x, y)を左上とする範囲のピクセルと一致することを検証します。
+	 *
+	 * @param planes 検証するプレーン
+	 * @param image 期待値の画像
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 */
+	static void assertPixelsEqual(PixelPlanes planes, BufferedImage image, int x, int y) {
+		int[] actual = new int[planes.width * planes.height];
+		for (int j = 0; j < planes.height; j++) {
+			for (int i = 0; i < planes.width; i++) {
+				actual[j * planes.width + i] = planes.getRGB(i, j);
+			}
+		}
+		assertThat(actual, is(getRGB(image, x, y, planes.width, planes.height)));
+	}
+
+	/**
+	 * ビューの各ピクセルが、画像の(x, y)を左上とする範囲のピクセルと一致することを検証します。
+	 *
+	 * @param region 検証するビュー
+	 * @param image 期待値の画像
+	 * @param x 範囲の左上のx座標
+	 * @param y 範囲の左上のy座標
+	 */
+	static void assertPixelsEqual(PixelRegion region, BufferedImage image, int x, int y) {
+		int[] actual = new int[region.width * region.height];
+		for (int j = 0; j < region.height; j++) {
+			for (int i = 0; i < region.width; i++) {
+				actual[j * region.width + i] = region.getRGB(i, j);
+			}
+		}
+		assertThat(actual, is(getRGB(image, x, y, region.width, region.height)));
+	}
+
+	private static int[] getRGB(BufferedImage image, int x, int y, int width, int height) {
+		return image.getRGB(x, y, width, height, null, 0, width);
+	}
+
+}
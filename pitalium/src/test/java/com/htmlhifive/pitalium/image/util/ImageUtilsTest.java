@@ -18,12 +18,15 @@ package com.htmlhifive.pitalium.image.util;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import javax.imageio.ImageIO;
 
@@ -35,6 +38,7 @@ import com.htmlhifive.pitalium.image.model.DiffPoints;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 import com.htmlhifive.pitalium.image.model.ObjectGroup;
 import com.htmlhifive.pitalium.image.model.Offset;
+import com.htmlhifive.pitalium.image.model.OffsetSearchMethod;
 
 public class ImageUtilsTest {
 
@@ -173,6 +177,29 @@ public class ImageUtilsTest {
 		assertThat(ImageUtils.imageEquals(expected, actual), is(true));
 	}
 
+	/**
+	 * 比較しながら差分画像を取得するテスト。比較結果の差分データから作成した差分画像と一致すること。
+	 */
+	@Test
+	public void testGetDiffImage_compare() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("web_page_screenshot.png"));
+		BufferedImage image2 = ImageIO.read(getClass().getResource("web_page_screenshot.png"));
+		Graphics2D g = image1.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(20, 30, 40, 10);
+		g.fillRect(200, 100, 30, 60);
+		g.dispose();
+		Rectangle rectangle1 = new Rectangle(10, 10, image1.getWidth() - 20, image1.getHeight() - 20);
+		Rectangle rectangle2 = new Rectangle(0, 0, image2.getWidth() - 20, image2.getHeight() - 25);
+		CompareOption[] options = new CompareOption[0];
+
+		DiffPoints diffPoints = (DiffPoints) ImageUtils.compare(image1, rectangle1, image2, rectangle2, options);
+		BufferedImage expected = ImageUtils.getDiffImage(image2, image1, diffPoints);
+
+		BufferedImage actual = ImageUtils.getDiffImage(image1, rectangle1, image2, rectangle2, options);
+		assertThat(ImageUtils.imageEquals(expected, actual), is(true));
+	}
+
 	//<editor-fold desc="trim">
 
 	/**
@@ -208,6 +235,36 @@ public class ImageUtilsTest {
 
 	//</editor-fold>
 
+	/**
+	 * 各種形式の画像を標準のピクセル形式に変換し、ピクセルの値が変わらないことを確認するテスト。
+	 */
+	@Test
+	public void testToCanonicalImage() throws Exception {
+		BufferedImage source = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		int width = source.getWidth();
+		int height = source.getHeight();
+
+		int[] types = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_BGR,
+				BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_USHORT_565_RGB };
+		for (int type : types) {
+			BufferedImage image = new BufferedImage(width, height, type);
+			Graphics2D g = image.createGraphics();
+			g.drawImage(source, 0, 0, null);
+			g.dispose();
+
+			BufferedImage actual = ImageUtils.toCanonicalImage(image);
+			assertThat(ImageUtils.isCanonicalImage(actual), is(true));
+			assertThat(actual.getType(), is(image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+					: BufferedImage.TYPE_INT_RGB));
+			assertArrayEquals(image.getRGB(0, 0, width, height, null, 0, width),
+					actual.getRGB(0, 0, width, height, null, 0, width));
+		}
+
+		BufferedImage canonical = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		assertThat(ImageUtils.toCanonicalImage(canonical), is(sameInstance(canonical)));
+		assertThat(ImageUtils.toCanonicalImage(null), is(nullValue()));
+	}
+
 	/**
 	 * 元画像の積分画像を生成するテスト。
 	 *
@@ -315,6 +372,26 @@ public class ImageUtilsTest {
 		assertThat(actual, is(expected));
 	}
 
+	/**
+	 * サイズのdiff矩形から作成した四角形が、矩形内の全ての点から作成した四角形と一致することを確認するテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConvertSizeDiffAreasToAreas() throws Exception {
+		int[][] sizes = { { 30, 20, 30, 25 }, { 30, 20, 35, 20 }, { 30, 20, 25, 28 }, { 30, 20, 20, 10 } };
+		for (int[] size : sizes) {
+			BufferedImage image1 = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+			BufferedImage image2 = new BufferedImage(size[2], size[3], BufferedImage.TYPE_INT_RGB);
+			DiffPoints result = (DiffPoints) new DefaultImageComparator().compare(image1, null, image2, null);
+
+			List<Rectangle> expected = ImageUtils.convertSizeDiffPointsToAreas(result.getSizeDiffPoints());
+			List<Rectangle> actual = ImageUtils.convertSizeDiffAreasToAreas(result.getSizeDiffAreas());
+			assertThat(expected.isEmpty(), is(false));
+			assertThat(actual, is(expected));
+		}
+	}
+
 	/**
 	 * 画像を縦に結合し、1枚の画像にするテスト。
 	 *
@@ -431,6 +508,31 @@ public class ImageUtilsTest {
 		assertThat(rectangle, is(expected));
 	}
 
+	/**
+	 * 領域の周囲が途切れている場合はRectangleを上書きしないテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetObjectRectangle_notFound() throws Exception {
+		BufferedImage image = ImageIO.read(getClass().getResource("ImageUtilsTest_get_object_rectangle.png"));
+		Rectangle rectangle = new Rectangle(247, 225, 109, 109);
+		// 取得したい領域の左辺の中央付近を背景色で塗りつぶす
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		copy.getGraphics().drawImage(image, 0, 0, null);
+		int background = copy.getRGB(247, 225);
+		for (int y = 270; y < 290; y++) {
+			for (int x = 247; x < 260; x++) {
+				copy.setRGB(x, y, background);
+			}
+		}
+
+		boolean result = ImageUtils.getObjectRectangle(copy, rectangle);
+
+		assertThat(result, is(false));
+		assertThat(rectangle, is(new Rectangle(247, 225, 109, 109)));
+	}
+
 	/**
 	 * RGBピクセル同士のノルムを計算するテスト。
 	 *
@@ -659,6 +761,54 @@ public class ImageUtilsTest {
 		assertThat(actual.getY(), is(expected.getY()));
 	}
 
+	/**
+	 * 位相限定相関により2枚の画像のdominantOffsetを取得するテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindDominantOffset_phaseCorrelation() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("ImageUtilsTest_dominant_expected.png"));
+		BufferedImage image2 = ImageIO.read(getClass().getResource("ImageUtilsTest_dominant_merge.png"));
+		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
+
+		Offset actual = ImageUtils.findDominantOffset(image1, image2, diffThreshold,
+				OffsetSearchMethod.PHASE_CORRELATION);
+
+		assertThat(actual.getX(), is(5));
+		assertThat(actual.getY(), is(5));
+	}
+
+	/**
+	 * 位相限定相関により、総当たりでは探索しない10ピクセルを超えるdominantOffsetを取得できることを確認する。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindDominantOffset_phaseCorrelationLargeOffset() throws Exception {
+		BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		Random random = new Random(1L);
+		for (int i = 0; i < 60; i++) {
+			g.setColor(new Color(random.nextInt(0x1000000)));
+			g.fillRect(random.nextInt(400), random.nextInt(300), 10 + random.nextInt(60), 10 + random.nextInt(60));
+		}
+		g.dispose();
+		BufferedImage subImage = image.getSubimage(37, 23, 300, 220);
+		double diffThreshold = ComparisonParameterDefaults.getDiffThreshold();
+
+		// expectedの方が大きい場合
+		Offset actual = ImageUtils.findDominantOffset(image, subImage, diffThreshold,
+				OffsetSearchMethod.PHASE_CORRELATION);
+		assertThat(actual.getX(), is(37));
+		assertThat(actual.getY(), is(23));
+
+		// actualの方が大きい場合
+		actual = ImageUtils.findDominantOffset(subImage, image, diffThreshold, OffsetSearchMethod.PHASE_CORRELATION);
+		assertThat(actual.getX(), is(37));
+		assertThat(actual.getY(), is(23));
+	}
+
 	/**
 	 * Offsetから同じ内容をの領域を持つ2枚の画像を重ね合わせた画像を作成するテスト。
 	 *
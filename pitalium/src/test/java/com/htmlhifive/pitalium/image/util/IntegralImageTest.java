@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static com.htmlhifive.pitalium.image.util.ImageTestUtils.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntegralImageTest {
+
+	/**
+	 * 任意の矩形範囲の合計が、各ピクセルのR、G、B値の和の合計と一致することを確認する。
+	 */
+	@Test
+	public void testSum() throws Exception {
+		BufferedImage image = createRandomImage(37, 23, BufferedImage.TYPE_INT_ARGB, 1L);
+		IntegralImage integralImage = new IntegralImage(image);
+
+		Random random = new Random(2L);
+		for (int n = 0; n < 200; n++) {
+			int x = random.nextInt(37);
+			int y = random.nextInt(23);
+			int w = random.nextInt(37 - x + 1);
+			int h = random.nextInt(23 - y + 1);
+			assertThat(integralImage.sum(x, y, w, h), is(sum(image, x, y, w, h)));
+		}
+		assertThat(integralImage.sum(0, 0, 37, 23), is(sum(image, 0, 0, 37, 23)));
+	}
+
+	/**
+	 * 画像の一部の範囲から生成した場合も、元画像の座標系で合計を取得できることを確認する。
+	 */
+	@Test
+	public void testSum_region() throws Exception {
+		BufferedImage image = createRandomImage(40, 30, BufferedImage.TYPE_INT_ARGB, 1L);
+		IntegralImage integralImage = new IntegralImage(image, new Rectangle(5, 8, 20, 15));
+
+		assertThat(integralImage.sum(5, 8, 20, 15), is(sum(image, 5, 8, 20, 15)));
+		assertThat(integralImage.sum(10, 12, 7, 3), is(sum(image, 10, 12, 7, 3)));
+		assertThat(integralImage.sum(24, 22, 1, 1), is(sum(image, 24, 22, 1, 1)));
+	}
+
+	/**
+	 * 合計がintの範囲を超える大きな画像でも、桁あふれせずに合計を取得できることを確認する。
+	 */
+	@Test
+	public void testSum_overflow() throws Exception {
+		BufferedImage image = new BufferedImage(2000, 1500, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 2000, 1500);
+		g.dispose();
+		IntegralImage integralImage = new IntegralImage(image);
+
+		long expected = 2000L * 1500 * 255 * 3;
+		assertThat(expected > Integer.MAX_VALUE, is(true));
+		assertThat(integralImage.sum(0, 0, 2000, 1500), is(expected));
+		assertThat(integralImage.sum(1000, 500, 1000, 1000), is(1000L * 1000 * 255 * 3));
+	}
+
+	private static long sum(BufferedImage image, int x, int y, int w, int h) {
+		long sum = 0;
+		for (int j = y; j < y + h; j++) {
+			for (int i = x; i < x + w; i++) {
+				int rgb = image.getRGB(i, j);
+				sum += ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+			}
+		}
+		return sum;
+	}
+
+}
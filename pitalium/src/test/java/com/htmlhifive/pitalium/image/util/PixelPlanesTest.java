@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static com.htmlhifive.pitalium.image.util.ImageTestUtils.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class PixelPlanesTest {
+
+	/**
+	 * 各種類の画像について、プレーンから取得した値がgetRGBと一致することを確認する。
+	 */
+	@Test
+	public void testOf() throws Exception {
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR };
+		for (int type : types) {
+			BufferedImage image = createRandomImage(31, 17, type, 1L);
+			PixelPlanes planes = PixelPlanes.of(image);
+			assertThat(planes.width, is(31));
+			assertThat(planes.height, is(17));
+			assertPixelsEqual(planes, image, 0, 0);
+		}
+	}
+
+	/**
+	 * 範囲を指定して生成したプレーンは、範囲の大きさの配列に行順で各色成分を保持することを確認する。
+	 */
+	@Test
+	public void testOf_layout() throws Exception {
+		BufferedImage image = createRandomImage(31, 17, BufferedImage.TYPE_INT_ARGB, 1L);
+		PixelPlanes planes = PixelPlanes.of(image, new Rectangle(4, 3, 20, 10));
+		assertThat(planes.origin, is(0));
+		assertThat(planes.stride, is(20));
+		assertThat(planes.red.length, is(200));
+
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 20; x++) {
+				int argb = image.getRGB(4 + x, 3 + y);
+				int index = y * 20 + x;
+				assertThat(planes.index(x, y), is(index));
+				assertThat(planes.alpha[index] & 0xFF, is(argb >>> 24));
+				assertThat(planes.red[index] & 0xFF, is((argb >> 16) & 0xFF));
+				assertThat(planes.green[index] & 0xFF, is((argb >> 8) & 0xFF));
+				assertThat(planes.blue[index] & 0xFF, is(argb & 0xFF));
+			}
+		}
+	}
+
+	/**
+	 * アルファ値を持たない画像ではアルファのプレーンを生成せず、不透明として扱うことを確認する。
+	 */
+	@Test
+	public void testOf_alpha() throws Exception {
+		PixelPlanes opaque = PixelPlanes.of(createRandomImage(8, 4, BufferedImage.TYPE_3BYTE_BGR, 1L));
+		assertThat(opaque.alpha, is(nullValue()));
+		assertThat(opaque.getRGB(3, 2) >>> 24, is(0xFF));
+
+		// 透明なピクセルはアルファ値0のまま保持する
+		BufferedImage image = new BufferedImage(8, 4, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(3, 2, 0x00123456);
+		PixelPlanes translucent = PixelPlanes.of(image);
+		assertThat(translucent.alpha, is(notNullValue()));
+		assertThat(translucent.getRGB(3, 2), is(0x00123456));
+	}
+
+	/**
+	 * 配列を共有したまま、元のプレーンのstrideで範囲を参照するプレーンを取得できることを確認する。
+	 */
+	@Test
+	public void testSubPlanes() throws Exception {
+		BufferedImage image = createRandomImage(31, 17, BufferedImage.TYPE_4BYTE_ABGR, 1L);
+		PixelPlanes planes = PixelPlanes.of(image);
+		PixelPlanes subPlanes = planes.subPlanes(5, 2, 20, 12).subPlanes(new Rectangle(3, 4, 10, 6));
+		assertThat(subPlanes.red, is(sameInstance(planes.red)));
+		assertThat(subPlanes.alpha, is(sameInstance(planes.alpha)));
+		assertThat(subPlanes.stride, is(31));
+		assertThat(subPlanes.index(0, 0), is(planes.index(8, 6)));
+		assertThat(subPlanes.index(9, 5), is(planes.index(17, 11)));
+		assertPixelsEqual(subPlanes, image, 8, 6);
+	}
+
+	/**
+	 * 範囲外を参照しようとした場合、IndexOutOfBoundsException。
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSubPlanes_outOfBounds() throws Exception {
+		PixelPlanes.of(createRandomImage(10, 10, BufferedImage.TYPE_INT_RGB, 1L)).subPlanes(5, 5, 6, 5);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class PixelReaderTest {
+
+	/**
+	 * 各種類の画像について、読み込んだ値がgetRGBと一致することを確認する。
+	 */
+	@Test
+	public void testReadRow() throws Exception {
+		BufferedImage source = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_USHORT_565_RGB };
+		for (int type : types) {
+			BufferedImage image = convert(source, type);
+			assertRowsEqual(image);
+		}
+	}
+
+	/**
+	 * getSubimageで切り出した画像について、読み込んだ値がgetRGBと一致することを確認する。
+	 */
+	@Test
+	public void testReadRow_subImage() throws Exception {
+		BufferedImage source = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR };
+		for (int type : types) {
+			BufferedImage image = convert(source, type);
+			BufferedImage subImage = image.getSubimage(7, 5, image.getWidth() - 20, image.getHeight() - 10)
+					.getSubimage(3, 2, image.getWidth() - 30, image.getHeight() - 15);
+			assertThat(PixelReader.of(subImage).isDirect(), is(true));
+			assertRowsEqual(subImage);
+		}
+	}
+
+	/**
+	 * 直接読み込めない画像の場合、getRGBで読み込むことを確認する。
+	 */
+	@Test
+	public void testIsDirect_custom() throws Exception {
+		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+		assertThat(PixelReader.of(image).isDirect(), is(false));
+		assertRowsEqual(image);
+	}
+
+	private static BufferedImage convert(BufferedImage source, int type) {
+		BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), type);
+		for (int y = 0; y < source.getHeight(); y++) {
+			for (int x = 0; x < source.getWidth(); x++) {
+				// 半透明のピクセルを含める
+				int alpha = (x + y) % 2 == 0 ? 0xFF000000 : 0x80000000;
+				image.setRGB(x, y, alpha | (source.getRGB(x, y) & 0x00FFFFFF));
+			}
+		}
+		return image;
+	}
+
+	private static void assertRowsEqual(BufferedImage image) {
+		PixelReader reader = PixelReader.of(image);
+		int width = image.getWidth();
+		int[] row = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			reader.readRow(0, y, width, row);
+			for (int x = 0; x < width; x++) {
+				assertThat(row[x], is(image.getRGB(x, y)));
+			}
+		}
+
+		// 行の途中から読み込む
+		int[] part = new int[width - 3];
+		reader.readRow(3, image.getHeight() - 1, width - 3, part);
+		for (int x = 0; x < part.length; x++) {
+			assertThat(part[x], is(image.getRGB(x + 3, image.getHeight() - 1)));
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static com.htmlhifive.pitalium.image.util.ImageTestUtils.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import org.junit.Test;
+
+public class PixelRegionTest {
+
+	/**
+	 * 標準の形式の画像について、配列を参照するビューから取得した値がgetRGBと一致することを確認する。
+	 */
+	@Test
+	public void testOf() throws Exception {
+		for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB }) {
+			BufferedImage image = createRandomImage(31, 17, type, 1L);
+			PixelRegion region = PixelRegion.of(image);
+			assertThat(region.isArrayBacked(), is(true));
+			assertThat(region.width, is(31));
+			assertThat(region.height, is(17));
+			assertThat(region.hasAlpha, is(image.getColorModel().hasAlpha()));
+			assertPixelsEqual(region, image, 0, 0);
+		}
+	}
+
+	/**
+	 * 部分画像からは、元画像の配列を共有し、部分画像の左上のインデックスと元画像のstrideを持つビューを生成できることを確認する。
+	 */
+	@Test
+	public void testOf_sharesData() throws Exception {
+		BufferedImage image = createRandomImage(31, 17, BufferedImage.TYPE_INT_RGB, 1L);
+		BufferedImage subImage = image.getSubimage(4, 3, 20, 10);
+		PixelRegion region = PixelRegion.of(subImage);
+		assertThat(region.data, is(sameInstance(((DataBufferInt) image.getRaster().getDataBuffer()).getData())));
+		assertThat(region.origin, is(3 * 31 + 4));
+		assertThat(region.stride, is(31));
+		assertThat(region.width, is(20));
+		assertThat(region.height, is(10));
+		assertThat(region.index(19, 9), is((3 + 9) * 31 + 4 + 19));
+		assertPixelsEqual(region, image, 4, 3);
+	}
+
+	/**
+	 * 標準の形式でない画像は変換せず、配列を持たないビューとして範囲のピクセルを読み込めることを確認する。
+	 */
+	@Test
+	public void testOf_notCanonical() throws Exception {
+		int[] types = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_BGR };
+		for (int type : types) {
+			BufferedImage image = createRandomImage(31, 17, type, 1L);
+			PixelRegion region = PixelRegion.of(image, new Rectangle(4, 3, 20, 10));
+			assertThat(region.isArrayBacked(), is(false));
+			assertThat(region.data, is(nullValue()));
+			assertPixelsEqual(region, image, 4, 3);
+			assertPixelsEqual(region.subRegion(5, 2, 10, 6), image, 9, 5);
+		}
+	}
+
+	/**
+	 * 配列を共有したまま、元のビューのstrideで範囲を参照するビューを取得できることを確認する。
+	 */
+	@Test
+	public void testSubRegion() throws Exception {
+		BufferedImage image = createRandomImage(31, 17, BufferedImage.TYPE_INT_ARGB, 1L);
+		PixelRegion region = PixelRegion.of(image);
+		PixelRegion subRegion = region.subRegion(5, 2, 20, 12).subRegion(new Rectangle(3, 4, 10, 6));
+		assertThat(subRegion.data, is(sameInstance(region.data)));
+		assertThat(subRegion.stride, is(region.stride));
+		assertThat(subRegion.origin, is(region.index(8, 6)));
+		assertThat(subRegion.index(9, 5), is(region.index(17, 11)));
+		assertThat(PixelRegion.of(image, new Rectangle(8, 6, 10, 6)).origin, is(subRegion.origin));
+		assertPixelsEqual(subRegion, image, 8, 6);
+	}
+
+	/**
+	 * 範囲外を参照しようとした場合、IndexOutOfBoundsException。
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSubRegion_outOfBounds() throws Exception {
+		PixelRegion.of(createRandomImage(10, 10, BufferedImage.TYPE_INT_RGB, 1L)).subRegion(5, 5, 6, 5);
+	}
+
+	/**
+	 * 行のピクセルを、透明度を持つ画像では配列から直接、持たない画像では補正して、標準の形式でない画像では1行ずつ読み込めることを確認する。
+	 */
+	@Test
+	public void testGetRow() throws Exception {
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR };
+		for (int type : types) {
+			BufferedImage image = createRandomImage(31, 17, type, 1L);
+			PixelRegion region = PixelRegion.of(image).subRegion(5, 2, 20, 12);
+			int[] buffer = new int[15];
+			for (int y = 0; y < region.height; y++) {
+				int[] row = region.getRow(3, y, 15, buffer);
+				int offset = region.getRowOffset(3, y);
+				assertThat(row == region.data, is(region.hasAlpha));
+				for (int x = 0; x < 15; x++) {
+					assertThat(row[offset + x], is(image.getRGB(8 + x, 2 + y)));
+				}
+			}
+		}
+	}
+
+}
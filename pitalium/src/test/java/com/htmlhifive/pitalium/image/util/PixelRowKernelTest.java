@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PixelRowKernelTest {
+
+	/**
+	 * 値が異なる最初の位置を、配列の途中から始まる行の途中から途中までの範囲で取得できることを確認する。
+	 */
+	@Test
+	public void testIndexOfMismatch() throws Exception {
+		Random random = new Random(1L);
+		for (PixelRowKernel kernel : new PixelRowKernel[] { new PixelRowKernel(), PixelRowKernel.getInstance() }) {
+			for (int i = 0; i < 200; i++) {
+				int[][] rows = createRows(random, 1 + random.nextInt(100));
+				int width = rows[0].length;
+				int from = random.nextInt(width);
+				int to = from + random.nextInt(width - from + 1);
+
+				int expected = to;
+				for (int x = from; x < to; x++) {
+					if (rows[0][x] != rows[1][x]) {
+						expected = x;
+						break;
+					}
+				}
+				int offset1 = random.nextInt(10);
+				int offset2 = random.nextInt(10);
+				assertThat(kernel.indexOfMismatch(shift(rows[0], offset1), offset1, shift(rows[1], offset2), offset2,
+						from, to), is(expected));
+			}
+		}
+	}
+
+	/**
+	 * RGBの二乗和が上限を超える最初の位置を取得でき、透明度の差は無視されることを確認する。
+	 */
+	@Test
+	public void testIndexOfDistanceOver() throws Exception {
+		Random random = new Random(2L);
+		for (PixelRowKernel kernel : new PixelRowKernel[] { new PixelRowKernel(), PixelRowKernel.getInstance() }) {
+			for (int i = 0; i < 200; i++) {
+				int[][] rows = createRows(random, 1 + random.nextInt(100));
+				int width = rows[0].length;
+				int from = random.nextInt(width);
+				int to = from + random.nextInt(width - from + 1);
+				int limit = random.nextBoolean() ? 0 : random.nextInt(PixelRowKernel.MAX_DISTANCE + 1);
+
+				int expected = to;
+				for (int x = from; x < to; x++) {
+					int r = ((rows[0][x] >> 16) & 0xFF) - ((rows[1][x] >> 16) & 0xFF);
+					int g = ((rows[0][x] >> 8) & 0xFF) - ((rows[1][x] >> 8) & 0xFF);
+					int b = (rows[0][x] & 0xFF) - (rows[1][x] & 0xFF);
+					if (r * r + g * g + b * b > limit) {
+						expected = x;
+						break;
+					}
+				}
+				int offset1 = random.nextInt(10);
+				int offset2 = random.nextInt(10);
+				assertThat(kernel.indexOfDistanceOver(shift(rows[0], offset1), offset1, shift(rows[1], offset2),
+						offset2, from, to, limit), is(expected));
+			}
+		}
+	}
+
+	/**
+	 * 閾値から計算した上限が、閾値との比較と同じ結果になることを確認する。
+	 */
+	@Test
+	public void testToDistanceLimit() throws Exception {
+		assertThat(PixelRowKernel.toDistanceLimit(0d), is(0));
+		assertThat(PixelRowKernel.toDistanceLimit(0.1d), is(1950));
+		assertThat(PixelRowKernel.toDistanceLimit(1d), is(PixelRowKernel.MAX_DISTANCE));
+		assertThat(PixelRowKernel.toDistanceLimit(2d), is(PixelRowKernel.MAX_DISTANCE));
+		assertThat(PixelRowKernel.toDistanceLimit(Double.NaN), is(PixelRowKernel.MAX_DISTANCE));
+	}
+
+	/**
+	 * 大部分が一致し、透明度のみ異なるピクセルや近い色のピクセルを含む2つの行を生成する。
+	 */
+	private static int[][] createRows(Random random, int width) {
+		int[] row1 = new int[width];
+		int[] row2 = new int[width];
+		for (int x = 0; x < width; x++) {
+			row1[x] = random.nextInt();
+			switch (random.nextInt(8)) {
+				case 0:
+					row2[x] = random.nextInt();
+					break;
+				case 1:
+					row2[x] = row1[x] ^ 0x7F000000;
+					break;
+				case 2:
+					row2[x] = row1[x] ^ (1 << random.nextInt(24));
+					break;
+				default:
+					row2[x] = row1[x];
+					break;
+			}
+		}
+		return new int[][] { row1, row2 };
+	}
+
+	/**
+	 * 行をoffset番目から格納し、前後に無関係な値を持つ配列を生成する。
+	 */
+	private static int[] shift(int[] row, int offset) {
+		int[] pixels = new int[offset + row.length + 3];
+		Arrays.fill(pixels, 0x12345678);
+		System.arraycopy(row, 0, pixels, offset, row.length);
+		return pixels;
+	}
+
+}
@@ -3,12 +3,14 @@ package com.htmlhifive.pitalium.image.util;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import javax.imageio.ImageIO;
 
 import org.junit.Test;
 
+import com.htmlhifive.pitalium.common.exception.TestRuntimeException;
 import com.htmlhifive.pitalium.image.model.ImageComparedResult;
 import com.htmlhifive.pitalium.image.model.SimilarityComparisonParameters;
 
@@ -85,4 +87,30 @@ public class SimilarityImageComparatorTest {
 		assertThat(result.isSucceeded(), is(true));
 	}
 
+	/**
+	 * 類似度による比較は差異の位置を持たないため、差異を順に渡す比較を行った場合、TestRuntimeException。
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = TestRuntimeException.class)
+	public void testCompare_sink() throws Exception {
+		BufferedImage expectedImage = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		BufferedImage targetImage = ImageIO.read(getClass().getResource("hifive_logo_similar.png"));
+		Rectangle rectangle = new Rectangle(expectedImage.getWidth(), expectedImage.getHeight());
+
+		SimilarityComparisonParameters param = new SimilarityComparisonParameters(0.99, 0.97, 0.97, 0.96);
+		new SimilarityImageComparator(param).compare(expectedImage, rectangle, targetImage, rectangle,
+				new DiffRunSink() {
+					@Override
+					public boolean onSizeDiff(Rectangle area) {
+						return true;
+					}
+
+					@Override
+					public boolean onDiffRun(int y, int startX, int endX) {
+						return true;
+					}
+				});
+	}
+
 }
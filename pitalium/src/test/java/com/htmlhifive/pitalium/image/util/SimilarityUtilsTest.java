@@ -4,6 +4,7 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
@@ -222,4 +223,29 @@ public class SimilarityUtilsTest {
 		// expectedの値はhifive_logo.pngとhifive_logo_similar.pngの類似度を事前に計算したSimilarityUtils.getSimilarityPixelByPixelの結果を使用
 		assertThat(actual, is(0.99));
 	}
+
+	/**
+	 * pixel by pixelによる類似度計算、位置をずらした画像で最も一致する位置を探索するテスト。
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalcSimilarityPixelByPixelWithShift() throws Exception {
+		BufferedImage image1 = ImageIO.read(getClass().getResource("hifive_logo.png"));
+		BufferedImage similar = ImageIO.read(getClass().getResource("hifive_logo_similar.png"));
+		BufferedImage image2 = new BufferedImage(image1.getWidth(), image1.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image2.createGraphics();
+		g.drawImage(similar, 3, -2, null);
+		g.dispose();
+		Rectangle rectangle = new Rectangle(8, 8, image1.getWidth() - 16, image1.getHeight() - 16);
+
+		SimilarityUnit unit = SimilarityUtils.calcSimilarityPixelByPixel(image1, image2, rectangle, null);
+
+		// expectedの値は事前に計算したSimilarityUtils.calcSimilarityPixelByPixelの結果を使用
+		assertThat(unit.getXOffset(), is(2));
+		assertThat(unit.getYOffset(), is(-3));
+		assertThat(unit.getSimilarityPixelByPixel(), is(0.99));
+		assertThat(unit.getSimilarityThresDiff(), is(0.99));
+		assertThat(unit.getSimilarityTotalDiff(), is(0.98));
+	}
 }
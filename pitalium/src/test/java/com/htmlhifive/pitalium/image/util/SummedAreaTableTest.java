@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SummedAreaTableTest {
+
+	/**
+	 * 任意の矩形範囲の合計が、値を直接足し合わせた結果と一致することを確認する。
+	 */
+	@Test
+	public void testSum() throws Exception {
+		int width = 37;
+		int height = 23;
+		int[] values = new int[width * height];
+		Random random = new Random(1L);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(256);
+		}
+		SummedAreaTable table = new SummedAreaTable(values, width, height);
+
+		for (int n = 0; n < 500; n++) {
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+			int w = random.nextInt(width - x + 1);
+			int h = random.nextInt(height - y + 1);
+			int expected = 0;
+			for (int i = y; i < y + h; i++) {
+				for (int j = x; j < x + w; j++) {
+					expected += values[i * width + j];
+				}
+			}
+			assertThat(table.sum(x, y, w, h), is(expected));
+		}
+		assertThat(table.sum(0, 0, 0, 0), is(0));
+	}
+
+	/**
+	 * 範囲全体の合計がintの範囲を超える場合でも、矩形範囲の合計が正しく得られることを確認する。
+	 */
+	@Test
+	public void testSum_overflow() throws Exception {
+		int width = 3000;
+		int height = 3000;
+		int[] values = new int[width * height];
+		Arrays.fill(values, 255);
+		SummedAreaTable table = new SummedAreaTable(values, width, height);
+
+		assertThat(table.sum(2900, 2900, 100, 100), is(255 * 100 * 100));
+		assertThat(table.sum(0, 2999, 3000, 1), is(255 * 3000));
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TemplateMatcherTest {
+
+	/**
+	 * 全体画像から切り出した部分画像が、逐次・並列のどちらでも見つかることを確認する。
+	 */
+	@Test
+	public void testFind() throws Exception {
+		BufferedImage entireImage = createImage(300, 700);
+		int[][] positions = { { 0, 0 }, { 123, 45 }, { 260, 640 }, { 7, 130 } };
+		for (int[] position : positions) {
+			BufferedImage partImage = entireImage.getSubimage(position[0], position[1], 40, 60);
+			assertThat(new TemplateMatcher(entireImage, partImage).find(1), is(true));
+			assertThat(new TemplateMatcher(entireImage, partImage).find(4), is(true));
+		}
+	}
+
+	/**
+	 * 1ピクセルでも異なる部分画像は見つからないことを確認する。
+	 */
+	@Test
+	public void testFind_notFound() throws Exception {
+		BufferedImage entireImage = createImage(300, 700);
+		BufferedImage partImage = new BufferedImage(40, 60, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = partImage.createGraphics();
+		g.drawImage(entireImage.getSubimage(123, 45, 40, 60), 0, 0, null);
+		g.dispose();
+		partImage.setRGB(20, 30, partImage.getRGB(20, 30) ^ 0x000001);
+
+		assertThat(new TemplateMatcher(entireImage, partImage).find(1), is(false));
+		assertThat(new TemplateMatcher(entireImage, partImage).find(4), is(false));
+	}
+
+	/**
+	 * 単色の部分画像が、種類の異なる画像の中から見つかることを確認する。
+	 */
+	@Test
+	public void testFind_solidColor() throws Exception {
+		BufferedImage entireImage = new BufferedImage(200, 300, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = entireImage.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 200, 300);
+		g.setColor(Color.BLUE);
+		g.fillRect(150, 250, 20, 20);
+		g.dispose();
+		BufferedImage partImage = new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB);
+		g = partImage.createGraphics();
+		g.setColor(Color.BLUE);
+		g.fillRect(0, 0, 20, 20);
+		g.dispose();
+
+		assertThat(new TemplateMatcher(entireImage, partImage).find(1), is(true));
+
+		partImage.setRGB(0, 0, Color.WHITE.getRGB());
+		assertThat(new TemplateMatcher(entireImage, partImage).find(2), is(false));
+	}
+
+	/**
+	 * 部分画像の方が大きい場合は見つからないことを確認する。
+	 */
+	@Test
+	public void testFind_largerTemplate() throws Exception {
+		BufferedImage entireImage = createImage(50, 50);
+		assertThat(new TemplateMatcher(entireImage, createImage(51, 10)).find(1), is(false));
+	}
+
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		Random random = new Random(1L);
+		for (int i = 0; i < width * height / 200; i++) {
+			g.setColor(new Color(random.nextInt(0x1000000)));
+			g.fillRect(random.nextInt(width), random.nextInt(height), 5 + random.nextInt(30), 5 + random.nextInt(30));
+		}
+		g.dispose();
+		return image;
+	}
+
+}
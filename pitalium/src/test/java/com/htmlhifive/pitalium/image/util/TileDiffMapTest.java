@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015-2017 NS Solutions Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.htmlhifive.pitalium.image.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class TileDiffMapTest {
+
+	/**
+	 * 差異のあるタイルに掛かる範囲のみ、差異なしと判定されないことを確認する。
+	 */
+	@Test
+	public void testIsClean() throws Exception {
+		BufferedImage image1 = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+		image2.setRGB(70, 130, 0x010101);
+
+		TileDiffMap map = TileDiffMap.of(image1, image2);
+		assertThat(map.getDirtyTileCount(), is(1));
+		assertThat(map.isClean(new Rectangle(0, 0, 200, 128)), is(true));
+		assertThat(map.isClean(new Rectangle(0, 0, 64, 150)), is(true));
+		assertThat(map.isClean(new Rectangle(128, 0, 72, 150)), is(true));
+		assertThat(map.isClean(new Rectangle(0, 0, 200, 150)), is(false));
+		assertThat(map.isClean(new Rectangle(64, 128, 1, 1)), is(false));
+		assertThat(map.isClean(new Rectangle(60, 100, 5, 29)), is(false));
+	}
+
+	/**
+	 * 比較した範囲の外や空の範囲は、差異なしと判定されないことを確認する。
+	 */
+	@Test
+	public void testIsClean_outOfRange() throws Exception {
+		BufferedImage image1 = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+
+		TileDiffMap map = TileDiffMap.of(image1, image2);
+		assertThat(map.getDirtyTileCount(), is(0));
+		assertThat(map.isClean(new Rectangle(0, 0, 100, 80)), is(true));
+		assertThat(map.isClean(new Rectangle(0, 0, 100, 81)), is(false));
+		assertThat(map.isClean(new Rectangle(-1, 0, 10, 10)), is(false));
+		assertThat(map.isClean(new Rectangle(10, 10, 0, 10)), is(false));
+	}
+
+}